@@ -90,6 +90,7 @@ import org.thingsboard.server.service.script.JsInvokeService;
 import org.thingsboard.server.service.session.DeviceSessionCacheService;
 import org.thingsboard.server.service.sms.SmsExecutorService;
 import org.thingsboard.server.service.state.DeviceStateService;
+import org.thingsboard.server.service.subscription.TbEntityDataChangeSyncService;
 import org.thingsboard.server.service.telemetry.AlarmSubscriptionService;
 import org.thingsboard.server.service.telemetry.TelemetrySubscriptionService;
 import org.thingsboard.server.service.transport.TbCoreToTransportService;
@@ -194,6 +195,10 @@ public class ActorSystemContext {
     @Getter
     private TbClusterService clusterService;
 
+    @Autowired
+    @Getter
+    private TbEntityDataChangeSyncService entityDataChangeSyncService;
+
     @Autowired
     @Getter
     private TimeseriesService tsService;
@@ -375,6 +375,9 @@ class DefaultTbContext implements TbContext {
     }
 
     public <E, I extends EntityId> TbMsg entityActionMsg(E entity, I id, RuleNodeId ruleNodeId, String action, String queueName, RuleChainId ruleChainId) {
+        if (DataConstants.ENTITY_CREATED.equals(action)) {
+            mainCtx.getEntityDataChangeSyncService().onEntityChange(getTenantId(), id);
+        }
         try {
             return TbMsg.newMsg(queueName, action, id, getActionMetaData(ruleNodeId), mapper.writeValueAsString(mapper.valueToTree(entity)), ruleChainId, null);
         } catch (JsonProcessingException | IllegalArgumentException e) {
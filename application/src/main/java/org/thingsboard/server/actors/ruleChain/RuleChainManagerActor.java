@@ -20,7 +20,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbEntityActorId;
-import org.thingsboard.server.actors.TbEntityTypeActorIdPredicate;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.actors.service.DefaultActorService;
 import org.thingsboard.server.common.data.EntityType;
@@ -99,6 +98,6 @@ public abstract class RuleChainManagerActor extends ContextAwareActor {
     }
 
     protected void broadcast(TbActorMsg msg) {
-        ctx.broadcastToChildren(msg, new TbEntityTypeActorIdPredicate(EntityType.RULE_CHAIN));
+        ctx.broadcastToChildrenByType(msg, EntityType.RULE_CHAIN);
     }
 }
@@ -26,11 +26,15 @@ import org.thingsboard.server.actors.service.ContextBasedCreator;
 import org.thingsboard.server.common.data.id.RuleChainId;
 import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 public class RuleNodeActor extends ComponentActor<RuleNodeId, RuleNodeActorMessageProcessor> {
 
@@ -75,6 +79,53 @@ public class RuleNodeActor extends ComponentActor<RuleNodeId, RuleNodeActorMessa
         return true;
     }
 
+    @Override
+    public boolean isBatchProcessingEnabled() {
+        return processor != null && processor.isBatchProcessingSupported();
+    }
+
+    @Override
+    public void processBatch(List<TbActorMsg> msgs) {
+        List<RuleChainToRuleNodeMsg> envelopes = new ArrayList<>(msgs.size());
+        for (TbActorMsg msg : msgs) {
+            if (MsgType.RULE_CHAIN_TO_RULE_MSG.equals(msg.getMsgType())) {
+                envelopes.add((RuleChainToRuleNodeMsg) msg);
+            } else {
+                onRuleChainToRuleNodeMsgs(envelopes);
+                envelopes.clear();
+                process(msg);
+            }
+        }
+        onRuleChainToRuleNodeMsgs(envelopes);
+    }
+
+    private void onRuleChainToRuleNodeMsgs(List<RuleChainToRuleNodeMsg> envelopes) {
+        if (envelopes.size() == 1) {
+            onRuleChainToRuleNodeMsg(envelopes.get(0));
+            return;
+        }
+        List<RuleChainToRuleNodeMsg> validEnvelopes = new ArrayList<>(envelopes.size());
+        for (RuleChainToRuleNodeMsg envelope : envelopes) {
+            if (envelope.getMsg().isValid()) {
+                validEnvelopes.add(envelope);
+            } else if (log.isTraceEnabled()) {
+                log.trace("Skip processing of message: {} because it is no longer valid!", envelope.getMsg());
+            }
+        }
+        if (validEnvelopes.isEmpty()) {
+            return;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("[{}][{}][{}] Going to process batch of {} rule engine msgs", ruleChainId, id, processor.getComponentName(), validEnvelopes.size());
+        }
+        try {
+            processor.onRuleChainToRuleNodeMsgs(validEnvelopes);
+            increaseMessagesProcessedCount(validEnvelopes.size());
+        } catch (Exception e) {
+            logAndPersist("onRuleMsg", e);
+        }
+    }
+
     private void onRuleNodeToSelfMsg(RuleNodeToSelfMsg msg) {
         if (log.isDebugEnabled()) {
             log.debug("[{}][{}][{}] Going to process rule msg: {}", ruleChainId, id, processor.getComponentName(), msg.getMsg());
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.actors.ruleChain;
 
+import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.server.actors.ActorSystemContext;
@@ -33,6 +34,9 @@ import org.thingsboard.server.common.msg.queue.RuleNodeException;
 import org.thingsboard.server.common.msg.queue.RuleNodeInfo;
 import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author Andrew Shvayka
  */
@@ -123,6 +127,48 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
     void onRuleChainToRuleNodeMsg(RuleChainToRuleNodeMsg msg) throws Exception {
         msg.getMsg().getCallback().onProcessingStart(info);
         checkComponentStateActive(msg.getMsg());
+        if (checkRuleNodeExecutionLimit(msg)) {
+            try {
+                tbNode.onMsg(msg.getCtx(), msg.getMsg());
+            } catch (Exception e) {
+                msg.getCtx().tellFailure(msg.getMsg(), e);
+            }
+        }
+    }
+
+    boolean isBatchProcessingSupported() {
+        return tbNode != null && tbNode.isBatchProcessingSupported();
+    }
+
+    void onRuleChainToRuleNodeMsgs(List<RuleChainToRuleNodeMsg> msgs) throws Exception {
+        RuleNodeException inactiveException = null;
+        List<TbMsg> tbMsgs = new ArrayList<>(msgs.size());
+        for (RuleChainToRuleNodeMsg msg : msgs) {
+            msg.getMsg().getCallback().onProcessingStart(info);
+            try {
+                checkComponentStateActive(msg.getMsg());
+            } catch (RuleNodeException e) {
+                inactiveException = e;
+                continue;
+            }
+            if (checkRuleNodeExecutionLimit(msg)) {
+                tbMsgs.add(msg.getMsg());
+            }
+        }
+        if (!tbMsgs.isEmpty()) {
+            TbContext ctx = msgs.get(0).getCtx();
+            try {
+                tbNode.onMsgs(ctx, tbMsgs);
+            } catch (Exception e) {
+                tbMsgs.forEach(tbMsg -> ctx.tellFailure(tbMsg, e));
+            }
+        }
+        if (inactiveException != null) {
+            throw inactiveException;
+        }
+    }
+
+    private boolean checkRuleNodeExecutionLimit(RuleChainToRuleNodeMsg msg) {
         TbMsg tbMsg = msg.getMsg();
         int ruleNodeCount = tbMsg.getAndIncrementRuleNodeCounter();
         int maxRuleNodeExecutionsPerMessage = getTenantProfileConfiguration().getMaxRuleNodeExecsPerMessage();
@@ -131,13 +177,10 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
             if (ruleNode.isDebugMode()) {
                 systemContext.persistDebugInput(tenantId, entityId, msg.getMsg(), msg.getFromRelationType());
             }
-            try {
-                tbNode.onMsg(msg.getCtx(), msg.getMsg());
-            } catch (Exception e) {
-                msg.getCtx().tellFailure(msg.getMsg(), e);
-            }
+            return true;
         } else {
             tbMsg.getCallback().onFailure(new RuleNodeException("Message is processed by more then " + maxRuleNodeExecutionsPerMessage + " rule nodes!", ruleChainName, ruleNode));
+            return false;
         }
     }
 
@@ -56,7 +56,12 @@ class RuleNodeToRuleChainTellNextMsg extends TbRuleEngineActorMsg implements Ser
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", ruleChainId.getId()) : String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
+        String message;
+        if (reason == TbActorStopReason.MAILBOX_FULL) {
+            message = String.format("Rule chain [%s] mailbox is full", ruleChainId.getId());
+        } else {
+            message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", ruleChainId.getId()) : String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
+        }
         msg.getCallback().onFailure(new RuleEngineException(message));
     }
 
@@ -36,7 +36,12 @@ public abstract class TbToRuleNodeActorMsg extends TbRuleEngineActorMsg {
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? "Rule node stopped" : "Failed to initialize rule node!";
+        String message;
+        if (reason == TbActorStopReason.MAILBOX_FULL) {
+            message = "Rule node mailbox is full";
+        } else {
+            message = reason == TbActorStopReason.STOPPED ? "Rule node stopped" : "Failed to initialize rule node!";
+        }
         msg.getCallback().onFailure(new RuleNodeException(message, ctx.getRuleChainName(), ctx.getSelf()));
     }
 }
@@ -0,0 +1,34 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+public enum ActorDispatcherType {
+
+    /**
+     * Fork-join work stealing pool or single thread executor if pool size is 1.
+     */
+    DEFAULT,
+    /**
+     * Pool that keeps each actor on the preferred worker thread and steals tasks only when the worker is idle.
+     */
+    AFFINITY,
+    /**
+     * New virtual thread per task. Suitable for actors that block on DB or external calls.
+     * Falls back to DEFAULT if virtual threads are not supported by the JVM.
+     */
+    VIRTUAL
+
+}
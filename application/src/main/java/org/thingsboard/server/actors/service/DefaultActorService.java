@@ -26,6 +26,10 @@ import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.DefaultTbActorSystem;
+import org.thingsboard.server.actors.TbActorAffinityExecutorService;
+import org.thingsboard.server.actors.TbActorMailboxOverflowStrategy;
+import org.thingsboard.server.actors.TbActorMailboxSettings;
+import org.thingsboard.server.actors.TbActorMailboxStats;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbActorSystem;
 import org.thingsboard.server.actors.TbActorSystemSettings;
@@ -33,6 +37,7 @@ import org.thingsboard.server.actors.app.AppActor;
 import org.thingsboard.server.actors.app.AppInitMsg;
 import org.thingsboard.server.actors.stats.StatsActor;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
 import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
 
@@ -53,8 +58,16 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Autowired
     private ActorSystemContext actorContext;
 
+    @Autowired
+    private TbActorMailboxStats mailboxStats;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
     private TbActorSystem system;
 
+    private VirtualThreadPinningMonitor pinningMonitor;
+
     private TbActorRef appActor;
 
     @Value("${actors.system.throughput:5}")
@@ -78,17 +91,54 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:4}")
     private int ruleDispatcherSize;
 
+    @Value("${actors.system.app_dispatcher_type:DEFAULT}")
+    private ActorDispatcherType appDispatcherType;
+
+    @Value("${actors.system.tenant_dispatcher_type:DEFAULT}")
+    private ActorDispatcherType tenantDispatcherType;
+
+    @Value("${actors.system.device_dispatcher_type:DEFAULT}")
+    private ActorDispatcherType deviceDispatcherType;
+
+    @Value("${actors.system.rule_dispatcher_type:DEFAULT}")
+    private ActorDispatcherType ruleDispatcherType;
+
+    @Value("${actors.system.virtual_thread_pinning_threshold_ms:20}")
+    private long virtualThreadPinningThresholdMs;
+
+    @Value("${actors.system.mailbox.app_dispatcher_capacity:0}")
+    private int appDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.tenant_dispatcher_capacity:0}")
+    private int tenantDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.device_dispatcher_capacity:0}")
+    private int deviceDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.rule_dispatcher_capacity:0}")
+    private int ruleDispatcherMailboxCapacity;
+
+    @Value("${actors.system.mailbox.overflow_strategy:REJECT}")
+    private TbActorMailboxOverflowStrategy mailboxOverflowStrategy;
+
+    @Value("${actors.system.mailbox.block_timeout_ms:1000}")
+    private long mailboxBlockTimeoutMs;
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
-        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
-        system = new DefaultTbActorSystem(settings);
-
-        system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
-        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
-        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
-        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts)
+                .withMailboxSettings(APP_DISPATCHER_NAME, initMailboxSettings(appDispatcherMailboxCapacity))
+                .withMailboxSettings(TENANT_DISPATCHER_NAME, initMailboxSettings(tenantDispatcherMailboxCapacity))
+                .withMailboxSettings(DEVICE_DISPATCHER_NAME, initMailboxSettings(deviceDispatcherMailboxCapacity))
+                .withMailboxSettings(RULE_DISPATCHER_NAME, initMailboxSettings(ruleDispatcherMailboxCapacity));
+        system = new DefaultTbActorSystem(settings, mailboxStats);
+
+        system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherType, appDispatcherSize));
+        system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherType, tenantDispatcherSize));
+        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherType, deviceDispatcherSize));
+        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherType, ruleDispatcherSize));
 
         actorContext.setActorSystem(system);
 
@@ -101,18 +151,39 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         log.info("Actor system initialized.");
     }
 
-    private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize) {
+    private TbActorMailboxSettings initMailboxSettings(int capacity) {
+        return new TbActorMailboxSettings(capacity, mailboxOverflowStrategy, mailboxBlockTimeoutMs);
+    }
+
+    private ExecutorService initDispatcherExecutor(String dispatcherName, ActorDispatcherType dispatcherType, int poolSize) {
         if (poolSize == 0) {
             int cores = Runtime.getRuntime().availableProcessors();
             poolSize = Math.max(1, cores / 2);
         }
-        if (poolSize == 1) {
+        if (dispatcherType == ActorDispatcherType.VIRTUAL) {
+            ExecutorService executor = ThingsBoardExecutors.newVirtualThreadPerTaskExecutor(dispatcherName);
+            if (executor != null) {
+                startPinningMonitor();
+                return executor;
+            }
+            log.warn("[{}] Virtual threads are not supported by the current JVM, falling back to the default dispatcher", dispatcherName);
+        }
+        if (dispatcherType == ActorDispatcherType.AFFINITY) {
+            return new TbActorAffinityExecutorService(poolSize, dispatcherName);
+        } else if (poolSize == 1) {
             return Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(dispatcherName));
         } else {
             return ThingsBoardExecutors.newWorkStealingPool(poolSize, dispatcherName);
         }
     }
 
+    private void startPinningMonitor() {
+        if (pinningMonitor == null && VirtualThreadPinningMonitor.isSupported()) {
+            pinningMonitor = new VirtualThreadPinningMonitor(statsFactory);
+            pinningMonitor.start(virtualThreadPinningThresholdMs);
+        }
+    }
+
     @EventListener(ApplicationReadyEvent.class)
     @Order(value = 2)
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
@@ -133,6 +204,9 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
             system.stop();
             log.info("Actor system stopped.");
         }
+        if (pinningMonitor != null) {
+            pinningMonitor.stop();
+        }
     }
 
 }
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Listens to the JFR 'jdk.VirtualThreadPinned' events and reports how often and for how long
+ * virtual threads pin their carrier threads.
+ * The events are JVM-wide: the metrics include pinning of every virtual thread of the process, not only
+ * the ones of the actor dispatchers, hence the 'jvm.' prefix of the metric names.
+ * JFR streaming API is resolved via reflection since the project targets Java 11 and the jdk.jfr module
+ * may be absent from the runtime image; see {@link #isSupported()}.
+ */
+@Slf4j
+class VirtualThreadPinningMonitor {
+
+    static final String PINNED_KEY = "jvm.virtualThreadPinned";
+    static final String PINNED_DURATION_KEY = PINNED_KEY + ".duration";
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String RECORDING_STREAM_CLASS = "jdk.jfr.consumer.RecordingStream";
+
+    private final DefaultCounter pinnedCounter;
+    private final Timer pinnedTimer;
+    private AutoCloseable recordingStream;
+
+    VirtualThreadPinningMonitor(StatsFactory statsFactory) {
+        this.pinnedCounter = statsFactory.createDefaultCounter(PINNED_KEY);
+        this.pinnedTimer = statsFactory.createTimer(PINNED_DURATION_KEY);
+    }
+
+    /**
+     * @return true if the JVM has virtual threads and JFR event streaming available.
+     */
+    static boolean isSupported() {
+        try {
+            Thread.class.getMethod("isVirtual");
+            Class.forName(RECORDING_STREAM_CLASS);
+            return (boolean) Class.forName("jdk.jfr.FlightRecorder").getMethod("isAvailable").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return false;
+        }
+    }
+
+    void start(long thresholdMs) {
+        if (!isSupported()) {
+            log.info("Monitoring of virtual thread pinning is not supported by the current JVM");
+            return;
+        }
+        try {
+            Class<?> streamClass = Class.forName(RECORDING_STREAM_CLASS);
+            Method getDuration = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getDuration");
+            Object stream = streamClass.getConstructor().newInstance();
+            Object eventSettings = streamClass.getMethod("enable", String.class).invoke(stream, PINNED_EVENT);
+            Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", Duration.class)
+                    .invoke(eventSettings, Duration.ofMillis(thresholdMs));
+            Consumer<Object> handler = event -> {
+                try {
+                    onPinned((Duration) getDuration.invoke(event));
+                } catch (ReflectiveOperationException e) {
+                    log.debug("Failed to process virtual thread pinned event", e);
+                }
+            };
+            streamClass.getMethod("onEvent", String.class, Consumer.class).invoke(stream, PINNED_EVENT, handler);
+            streamClass.getMethod("startAsync").invoke(stream);
+            recordingStream = (AutoCloseable) stream;
+            log.info("Started monitoring of virtual thread pinning with threshold {} ms", thresholdMs);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            log.warn("Failed to start monitoring of virtual thread pinning", e);
+        }
+    }
+
+    void onPinned(Duration duration) {
+        pinnedCounter.increment();
+        pinnedTimer.record(duration);
+        log.trace("Virtual thread pinned its carrier thread for {}", duration);
+    }
+
+    boolean isStarted() {
+        return recordingStream != null;
+    }
+
+    void stop() {
+        if (recordingStream != null) {
+            try {
+                recordingStream.close();
+            } catch (Exception e) {
+                log.warn("Failed to stop monitoring of virtual thread pinning", e);
+            }
+            recordingStream = null;
+        }
+    }
+}
@@ -143,7 +143,7 @@ public class TenantActor extends RuleChainManagerActor {
                     //To Rule Chain Actors
                     broadcast(msg);
                 } else if (ServiceType.TB_CORE.equals(serviceType)) {
-                    List<TbActorId> deviceActorIds = ctx.filterChildren(new TbEntityTypeActorIdPredicate(EntityType.DEVICE) {
+                    List<TbActorId> deviceActorIds = ctx.filterChildrenByType(EntityType.DEVICE, new TbEntityTypeActorIdPredicate(EntityType.DEVICE) {
                         @Override
                         protected boolean testEntityId(EntityId entityId) {
                             return super.testEntityId(entityId) && !isMyPartition(entityId);
@@ -34,6 +34,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -44,6 +45,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.rule.engine.api.msg.DeviceAttributesEventNotificationMsg;
@@ -90,6 +92,9 @@ import org.thingsboard.server.service.telemetry.exception.UncheckedApiException;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -100,6 +105,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.controller.ControllerConstants.ATTRIBUTES_JSON_REQUEST_DESCRIPTION;
@@ -148,20 +154,40 @@ import static org.thingsboard.server.controller.ControllerConstants.TS_STRICT_DA
 @Slf4j
 public class TelemetryController extends BaseController {
 
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     @Autowired
     private TimeseriesService tsService;
 
     @Autowired
     private AccessValidator accessValidator;
 
+    @Value("${server.rest.timeseries_export.timeout:3600000}")
+    private long exportTimeoutMs;
+
+    @Value("${server.rest.timeseries_export.pool_size:4}")
+    private int exportPoolSize;
+
+    @Value("${server.rest.timeseries_export.queue_size:0}")
+    private int exportQueueSize;
+
     @Value("${transport.json.max_string_value_length:0}")
     private int maxStringValueLength;
 
     private ExecutorService executor;
 
+    private ThreadPoolTaskExecutor exportExecutor;
+
     @PostConstruct
     public void initExecutor() {
         executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("telemetry-controller"));
+        // the exports that do not fit into the pool and the queue are rejected with 429 status
+        exportExecutor = new ThreadPoolTaskExecutor();
+        exportExecutor.setCorePoolSize(exportPoolSize);
+        exportExecutor.setMaxPoolSize(exportPoolSize);
+        exportExecutor.setQueueCapacity(exportQueueSize);
+        exportExecutor.setThreadFactory(ThingsBoardThreadFactory.forName("telemetry-export"));
+        exportExecutor.initialize();
     }
 
     @PreDestroy
@@ -169,6 +195,9 @@ public class TelemetryController extends BaseController {
         if (executor != null) {
             executor.shutdownNow();
         }
+        if (exportExecutor != null) {
+            exportExecutor.shutdown();
+        }
     }
 
     @ApiOperation(value = "Get all attribute keys (getAttributeKeys)",
@@ -364,6 +393,74 @@ public class TelemetryController extends BaseController {
         }
     }
 
+    @ApiOperation(value = "Export time-series data (exportTimeseries)",
+            notes = "Streams all values of the time-series key for specified entity and time range in ascending order. " +
+                    "The values are not aggregated and not limited, the response is written while the data is read from the database, " +
+                    "so the range may be of any size. Each line of the response is a separate JSON object: \n\n"
+                    + MARKDOWN_CODE_BLOCK_START
+                    + "{\"ts\":1609459200000,\"value\":36.7}\n{\"ts\":1609459201000,\"value\":36.6}"
+                    + MARKDOWN_CODE_BLOCK_END
+                    + "\n\n" + INVALID_ENTITY_ID_OR_ENTITY_TYPE_DESCRIPTION + TENANT_OR_CUSTOMER_AUTHORITY_PARAGRAPH,
+            produces = NDJSON_MEDIA_TYPE)
+    @PreAuthorize("hasAnyAuthority('SYS_ADMIN', 'TENANT_ADMIN', 'CUSTOMER_USER')")
+    @RequestMapping(value = "/{entityType}/{entityId}/values/timeseries/export", method = RequestMethod.GET, params = {"key", "startTs", "endTs"})
+    @ResponseBody
+    public WebAsyncTask<Void> exportTimeseries(
+            @ApiParam(value = ENTITY_TYPE_PARAM_DESCRIPTION, required = true, defaultValue = "DEVICE") @PathVariable("entityType") String entityType,
+            @ApiParam(value = ENTITY_ID_PARAM_DESCRIPTION, required = true) @PathVariable("entityId") String entityIdStr,
+            @ApiParam(value = "A string value representing the time-series key.", required = true) @RequestParam(name = "key") String key,
+            @ApiParam(value = "A long value representing the start timestamp of the time range in milliseconds, UTC.")
+            @RequestParam(name = "startTs") Long startTs,
+            @ApiParam(value = "A long value representing the end timestamp of the time range in milliseconds, UTC.")
+            @RequestParam(name = "endTs") Long endTs,
+            @ApiParam(value = STRICT_DATA_TYPES_DESCRIPTION)
+            @RequestParam(name = "useStrictDataTypes", required = false, defaultValue = "false") Boolean useStrictDataTypes,
+            HttpServletResponse response) throws ThingsboardException {
+        try {
+            EntityId entityId = EntityIdFactory.getByTypeAndId(entityType, entityIdStr);
+            checkEntityId(entityId, Operation.READ_TELEMETRY);
+            TenantId tenantId = getTenantId();
+            response.setContentType(NDJSON_MEDIA_TYPE);
+            AtomicBoolean cancelled = new AtomicBoolean();
+            // the export may take much longer than the default timeout of the async requests
+            WebAsyncTask<Void> task = new WebAsyncTask<>(exportTimeoutMs, exportExecutor, () -> {
+                ServletOutputStream outputStream = response.getOutputStream();
+                tsService.streamAll(tenantId, entityId, key, startTs, endTs, entries -> {
+                    // the request has timed out or failed, so the rest of the data is not read
+                    if (cancelled.get()) {
+                        return false;
+                    }
+                    try {
+                        for (TsKvEntry entry : entries) {
+                            Object value = useStrictDataTypes ? getKvValue(entry) : entry.getValueAsString();
+                            outputStream.write(JacksonUtil.OBJECT_MAPPER.writeValueAsBytes(new TsData(entry.getTs(), value)));
+                            outputStream.write('\n');
+                        }
+                        outputStream.flush();
+                        return true;
+                    } catch (IOException e) {
+                        // the client has closed the connection, there is no reason to read the rest of the data
+                        log.debug("[{}] Failed to write exported timeseries for key {}", entityId, key, e);
+                        return false;
+                    }
+                });
+                return null;
+            });
+            task.onTimeout(() -> {
+                log.debug("[{}] Export of timeseries for key {} has timed out", entityId, key);
+                cancelled.set(true);
+                return null;
+            });
+            task.onError(() -> {
+                cancelled.set(true);
+                return null;
+            });
+            return task;
+        } catch (Exception e) {
+            throw handleException(e);
+        }
+    }
+
     @ApiOperation(value = "Save device attributes (saveDeviceAttributes)",
             notes = "Creates or updates the device attributes based on device id and specified attribute scope. " +
                     SAVE_ATTRIBUTES_REQUEST_PAYLOAD
@@ -42,6 +42,7 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.dao.audit.AuditLogService;
 import org.thingsboard.server.queue.util.TbCoreComponent;
 import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.service.subscription.TbEntityDataChangeSyncService;
 
 import java.util.List;
 import java.util.Map;
@@ -54,11 +55,13 @@ import java.util.stream.Collectors;
 public class EntityActionService {
     private final TbClusterService tbClusterService;
     private final AuditLogService auditLogService;
+    private final TbEntityDataChangeSyncService entityDataChangeSyncService;
 
     private static final ObjectMapper json = new ObjectMapper();
 
     public void pushEntityActionToRuleEngine(EntityId entityId, HasName entity, TenantId tenantId, CustomerId customerId,
                                              ActionType actionType, User user, Object... additionalInfo) {
+        entityDataChangeSyncService.onEntityAction(tenantId, entityId, actionType);
         String msgType = null;
         switch (actionType) {
             case ADDED:
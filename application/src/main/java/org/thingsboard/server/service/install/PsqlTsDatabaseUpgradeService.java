@@ -44,6 +44,19 @@ public class PsqlTsDatabaseUpgradeService extends AbstractSqlTsDatabaseUpgradeSe
 
     private static final String TS_KV_LATEST_SQL = "ts_kv_latest.sql";
     private static final String LOAD_FUNCTIONS_SQL = "schema_update_psql_ts.sql";
+    private static final String CREATE_TS_CHUNK_TABLE = "CREATE TABLE IF NOT EXISTS ts_chunk (entity_id uuid NOT NULL, key int NOT NULL, " +
+            "chunk_ts bigint NOT NULL, data bytea NOT NULL, CONSTRAINT ts_chunk_pkey PRIMARY KEY (entity_id, key, chunk_ts));";
+    private static final String CREATE_TS_ROLLUP_TABLE = "CREATE TABLE IF NOT EXISTS ts_rollup (entity_id uuid NOT NULL, key int NOT NULL, " +
+            "interval_ms bigint NOT NULL, bucket_ts bigint NOT NULL, long_sum bigint NOT NULL, long_min bigint, long_max bigint, " +
+            "long_count bigint NOT NULL, dbl_sum double precision NOT NULL, dbl_min double precision, dbl_max double precision, " +
+            "dbl_count bigint NOT NULL, bool_count bigint NOT NULL, str_count bigint NOT NULL, json_count bigint NOT NULL, " +
+            "str_min varchar(10000000) COLLATE \"C\", str_max varchar(10000000) COLLATE \"C\", " +
+            "CONSTRAINT ts_rollup_pkey PRIMARY KEY (entity_id, key, interval_ms, bucket_ts));";
+    private static final String CREATE_TS_ROLLUP_INTERVAL_TABLE = "CREATE TABLE IF NOT EXISTS ts_rollup_interval (interval_ms bigint NOT NULL, " +
+            "valid_from bigint NOT NULL, CONSTRAINT ts_rollup_interval_pkey PRIMARY KEY (interval_ms));";
+    private static final String CREATE_TS_TTL_CLEANUP_TABLE = "CREATE TABLE IF NOT EXISTS ts_ttl_cleanup (id int NOT NULL, " +
+            "started_ts bigint NOT NULL, last_tenant_id uuid NOT NULL, deleted bigint NOT NULL, " +
+            "CONSTRAINT ts_ttl_cleanup_pkey PRIMARY KEY (id));";
     private static final String LOAD_TTL_FUNCTIONS_SQL = "schema_update_ttl.sql";
     private static final String LOAD_DROP_PARTITIONS_FUNCTIONS_SQL = "schema_update_psql_drop_partitions.sql";
 
@@ -213,6 +226,13 @@ public class PsqlTsDatabaseUpgradeService extends AbstractSqlTsDatabaseUpgradeSe
                 try (Connection conn = DriverManager.getConnection(dbUrl, dbUserName, dbPassword)) {
                     log.info("Load Drop Partitions functions ...");
                     loadSql(conn, LOAD_DROP_PARTITIONS_FUNCTIONS_SQL, "2.4.3");
+                    log.info("Creating table for compressed timeseries storage ...");
+                    executeQuery(conn, CREATE_TS_CHUNK_TABLE);
+                    log.info("Creating tables for timeseries rollups ...");
+                    executeQuery(conn, CREATE_TS_ROLLUP_TABLE);
+                    executeQuery(conn, CREATE_TS_ROLLUP_INTERVAL_TABLE);
+                    log.info("Creating table for timeseries TTL cleanup progress ...");
+                    executeQuery(conn, CREATE_TS_TTL_CLEANUP_TABLE);
                 }
                 break;
             default:
@@ -65,6 +65,7 @@ import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
 import org.thingsboard.server.service.gateway_device.GatewayNotificationsService;
 import org.thingsboard.server.service.ota.OtaPackageStateService;
 import org.thingsboard.server.service.profile.TbDeviceProfileCache;
+import org.thingsboard.server.service.subscription.TbEntityDataChangeSyncService;
 import org.thingsboard.server.common.msg.rpc.FromDeviceRpcResponse;
 
 import java.util.HashSet;
@@ -94,6 +95,7 @@ public class DefaultTbClusterService implements TbClusterService {
     private final TbDeviceProfileCache deviceProfileCache;
     private final OtaPackageStateService otaPackageStateService;
     private final GatewayNotificationsService gatewayNotificationsService;
+    private final TbEntityDataChangeSyncService entityDataChangeSyncService;
 
     @Override
     public void pushMsgToCore(TenantId tenantId, EntityId entityId, ToCoreMsg msg, TbQueueCallback callback) {
@@ -259,6 +261,7 @@ public class DefaultTbClusterService implements TbClusterService {
         broadcastEntityDeleteToTransport(device.getTenantId(), device.getId(), device.getName(), callback);
         sendDeviceStateServiceEvent(device.getTenantId(), device.getId(), false, false, true);
         broadcastEntityStateChangeEvent(device.getTenantId(), device.getId(), ComponentLifecycleEvent.DELETED);
+        entityDataChangeSyncService.onEntityChange(device.getTenantId(), device.getId());
     }
 
     @Override
@@ -413,6 +416,7 @@ public class DefaultTbClusterService implements TbClusterService {
         }
         broadcastEntityStateChangeEvent(device.getTenantId(), device.getId(), created ? ComponentLifecycleEvent.CREATED : ComponentLifecycleEvent.UPDATED);
         sendDeviceStateServiceEvent(device.getTenantId(), device.getId(), created, !created, false);
+        entityDataChangeSyncService.onEntityChange(device.getTenantId(), device.getId());
         otaPackageStateService.update(device, old);
         if (!created && notifyEdge) {
             sendNotificationMsgToEdgeService(device.getTenantId(), null, device.getId(), null, null, EdgeEventActionType.UPDATED);
@@ -61,7 +61,9 @@ import org.thingsboard.server.service.stats.RuleEngineStatisticsService;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -247,6 +249,10 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     void consumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats, String threadSuffix) {
         updateCurrentThreadName(threadSuffix);
+        if (isPipelined(consumer, configuration)) {
+            pipelinedConsumerLoop(consumer, configuration, stats);
+            return;
+        }
         while (!stopped && !consumer.isStopped()) {
             try {
                 List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = consumer.poll(pollDuration);
@@ -262,21 +268,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
                     final boolean timeout = !ctx.await(configuration.getPackProcessingTimeout(), TimeUnit.MILLISECONDS);
 
-                    TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
-                    if (timeout) {
-                        printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
-                    }
-                    if (!ctx.getFailedMap().isEmpty()) {
-                        printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
-                    }
-                    ctx.printProfilerStats();
-
-                    TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
-                    if (statsEnabled) {
-                        stats.log(result, decision.isCommit());
-                    }
-
-                    ctx.cleanup();
+                    TbRuleEngineProcessingDecision decision = analyze(configuration, stats, ackStrategy, ctx, timeout);
 
                     if (decision.isCommit()) {
                         submitStrategy.stop();
@@ -300,6 +292,113 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
         log.info("TB Rule Engine Consumer stopped.");
     }
 
+    boolean isPipelined(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, TbRuleEngineQueueConfiguration configuration) {
+        if (configuration.getMaxInFlightPacks() <= 1) {
+            return false;
+        } else if (!consumer.isCommitByPollSupported()) {
+            log.warn("[{}] Queue consumer is not able to commit packs separately. Ignoring max in-flight packs: {}", configuration.getName(), configuration.getMaxInFlightPacks());
+            return false;
+        } else if (configuration.getSubmitStrategy().getType().toUpperCase().startsWith("SEQUENTIAL")) {
+            log.warn("[{}] Sequential submit strategy can't process packs concurrently. Ignoring max in-flight packs: {}", configuration.getName(), configuration.getMaxInFlightPacks());
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Polls the next pack while earlier packs are still being processed, up to max in-flight packs.
+     * Packs are completed and committed strictly in the poll order: a later pack that is already processed
+     * waits until all earlier packs are committed, so a crash never loses unprocessed messages.
+     * Each pack commits only the messages of its own poll, so a resubscription of the consumer
+     * while packs are in flight does not make it commit messages of the later polls.
+     */
+    void pipelinedConsumerLoop(TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> consumer, TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats) {
+        int maxInFlightPacks = configuration.getMaxInFlightPacks();
+        Deque<InFlightPack> inFlightPacks = new ArrayDeque<>(maxInFlightPacks);
+        while (!stopped && !consumer.isStopped()) {
+            try {
+                if (inFlightPacks.size() < maxInFlightPacks) {
+                    List<TbProtoQueueMsg<ToRuleEngineMsg>> msgs = consumer.poll(pollDuration);
+                    if (!msgs.isEmpty()) {
+                        InFlightPack pack = new InFlightPack(getSubmitStrategy(configuration), getAckStrategy(configuration), consumer.getLastPollCommit());
+                        pack.submitStrategy.init(msgs);
+                        submitAttempt(configuration, stats, pack);
+                        inFlightPacks.add(pack);
+                    }
+                }
+                while (!stopped && !inFlightPacks.isEmpty()) {
+                    InFlightPack pack = inFlightPacks.peek();
+                    long waitMs = inFlightPacks.size() < maxInFlightPacks ? 0 : Math.max(0, pack.deadline - System.currentTimeMillis());
+                    boolean done = waitMs > 0 ? pack.ctx.await(waitMs, TimeUnit.MILLISECONDS) : pack.ctx.isDone();
+                    if (!done && System.currentTimeMillis() < pack.deadline) {
+                        break;
+                    }
+                    TbRuleEngineProcessingDecision decision = analyze(configuration, stats, pack.ackStrategy, pack.ctx, !done);
+                    if (decision.isCommit()) {
+                        pack.submitStrategy.stop();
+                        inFlightPacks.poll();
+                        pack.commit.run();
+                    } else {
+                        pack.submitStrategy.update(decision.getReprocessMap());
+                        submitAttempt(configuration, stats, pack);
+                    }
+                }
+            } catch (Exception e) {
+                if (!stopped) {
+                    log.warn("Failed to process messages from queue.", e);
+                    try {
+                        Thread.sleep(pollDuration);
+                    } catch (InterruptedException e2) {
+                        log.trace("Failed to wait until the server has capacity to handle new requests", e2);
+                    }
+                }
+            }
+        }
+        log.info("TB Rule Engine Consumer stopped.");
+    }
+
+    private void submitAttempt(TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats, InFlightPack pack) {
+        TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(configuration.getName(), pack.submitStrategy, pack.ackStrategy.isSkipTimeoutMsgs());
+        pack.ctx = ctx;
+        pack.deadline = System.currentTimeMillis() + configuration.getPackProcessingTimeout();
+        pack.submitStrategy.submitAttempt((id, msg) -> submitExecutor.submit(() -> submitMessage(configuration, stats, ctx, id, msg)));
+    }
+
+    private TbRuleEngineProcessingDecision analyze(TbRuleEngineQueueConfiguration configuration, TbRuleEngineConsumerStats stats,
+                                                   TbRuleEngineProcessingStrategy ackStrategy, TbMsgPackProcessingContext ctx, boolean timeout) {
+        TbRuleEngineProcessingResult result = new TbRuleEngineProcessingResult(configuration.getName(), timeout, ctx);
+        if (timeout) {
+            printFirstOrAll(configuration, ctx, ctx.getPendingMap(), "Timeout");
+        }
+        if (!ctx.getFailedMap().isEmpty()) {
+            printFirstOrAll(configuration, ctx, ctx.getFailedMap(), "Failed");
+        }
+        ctx.printProfilerStats();
+
+        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+        if (statsEnabled) {
+            stats.log(result, decision.isCommit());
+        }
+
+        ctx.cleanup();
+        return decision;
+    }
+
+    private static class InFlightPack {
+        private final TbRuleEngineSubmitStrategy submitStrategy;
+        private final TbRuleEngineProcessingStrategy ackStrategy;
+        private final Runnable commit;
+        private TbMsgPackProcessingContext ctx;
+        private long deadline;
+
+        private InFlightPack(TbRuleEngineSubmitStrategy submitStrategy, TbRuleEngineProcessingStrategy ackStrategy, Runnable commit) {
+            this.submitStrategy = submitStrategy;
+            this.ackStrategy = ackStrategy;
+            this.commit = commit;
+        }
+    }
+
     void updateCurrentThreadName(String threadSuffix) {
         String name = Thread.currentThread().getName();
         int spliteratorIndex = name.indexOf(THREAD_TOPIC_SEPARATOR);
@@ -31,23 +31,24 @@ import org.springframework.util.StringUtils;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Device;
-import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.BooleanDataEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.data.kv.LongDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
-import org.thingsboard.server.common.data.page.PageData;
-import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgDataType;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.tenant.TenantService;
@@ -70,8 +71,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
-import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -80,7 +82,11 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static org.thingsboard.server.common.data.DataConstants.ACTIVITY_EVENT;
 import static org.thingsboard.server.common.data.DataConstants.CONNECT_EVENT;
@@ -103,6 +109,9 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
     public static final String INACTIVITY_ALARM_TIME = "inactivityAlarmTime";
     public static final String INACTIVITY_TIMEOUT = "inactivityTimeout";
 
+    private static final String INIT_STATS_NAME = "deviceStateInit";
+    private static final String PERSIST_STATS_NAME = "deviceStatePersist";
+
     public static final List<String> PERSISTENT_ATTRIBUTES = Arrays.asList(ACTIVITY_STATE, LAST_CONNECT_TIME,
             LAST_DISCONNECT_TIME, LAST_ACTIVITY_TIME, INACTIVITY_ALARM_TIME, INACTIVITY_TIMEOUT);
 
@@ -115,12 +124,22 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
 
     private TelemetrySubscriptionService tsSubService;
 
+    @Autowired
+    private StatsFactory statsFactory;
+
     @Value("${state.defaultInactivityTimeoutInSec}")
     @Getter
     private long defaultInactivityTimeoutInSec;
 
-    @Value("${state.defaultStateCheckIntervalInSec}")
+    @Value("${state.inactivityCheckTickInMs:1000}")
     @Getter
+    private long inactivityCheckTickInMs;
+
+    /**
+     * @deprecated use {@link #inactivityCheckTickInMs}, the interval is used as the tick when it is set
+     */
+    @Deprecated
+    @Value("${state.defaultStateCheckIntervalInSec:0}")
     private int defaultStateCheckIntervalInSec;
 
     @Value("${state.persistToTelemetry:false}")
@@ -131,7 +150,20 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
     @Getter
     private int initFetchPackSize;
 
+    @Value("${state.persistIntervalInMs:1000}")
+    @Getter
+    private long persistIntervalInMs;
+
     private ListeningScheduledExecutorService scheduledExecutor;
+    private HierarchicalTimingWheel<DeviceId> inactivityWheel;
+    private DefaultCounter initScannedDevicesCounter;
+    private DefaultCounter initLoadedDevicesCounter;
+    private DefaultCounter initFailedDevicesCounter;
+    private ScheduledExecutorService persistExecutor;
+    private DeviceStateWriteBuffer writeBuffer;
+    private DefaultCounter persistRequestedCounter;
+    private DefaultCounter persistWrittenCounter;
+    private DefaultCounter persistCoalescedCounter;
     private ExecutorService deviceStateExecutor;
     private final ConcurrentMap<TopicPartitionInfo, Set<DeviceId>> partitionedDevices = new ConcurrentHashMap<>();
     final ConcurrentMap<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
@@ -160,7 +192,23 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
                 Runtime.getRuntime().availableProcessors(), ThingsBoardThreadFactory.forName("device-state"));
         // Should be always single threaded due to absence of locks.
         scheduledExecutor = MoreExecutors.listeningDecorator(Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("device-state-scheduled")));
-        scheduledExecutor.scheduleAtFixedRate(this::updateInactivityStateIfExpired, new Random().nextInt(defaultStateCheckIntervalInSec), defaultStateCheckIntervalInSec, TimeUnit.SECONDS);
+        initScannedDevicesCounter = statsFactory.createDefaultCounter(INIT_STATS_NAME, "result", "scannedDevices");
+        initLoadedDevicesCounter = statsFactory.createDefaultCounter(INIT_STATS_NAME, "result", "loadedDevices");
+        initFailedDevicesCounter = statsFactory.createDefaultCounter(INIT_STATS_NAME, "result", "failedDevices");
+        if (persistIntervalInMs > 0) {
+            persistRequestedCounter = statsFactory.createDefaultCounter(PERSIST_STATS_NAME, "result", "requested");
+            persistWrittenCounter = statsFactory.createDefaultCounter(PERSIST_STATS_NAME, "result", "written");
+            persistCoalescedCounter = statsFactory.createDefaultCounter(PERSIST_STATS_NAME, "result", "coalesced");
+            writeBuffer = new DeviceStateWriteBuffer();
+            persistExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("device-state-persist"));
+            persistExecutor.scheduleWithFixedDelay(this::flushWriteBuffer, persistIntervalInMs, persistIntervalInMs, TimeUnit.MILLISECONDS);
+        }
+        if (defaultStateCheckIntervalInSec > 0) {
+            log.warn("state.defaultStateCheckIntervalInSec is deprecated, use state.inactivityCheckTickInMs instead");
+            inactivityCheckTickInMs = TimeUnit.SECONDS.toMillis(defaultStateCheckIntervalInSec);
+        }
+        inactivityWheel = new HierarchicalTimingWheel<>(inactivityCheckTickInMs, System.currentTimeMillis());
+        scheduledExecutor.scheduleAtFixedRate(this::updateInactivityStateIfExpired, inactivityCheckTickInMs, inactivityCheckTickInMs, TimeUnit.MILLISECONDS);
     }
 
     @PreDestroy
@@ -171,6 +219,10 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         if (scheduledExecutor != null) {
             scheduledExecutor.shutdownNow();
         }
+        if (persistExecutor != null) {
+            persistExecutor.shutdownNow();
+            flushWriteBuffer();
+        }
     }
 
     @Override
@@ -206,6 +258,7 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
                 save(deviceId, ACTIVITY_STATE, true);
                 pushRuleEngineMessage(stateData, ACTIVITY_EVENT);
             }
+            scheduleInactivityCheck(deviceId, stateData);
         } else {
             log.debug("updateActivityState - fetched state IN NULL for device {}, lastReportedActivity {}", deviceId, lastReportedActivity);
             cleanUpDeviceStateMap(deviceId);
@@ -359,67 +412,115 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         }
     }
 
-    //TODO 3.0: replace this dummy search with new functionality to search by partitions using SQL capabilities.
-    //Adding only entities that are in new partitions
+    /**
+     * Walks the device table once in the order of ids and keeps only the devices of the added partitions.
+     * The partition is resolved by the hash of the device id, so it can't be filtered by the database.
+     * The states of the matched devices of each page are fetched with a single attributes query and loaded in parallel.
+     */
     boolean initPartitions(Set<TopicPartitionInfo> addedPartitions) {
         if (addedPartitions.isEmpty()) {
             return false;
         }
+        InitProgress progress = new InitProgress(addedPartitions);
+        scheduledExecutor.submit(() -> processPageAndSubmitNextPage(progress, null));
+        return true;
+    }
 
-        List<Tenant> tenants = tenantService.findTenants(new PageLink(Integer.MAX_VALUE)).getData();
-        for (Tenant tenant : tenants) {
-            log.debug("Finding devices for tenant [{}]", tenant.getName());
-            final PageLink pageLink = new PageLink(initFetchPackSize);
-            scheduledExecutor.submit(() -> processPageAndSubmitNextPage(addedPartitions, tenant, pageLink, scheduledExecutor));
+    private void processPageAndSubmitNextPage(final InitProgress progress, final DeviceId lastDeviceId) {
+        List<Device> devices;
+        try {
+            devices = deviceService.findDevicesByIdGreaterThan(lastDeviceId, initFetchPackSize);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to fetch devices to init device states, retrying", progress.partitions, e);
+            scheduledExecutor.schedule(() -> processPageAndSubmitNextPage(progress, lastDeviceId), 1, TimeUnit.SECONDS);
+            return;
+        }
+        List<Device> addedDevices = new ArrayList<>();
+        for (Device device : devices) {
+            TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, device.getTenantId(), device.getId());
+            if (progress.partitions.contains(tpi)) {
+                addedDevices.add(device);
+            }
+        }
+        initScannedDevicesCounter.add(devices.size());
+        progress.scanned += devices.size();
+        if (!addedDevices.isEmpty()) {
+            progress.pending.incrementAndGet();
+            ListenableFuture<List<DeviceStateData>> future = Futures.submitAsync(() -> fetchDeviceStates(addedDevices), deviceStateExecutor);
+            Futures.addCallback(future, new FutureCallback<>() {
+                @Override
+                public void onSuccess(List<DeviceStateData> states) {
+                    states.forEach(state -> initDeviceState(progress, state));
+                    progress.onPageLoaded();
+                }
 
+                @Override
+                public void onFailure(Throwable t) {
+                    log.warn("Failed to init states of {} devices from DB", addedDevices.size(), t);
+                    initFailedDevicesCounter.add(addedDevices.size());
+                    progress.onPageLoaded();
+                }
+            }, deviceStateExecutor);
+        }
+        log.trace("[{}] Scanned {} devices, {} belong to the added partitions", progress.partitions, devices.size(), addedDevices.size());
+        if (devices.size() == initFetchPackSize) {
+            DeviceId nextLastDeviceId = devices.get(devices.size() - 1).getId();
+            scheduledExecutor.submit(() -> processPageAndSubmitNextPage(progress, nextLastDeviceId));
+        } else {
+            progress.onScanFinished();
         }
-        return true;
     }
 
-    private void processPageAndSubmitNextPage(final Set<TopicPartitionInfo> addedPartitions, final Tenant tenant, final PageLink pageLink, final ExecutorService executor) {
-        log.trace("[{}] Process page {} from {}", tenant, pageLink.getPage(), pageLink.getPageSize());
-        List<ListenableFuture<Void>> fetchFutures = new ArrayList<>();
-        PageData<Device> page = deviceService.findDevicesByTenantId(tenant.getId(), pageLink);
-        for (Device device : page.getData()) {
-            TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenant.getId(), device.getId());
-            if (addedPartitions.contains(tpi)) {
-                log.debug("[{}][{}] Device belong to current partition. tpi [{}]. Fetching state from DB", device.getName(), device.getId(), tpi);
-                ListenableFuture<Void> future = Futures.transform(fetchDeviceState(device), new Function<DeviceStateData, Void>() {
-                    @Nullable
-                    @Override
-                    public Void apply(@Nullable DeviceStateData state) {
-                        if (state != null) {
-                            addDeviceUsingState(tpi, state);
-                            checkAndUpdateState(device.getId(), state);
-                        } else {
-                            log.warn("{}][{}] Fetched null state from DB", device.getName(), device.getId());
-                        }
-                        return null;
-                    }
-                }, deviceStateExecutor);
-                fetchFutures.add(future);
-            } else {
-                log.debug("[{}][{}] Device doesn't belong to current partition. tpi [{}]", device.getName(), device.getId(), tpi);
-            }
+    private ListenableFuture<List<DeviceStateData>> fetchDeviceStates(List<Device> devices) {
+        if (persistToTelemetry) {
+            List<ListenableFuture<DeviceStateData>> futures = devices.stream().map(this::fetchDeviceState).collect(Collectors.toList());
+            return Futures.transform(Futures.successfulAsList(futures), states ->
+                    states.stream().filter(Objects::nonNull).collect(Collectors.toList()), MoreExecutors.directExecutor());
         }
+        List<EntityId> deviceIds = devices.stream().map(Device::getId).collect(Collectors.toList());
+        ListenableFuture<Map<EntityId, List<AttributeKvEntry>>> attrData =
+                attributesService.findByEntityIds(TenantId.SYS_TENANT_ID, deviceIds, SERVER_SCOPE, PERSISTENT_ATTRIBUTES);
+        return Futures.transform(attrData, attributes -> devices.stream()
+                .map(device -> this.<AttributeKvEntry>extractDeviceStateData(device).apply(attributes.get(device.getId())))
+                .collect(Collectors.toList()), deviceStateExecutor);
+    }
 
-        Futures.addCallback(Futures.successfulAsList(fetchFutures), new FutureCallback<List<Void>>() {
-            @Override
-            public void onSuccess(List<Void> result) {
-                log.trace("[{}] Success init device state from DB for batch size {}", tenant.getId(), result.size());
-            }
+    private void initDeviceState(InitProgress progress, DeviceStateData state) {
+        try {
+            TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, state.getTenantId(), state.getDeviceId());
+            addDeviceUsingState(tpi, state);
+            checkAndUpdateState(state.getDeviceId(), state);
+            initLoadedDevicesCounter.increment();
+            progress.loaded.incrementAndGet();
+        } catch (Exception e) {
+            log.debug("[{}] Failed to init device state", state.getDeviceId(), e);
+            initFailedDevicesCounter.increment();
+        }
+    }
 
-            @Override
-            public void onFailure(Throwable t) {
-                log.warn("[" + tenant.getId() + "] Failed to init device state service from DB", t);
-                log.warn("[{}] Failed to init device state service from DB", tenant.getId(), t);
-            }
-        }, deviceStateExecutor);
+    private static class InitProgress {
+        private final Set<TopicPartitionInfo> partitions;
+        private final long startTs = System.currentTimeMillis();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicLong loaded = new AtomicLong();
+        // updated by the single scheduled thread only
+        private long scanned;
+
+        private InitProgress(Set<TopicPartitionInfo> partitions) {
+            this.partitions = partitions;
+        }
 
-        final PageLink nextPageLink = page.hasNext() ? pageLink.nextPageLink() : null;
-        if (nextPageLink != null) {
-            log.trace("[{}] Submit next page {} from {}", tenant, nextPageLink.getPage(), nextPageLink.getPageSize());
-            executor.submit(() -> processPageAndSubmitNextPage(addedPartitions, tenant, nextPageLink, executor));
+        private void onScanFinished() {
+            log.info("[{}] Scanned {} devices in {} ms, loading device states", partitions, scanned, System.currentTimeMillis() - startTs);
+            onPageLoaded();
+        }
+
+        private void onPageLoaded() {
+            if (pending.decrementAndGet() == 0) {
+                log.info("[{}] Loaded {} device states in {} ms", partitions, loaded.get(), System.currentTimeMillis() - startTs);
+            } else {
+                log.debug("[{}] Loaded {} device states so far", partitions, loaded.get());
+            }
         }
     }
 
@@ -432,6 +533,7 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
                 updateActivityState(deviceId, state, state.getState().getLastActivityTime());
             }
         }
+        scheduleInactivityCheck(deviceId, state);
     }
 
     private void addDeviceUsingState(TopicPartitionInfo tpi, DeviceStateData state) {
@@ -439,20 +541,34 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         if (deviceIds != null) {
             deviceIds.add(state.getDeviceId());
             deviceStates.put(state.getDeviceId(), state);
+            scheduleInactivityCheck(state.getDeviceId(), state);
         } else {
             log.debug("[{}] Device belongs to external partition {}", state.getDeviceId(), tpi.getFullTopicName());
             throw new RuntimeException("Device belongs to external partition " + tpi.getFullTopicName() + "!");
         }
     }
 
+    /**
+     * Checks only the devices whose inactivity deadline is due. The deadline is not moved on each activity:
+     * the device is checked at the old deadline and is scheduled again at the new one if it is still active.
+     */
     void updateInactivityStateIfExpired() {
         final long ts = System.currentTimeMillis();
-        partitionedDevices.forEach((tpi, deviceIds) -> {
-            log.debug("Calculating state updates. tpi {} for {} devices", tpi.getFullTopicName(), deviceIds.size());
-            for (DeviceId deviceId : deviceIds) {
-                updateInactivityStateIfExpired(ts, deviceId);
+        List<DeviceId> dueDeviceIds = inactivityWheel.advance(ts);
+        if (!dueDeviceIds.isEmpty()) {
+            log.debug("Calculating state updates for {} devices, {} devices scheduled", dueDeviceIds.size(), inactivityWheel.size());
+        }
+        for (DeviceId deviceId : dueDeviceIds) {
+            try {
+                DeviceStateData stateData = deviceStates.get(deviceId);
+                if (stateData != null) {
+                    updateInactivityStateIfExpired(ts, deviceId, stateData);
+                    scheduleInactivityCheck(deviceId, stateData);
+                }
+            } catch (Exception e) {
+                log.warn("[{}] Failed to update inactivity state", deviceId, e);
             }
-        });
+        }
     }
 
     void updateInactivityStateIfExpired(long ts, DeviceId deviceId) {
@@ -460,6 +576,20 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         updateInactivityStateIfExpired(ts, deviceId, stateData);
     }
 
+    private void scheduleInactivityCheck(DeviceId deviceId, DeviceStateData stateData) {
+        if (inactivityWheel == null) {
+            return;
+        }
+        DeviceState state = stateData.getState();
+        if (state.getLastInactivityAlarmTime() != 0L && state.getLastInactivityAlarmTime() >= state.getLastActivityTime()) {
+            // inactivity is already reported, the device is scheduled again on the next activity
+            return;
+        }
+        long deadline = Math.max(state.getLastActivityTime() + state.getInactivityTimeout(),
+                stateData.getDeviceCreationTime() + state.getInactivityTimeout() + 1);
+        inactivityWheel.schedule(deviceId, deadline);
+    }
+
     void updateInactivityStateIfExpired(long ts, DeviceId deviceId, DeviceStateData stateData) {
         log.trace("Processing state {} for device {}", stateData, deviceId);
         if (stateData != null) {
@@ -517,6 +647,9 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
 
     private void onDeviceDeleted(TenantId tenantId, DeviceId deviceId) {
         cleanUpDeviceStateMap(deviceId);
+        if (writeBuffer != null) {
+            writeBuffer.remove(deviceId);
+        }
         TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenantId, deviceId);
         Set<DeviceId> deviceIdSet = partitionedDevices.get(tpi);
         deviceIdSet.remove(deviceId);
@@ -524,6 +657,9 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
 
     private void cleanUpDeviceStateMap(DeviceId deviceId) {
         deviceStates.remove(deviceId);
+        if (inactivityWheel != null) {
+            inactivityWheel.cancel(deviceId);
+        }
     }
 
     private ListenableFuture<DeviceStateData> fetchDeviceState(Device device) {
@@ -639,7 +775,9 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
     }
 
     private void save(DeviceId deviceId, String key, long value) {
-        if (persistToTelemetry) {
+        if (writeBuffer != null) {
+            buffer(deviceId, new LongDataEntry(key, value));
+        } else if (persistToTelemetry) {
             tsSubService.saveAndNotifyInternal(
                     TenantId.SYS_TENANT_ID, deviceId,
                     Collections.singletonList(new BasicTsKvEntry(System.currentTimeMillis(), new LongDataEntry(key, value))),
@@ -650,7 +788,9 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
     }
 
     private void save(DeviceId deviceId, String key, boolean value) {
-        if (persistToTelemetry) {
+        if (writeBuffer != null) {
+            buffer(deviceId, new BooleanDataEntry(key, value));
+        } else if (persistToTelemetry) {
             tsSubService.saveAndNotifyInternal(
                     TenantId.SYS_TENANT_ID, deviceId,
                     Collections.singletonList(new BasicTsKvEntry(System.currentTimeMillis(), new BooleanDataEntry(key, value))),
@@ -660,6 +800,35 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         }
     }
 
+    private void buffer(DeviceId deviceId, KvEntry entry) {
+        writeBuffer.put(deviceId, new BasicTsKvEntry(System.currentTimeMillis(), entry));
+        persistRequestedCounter.increment();
+    }
+
+    /**
+     * Writes the newest buffered values of each device with a single save call.
+     * A value is persisted not later than one persist interval after it was buffered, plus the time of the flush itself.
+     */
+    void flushWriteBuffer() {
+        try {
+            int written = writeBuffer.drain((deviceId, entries) -> {
+                String keys = entries.stream().map(KvEntry::getKey).collect(Collectors.joining(","));
+                if (persistToTelemetry) {
+                    tsSubService.saveAndNotifyInternal(TenantId.SYS_TENANT_ID, deviceId, entries, new TelemetrySaveCallback<>(deviceId, keys, entries));
+                } else {
+                    List<AttributeKvEntry> attributes = entries.stream()
+                            .map(entry -> new BaseAttributeKvEntry(entry, entry.getTs()))
+                            .collect(Collectors.toList());
+                    tsSubService.saveAndNotify(TenantId.SYS_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, attributes, new TelemetrySaveCallback<>(deviceId, keys, attributes));
+                }
+            });
+            persistWrittenCounter.add(written);
+            persistCoalescedCounter.add((int) writeBuffer.getAndResetCoalesced());
+        } catch (Exception e) {
+            log.warn("Failed to persist device states", e);
+        }
+    }
+
     private static class TelemetrySaveCallback<T> implements FutureCallback<T> {
         private final DeviceId deviceId;
         private final String key;
@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Coalesces the device state writes: only the newest value of each device and key is kept until the next flush.
+ * The per-device map is only accessed inside the atomic operations of the outer map,
+ * so a value is either flushed by the current drain or stays for the next one.
+ */
+class DeviceStateWriteBuffer {
+
+    private final ConcurrentMap<DeviceId, Map<String, TsKvEntry>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    void put(DeviceId deviceId, TsKvEntry entry) {
+        pending.compute(deviceId, (id, entries) -> {
+            if (entries == null) {
+                entries = new LinkedHashMap<>();
+            }
+            TsKvEntry previous = entries.get(entry.getKey());
+            if (previous == null || previous.getTs() <= entry.getTs()) {
+                entries.put(entry.getKey(), entry);
+            }
+            if (previous != null) {
+                coalesced.incrementAndGet();
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * Removes the buffered values and passes them to the consumer device by device.
+     *
+     * @return number of flushed values
+     */
+    int drain(BiConsumer<DeviceId, List<TsKvEntry>> consumer) {
+        int drained = 0;
+        for (DeviceId deviceId : pending.keySet()) {
+            Map<String, TsKvEntry> entries = pending.remove(deviceId);
+            if (entries != null) {
+                consumer.accept(deviceId, new ArrayList<>(entries.values()));
+                drained += entries.size();
+            }
+        }
+        return drained;
+    }
+
+    void remove(DeviceId deviceId) {
+        pending.remove(deviceId);
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    long getAndResetCoalesced() {
+        return coalesced.getAndSet(0);
+    }
+}
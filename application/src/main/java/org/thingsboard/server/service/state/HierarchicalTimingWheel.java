@@ -0,0 +1,146 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel of key deadlines.
+ * <p>
+ * Level 0 has a slot per tick, every next level has a slot per full turn of the previous level.
+ * When a level turns, the slot of the next level is cascaded into the lower levels, so each key is touched
+ * a constant number of times before it expires. Deadlines beyond the top level are cascaded until they fit.
+ * <p>
+ * The wheel keeps a single deadline per key. Scheduling a later deadline for a key that is already scheduled
+ * is a no-op: the owner is expected to check the key when it expires and to schedule it again if needed.
+ */
+class HierarchicalTimingWheel<K> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMs;
+    private final List<Entry<K>>[][] slots;
+    private final Map<K, Long> deadlineTicks = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    HierarchicalTimingWheel(long tickMs, long startTs) {
+        this.tickMs = tickMs;
+        this.slots = new List[LEVELS][SLOTS];
+        this.currentTick = startTs / tickMs;
+    }
+
+    /**
+     * @return true if the key was not scheduled or its deadline was moved to the earlier time
+     */
+    synchronized boolean schedule(K key, long deadlineTs) {
+        long deadlineTick = (deadlineTs + tickMs - 1) / tickMs;
+        Long scheduledTick = deadlineTicks.get(key);
+        if (scheduledTick != null && scheduledTick <= deadlineTick) {
+            return false;
+        }
+        // the entry with the later deadline stays in its slot and is skipped as stale when it expires
+        deadlineTicks.put(key, deadlineTick);
+        place(new Entry<>(key, deadlineTick));
+        return true;
+    }
+
+    synchronized void cancel(K key) {
+        deadlineTicks.remove(key);
+    }
+
+    synchronized int size() {
+        return deadlineTicks.size();
+    }
+
+    /**
+     * Advances the wheel to the given time.
+     *
+     * @return keys with the deadline not later than the given time, in the order of their deadlines
+     */
+    synchronized List<K> advance(long ts) {
+        List<K> expired = new ArrayList<>();
+        long targetTick = ts / tickMs;
+        while (currentTick <= targetTick) {
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = SLOT_BITS * level;
+                if ((currentTick & ((1L << shift) - 1)) == 0) {
+                    List<Entry<K>> cascaded = takeSlot(level, (int) ((currentTick >>> shift) & SLOT_MASK));
+                    if (cascaded != null) {
+                        cascaded.forEach(this::place);
+                    }
+                }
+            }
+            List<Entry<K>> entries = takeSlot(0, (int) (currentTick & SLOT_MASK));
+            if (entries != null) {
+                for (Entry<K> entry : entries) {
+                    if (entry.deadlineTick > currentTick) {
+                        place(entry);
+                    } else if (deadlineTicks.remove(entry.key, entry.deadlineTick)) {
+                        expired.add(entry.key);
+                    }
+                }
+            }
+            currentTick++;
+        }
+        return expired;
+    }
+
+    private void place(Entry<K> entry) {
+        Long scheduledTick = deadlineTicks.get(entry.key);
+        if (scheduledTick == null || scheduledTick != entry.deadlineTick) {
+            return;
+        }
+        long tick = Math.max(entry.deadlineTick, currentTick);
+        long delta = Math.min(tick - currentTick, MAX_TICKS - 1);
+        int level = 0;
+        while (delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        // deadlines beyond the top level are placed into its furthest slot and cascaded again later
+        long placementTick = currentTick + delta;
+        int slot = (int) ((placementTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        List<Entry<K>> entries = slots[level][slot];
+        if (entries == null) {
+            entries = new ArrayList<>();
+            slots[level][slot] = entries;
+        }
+        entries.add(entry);
+    }
+
+    private List<Entry<K>> takeSlot(int level, int slot) {
+        List<Entry<K>> entries = slots[level][slot];
+        slots[level][slot] = null;
+        return entries;
+    }
+
+    private static class Entry<K> {
+        private final K key;
+        private final long deadlineTick;
+
+        private Entry(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
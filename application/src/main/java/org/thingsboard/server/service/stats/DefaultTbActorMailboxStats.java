@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.stats;
+
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.actors.TbActorMailboxStats;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class DefaultTbActorMailboxStats implements TbActorMailboxStats {
+    private static final String ACTOR_TYPE_TAG = "actorType";
+    private static final String QUEUE_DEPTH = ".queueDepth";
+    private static final String TIME_IN_MAILBOX = ".timeInMailbox";
+    private static final String REJECTED_MSGS = ".rejectedMsgs";
+    private static final String DROPPED_MSGS = ".droppedMsgs";
+
+    private final ConcurrentMap<String, AtomicInteger> queueDepthGauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> timeInMailboxTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DefaultCounter> rejectedCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DefaultCounter> droppedCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Value("${metrics.enabled:false}")
+    private boolean metricsEnabled;
+
+    @Override
+    public void onMsgEnqueued(String actorType) {
+        if (metricsEnabled) {
+            getQueueDepth(actorType).incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onMsgDequeued(String actorType, long timeInMailboxNanos) {
+        if (metricsEnabled) {
+            getQueueDepth(actorType).decrementAndGet();
+            timeInMailboxTimers.computeIfAbsent(actorType,
+                    type -> statsFactory.createTimer(getKey(TIME_IN_MAILBOX), ACTOR_TYPE_TAG, type))
+                    .record(timeInMailboxNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onMsgRejected(String actorType) {
+        if (metricsEnabled) {
+            rejectedCounters.computeIfAbsent(actorType,
+                    type -> statsFactory.createDefaultCounter(getKey(REJECTED_MSGS), ACTOR_TYPE_TAG, type)).increment();
+        }
+    }
+
+    @Override
+    public void onMsgDropped(String actorType) {
+        if (metricsEnabled) {
+            getQueueDepth(actorType).decrementAndGet();
+            droppedCounters.computeIfAbsent(actorType,
+                    type -> statsFactory.createDefaultCounter(getKey(DROPPED_MSGS), ACTOR_TYPE_TAG, type)).increment();
+        }
+    }
+
+    @Override
+    public void onMsgDiscarded(String actorType) {
+        if (metricsEnabled) {
+            getQueueDepth(actorType).decrementAndGet();
+        }
+    }
+
+    private AtomicInteger getQueueDepth(String actorType) {
+        return queueDepthGauges.computeIfAbsent(actorType,
+                type -> statsFactory.createGauge(getKey(QUEUE_DEPTH), new AtomicInteger(0), ACTOR_TYPE_TAG, type));
+    }
+
+    private static String getKey(String suffix) {
+        return StatsType.ACTOR_MAILBOX.getName() + suffix;
+    }
+}
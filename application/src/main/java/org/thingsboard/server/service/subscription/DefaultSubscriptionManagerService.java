@@ -76,6 +76,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Slf4j
 @TbCoreComponent
@@ -106,6 +107,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     @Autowired
     private TbClusterService clusterService;
 
+    @Autowired
+    private TbEntityDataChangeSyncService changeSyncService;
+
     private final Map<EntityId, Set<TbSubscription>> subscriptionsByEntityId = new ConcurrentHashMap<>();
     private final Map<String, Map<Integer, TbSubscription>> subscriptionsByWsSessionId = new ConcurrentHashMap<>();
     private final ConcurrentMap<TopicPartitionInfo, Set<TbSubscription>> partitionedSubscriptions = new ConcurrentHashMap<>();
@@ -228,6 +232,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
         if (entityId.getEntityType() == EntityType.DEVICE) {
             updateDeviceInactivityTimeout(tenantId, entityId, ts);
         }
+        if (changeSyncService.isEnabled()) {
+            changeSyncService.onKeysUpdate(tenantId, entityId, toKeys(ts));
+        }
         callback.onSuccess();
     }
 
@@ -268,9 +275,16 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                         , null);
             }
         }
+        if (changeSyncService.isEnabled()) {
+            changeSyncService.onKeysUpdate(tenantId, entityId, toKeys(attributes));
+        }
         callback.onSuccess();
     }
 
+    private static List<String> toKeys(List<? extends KvEntry> kvEntries) {
+        return kvEntries.stream().map(KvEntry::getKey).collect(Collectors.toList());
+    }
+
     private void updateDeviceInactivityTimeout(TenantId tenantId, EntityId entityId, List<? extends KvEntry> kvEntries) {
         for (KvEntry kvEntry : kvEntries) {
             if (kvEntry.getKey().equals(DefaultDeviceStateService.INACTIVITY_TIMEOUT)) {
@@ -336,6 +350,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                     }
                     return subscriptionUpdate;
                 }, false);
+        if (changeSyncService.isEnabled()) {
+            changeSyncService.onKeysUpdate(tenantId, entityId, keys);
+        }
         callback.onSuccess();
     }
 
@@ -360,6 +377,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                     }
                     return subscriptionUpdate;
                 }, false);
+        if (changeSyncService.isEnabled()) {
+            changeSyncService.onKeysUpdate(tenantId, entityId, keys);
+        }
         callback.onSuccess();
     }
 
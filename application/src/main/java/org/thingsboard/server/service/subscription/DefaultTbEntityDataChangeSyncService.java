@@ -0,0 +1,184 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.audit.ActionType;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangeMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangesMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the entity and filter key changes processed by this node and periodically sends them to all core nodes
+ * through the core notifications, so each node marks the affected dynamic query contexts of its own sessions dirty.
+ * The changes are merged per tenant between the sends.
+ * <p>
+ * The changes are needed only if the full refresh interval is longer than the refresh interval, otherwise
+ * the queries are executed on every refresh anyway and the service does nothing.
+ */
+@Service
+@Slf4j
+public class DefaultTbEntityDataChangeSyncService implements TbEntityDataChangeSyncService {
+
+    private static final Set<ActionType> ENTITY_CHANGE_ACTIONS = EnumSet.of(
+            ActionType.ADDED, ActionType.DELETED, ActionType.UPDATED,
+            ActionType.ASSIGNED_TO_CUSTOMER, ActionType.UNASSIGNED_FROM_CUSTOMER,
+            ActionType.ASSIGNED_FROM_TENANT, ActionType.ASSIGNED_TO_TENANT,
+            ActionType.ASSIGNED_TO_EDGE, ActionType.UNASSIGNED_FROM_EDGE,
+            ActionType.RELATION_ADD_OR_UPDATE, ActionType.RELATION_DELETED, ActionType.RELATIONS_DELETED);
+
+    private final TbQueueProducerProvider producerProvider;
+    private final PartitionService partitionService;
+    private final ConcurrentMap<TenantId, PendingChanges> pendingChanges = new ConcurrentHashMap<>();
+
+    @Value("${server.ws.dynamic_page_link.change_sync_interval:1000}")
+    private long changeSyncInterval;
+    @Value("${server.ws.dynamic_page_link.refresh_interval:6}")
+    private long dynamicPageLinkRefreshInterval;
+    @Value("${server.ws.dynamic_page_link.full_refresh_interval:${server.ws.dynamic_page_link.refresh_interval:6}}")
+    private long dynamicPageLinkFullRefreshInterval;
+
+    private boolean enabled;
+
+    private ScheduledExecutorService scheduler;
+
+    public DefaultTbEntityDataChangeSyncService(TbQueueProducerProvider producerProvider, PartitionService partitionService) {
+        this.producerProvider = producerProvider;
+        this.partitionService = partitionService;
+    }
+
+    @PostConstruct
+    public void init() {
+        enabled = dynamicPageLinkFullRefreshInterval > dynamicPageLinkRefreshInterval;
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("entity-data-change-sync"));
+        scheduler.scheduleWithFixedDelay(this::sendPendingChanges, changeSyncInterval, changeSyncInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onEntityAction(TenantId tenantId, EntityId entityId, ActionType actionType) {
+        if (enabled && ENTITY_CHANGE_ACTIONS.contains(actionType)) {
+            onEntityChange(tenantId, entityId);
+        }
+    }
+
+    @Override
+    public void onEntityChange(TenantId tenantId, EntityId entityId) {
+        if (!enabled) {
+            return;
+        }
+        log.trace("[{}][{}] Entity change", tenantId, entityId);
+        PendingChanges changes;
+        do {
+            changes = getPendingChanges(tenantId);
+            changes.entityChanged = true;
+        } while (changes != pendingChanges.get(tenantId));
+    }
+
+    @Override
+    public void onKeysUpdate(TenantId tenantId, EntityId entityId, Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        PendingChanges changes;
+        do {
+            changes = getPendingChanges(tenantId);
+            changes.keys.addAll(keys);
+        } while (changes != pendingChanges.get(tenantId));
+    }
+
+    /**
+     * The changes are removed from the map before they are sent. The change added to the removed instance
+     * is added again to the new one, so it is sent once or twice but never lost.
+     */
+    private PendingChanges getPendingChanges(TenantId tenantId) {
+        PendingChanges changes = pendingChanges.get(tenantId);
+        return changes != null ? changes : pendingChanges.computeIfAbsent(tenantId, id -> new PendingChanges());
+    }
+
+    void sendPendingChanges() {
+        try {
+            if (pendingChanges.isEmpty()) {
+                return;
+            }
+            EntityDataChangesMsgProto.Builder changesMsg = EntityDataChangesMsgProto.newBuilder();
+            for (TenantId tenantId : pendingChanges.keySet()) {
+                PendingChanges changes = pendingChanges.remove(tenantId);
+                if (changes != null) {
+                    changesMsg.addChanges(EntityDataChangeMsgProto.newBuilder()
+                            .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                            .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                            .setEntityChanged(changes.entityChanged)
+                            .addAllKeys(changes.keys));
+                }
+            }
+            if (changesMsg.getChangesCount() == 0) {
+                return;
+            }
+            log.trace("Sending entity data changes of {} tenants to core nodes", changesMsg.getChangesCount());
+            ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setEntityDataChangesMsg(changesMsg).build();
+            TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toCoreNfProducer = producerProvider.getTbCoreNotificationsMsgProducer();
+            for (String serviceId : partitionService.getAllServiceIds(ServiceType.TB_CORE)) {
+                TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
+                toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(UUID.randomUUID(), toCoreMsg), null);
+            }
+        } catch (Throwable e) {
+            log.warn("Failed to send entity data changes", e);
+        }
+    }
+
+    private static class PendingChanges {
+        private volatile boolean entityChanged;
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -112,6 +112,12 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     @Autowired
     private TbServiceInfoProvider serviceInfoProvider;
 
+    @Autowired
+    private TbEntityDataChangeTracker changeTracker;
+
+    @Autowired
+    private TbEntityDataQueryCache queryCache;
+
     @Autowired
     @Getter
     private DbCallbackExecutorService dbCallbackExecutor;
@@ -122,6 +128,10 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private String databaseTsType;
     @Value("${server.ws.dynamic_page_link.refresh_interval:6}")
     private long dynamicPageLinkRefreshInterval;
+    @Value("${server.ws.dynamic_page_link.full_refresh_interval:${server.ws.dynamic_page_link.refresh_interval:6}}")
+    private long dynamicPageLinkFullRefreshInterval;
+    @Value("${server.ws.dynamic_page_link.share_queries:true}")
+    private boolean shareDynamicQueries;
     @Value("${server.ws.dynamic_page_link.refresh_pool_size:1}")
     private int dynamicPageLinkRefreshPoolSize;
     @Value("${server.ws.max_entities_per_data_subscription:1000}")
@@ -197,10 +207,17 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             if (ctx.getQuery().getPageLink().isDynamic()) {
                 //TODO: validate number of dynamic page links against rate limits. Ignore dynamic flag if limit is reached.
                 TbEntityDataSubCtx finalCtx = ctx;
+                changeTracker.register(finalCtx);
+                if (shareDynamicQueries) {
+                    finalCtx.shareQuery(queryCache, TimeUnit.SECONDS.toMillis(dynamicPageLinkRefreshInterval));
+                }
                 ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
                         () -> refreshDynamicQuery(finalCtx),
                         dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
                 finalCtx.setRefreshTask(task);
+            } else {
+                changeTracker.unregister(ctx);
+                ctx.releaseSharedQuery();
             }
         }
         ListenableFuture<TbEntityDataSubCtx> historyFuture;
@@ -256,6 +273,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
             stats.getRegularQueryInvocationCnt().incrementAndGet();
             stats.getRegularQueryTimeSpent().addAndGet(end - start);
             TbEntityCountSubCtx finalCtx = ctx;
+            changeTracker.register(finalCtx);
             ScheduledFuture<?> task = scheduler.scheduleWithFixedDelay(
                     () -> refreshDynamicQuery(finalCtx),
                     dynamicPageLinkRefreshInterval, dynamicPageLinkRefreshInterval, TimeUnit.SECONDS);
@@ -299,6 +317,13 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
 
     private void refreshDynamicQuery(TbAbstractSubCtx finalCtx) {
         try {
+            // the full refresh interval that does not exceed the refresh interval executes the queries on every refresh
+            long fullRefreshIntervalMs = dynamicPageLinkFullRefreshInterval > dynamicPageLinkRefreshInterval ?
+                    TimeUnit.SECONDS.toMillis(dynamicPageLinkFullRefreshInterval) : 0;
+            if (!finalCtx.checkAndResetRefreshRequired(System.currentTimeMillis(), fullRefreshIntervalMs)) {
+                stats.getDynamicQuerySkippedCnt().incrementAndGet();
+                return;
+            }
             long start = System.currentTimeMillis();
             finalCtx.update();
             long end = System.currentTimeMillis();
@@ -318,13 +343,18 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         long regularQueryInvocationTimeValue = stats.getRegularQueryTimeSpent().getAndSet(0);
         int dynamicQueryInvocationCntValue = stats.getDynamicQueryInvocationCnt().getAndSet(0);
         long dynamicQueryInvocationTimeValue = stats.getDynamicQueryTimeSpent().getAndSet(0);
+        int dynamicQuerySkippedCntValue = stats.getDynamicQuerySkippedCnt().getAndSet(0);
+        int sharedQueryHitCntValue = queryCache.getAndResetHits();
+        int sharedQueryMissCntValue = queryCache.getAndResetMisses();
         long dynamicQueryCnt = subscriptionsBySessionId.values().stream().mapToLong(m -> m.values().stream().filter(TbAbstractSubCtx::isDynamic).count()).sum();
         if (regularQueryInvocationCntValue > 0 || dynamicQueryInvocationCntValue > 0 || dynamicQueryCnt > 0 || alarmQueryInvocationCntValue > 0) {
             log.info("Stats: regularQueryInvocationCnt = [{}], regularQueryInvocationTime = [{}], " +
-                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], " +
+                            "dynamicQueryCnt = [{}] dynamicQueryInvocationCnt = [{}], dynamicQueryInvocationTime = [{}], dynamicQuerySkippedCnt = [{}], " +
+                            "sharedQueryCnt = [{}], sharedQueryHitCnt = [{}], sharedQueryMissCnt = [{}], " +
                             "alarmQueryInvocationCnt = [{}], alarmQueryInvocationTime = [{}]",
                     regularQueryInvocationCntValue, regularQueryInvocationTimeValue,
-                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue,
+                    dynamicQueryCnt, dynamicQueryInvocationCntValue, dynamicQueryInvocationTimeValue, dynamicQuerySkippedCntValue,
+                    queryCache.size(), sharedQueryHitCntValue, sharedQueryMissCntValue,
                     alarmQueryInvocationCntValue, alarmQueryInvocationTimeValue);
         }
     }
@@ -511,6 +541,10 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
     private void cleanupAndCancel(TbAbstractSubCtx ctx) {
         if (ctx != null) {
             ctx.cancelTasks();
+            changeTracker.unregister(ctx);
+            if (ctx instanceof TbEntityDataSubCtx) {
+                ((TbEntityDataSubCtx) ctx).releaseSharedQuery();
+            }
             ctx.clearSubscriptions();
             if (ctx.getSessionId() != null) {
                 Map<Integer, TbAbstractSubCtx> sessionSubs = subscriptionsBySessionId.get(ctx.getSessionId());
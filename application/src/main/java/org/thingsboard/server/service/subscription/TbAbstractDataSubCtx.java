@@ -38,6 +38,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -72,6 +73,15 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
         return result;
     }
 
+    @Override
+    protected Set<String> collectFilterKeys(T query) {
+        Set<String> keys = super.collectFilterKeys(query);
+        if (query.getPageLink() != null && query.getPageLink().getSortOrder() != null) {
+            addTelemetryKey(keys, query.getPageLink().getSortOrder().getKey());
+        }
+        return keys;
+    }
+
     @Override
     public boolean isDynamic() {
         return query != null && query.getPageLink().isDynamic();
@@ -79,7 +89,7 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
 
     @Override
     protected synchronized void update() {
-        PageData<EntityData> newData = findEntityData();
+        PageData<EntityData> newData = findUpdatedEntityData();
         Map<EntityId, EntityData> oldDataMap;
         if (data != null && !data.getData().isEmpty()) {
             oldDataMap = data.getData().stream().collect(Collectors.toMap(EntityData::getEntityId, Function.identity(), (a, b) -> a));
@@ -95,6 +105,10 @@ public abstract class TbAbstractDataSubCtx<T extends AbstractDataQuery<? extends
         }
     }
 
+    protected PageData<EntityData> findUpdatedEntityData() {
+        return findEntityData();
+    }
+
     protected abstract void doUpdate(Map<EntityId, EntityData> newDataMap);
 
     protected abstract EntityDataQuery buildEntityDataQuery();
@@ -31,6 +31,7 @@ import org.thingsboard.server.common.data.query.ComplexFilterPredicate;
 import org.thingsboard.server.common.data.query.DynamicValue;
 import org.thingsboard.server.common.data.query.DynamicValueSourceType;
 import org.thingsboard.server.common.data.query.EntityCountQuery;
+import org.thingsboard.server.common.data.query.EntityKey;
 import org.thingsboard.server.common.data.query.EntityKeyType;
 import org.thingsboard.server.common.data.query.FilterPredicateType;
 import org.thingsboard.server.common.data.query.KeyFilter;
@@ -44,7 +45,9 @@ import org.thingsboard.server.service.telemetry.TelemetryWebSocketSessionRef;
 import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -52,6 +55,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Data
@@ -73,6 +77,12 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
     protected T query;
     @Setter
     protected volatile ScheduledFuture<?> refreshTask;
+    @Getter
+    protected volatile Set<String> filterKeys = Collections.emptySet();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile long lastRefreshTs;
+    @Getter
+    private volatile long dirtyTs;
 
     public TbAbstractSubCtx(String serviceId, TelemetryWebSocketService wsService,
                             EntityService entityService, TbLocalSubscriptionService localSubscriptionService,
@@ -98,9 +108,47 @@ public abstract class TbAbstractSubCtx<T extends EntityCountQuery> {
                 registerDynamicValues(filter.getPredicate());
             }
         }
+        this.filterKeys = query != null ? collectFilterKeys(query) : Collections.emptySet();
         resolve(getTenantId(), getCustomerId(), getUserId());
     }
 
+    /**
+     * @return attribute and time series keys that affect the set of entities returned by the query
+     */
+    protected Set<String> collectFilterKeys(T query) {
+        Set<String> keys = new HashSet<>();
+        if (query.getKeyFilters() != null) {
+            for (KeyFilter filter : query.getKeyFilters()) {
+                addTelemetryKey(keys, filter.getKey());
+            }
+        }
+        return keys;
+    }
+
+    protected void addTelemetryKey(Set<String> keys, EntityKey key) {
+        if (key != null && key.getType() != EntityKeyType.ENTITY_FIELD && key.getType() != EntityKeyType.ALARM_FIELD) {
+            keys.add(key.getKey());
+        }
+    }
+
+    public void markDirty() {
+        dirtyTs = System.currentTimeMillis();
+        dirty.set(true);
+    }
+
+    /**
+     * Checks whether the dynamic query should be executed again: a tracked change marked the context dirty
+     * or the full refresh interval has passed since the last execution. Resets the dirty flag.
+     */
+    public boolean checkAndResetRefreshRequired(long ts, long fullRefreshIntervalMs) {
+        if (dirty.getAndSet(false) || ts - lastRefreshTs >= fullRefreshIntervalMs) {
+            lastRefreshTs = ts;
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     public void resolve(TenantId tenantId, CustomerId customerId, UserId userId) {
         List<ListenableFuture<DynamicValueKeySub>> futures = new ArrayList<>();
         for (DynamicValueKey key : dynamicValues.keySet()) {
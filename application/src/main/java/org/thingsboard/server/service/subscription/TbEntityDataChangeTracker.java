@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangeMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangesMsgProto;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the changes that may affect the result of the dynamic entity queries and marks the affected contexts dirty,
+ * so the periodic refresh only re-executes the queries of the dirty contexts.
+ * <p>
+ * Entity changes mark all contexts of the tenant, attribute and time series changes mark the contexts
+ * that filter or sort by the changed keys. The changes of all nodes are received from {@link TbEntityDataChangeSyncService},
+ * the untracked changes are picked up by the periodic full refresh of the contexts.
+ */
+@Slf4j
+@TbCoreComponent
+@Service
+public class TbEntityDataChangeTracker {
+
+    private final Map<TenantId, Map<CtxKey, TbAbstractSubCtx<?>>> ctxByTenant = new ConcurrentHashMap<>();
+    private final Map<String, Map<CtxKey, TbAbstractSubCtx<?>>> ctxByFilterKey = new ConcurrentHashMap<>();
+    private final Map<CtxKey, Set<String>> filterKeysByCtx = new ConcurrentHashMap<>();
+
+    public synchronized void register(TbAbstractSubCtx<?> ctx) {
+        CtxKey ctxKey = new CtxKey(ctx.getSessionId(), ctx.getCmdId());
+        removeFilterKeys(ctxKey);
+        Set<String> filterKeys = ctx.getFilterKeys();
+        log.trace("[{}][{}] Tracking changes of the filter keys: {}", ctx.getSessionId(), ctx.getCmdId(), filterKeys);
+        ctxByTenant.computeIfAbsent(ctx.getTenantId(), id -> new ConcurrentHashMap<>()).put(ctxKey, ctx);
+        filterKeys.forEach(key -> ctxByFilterKey.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(ctxKey, ctx));
+        filterKeysByCtx.put(ctxKey, filterKeys);
+    }
+
+    public synchronized void unregister(TbAbstractSubCtx<?> ctx) {
+        CtxKey ctxKey = new CtxKey(ctx.getSessionId(), ctx.getCmdId());
+        removeFilterKeys(ctxKey);
+        Map<CtxKey, TbAbstractSubCtx<?>> tenantCtxs = ctxByTenant.get(ctx.getTenantId());
+        if (tenantCtxs != null) {
+            tenantCtxs.remove(ctxKey);
+            if (tenantCtxs.isEmpty()) {
+                ctxByTenant.remove(ctx.getTenantId());
+            }
+        }
+    }
+
+    public void onEntityDataChanges(EntityDataChangesMsgProto msg) {
+        for (EntityDataChangeMsgProto change : msg.getChangesList()) {
+            TenantId tenantId = TenantId.fromUUID(new UUID(change.getTenantIdMSB(), change.getTenantIdLSB()));
+            if (change.getEntityChanged()) {
+                onEntityChange(tenantId, null);
+            }
+            onKeysUpdate(tenantId, null, change.getKeysList());
+        }
+    }
+
+    public void onEntityChange(TenantId tenantId, EntityId entityId) {
+        Map<CtxKey, TbAbstractSubCtx<?>> tenantCtxs = ctxByTenant.get(tenantId);
+        if (tenantCtxs != null) {
+            log.trace("[{}][{}] Marking {} contexts dirty due to entity change", tenantId, entityId, tenantCtxs.size());
+            tenantCtxs.values().forEach(TbAbstractSubCtx::markDirty);
+        }
+    }
+
+    /**
+     * The device state and some other system services save the attributes using the system tenant id,
+     * so the changes of the system tenant mark the matching contexts of all tenants.
+     */
+    public void onKeysUpdate(TenantId tenantId, EntityId entityId, Collection<String> keys) {
+        if (ctxByFilterKey.isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            Map<CtxKey, TbAbstractSubCtx<?>> keyCtxs = ctxByFilterKey.get(key);
+            if (keyCtxs != null) {
+                for (TbAbstractSubCtx<?> ctx : keyCtxs.values()) {
+                    if (TenantId.SYS_TENANT_ID.equals(tenantId) || tenantId.equals(ctx.getTenantId())) {
+                        log.trace("[{}][{}] Marking [{}][{}] dirty due to update of key: {}", tenantId, entityId, ctx.getSessionId(), ctx.getCmdId(), key);
+                        ctx.markDirty();
+                    }
+                }
+            }
+        }
+    }
+
+    private void removeFilterKeys(CtxKey ctxKey) {
+        Set<String> filterKeys = filterKeysByCtx.remove(ctxKey);
+        if (filterKeys != null) {
+            for (String key : filterKeys) {
+                Map<CtxKey, TbAbstractSubCtx<?>> keyCtxs = ctxByFilterKey.get(key);
+                if (keyCtxs != null) {
+                    keyCtxs.remove(ctxKey);
+                    if (keyCtxs.isEmpty()) {
+                        ctxByFilterKey.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    @Data
+    private static class CtxKey {
+        private final String sessionId;
+        private final int cmdId;
+    }
+}
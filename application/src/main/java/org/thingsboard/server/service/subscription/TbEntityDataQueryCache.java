@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.TsValue;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Shares the results of identical dynamic entity data queries between the subscriptions of different sessions.
+ * <p>
+ * The subscriptions with the same tenant, customer and query acquire the same shared query and release it
+ * when they are cancelled, the shared query is removed when the last subscription releases it.
+ * The refresh of a subscription reuses the result of the shared query if it was executed not earlier than
+ * the time requested by the subscription, otherwise executes the query once for all waiting subscriptions.
+ */
+@Slf4j
+@TbCoreComponent
+@Service
+public class TbEntityDataQueryCache {
+
+    private final ConcurrentMap<QueryKey, SharedQuery> queries = new ConcurrentHashMap<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public QueryKey acquire(TenantId tenantId, CustomerId customerId, EntityDataQuery query) {
+        QueryKey key = new QueryKey(tenantId, customerId, JacksonUtil.toString(query));
+        queries.compute(key, (k, sharedQuery) -> {
+            if (sharedQuery == null) {
+                sharedQuery = new SharedQuery();
+            }
+            sharedQuery.refCount++;
+            return sharedQuery;
+        });
+        return key;
+    }
+
+    public void release(QueryKey key) {
+        queries.computeIfPresent(key, (k, sharedQuery) -> --sharedQuery.refCount > 0 ? sharedQuery : null);
+    }
+
+    /**
+     * @param minTs the result of the query executed before this time is not reused
+     * @return copy of the query result that the caller may modify
+     */
+    public PageData<EntityData> find(QueryKey key, long minTs, Supplier<PageData<EntityData>> queryExecutor) {
+        SharedQuery sharedQuery = queries.get(key);
+        if (sharedQuery == null) {
+            misses.incrementAndGet();
+            return queryExecutor.get();
+        }
+        synchronized (sharedQuery) {
+            if (sharedQuery.result == null || sharedQuery.ts < minTs) {
+                misses.incrementAndGet();
+                long ts = System.currentTimeMillis();
+                sharedQuery.result = queryExecutor.get();
+                sharedQuery.ts = ts;
+            } else {
+                log.trace("[{}][{}] Reusing the result of the shared query executed at {}", key.getTenantId(), key.getCustomerId(), sharedQuery.ts);
+                hits.incrementAndGet();
+            }
+            return sharedQuery.result.mapData(TbEntityDataQueryCache::copy);
+        }
+    }
+
+    public int size() {
+        return queries.size();
+    }
+
+    public int getAndResetHits() {
+        return hits.getAndSet(0);
+    }
+
+    public int getAndResetMisses() {
+        return misses.getAndSet(0);
+    }
+
+    private static EntityData copy(EntityData entityData) {
+        Map<EntityKeyType, Map<String, TsValue>> latest = null;
+        if (entityData.getLatest() != null) {
+            latest = new HashMap<>();
+            for (Map.Entry<EntityKeyType, Map<String, TsValue>> entry : entityData.getLatest().entrySet()) {
+                latest.put(entry.getKey(), entry.getValue() != null ? new HashMap<>(entry.getValue()) : null);
+            }
+        }
+        Map<String, TsValue[]> timeseries = entityData.getTimeseries() != null ? new HashMap<>(entityData.getTimeseries()) : null;
+        return new EntityData(entityData.getEntityId(), latest, timeseries);
+    }
+
+    @Data
+    public static class QueryKey {
+        private final TenantId tenantId;
+        private final CustomerId customerId;
+        private final String query;
+    }
+
+    private static class SharedQuery {
+        private int refCount;
+        private long ts;
+        private PageData<EntityData> result;
+    }
+}
@@ -19,6 +19,7 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.query.EntityData;
 import org.thingsboard.server.common.data.query.EntityDataQuery;
 import org.thingsboard.server.common.data.query.EntityKey;
@@ -55,6 +56,9 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
     private LatestValueCmd latestValueCmd;
     @Getter
     private final int maxEntitiesPerDataSubscription;
+    private TbEntityDataQueryCache queryCache;
+    private volatile TbEntityDataQueryCache.QueryKey sharedQueryKey;
+    private long sharedQueryMaxAgeMs;
 
     public TbEntityDataSubCtx(String serviceId, TelemetryWebSocketService wsService, EntityService entityService,
                               TbLocalSubscriptionService localSubscriptionService, AttributesService attributesService,
@@ -200,6 +204,63 @@ public class TbEntityDataSubCtx extends TbAbstractDataSubCtx<EntityDataQuery> {
         subsToAdd.forEach(localSubscriptionService::addSubscription);
     }
 
+    /**
+     * Subscribes the context to the shared query with the same tenant, customer and query.
+     * Queries with dynamic values are not shared since their results depend on the resolved values.
+     *
+     * @param maxAgeMs the result of the shared query is reused by the refresh if it is not older than this
+     */
+    public void shareQuery(TbEntityDataQueryCache queryCache, long maxAgeMs) {
+        releaseSharedQuery();
+        if (dynamicValues.isEmpty()) {
+            this.queryCache = queryCache;
+            this.sharedQueryMaxAgeMs = maxAgeMs;
+            this.sharedQueryKey = queryCache.acquire(getTenantId(), getCustomerId(), query);
+        }
+    }
+
+    public void releaseSharedQuery() {
+        TbEntityDataQueryCache.QueryKey key = sharedQueryKey;
+        if (key != null) {
+            sharedQueryKey = null;
+            queryCache.release(key);
+        }
+    }
+
+    @Override
+    protected PageData<EntityData> findUpdatedEntityData() {
+        TbEntityDataQueryCache.QueryKey key = sharedQueryKey;
+        if (key == null) {
+            return findEntityData();
+        }
+        long minTs = Math.max(getDirtyTs(), System.currentTimeMillis() - sharedQueryMaxAgeMs);
+        PageData<EntityData> result = queryCache.find(key, minTs, this::findEntityData);
+        if (data != null) {
+            mergeLatestValues(result);
+        }
+        return result;
+    }
+
+    /**
+     * The shared result may be older than the latest values this context has already received from the subscriptions.
+     */
+    private void mergeLatestValues(PageData<EntityData> result) {
+        Map<EntityId, EntityData> currentDataMap = new HashMap<>();
+        data.getData().forEach(entityData -> currentDataMap.put(entityData.getEntityId(), entityData));
+        for (EntityData entityData : result.getData()) {
+            EntityData currentData = currentDataMap.get(entityData.getEntityId());
+            if (currentData != null && currentData.getLatest() != null && entityData.getLatest() != null) {
+                currentData.getLatest().forEach((keyType, currentValues) -> {
+                    Map<String, TsValue> values = entityData.getLatest().get(keyType);
+                    if (values != null && currentValues != null) {
+                        currentValues.forEach((key, currentValue) ->
+                                values.computeIfPresent(key, (k, value) -> currentValue.getTs() > value.getTs() ? currentValue : value));
+                    }
+                });
+            }
+        }
+    }
+
     public void setCurrentCmd(EntityDataCmd cmd) {
         curTsCmd = cmd.getTsCmd();
         latestValueCmd = cmd.getLatestCmd();
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryCache;
+import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryListener;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvDictionaryUpdateMsgProto;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keys added to the time series key dictionary by one node are sent to all core nodes through the core notifications,
+ * so other nodes replace their cached ids of these keys without a lookup.
+ */
+@Service
+@Slf4j
+public class DefaultTsKvDictionarySyncService implements TsKvDictionarySyncService, TsKvDictionaryListener {
+
+    private final Optional<TsKvDictionaryCache> dictionaryCache;
+    private final TbQueueProducerProvider producerProvider;
+    private final PartitionService partitionService;
+
+    public DefaultTsKvDictionarySyncService(Optional<TsKvDictionaryCache> dictionaryCache,
+                                            TbQueueProducerProvider producerProvider,
+                                            PartitionService partitionService) {
+        this.dictionaryCache = dictionaryCache;
+        this.producerProvider = producerProvider;
+        this.partitionService = partitionService;
+    }
+
+    @PostConstruct
+    public void init() {
+        dictionaryCache.ifPresent(cache -> cache.setListener(this));
+    }
+
+    @Override
+    public void onKeysCreated(Map<String, Integer> keyIds) {
+        TsKvDictionaryUpdateMsgProto.Builder updateMsg = TsKvDictionaryUpdateMsgProto.newBuilder();
+        keyIds.forEach((key, keyId) -> {
+            updateMsg.addKeys(key);
+            updateMsg.addKeyIds(keyId);
+        });
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setTsKvDictionaryUpdateMsg(updateMsg).build();
+        TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toCoreNfProducer = producerProvider.getTbCoreNotificationsMsgProducer();
+        for (String serviceId : partitionService.getAllServiceIds(ServiceType.TB_CORE)) {
+            TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
+            toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(UUID.randomUUID(), toCoreMsg), null);
+        }
+    }
+
+    @Override
+    public void onTsKvDictionaryUpdate(TsKvDictionaryUpdateMsgProto msg) {
+        dictionaryCache.ifPresent(cache -> {
+            Map<String, Integer> keyIds = new HashMap<>();
+            for (int i = 0; i < msg.getKeysCount(); i++) {
+                keyIds.put(msg.getKeys(i), msg.getKeyIds(i));
+            }
+            log.trace("Received {} time series keys from other node", keyIds.size());
+            cache.putAll(keyIds);
+        });
+    }
+}
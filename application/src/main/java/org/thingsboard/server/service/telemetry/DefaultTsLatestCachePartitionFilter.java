@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.dao.timeseries.TsLatestCache;
+import org.thingsboard.server.dao.timeseries.TsLatestCachePartitionFilter;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbApplicationEventListener;
+import org.thingsboard.server.queue.discovery.event.PartitionChangeEvent;
+
+/**
+ * Latest timeseries values are cached only for the entities that belong to the core partitions of this node.
+ * Updates made by other nodes are delivered to the partition owner through the core notifications,
+ * so the owner is able to invalidate its copy.
+ */
+@Service
+@Slf4j
+public class DefaultTsLatestCachePartitionFilter extends TbApplicationEventListener<PartitionChangeEvent> implements TsLatestCachePartitionFilter {
+
+    private final PartitionService partitionService;
+    private final TsLatestCache tsLatestCache;
+
+    public DefaultTsLatestCachePartitionFilter(PartitionService partitionService, TsLatestCache tsLatestCache) {
+        this.partitionService = partitionService;
+        this.tsLatestCache = tsLatestCache;
+    }
+
+    @Override
+    public boolean isCacheable(TenantId tenantId, EntityId entityId) {
+        return partitionService.resolve(ServiceType.TB_CORE, tenantId, entityId).isMyPartition();
+    }
+
+    @Override
+    protected void onTbApplicationEvent(PartitionChangeEvent partitionChangeEvent) {
+        if (ServiceType.TB_CORE.equals(partitionChangeEvent.getServiceType())) {
+            log.debug("Core partitions changed, clearing latest timeseries cache");
+            tsLatestCache.evictAll();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class VirtualThreadPinningMonitorTest {
+
+    StatsFactory statsFactory;
+    DefaultCounter pinnedCounter;
+    Timer pinnedTimer;
+    VirtualThreadPinningMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        statsFactory = mock(StatsFactory.class);
+        pinnedCounter = mock(DefaultCounter.class);
+        pinnedTimer = mock(Timer.class);
+        willReturn(pinnedCounter).given(statsFactory).createDefaultCounter(VirtualThreadPinningMonitor.PINNED_KEY);
+        willReturn(pinnedTimer).given(statsFactory).createTimer(VirtualThreadPinningMonitor.PINNED_DURATION_KEY);
+        monitor = new VirtualThreadPinningMonitor(statsFactory);
+    }
+
+    @Test
+    void givenMonitor_whenCreated_thenMetricsAreScopedToJvm() {
+        verify(statsFactory).createDefaultCounter("jvm.virtualThreadPinned");
+        verify(statsFactory).createTimer("jvm.virtualThreadPinned.duration");
+    }
+
+    @Test
+    void givenPinnedEvents_whenOnPinned_thenCountAndDurationAreRecorded() {
+        monitor.onPinned(Duration.ofMillis(25));
+        monitor.onPinned(Duration.ofMillis(40));
+
+        verify(pinnedCounter, times(2)).increment();
+        verify(pinnedTimer).record(Duration.ofMillis(25));
+        verify(pinnedTimer).record(Duration.ofMillis(40));
+    }
+
+    @Test
+    void givenUnsupportedJvm_whenStart_thenMonitorIsNotStarted() {
+        assumeFalse(VirtualThreadPinningMonitor.isSupported());
+
+        monitor.start(20);
+        assertFalse(monitor.isStarted());
+        monitor.stop();
+    }
+
+    @Test
+    void givenSupportedJvm_whenStartAndStop_thenRecordingStreamIsOpenedAndClosed() {
+        assumeTrue(VirtualThreadPinningMonitor.isSupported());
+
+        monitor.start(20);
+        assertTrue(monitor.isStarted());
+        monitor.stop();
+        assertFalse(monitor.isStarted());
+    }
+
+}
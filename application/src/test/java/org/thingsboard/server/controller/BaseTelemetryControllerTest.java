@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.User;
+import org.thingsboard.server.common.data.security.Authority;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public abstract class BaseTelemetryControllerTest extends AbstractControllerTest {
+
+    private static final long TIMEOUT = 30000L;
+
+    @Value("${server.rest.timeseries_export.timeout:3600000}")
+    private long exportTimeoutMs;
+
+    private Tenant savedTenant;
+    private Device savedDevice;
+
+    @Before
+    public void beforeTest() throws Exception {
+        loginSysAdmin();
+
+        savedTenant = doPost("/api/tenant", getNewTenant("My tenant"), Tenant.class);
+        Assert.assertNotNull(savedTenant);
+
+        User tenantAdmin = new User();
+        tenantAdmin.setAuthority(Authority.TENANT_ADMIN);
+        tenantAdmin.setTenantId(savedTenant.getId());
+        tenantAdmin.setEmail("tenant2@thingsboard.org");
+        tenantAdmin.setFirstName("Joe");
+        tenantAdmin.setLastName("Downs");
+        createUserAndLogin(tenantAdmin, "testPassword1");
+
+        Device device = new Device();
+        device.setName("Test device");
+        device.setType("default");
+        savedDevice = doPost("/api/device", device, Device.class);
+    }
+
+    @After
+    public void afterTest() throws Exception {
+        loginSysAdmin();
+
+        doDelete("/api/tenant/" + savedTenant.getId().getId().toString())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testExportTimeseries() throws Exception {
+        doPostAsync("/api/plugins/telemetry/DEVICE/" + savedDevice.getId().getId() + "/timeseries/ANY",
+                "[{\"ts\":1000,\"values\":{\"temperature\":21.5}},{\"ts\":2000,\"values\":{\"temperature\":22.5}}," +
+                        "{\"ts\":3000,\"values\":{\"temperature\":23.5}},{\"ts\":4000,\"values\":{\"temperature\":24.5}}]",
+                TIMEOUT).andExpect(status().isOk());
+
+        List<String> lines = export("/api/plugins/telemetry/DEVICE/" + savedDevice.getId().getId() +
+                "/values/timeseries/export?key=temperature&startTs=2000&endTs=4000&useStrictDataTypes=true");
+        Assert.assertEquals(Arrays.asList("{\"ts\":2000,\"value\":22.5}", "{\"ts\":3000,\"value\":23.5}"), lines);
+
+        lines = export("/api/plugins/telemetry/DEVICE/" + savedDevice.getId().getId() +
+                "/values/timeseries/export?key=temperature&startTs=0&endTs=5000");
+        Assert.assertEquals(Arrays.asList("{\"ts\":1000,\"value\":\"21.5\"}", "{\"ts\":2000,\"value\":\"22.5\"}",
+                "{\"ts\":3000,\"value\":\"23.5\"}", "{\"ts\":4000,\"value\":\"24.5\"}"), lines);
+
+        lines = export("/api/plugins/telemetry/DEVICE/" + savedDevice.getId().getId() +
+                "/values/timeseries/export?key=humidity&startTs=0&endTs=5000");
+        Assert.assertTrue(lines.isEmpty());
+    }
+
+    private List<String> export(String url) throws Exception {
+        MockHttpServletRequestBuilder getRequest = get(url);
+        setJwtToken(getRequest);
+        MvcResult result = mockMvc.perform(getRequest).andExpect(request().asyncStarted()).andReturn();
+        // the export must not be limited by the default timeout of the async requests
+        Assert.assertEquals(exportTimeoutMs, result.getRequest().getAsyncContext().getTimeout());
+        result.getAsyncResult(TIMEOUT);
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        Assert.assertEquals("application/x-ndjson", result.getResponse().getContentType());
+        String content = result.getResponse().getContentAsString();
+        return content.isEmpty() ? List.of() : Arrays.asList(content.split("\n"));
+    }
+
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.transport.util.DataDecodingEncodingService;
+import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.provider.TbRuleEngineQueueFactory;
+import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
+import org.thingsboard.server.queue.settings.TbRuleEngineQueueConfiguration;
+import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+import org.thingsboard.server.service.profile.TbDeviceProfileCache;
+import org.thingsboard.server.service.queue.processing.BurstTbRuleEngineSubmitStrategy;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingDecision;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingResult;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategy;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineProcessingStrategyFactory;
+import org.thingsboard.server.service.queue.processing.TbRuleEngineSubmitStrategyFactory;
+import org.thingsboard.server.service.rpc.TbRuleEngineDeviceRpcService;
+import org.thingsboard.server.service.stats.RuleEngineStatisticsService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+public class DefaultTbRuleEngineConsumerServiceTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private DefaultTbRuleEngineConsumerService service;
+    private TbRuleEngineQueueConfiguration configuration;
+    private TestConsumer consumer;
+    private ExecutorService loopExecutor;
+
+    // pack key -> submitted attempts of the pack message
+    private final Map<String, List<Submission>> submissions = new ConcurrentHashMap<>();
+    // pack keys that are processed as soon as they are submitted
+    private final Set<String> autoProcessed = ConcurrentHashMap.newKeySet();
+    // pack keys that fail on the first attempt
+    private final Set<String> failOnFirstAttempt = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() {
+        TbRuleEngineQueueFactory queueFactory = mock(TbRuleEngineQueueFactory.class);
+        service = spy(new DefaultTbRuleEngineConsumerService(mock(TbRuleEngineProcessingStrategyFactory.class),
+                mock(TbRuleEngineSubmitStrategyFactory.class), mock(TbQueueRuleEngineSettings.class), queueFactory,
+                mock(RuleEngineStatisticsService.class), mock(ActorSystemContext.class), mock(DataDecodingEncodingService.class),
+                mock(TbRuleEngineDeviceRpcService.class), mock(StatsFactory.class), mock(TbDeviceProfileCache.class),
+                mock(TbTenantProfileCache.class), mock(TbApiUsageStateService.class)));
+        ReflectionTestUtils.setField(service, "pollDuration", 1L);
+
+        doAnswer(inv -> new BurstTbRuleEngineSubmitStrategy("Main")).when(service).getSubmitStrategy(any());
+        doAnswer(inv -> new RetryFailedStrategy()).when(service).getAckStrategy(any());
+        doAnswer(inv -> {
+            TbMsgPackProcessingContext ctx = inv.getArgument(2);
+            UUID id = inv.getArgument(3);
+            TbProtoQueueMsg<ToRuleEngineMsg> msg = inv.getArgument(4);
+            String key = TbMsg.fromBytes("Main", msg.getValue().getTbMsg().toByteArray(), TbMsgCallback.EMPTY).getType();
+            List<Submission> attempts = submissions.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>());
+            Submission submission = new Submission(ctx, id);
+            attempts.add(submission);
+            if (failOnFirstAttempt.contains(key) && attempts.size() == 1) {
+                ctx.onFailure(TenantId.SYS_TENANT_ID, id, new RuleEngineException("Test failure"));
+            } else if (autoProcessed.contains(key)) {
+                submission.process();
+            }
+            return null;
+        }).when(service).submitMessage(any(), any(), any(), any(), any());
+
+        configuration = new TbRuleEngineQueueConfiguration();
+        configuration.setName("Main");
+        configuration.setMaxInFlightPacks(3);
+        configuration.setPackProcessingTimeout(TimeUnit.SECONDS.toMillis(30));
+        consumer = new TestConsumer();
+        loopExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        ReflectionTestUtils.setField(service, "stopped", true);
+        consumer.stopped = true;
+        loopExecutor.shutdownNow();
+        service.submitExecutor.shutdownNow();
+        service.repartitionExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testPacksAreCommittedInPollOrder() throws Exception {
+        autoProcessed.addAll(Arrays.asList("pack-2", "pack-3"));
+        consumer.addPolls("pack-1", "pack-2", "pack-3");
+        startLoop();
+
+        await(() -> submissions.containsKey("pack-3"));
+        Thread.sleep(100);
+        assertTrue("Processed packs must wait for the earlier pack", consumer.commits.isEmpty());
+
+        submissions.get("pack-1").get(0).process();
+        await(() -> consumer.commits.size() == 3);
+        assertEquals(Arrays.asList("pack-1", "pack-2", "pack-3"), new ArrayList<>(consumer.commits));
+    }
+
+    @Test
+    public void testFailedPackIsReprocessedBeforeLaterPacksAreCommitted() throws Exception {
+        autoProcessed.addAll(Arrays.asList("pack-1", "pack-2"));
+        failOnFirstAttempt.add("pack-1");
+        consumer.addPolls("pack-1", "pack-2");
+        startLoop();
+
+        await(() -> consumer.commits.size() == 2);
+        assertEquals(Arrays.asList("pack-1", "pack-2"), new ArrayList<>(consumer.commits));
+        assertEquals(2, submissions.get("pack-1").size());
+        assertEquals(1, submissions.get("pack-2").size());
+    }
+
+    @Test
+    public void testPackCommitsOwnPollWhenResubscribedWithPacksInFlight() throws Exception {
+        autoProcessed.add("pack-2");
+        consumer.addPolls("pack-1");
+        startLoop();
+        await(() -> submissions.containsKey("pack-1"));
+
+        consumer.subscribe(Collections.emptySet());
+        consumer.addPolls("pack-2");
+        await(() -> submissions.containsKey("pack-2"));
+        Thread.sleep(100);
+        assertTrue(consumer.commits.isEmpty());
+
+        submissions.get("pack-1").get(0).process();
+        await(() -> consumer.commits.size() == 2);
+        assertEquals(Arrays.asList("pack-1", "pack-2"), new ArrayList<>(consumer.commits));
+    }
+
+    private void startLoop() {
+        loopExecutor.submit(() -> service.pipelinedConsumerLoop(consumer, configuration, mock(TbRuleEngineConsumerStats.class)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition was not met in " + TIMEOUT_MS + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static class Submission {
+        private final TbMsgPackProcessingContext ctx;
+        private final UUID id;
+
+        private Submission(TbMsgPackProcessingContext ctx, UUID id) {
+            this.ctx = ctx;
+            this.id = id;
+        }
+
+        private void process() {
+            ctx.onSuccess(id);
+        }
+    }
+
+    private static class RetryFailedStrategy implements TbRuleEngineProcessingStrategy {
+
+        @Override
+        public boolean isSkipTimeoutMsgs() {
+            return false;
+        }
+
+        @Override
+        public TbRuleEngineProcessingDecision analyze(TbRuleEngineProcessingResult result) {
+            if (result.getFailedMap().isEmpty() && result.getPendingMap().isEmpty()) {
+                return new TbRuleEngineProcessingDecision(true, null);
+            }
+            ConcurrentHashMap<UUID, TbProtoQueueMsg<ToRuleEngineMsg>> reprocessMap = new ConcurrentHashMap<>(result.getFailedMap());
+            reprocessMap.putAll(result.getPendingMap());
+            return new TbRuleEngineProcessingDecision(false, reprocessMap);
+        }
+    }
+
+    /**
+     * Returns one pack per poll and commits the pack key of the poll the commit was requested for.
+     * Like the Kafka consumer, it forgets the last poll on resubscription.
+     */
+    private static class TestConsumer implements TbQueueConsumer<TbProtoQueueMsg<ToRuleEngineMsg>> {
+
+        private final Queue<String> polls = new ConcurrentLinkedQueue<>();
+        private final Queue<String> commits = new ConcurrentLinkedQueue<>();
+        private volatile String lastPoll;
+        private volatile boolean stopped;
+
+        private void addPolls(String... packKeys) {
+            polls.addAll(Arrays.asList(packKeys));
+        }
+
+        @Override
+        public String getTopic() {
+            return "tb_rule_engine.main";
+        }
+
+        @Override
+        public void subscribe() {
+            lastPoll = null;
+        }
+
+        @Override
+        public void subscribe(Set<TopicPartitionInfo> partitions) {
+            lastPoll = null;
+        }
+
+        @Override
+        public void unsubscribe() {
+            stopped = true;
+        }
+
+        @Override
+        public List<TbProtoQueueMsg<ToRuleEngineMsg>> poll(long durationInMillis) {
+            String packKey = polls.poll();
+            if (packKey == null) {
+                try {
+                    Thread.sleep(durationInMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Collections.emptyList();
+            }
+            lastPoll = packKey;
+            TbMsg tbMsg = TbMsg.newMsg(packKey, new DeviceId(UUID.randomUUID()), TbMsgMetaData.EMPTY, "{}");
+            ToRuleEngineMsg msg = ToRuleEngineMsg.newBuilder()
+                    .setTenantIdMSB(TenantId.SYS_TENANT_ID.getId().getMostSignificantBits())
+                    .setTenantIdLSB(TenantId.SYS_TENANT_ID.getId().getLeastSignificantBits())
+                    .setTbMsg(TbMsg.toByteString(tbMsg))
+                    .build();
+            return Collections.singletonList(new TbProtoQueueMsg<>(UUID.randomUUID(), msg));
+        }
+
+        @Override
+        public void commit() {
+            commits.add("all");
+        }
+
+        @Override
+        public boolean isCommitByPollSupported() {
+            return true;
+        }
+
+        @Override
+        public Runnable getLastPollCommit() {
+            String packKey = lastPoll;
+            return () -> commits.add(packKey);
+        }
+
+        @Override
+        public boolean isStopped() {
+            return stopped;
+        }
+    }
+
+}
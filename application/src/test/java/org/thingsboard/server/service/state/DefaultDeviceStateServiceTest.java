@@ -15,13 +15,27 @@
  */
 package org.thingsboard.server.service.state;
 
+import com.google.common.util.concurrent.Futures;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.stats.DefaultStatsFactory;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.tenant.TenantService;
@@ -29,8 +43,29 @@ import org.thingsboard.server.dao.timeseries.TimeseriesService;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.cluster.TbClusterService;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willDoNothing;
 import static org.mockito.BDDMockito.willReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -63,6 +98,11 @@ public class DefaultDeviceStateServiceTest {
         service = spy(new DefaultDeviceStateService(tenantService, deviceService, attributesService, tsService, clusterService, partitionService));
     }
 
+    @After
+    public void tearDown() {
+        service.stop();
+    }
+
     @Test
     public void givenDeviceIdFromDeviceStatesMap_whenGetOrFetchDeviceStateData_thenNoStackOverflow() {
         service.deviceStates.put(deviceId, deviceStateDataMock);
@@ -80,4 +120,63 @@ public class DefaultDeviceStateServiceTest {
         Mockito.verify(service, times(1)).fetchDeviceStateData(deviceId);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void givenAddedPartition_whenInitPartitions_thenOnlyDevicesOfAddedPartitionAreLoaded() {
+        TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+        TopicPartitionInfo addedTpi = new TopicPartitionInfo("tb_core", null, 1, true);
+        TopicPartitionInfo otherTpi = new TopicPartitionInfo("tb_core", null, 2, true);
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Device device = new Device(new DeviceId(UUID.randomUUID()));
+            device.setTenantId(tenantId);
+            device.setName("Device " + i);
+            devices.add(device);
+        }
+        Set<DeviceId> addedDeviceIds = Set.of(devices.get(0).getId(), devices.get(2).getId(), devices.get(3).getId());
+        DeviceId activeDeviceId = devices.get(0).getId();
+
+        willReturn(devices.subList(0, 2)).given(deviceService).findDevicesByIdGreaterThan(isNull(), eq(2));
+        willReturn(devices.subList(2, 4)).given(deviceService).findDevicesByIdGreaterThan(eq(devices.get(1).getId()), eq(2));
+        willReturn(devices.subList(4, 5)).given(deviceService).findDevicesByIdGreaterThan(eq(devices.get(3).getId()), eq(2));
+        willAnswer(invocation -> addedDeviceIds.contains(invocation.getArgument(2)) ? addedTpi : otherTpi)
+                .given(partitionService).resolve(eq(ServiceType.TB_CORE), eq(tenantId), any());
+        willAnswer(invocation -> {
+            List<EntityId> ids = invocation.getArgument(1);
+            Map<EntityId, List<AttributeKvEntry>> attributes = new HashMap<>();
+            if (ids.contains(activeDeviceId)) {
+                attributes.put(activeDeviceId, Collections.singletonList(
+                        new BaseAttributeKvEntry(new BooleanDataEntry(DefaultDeviceStateService.ACTIVITY_STATE, true), 42L)));
+            }
+            return Futures.immediateFuture(attributes);
+        }).given(attributesService).findByEntityIds(any(), any(), any(), any());
+        willDoNothing().given(service).checkAndUpdateState(any(), any());
+
+        ReflectionTestUtils.setField(service, "initFetchPackSize", 2);
+        ReflectionTestUtils.setField(service, "inactivityCheckTickInMs", 1000L);
+        ReflectionTestUtils.setField(service, "defaultInactivityTimeoutInSec", 600L);
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", false);
+        ReflectionTestUtils.setField(service, "statsFactory", statsFactory);
+        service.init();
+        ConcurrentMap<TopicPartitionInfo, Set<DeviceId>> partitionedDevices =
+                (ConcurrentMap<TopicPartitionInfo, Set<DeviceId>>) ReflectionTestUtils.getField(service, "partitionedDevices");
+        partitionedDevices.put(addedTpi, ConcurrentHashMap.newKeySet());
+
+        assertTrue(service.initPartitions(Set.of(addedTpi)));
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> service.deviceStates.size() == addedDeviceIds.size());
+        assertEquals(addedDeviceIds, service.deviceStates.keySet());
+        assertEquals(addedDeviceIds, partitionedDevices.get(addedTpi));
+        assertTrue(service.deviceStates.get(activeDeviceId).getState().isActive());
+        assertFalse(service.deviceStates.get(devices.get(2).getId()).getState().isActive());
+
+        // the attributes are fetched once per page and only for the devices of the added partition
+        ArgumentCaptor<List<EntityId>> requestedIds = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(attributesService, times(2)).findByEntityIds(eq(TenantId.SYS_TENANT_ID), requestedIds.capture(),
+                eq(DataConstants.SERVER_SCOPE), eq(DefaultDeviceStateService.PERSISTENT_ATTRIBUTES));
+        assertEquals(Arrays.asList(Collections.singletonList(devices.get(0).getId()),
+                Arrays.asList(devices.get(2).getId(), devices.get(3).getId())), requestedIds.getAllValues());
+        Mockito.verify(deviceService, times(3)).findDevicesByIdGreaterThan(any(), eq(2));
+    }
+
+}
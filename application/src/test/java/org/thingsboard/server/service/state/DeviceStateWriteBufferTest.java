@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceStateWriteBufferTest {
+
+    @Test
+    public void testNewestValuePerKeyIsFlushed() {
+        DeviceStateWriteBuffer buffer = new DeviceStateWriteBuffer();
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        buffer.put(deviceId, new BasicTsKvEntry(1, new LongDataEntry("lastActivityTime", 1L)));
+        buffer.put(deviceId, new BasicTsKvEntry(3, new LongDataEntry("lastActivityTime", 3L)));
+        buffer.put(deviceId, new BasicTsKvEntry(2, new LongDataEntry("lastActivityTime", 2L)));
+        buffer.put(deviceId, new BasicTsKvEntry(2, new BooleanDataEntry("active", true)));
+
+        Map<DeviceId, List<TsKvEntry>> flushed = new HashMap<>();
+        assertEquals(2, buffer.drain(flushed::put));
+        assertEquals(2, buffer.getAndResetCoalesced());
+
+        List<TsKvEntry> entries = flushed.get(deviceId);
+        assertEquals(2, entries.size());
+        assertEquals(Long.valueOf(3L), entries.get(0).getLongValue().get());
+        assertEquals(Boolean.TRUE, entries.get(1).getBooleanValue().get());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testRemovedDeviceIsNotFlushed() {
+        DeviceStateWriteBuffer buffer = new DeviceStateWriteBuffer();
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        buffer.put(deviceId, new BasicTsKvEntry(1, new BooleanDataEntry("active", true)));
+        buffer.remove(deviceId);
+
+        Map<DeviceId, List<TsKvEntry>> flushed = new HashMap<>();
+        assertEquals(0, buffer.drain(flushed::put));
+        assertTrue(flushed.isEmpty());
+    }
+}
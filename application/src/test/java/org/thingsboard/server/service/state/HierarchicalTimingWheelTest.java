@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.state;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HierarchicalTimingWheelTest {
+
+    @Test
+    public void testKeysExpireAtTheirDeadlines() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(1000, 0);
+        wheel.schedule(1, 5_000);
+        wheel.schedule(2, 65_000);
+        wheel.schedule(3, 4_200_000);
+
+        assertEquals(Collections.emptyList(), wheel.advance(4_999));
+        assertEquals(Collections.singletonList(1), wheel.advance(5_000));
+        assertEquals(Collections.emptyList(), wheel.advance(64_999));
+        assertEquals(Collections.singletonList(2), wheel.advance(65_000));
+        assertEquals(Collections.emptyList(), wheel.advance(4_199_999));
+        assertEquals(Collections.singletonList(3), wheel.advance(4_200_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testLaterDeadlineDoesNotReschedule() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(1000, 0);
+        assertTrue(wheel.schedule(1, 10_000));
+        assertFalse(wheel.schedule(1, 20_000));
+        assertTrue(wheel.schedule(1, 3_000));
+
+        assertEquals(Collections.singletonList(1), wheel.advance(3_000));
+        assertEquals(Collections.emptyList(), wheel.advance(30_000));
+    }
+
+    @Test
+    public void testCancelledKeyDoesNotExpire() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(1000, 0);
+        wheel.schedule(1, 2_000);
+        wheel.cancel(1);
+
+        assertEquals(Collections.emptyList(), wheel.advance(5_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testDeadlineBeyondTopLevel() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(1, 0);
+        long deadline = (1L << 25) + 123;
+        wheel.schedule(1, deadline);
+
+        assertEquals(Collections.emptyList(), wheel.advance(deadline - 1));
+        assertEquals(Collections.singletonList(1), wheel.advance(deadline));
+    }
+
+    @Test
+    public void testRandomDeadlines() {
+        Random random = new Random(42);
+        long startTs = 1_600_000_000_123L;
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(10, startTs);
+        long[] deadlines = new long[1000];
+        for (int i = 0; i < deadlines.length; i++) {
+            deadlines[i] = startTs + random.nextInt(10_000_000);
+            wheel.schedule(i, deadlines[i]);
+        }
+
+        List<Integer> expired = new ArrayList<>();
+        for (long ts = startTs; ts <= startTs + 10_000_000; ts += 1000) {
+            for (Integer key : wheel.advance(ts)) {
+                assertTrue(deadlines[key] <= ts && deadlines[key] > ts - 1010);
+                expired.add(key);
+            }
+        }
+        Collections.sort(expired);
+        Integer[] all = new Integer[deadlines.length];
+        Arrays.setAll(all, i -> i);
+        assertEquals(Arrays.asList(all), expired);
+    }
+}
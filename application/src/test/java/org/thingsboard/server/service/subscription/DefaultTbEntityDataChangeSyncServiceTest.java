@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.audit.ActionType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangeMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangesMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultTbEntityDataChangeSyncServiceTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Mock
+    private TbQueueProducerProvider producerProvider;
+    @Mock
+    private PartitionService partitionService;
+    @Mock
+    private TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> producer;
+
+    private DefaultTbEntityDataChangeSyncService syncService;
+
+    @Before
+    public void setUp() {
+        syncService = new DefaultTbEntityDataChangeSyncService(producerProvider, partitionService);
+        ReflectionTestUtils.setField(syncService, "enabled", true);
+    }
+
+    @Test
+    public void testPendingChangesAreMergedAndSentToAllCoreNodes() {
+        TopicPartitionInfo tpi1 = new TopicPartitionInfo("tb_core.notifications.core-1", null, null, false);
+        TopicPartitionInfo tpi2 = new TopicPartitionInfo("tb_core.notifications.core-2", null, null, false);
+        when(producerProvider.getTbCoreNotificationsMsgProducer()).thenReturn(producer);
+        when(partitionService.getAllServiceIds(ServiceType.TB_CORE)).thenReturn(new HashSet<>(Arrays.asList("core-1", "core-2")));
+        when(partitionService.getNotificationsTopic(ServiceType.TB_CORE, "core-1")).thenReturn(tpi1);
+        when(partitionService.getNotificationsTopic(ServiceType.TB_CORE, "core-2")).thenReturn(tpi2);
+
+        syncService.onEntityAction(tenantId, deviceId, ActionType.CREDENTIALS_UPDATED);
+        syncService.onKeysUpdate(tenantId, deviceId, Arrays.asList("active", "temperature"));
+        syncService.onKeysUpdate(tenantId, deviceId, Collections.singletonList("active"));
+        syncService.sendPendingChanges();
+
+        ArgumentCaptor<TbProtoQueueMsg<ToCoreNotificationMsg>> msgCaptor = ArgumentCaptor.forClass(TbProtoQueueMsg.class);
+        verify(producer).send(eq(tpi1), msgCaptor.capture(), isNull());
+        verify(producer).send(eq(tpi2), any(), isNull());
+        EntityDataChangesMsgProto changesMsg = msgCaptor.getValue().getValue().getEntityDataChangesMsg();
+        assertEquals(1, changesMsg.getChangesCount());
+        EntityDataChangeMsgProto change = changesMsg.getChanges(0);
+        assertEquals(tenantId.getId(), new UUID(change.getTenantIdMSB(), change.getTenantIdLSB()));
+        assertFalse(change.getEntityChanged());
+        assertEquals(new HashSet<>(Arrays.asList("active", "temperature")), new HashSet<>(change.getKeysList()));
+
+        syncService.onEntityAction(tenantId, deviceId, ActionType.ADDED);
+        syncService.sendPendingChanges();
+
+        verify(producer, times(2)).send(eq(tpi1), msgCaptor.capture(), isNull());
+        List<EntityDataChangeMsgProto> changes = msgCaptor.getValue().getValue().getEntityDataChangesMsg().getChangesList();
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).getEntityChanged());
+        assertEquals(0, changes.get(0).getKeysCount());
+    }
+
+    @Test
+    public void testChangesAreNotCollectedWhenRefreshIsNotSkipped() {
+        ReflectionTestUtils.setField(syncService, "dynamicPageLinkRefreshInterval", 60L);
+        ReflectionTestUtils.setField(syncService, "dynamicPageLinkFullRefreshInterval", 60L);
+        syncService.init();
+
+        assertFalse(syncService.isEnabled());
+        syncService.onEntityAction(tenantId, deviceId, ActionType.ADDED);
+        syncService.onKeysUpdate(tenantId, deviceId, Collections.singletonList("temperature"));
+        syncService.sendPendingChanges();
+
+        verify(producerProvider, never()).getTbCoreNotificationsMsgProducer();
+    }
+
+    @Test
+    public void testNothingIsSentWithoutChanges() {
+        syncService.onEntityAction(tenantId, deviceId, ActionType.LOGIN);
+        syncService.onKeysUpdate(tenantId, deviceId, Collections.emptyList());
+        syncService.sendPendingChanges();
+
+        verify(producerProvider, never()).getTbCoreNotificationsMsgProducer();
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangeMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.EntityDataChangesMsgProto;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbEntityDataChangeTrackerTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testFilterKeyUpdateMarksOnlyMatchingContexts() {
+        TbEntityDataChangeTracker tracker = new TbEntityDataChangeTracker();
+        TbAbstractSubCtx<?> activeCtx = mockCtx("s1", 1, tenantId, "active");
+        TbAbstractSubCtx<?> otherCtx = mockCtx("s1", 2, tenantId, "temperature");
+        TbAbstractSubCtx<?> otherTenantCtx = mockCtx("s2", 1, TenantId.fromUUID(UUID.randomUUID()), "active");
+        tracker.register(activeCtx);
+        tracker.register(otherCtx);
+        tracker.register(otherTenantCtx);
+
+        tracker.onKeysUpdate(tenantId, deviceId, Arrays.asList("active", "humidity"));
+
+        verify(activeCtx).markDirty();
+        verify(otherCtx, never()).markDirty();
+        verify(otherTenantCtx, never()).markDirty();
+    }
+
+    @Test
+    public void testSystemTenantUpdateMarksAllTenants() {
+        TbEntityDataChangeTracker tracker = new TbEntityDataChangeTracker();
+        TbAbstractSubCtx<?> ctx = mockCtx("s1", 1, tenantId, "active");
+        tracker.register(ctx);
+
+        tracker.onKeysUpdate(TenantId.SYS_TENANT_ID, deviceId, Collections.singletonList("active"));
+
+        verify(ctx).markDirty();
+    }
+
+    @Test
+    public void testEntityChangeMarksTenantContexts() {
+        TbEntityDataChangeTracker tracker = new TbEntityDataChangeTracker();
+        TbAbstractSubCtx<?> ctx = mockCtx("s1", 1, tenantId);
+        TbAbstractSubCtx<?> otherTenantCtx = mockCtx("s2", 1, TenantId.fromUUID(UUID.randomUUID()));
+        tracker.register(ctx);
+        tracker.register(otherTenantCtx);
+
+        tracker.onEntityChange(tenantId, deviceId);
+
+        verify(ctx).markDirty();
+        verify(otherTenantCtx, never()).markDirty();
+    }
+
+    @Test
+    public void testEntityDataChangesMsgMarksContexts() {
+        TbEntityDataChangeTracker tracker = new TbEntityDataChangeTracker();
+        TenantId otherTenantId = TenantId.fromUUID(UUID.randomUUID());
+        TbAbstractSubCtx<?> keyCtx = mockCtx("s1", 1, tenantId, "active");
+        TbAbstractSubCtx<?> otherKeyCtx = mockCtx("s1", 2, tenantId, "temperature");
+        TbAbstractSubCtx<?> otherTenantCtx = mockCtx("s2", 1, otherTenantId, "temperature");
+        tracker.register(keyCtx);
+        tracker.register(otherKeyCtx);
+        tracker.register(otherTenantCtx);
+
+        tracker.onEntityDataChanges(EntityDataChangesMsgProto.newBuilder()
+                .addChanges(EntityDataChangeMsgProto.newBuilder()
+                        .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                        .setTenantIdLSB(tenantId.getId().getLeastSignificantBits())
+                        .addKeys("active"))
+                .addChanges(EntityDataChangeMsgProto.newBuilder()
+                        .setTenantIdMSB(otherTenantId.getId().getMostSignificantBits())
+                        .setTenantIdLSB(otherTenantId.getId().getLeastSignificantBits())
+                        .setEntityChanged(true))
+                .build());
+
+        verify(keyCtx).markDirty();
+        verify(otherKeyCtx, never()).markDirty();
+        verify(otherTenantCtx).markDirty();
+    }
+
+    @Test
+    public void testUnregisteredContextIsNotMarked() {
+        TbEntityDataChangeTracker tracker = new TbEntityDataChangeTracker();
+        TbAbstractSubCtx<?> ctx = mockCtx("s1", 1, tenantId, "active");
+        tracker.register(ctx);
+        tracker.unregister(ctx);
+
+        tracker.onKeysUpdate(tenantId, deviceId, Collections.singletonList("active"));
+        tracker.onEntityChange(tenantId, deviceId);
+
+        verify(ctx, never()).markDirty();
+    }
+
+    private static TbAbstractSubCtx<?> mockCtx(String sessionId, int cmdId, TenantId tenantId, String... filterKeys) {
+        TbAbstractSubCtx<?> ctx = Mockito.mock(TbAbstractSubCtx.class);
+        when(ctx.getSessionId()).thenReturn(sessionId);
+        when(ctx.getCmdId()).thenReturn(cmdId);
+        when(ctx.getTenantId()).thenReturn(tenantId);
+        when(ctx.getFilterKeys()).thenReturn(new HashSet<>(Arrays.asList(filterKeys)));
+        return ctx;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.query.EntityData;
+import org.thingsboard.server.common.data.query.EntityDataPageLink;
+import org.thingsboard.server.common.data.query.EntityDataQuery;
+import org.thingsboard.server.common.data.query.EntityKeyType;
+import org.thingsboard.server.common.data.query.EntityTypeFilter;
+import org.thingsboard.server.common.data.query.TsValue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class TbEntityDataQueryCacheTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final CustomerId customerId = new CustomerId(CustomerId.NULL_UUID);
+
+    @Test
+    public void testIdenticalQueriesShareTheResult() {
+        TbEntityDataQueryCache cache = new TbEntityDataQueryCache();
+        TbEntityDataQueryCache.QueryKey key1 = cache.acquire(tenantId, customerId, newQuery());
+        TbEntityDataQueryCache.QueryKey key2 = cache.acquire(tenantId, customerId, newQuery());
+        assertEquals(key1, key2);
+        assertEquals(1, cache.size());
+
+        AtomicInteger executions = new AtomicInteger();
+        Supplier<PageData<EntityData>> executor = () -> {
+            executions.incrementAndGet();
+            return newResult();
+        };
+        long ts = System.currentTimeMillis();
+        PageData<EntityData> result1 = cache.find(key1, ts, executor);
+        PageData<EntityData> result2 = cache.find(key2, ts, executor);
+        assertEquals(1, executions.get());
+        assertEquals(result1.getData(), result2.getData());
+        assertNotSame(result1.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES),
+                result2.getData().get(0).getLatest().get(EntityKeyType.TIME_SERIES));
+
+        cache.find(key2, System.currentTimeMillis() + 1, executor);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testSharedQueryIsRemovedWithTheLastReference() {
+        TbEntityDataQueryCache cache = new TbEntityDataQueryCache();
+        TbEntityDataQueryCache.QueryKey key = cache.acquire(tenantId, customerId, newQuery());
+        cache.acquire(tenantId, customerId, newQuery());
+        cache.acquire(TenantId.fromUUID(UUID.randomUUID()), customerId, newQuery());
+        assertEquals(2, cache.size());
+
+        cache.release(key);
+        assertEquals(2, cache.size());
+        cache.release(key);
+        assertEquals(1, cache.size());
+    }
+
+    private static EntityDataQuery newQuery() {
+        EntityTypeFilter filter = new EntityTypeFilter();
+        filter.setEntityType(EntityType.DEVICE);
+        return new EntityDataQuery(filter, new EntityDataPageLink(10, 0, null, null, true),
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static PageData<EntityData> newResult() {
+        Map<String, TsValue> values = new HashMap<>();
+        values.put("temperature", new TsValue(1, "42"));
+        Map<EntityKeyType, Map<String, TsValue>> latest = new HashMap<>();
+        latest.put(EntityKeyType.TIME_SERIES, values);
+        EntityData entityData = new EntityData(new DeviceId(UUID.randomUUID()), latest, null);
+        return new PageData<>(Collections.singletonList(entityData), 1, 1, false);
+    }
+}
@@ -19,6 +19,7 @@ import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
 import java.util.Collections;
@@ -42,21 +43,28 @@ public class DefaultTbActorSystem implements TbActorSystem {
     private final ConcurrentMap<String, Dispatcher> dispatchers = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, TbActorMailbox> actors = new ConcurrentHashMap<>();
     private final ConcurrentMap<TbActorId, ReentrantLock> actorCreationLocks = new ConcurrentHashMap<>();
-    private final ConcurrentMap<TbActorId, Set<TbActorId>> parentChildMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TbActorId, ChildIndex> parentChildMap = new ConcurrentHashMap<>();
 
     @Getter
     private final TbActorSystemSettings settings;
     @Getter
     private final ScheduledExecutorService scheduler;
+    @Getter
+    private final TbActorMailboxStats mailboxStats;
 
     public DefaultTbActorSystem(TbActorSystemSettings settings) {
+        this(settings, TbActorMailboxStats.NOOP);
+    }
+
+    public DefaultTbActorSystem(TbActorSystemSettings settings, TbActorMailboxStats mailboxStats) {
         this.settings = settings;
+        this.mailboxStats = mailboxStats;
         this.scheduler = Executors.newScheduledThreadPool(settings.getSchedulerPoolSize(), ThingsBoardThreadFactory.forName("actor-system-scheduler"));
     }
 
     @Override
     public void createDispatcher(String dispatcherId, ExecutorService executor) {
-        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor));
+        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, executor, settings.getMailboxSettings(dispatcherId)));
         if (current != null) {
             throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is already registered!");
         }
@@ -113,12 +121,12 @@ public class DefaultTbActorSystem implements TbActorSystem {
                             throw new TbActorNotRegisteredException(parent, "Parent Actor with id [" + parent + "] is not registered!");
                         }
                     }
-                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher);
+                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher, mailboxStats);
                     actors.put(actorId, mailbox);
                     mailbox.initActor();
                     actorMailbox = mailbox;
                     if (parent != null) {
-                        parentChildMap.computeIfAbsent(parent, id -> ConcurrentHashMap.newKeySet()).add(actorId);
+                        parentChildMap.computeIfAbsent(parent, id -> new ChildIndex()).add(actorId);
                     }
                 } else {
                     log.debug("Actor with id [{}] is already registered!", actorId);
@@ -156,22 +164,58 @@ public class DefaultTbActorSystem implements TbActorSystem {
 
     @Override
     public void broadcastToChildren(TbActorId parent, TbActorMsg msg) {
-        broadcastToChildren(parent, id -> true, msg);
+        ChildIndex children = parentChildMap.get(parent);
+        if (children != null) {
+            broadcast(children.getAll(), msg);
+        }
     }
 
     @Override
     public void broadcastToChildren(TbActorId parent, Predicate<TbActorId> childFilter, TbActorMsg msg) {
-        Set<TbActorId> children = parentChildMap.get(parent);
+        ChildIndex children = parentChildMap.get(parent);
         if (children != null) {
-            children.stream().filter(childFilter).forEach(id -> tell(id, msg));
+            children.getAll().stream().filter(childFilter).forEach(id -> tellIfRegistered(id, msg));
+        }
+    }
+
+    @Override
+    public void broadcastToChildrenByType(TbActorId parent, EntityType entityType, TbActorMsg msg) {
+        ChildIndex children = parentChildMap.get(parent);
+        if (children != null) {
+            broadcast(children.getByType(entityType), msg);
+        }
+    }
+
+    private void broadcast(Set<TbActorId> children, TbActorMsg msg) {
+        for (TbActorId child : children) {
+            tellIfRegistered(child, msg);
+        }
+    }
+
+    private void tellIfRegistered(TbActorId target, TbActorMsg msg) {
+        TbActorMailbox mailbox = actors.get(target);
+        if (mailbox != null) {
+            mailbox.tell(msg);
+        } else {
+            log.trace("[{}] Skip broadcast to the child that is no longer registered", target);
         }
     }
 
     @Override
     public List<TbActorId> filterChildren(TbActorId parent, Predicate<TbActorId> childFilter) {
-        Set<TbActorId> children = parentChildMap.get(parent);
+        ChildIndex children = parentChildMap.get(parent);
+        if (children != null) {
+            return children.getAll().stream().filter(childFilter).collect(Collectors.toList());
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public List<TbActorId> filterChildrenByType(TbActorId parent, EntityType entityType, Predicate<TbActorId> childFilter) {
+        ChildIndex children = parentChildMap.get(parent);
         if (children != null) {
-            return children.stream().filter(childFilter).collect(Collectors.toList());
+            return children.getByType(entityType).stream().filter(childFilter).collect(Collectors.toList());
         } else {
             return Collections.emptyList();
         }
@@ -184,14 +228,21 @@ public class DefaultTbActorSystem implements TbActorSystem {
 
     @Override
     public void stop(TbActorId actorId) {
-        Set<TbActorId> children = parentChildMap.remove(actorId);
+        ChildIndex children = parentChildMap.remove(actorId);
         if (children != null) {
-            for (TbActorId child : children) {
+            for (TbActorId child : children.getAll()) {
                 stop(child);
             }
         }
         TbActorMailbox mailbox = actors.remove(actorId);
         if (mailbox != null) {
+            TbActorRef parentRef = mailbox.getParentRef();
+            if (parentRef != null) {
+                ChildIndex siblings = parentChildMap.get(parentRef.getActorId());
+                if (siblings != null) {
+                    siblings.remove(actorId);
+                }
+            }
             mailbox.destroy();
         }
     }
@@ -212,4 +263,40 @@ public class DefaultTbActorSystem implements TbActorSystem {
         actors.clear();
     }
 
+    /**
+     * Children of the actor indexed by entity type, so type specific broadcasts do not scan unrelated children.
+     */
+    private static class ChildIndex {
+
+        private final Set<TbActorId> all = ConcurrentHashMap.newKeySet();
+        private final ConcurrentMap<EntityType, Set<TbActorId>> byType = new ConcurrentHashMap<>();
+
+        void add(TbActorId actorId) {
+            all.add(actorId);
+            EntityType entityType = actorId.getEntityType();
+            if (entityType != null) {
+                byType.computeIfAbsent(entityType, type -> ConcurrentHashMap.newKeySet()).add(actorId);
+            }
+        }
+
+        void remove(TbActorId actorId) {
+            all.remove(actorId);
+            EntityType entityType = actorId.getEntityType();
+            if (entityType != null) {
+                Set<TbActorId> typeChildren = byType.get(entityType);
+                if (typeChildren != null) {
+                    typeChildren.remove(actorId);
+                }
+            }
+        }
+
+        Set<TbActorId> getAll() {
+            return all;
+        }
+
+        Set<TbActorId> getByType(EntityType entityType) {
+            return byType.getOrDefault(entityType, Collections.emptySet());
+        }
+    }
+
 }
@@ -24,5 +24,14 @@ class Dispatcher {
 
     private final String dispatcherId;
     private final ExecutorService executor;
+    private final TbActorMailboxSettings mailboxSettings;
+
+    void execute(TbActorId actorId, Runnable task) {
+        if (executor instanceof TbActorAffinityExecutorService) {
+            ((TbActorAffinityExecutorService) executor).execute(actorId, task);
+        } else {
+            executor.execute(task);
+        }
+    }
 
 }
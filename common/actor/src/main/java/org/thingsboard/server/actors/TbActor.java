@@ -17,10 +17,30 @@ package org.thingsboard.server.actors;
 
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.List;
+
 public interface TbActor {
 
     boolean process(TbActorMsg msg);
 
+    /**
+     * Returns true if the mailbox should deliver normal priority messages to this actor
+     * in slices via {@link #processBatch(List)} instead of one by one.
+     */
+    default boolean isBatchProcessingEnabled() {
+        return false;
+    }
+
+    /**
+     * Processes a slice of messages drained from the mailbox. The order of messages is preserved.
+     * Invoked only if {@link #isBatchProcessingEnabled()} returns true.
+     */
+    default void processBatch(List<TbActorMsg> msgs) {
+        for (TbActorMsg msg : msgs) {
+            process(msg);
+        }
+    }
+
     TbActorRef getActorRef();
 
     default void init(TbActorCtx ctx) throws TbActorException {
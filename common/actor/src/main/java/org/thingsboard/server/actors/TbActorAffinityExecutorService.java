@@ -0,0 +1,222 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executor that keeps tasks of the same actor on the preferred worker thread to preserve cache locality.
+ * Each worker has its own queue and steals tasks from other workers only when its own queue is empty.
+ */
+@Slf4j
+public class TbActorAffinityExecutorService extends AbstractExecutorService {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Worker[] workers;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final CountDownLatch terminationLatch;
+    private volatile boolean shutdown;
+    private volatile boolean stopped;
+
+    public TbActorAffinityExecutorService(int poolSize, String name) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size should be positive!");
+        }
+        ThingsBoardThreadFactory threadFactory = ThingsBoardThreadFactory.forName(name);
+        this.workers = new Worker[poolSize];
+        this.terminationLatch = new CountDownLatch(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            workers[i] = new Worker(i);
+        }
+        for (Worker worker : workers) {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Executes the task on the worker that is preferred for the given key.
+     */
+    public void execute(Object key, Runnable task) {
+        submitTo(workers[spread(key.hashCode()) % workers.length], task);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Worker current = currentWorker();
+        if (current != null) {
+            submitTo(current, task);
+        } else {
+            submitTo(workers[(roundRobin.getAndIncrement() & Integer.MAX_VALUE) % workers.length], task);
+        }
+    }
+
+    private void submitTo(Worker worker, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down!");
+        }
+        worker.queue.offer(task);
+        if (worker.idle) {
+            LockSupport.unpark(worker.thread);
+        } else {
+            wakeUpIdleWorker(worker.index);
+        }
+    }
+
+    private void wakeUpIdleWorker(int busyWorkerIdx) {
+        for (int i = 1; i < workers.length; i++) {
+            Worker candidate = workers[(busyWorkerIdx + i) % workers.length];
+            if (candidate.idle) {
+                LockSupport.unpark(candidate.thread);
+                return;
+            }
+        }
+    }
+
+    private Worker currentWorker() {
+        Thread thread = Thread.currentThread();
+        for (Worker worker : workers) {
+            if (worker.thread == thread) {
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    private Runnable steal(int thiefIdx) {
+        int start = ThreadLocalRandom.current().nextInt(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            int idx = (start + i) % workers.length;
+            if (idx != thiefIdx) {
+                Runnable task = workers[idx].queue.pollLast();
+                if (task != null) {
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) & Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        // workers stop before taking the next task, so the queued tasks are either returned or already running
+        stopped = true;
+        shutdown();
+        List<Runnable> pending = new ArrayList<>();
+        for (Worker worker : workers) {
+            Runnable task;
+            while ((task = worker.queue.poll()) != null) {
+                pending.add(task);
+            }
+        }
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        return pending.isEmpty() ? Collections.emptyList() : pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminationLatch.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminationLatch.await(timeout, unit);
+    }
+
+    private class Worker implements Runnable {
+        private final int index;
+        private final ConcurrentLinkedDeque<Runnable> queue = new ConcurrentLinkedDeque<>();
+        private volatile Thread thread;
+        private volatile boolean idle;
+
+        private Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    Runnable task = queue.poll();
+                    if (task == null) {
+                        task = steal(index);
+                    }
+                    if (task != null && stopped) {
+                        // taken concurrently with shutdownNow, so it is not returned as pending and should still run
+                        runTask(task);
+                        break;
+                    } else if (task != null) {
+                        runTask(task);
+                    } else if (shutdown) {
+                        break;
+                    } else {
+                        idle = true;
+                        if (queue.isEmpty()) {
+                            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                        }
+                        idle = false;
+                        if (Thread.interrupted() && shutdown) {
+                            break;
+                        }
+                    }
+                }
+            } finally {
+                terminationLatch.countDown();
+            }
+        }
+
+        private void runTask(Runnable task) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.warn("[{}] Failed to execute task", thread.getName(), t);
+            }
+        }
+    }
+}
@@ -41,4 +41,6 @@ public interface TbActorCtx extends TbActorRef {
     void broadcastToChildren(TbActorMsg msg, Predicate<TbActorId> childFilter);
 
     List<TbActorId> filterChildren(Predicate<TbActorId> childFilter);
+
+    List<TbActorId> filterChildrenByType(EntityType entityType, Predicate<TbActorId> childFilter);
 }
@@ -22,10 +22,12 @@ import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbActorStopReason;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
@@ -47,15 +49,19 @@ public final class TbActorMailbox implements TbActorCtx {
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
-    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final TbActorMailboxStats stats;
+    private final ConcurrentLinkedQueue<MailboxMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<MailboxMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger normalPriorityMsgsCount = new AtomicInteger();
+    private final AtomicInteger blockedProducers = new AtomicInteger();
+    private final Object notFullMonitor = new Object();
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
     private volatile TbActorStopReason stopReason;
 
     public void initActor() {
-        dispatcher.getExecutor().execute(() -> tryInit(1));
+        dispatcher.execute(selfId, () -> tryInit(1));
     }
 
     private void tryInit(int attempt) {
@@ -79,11 +85,11 @@ public final class TbActorMailbox implements TbActorCtx {
             } else if (strategy.getRetryDelay() > 0) {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry in attempts in {}ms", selfId, attempt, strategy.getRetryDelay());
                 log.debug("[{}] Error", selfId, t);
-                system.getScheduler().schedule(() -> dispatcher.getExecutor().execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
+                system.getScheduler().schedule(() -> dispatcher.execute(selfId, () -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
             } else {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry immediately", selfId, attempt);
                 log.debug("[{}] Error", selfId, t);
-                dispatcher.getExecutor().execute(() -> tryInit(attemptIdx));
+                dispatcher.execute(selfId, () -> tryInit(attemptIdx));
             }
         }
     }
@@ -91,10 +97,16 @@ public final class TbActorMailbox implements TbActorCtx {
     private void enqueue(TbActorMsg msg, boolean highPriority) {
         if (!destroyInProgress.get()) {
             if (highPriority) {
-                highPriorityMsgs.add(msg);
+                highPriorityMsgs.add(new MailboxMsg(msg));
+            } else if (reserveNormalPrioritySlot()) {
+                normalPriorityMsgs.add(new MailboxMsg(msg));
             } else {
-                normalPriorityMsgs.add(msg);
+                log.debug("[{}] Mailbox is full, rejecting message: {}", selfId, msg);
+                stats.onMsgRejected(getActorType());
+                msg.onTbActorStopped(TbActorStopReason.MAILBOX_FULL);
+                return;
             }
+            stats.onMsgEnqueued(getActorType());
             tryProcessQueue(true);
         } else {
             if (highPriority && msg.getMsgType().equals(MsgType.RULE_NODE_UPDATED_MSG)) {
@@ -113,11 +125,95 @@ public final class TbActorMailbox implements TbActorCtx {
         }
     }
 
+    private boolean reserveNormalPrioritySlot() {
+        TbActorMailboxSettings mailboxSettings = dispatcher.getMailboxSettings();
+        if (!mailboxSettings.isBounded()) {
+            normalPriorityMsgsCount.incrementAndGet();
+            return true;
+        }
+        if (tryReserveNormalPrioritySlot(mailboxSettings.getCapacity())) {
+            return true;
+        }
+        switch (mailboxSettings.getOverflowStrategy()) {
+            case DROP_OLDEST:
+                return dropOldestAndReserve(mailboxSettings.getCapacity());
+            case BLOCK_PRODUCER:
+                return waitAndReserve(mailboxSettings.getCapacity(), mailboxSettings.getBlockTimeoutMs());
+            default:
+                return false;
+        }
+    }
+
+    private boolean tryReserveNormalPrioritySlot(int capacity) {
+        while (true) {
+            int count = normalPriorityMsgsCount.get();
+            if (count >= capacity) {
+                return false;
+            }
+            if (normalPriorityMsgsCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean dropOldestAndReserve(int capacity) {
+        while (!tryReserveNormalPrioritySlot(capacity)) {
+            MailboxMsg oldest = normalPriorityMsgs.poll();
+            if (oldest != null) {
+                // the slot of the dropped message is handed over to the new one
+                log.debug("[{}] Mailbox is full, dropping the oldest message: {}", selfId, oldest.getMsg());
+                stats.onMsgDropped(getActorType());
+                oldest.getMsg().onTbActorStopped(TbActorStopReason.MAILBOX_FULL);
+                return true;
+            }
+        }
+        return true;
+    }
+
+    private boolean waitAndReserve(int capacity, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        blockedProducers.incrementAndGet();
+        try {
+            synchronized (notFullMonitor) {
+                while (!tryReserveNormalPrioritySlot(capacity)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || destroyInProgress.get()) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(notFullMonitor, remaining);
+                }
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            blockedProducers.decrementAndGet();
+        }
+    }
+
+    private MailboxMsg pollNormalPriorityMsg() {
+        MailboxMsg msg = normalPriorityMsgs.poll();
+        if (msg != null) {
+            normalPriorityMsgsCount.decrementAndGet();
+            if (blockedProducers.get() > 0) {
+                synchronized (notFullMonitor) {
+                    notFullMonitor.notifyAll();
+                }
+            }
+        }
+        return msg;
+    }
+
+    private String getActorType() {
+        return actor.getClass().getSimpleName();
+    }
+
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    dispatcher.execute(selfId, this::processMailbox);
                 } else {
                     log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
                 }
@@ -130,36 +226,87 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void processMailbox() {
-        boolean noMoreElements = false;
+        boolean noMoreElements = actor.isBatchProcessingEnabled() ? processMailboxInBatch() : processMailboxOneByOne();
+        if (noMoreElements) {
+            busy.set(FREE);
+            dispatcher.execute(selfId, () -> tryProcessQueue(false));
+        } else {
+            dispatcher.execute(selfId, this::processMailbox);
+        }
+    }
+
+    private boolean processMailboxOneByOne() {
         for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
-            if (msg == null) {
-                msg = normalPriorityMsgs.poll();
+            MailboxMsg mailboxMsg = highPriorityMsgs.poll();
+            if (mailboxMsg == null) {
+                mailboxMsg = pollNormalPriorityMsg();
             }
-            if (msg != null) {
-                try {
-                    log.debug("[{}] Going to process message: {}", selfId, msg);
-                    actor.process(msg);
-                } catch (TbRuleNodeUpdateException updateException) {
-                    stopReason = TbActorStopReason.INIT_FAILED;
-                    destroy();
-                } catch (Throwable t) {
-                    log.debug("[{}] Failed to process message: {}", selfId, msg, t);
-                    ProcessFailureStrategy strategy = actor.onProcessFailure(t);
-                    if (strategy.isStop()) {
-                        system.stop(selfId);
-                    }
-                }
+            if (mailboxMsg != null) {
+                processMsg(dequeue(mailboxMsg));
             } else {
-                noMoreElements = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean processMailboxInBatch() {
+        MailboxMsg highPriorityMsg = highPriorityMsgs.poll();
+        if (highPriorityMsg != null) {
+            // high priority messages are used for actor lifecycle management and are never batched
+            processMsg(dequeue(highPriorityMsg));
+            return false;
+        }
+        int throughput = settings.getActorThroughput();
+        List<TbActorMsg> batch = new ArrayList<>(throughput);
+        for (int i = 0; i < throughput; i++) {
+            MailboxMsg mailboxMsg = pollNormalPriorityMsg();
+            if (mailboxMsg == null) {
                 break;
             }
+            batch.add(dequeue(mailboxMsg));
         }
-        if (noMoreElements) {
-            busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
-        } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            log.debug("[{}] Going to process batch of {} messages", selfId, batch.size());
+            actor.processBatch(batch);
+        } catch (TbRuleNodeUpdateException updateException) {
+            onRuleNodeUpdateFailure();
+        } catch (Throwable t) {
+            log.debug("[{}] Failed to process batch of {} messages", selfId, batch.size(), t);
+            onProcessFailure(t);
+        }
+        return batch.size() < throughput;
+    }
+
+    private TbActorMsg dequeue(MailboxMsg mailboxMsg) {
+        stats.onMsgDequeued(getActorType(), System.nanoTime() - mailboxMsg.getEnqueueTs());
+        return mailboxMsg.getMsg();
+    }
+
+    private void processMsg(TbActorMsg msg) {
+        try {
+            log.debug("[{}] Going to process message: {}", selfId, msg);
+            actor.process(msg);
+        } catch (TbRuleNodeUpdateException updateException) {
+            onRuleNodeUpdateFailure();
+        } catch (Throwable t) {
+            log.debug("[{}] Failed to process message: {}", selfId, msg, t);
+            onProcessFailure(t);
+        }
+    }
+
+    private void onRuleNodeUpdateFailure() {
+        stopReason = TbActorStopReason.INIT_FAILED;
+        destroy();
+    }
+
+    private void onProcessFailure(Throwable t) {
+        ProcessFailureStrategy strategy = actor.onProcessFailure(t);
+        if (strategy.isStop()) {
+            system.stop(selfId);
         }
     }
 
@@ -180,7 +327,7 @@ public final class TbActorMailbox implements TbActorCtx {
 
     @Override
     public void broadcastToChildrenByType(TbActorMsg msg, EntityType entityType) {
-        broadcastToChildren(msg, actorId -> entityType.equals(actorId.getEntityType()));
+        system.broadcastToChildrenByType(selfId, entityType, msg);
     }
 
     @Override
@@ -193,6 +340,11 @@ public final class TbActorMailbox implements TbActorCtx {
         return system.filterChildren(selfId, childFilter);
     }
 
+    @Override
+    public List<TbActorId> filterChildrenByType(EntityType entityType, Predicate<TbActorId> childFilter) {
+        return system.filterChildrenByType(selfId, entityType, childFilter);
+    }
+
     @Override
     public void stop(TbActorId target) {
         system.stop(target);
@@ -213,18 +365,23 @@ public final class TbActorMailbox implements TbActorCtx {
             stopReason = TbActorStopReason.STOPPED;
         }
         destroyInProgress.set(true);
-        dispatcher.getExecutor().execute(() -> {
+        dispatcher.execute(selfId, () -> {
             try {
                 ready.set(NOT_READY);
                 actor.destroy();
-                highPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
-                normalPriorityMsgs.forEach(msg -> msg.onTbActorStopped(stopReason));
+                highPriorityMsgs.forEach(this::onMsgDiscarded);
+                normalPriorityMsgs.forEach(this::onMsgDiscarded);
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor: {}", selfId, t);
             }
         });
     }
 
+    private void onMsgDiscarded(MailboxMsg mailboxMsg) {
+        stats.onMsgDiscarded(getActorType());
+        mailboxMsg.getMsg().onTbActorStopped(stopReason);
+    }
+
     @Override
     public TbActorId getActorId() {
         return selfId;
@@ -240,4 +397,10 @@ public final class TbActorMailbox implements TbActorCtx {
         enqueue(actorMsg, HIGH_PRIORITY);
     }
 
+    @Data
+    private static class MailboxMsg {
+        private final TbActorMsg msg;
+        private final long enqueueTs = System.nanoTime();
+    }
+
 }
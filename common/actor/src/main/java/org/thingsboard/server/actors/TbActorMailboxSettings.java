@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Data;
+
+@Data
+public class TbActorMailboxSettings {
+
+    public static final TbActorMailboxSettings UNBOUNDED = new TbActorMailboxSettings(0, TbActorMailboxOverflowStrategy.REJECT, 0);
+
+    /**
+     * Max number of normal priority messages in the mailbox. Zero or negative value means unbounded mailbox.
+     * High priority messages are never limited since they are used for actor lifecycle management.
+     */
+    private final int capacity;
+    private final TbActorMailboxOverflowStrategy overflowStrategy;
+    private final long blockTimeoutMs;
+
+    public boolean isBounded() {
+        return capacity > 0;
+    }
+
+}
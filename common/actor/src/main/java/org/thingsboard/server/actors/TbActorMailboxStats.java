@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+public interface TbActorMailboxStats {
+
+    TbActorMailboxStats NOOP = new TbActorMailboxStats() {
+    };
+
+    default void onMsgEnqueued(String actorType) {
+    }
+
+    default void onMsgDequeued(String actorType, long timeInMailboxNanos) {
+    }
+
+    /**
+     * Message was not added to the mailbox because it is full.
+     */
+    default void onMsgRejected(String actorType) {
+    }
+
+    /**
+     * Message was removed from the mailbox without processing to make room for a newer one.
+     */
+    default void onMsgDropped(String actorType) {
+    }
+
+    /**
+     * Message was removed from the mailbox without processing because the actor was stopped.
+     */
+    default void onMsgDiscarded(String actorType) {
+    }
+
+}
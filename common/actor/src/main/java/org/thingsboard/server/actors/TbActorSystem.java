@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.actors;
 
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
 import java.util.List;
@@ -50,5 +51,9 @@ public interface TbActorSystem {
 
     void broadcastToChildren(TbActorId parent, Predicate<TbActorId> childFilter, TbActorMsg msg);
 
+    void broadcastToChildrenByType(TbActorId parent, EntityType entityType, TbActorMsg msg);
+
     List<TbActorId> filterChildren(TbActorId parent, Predicate<TbActorId> childFilter);
+
+    List<TbActorId> filterChildrenByType(TbActorId parent, EntityType entityType, Predicate<TbActorId> childFilter);
 }
@@ -17,11 +17,24 @@ package org.thingsboard.server.actors;
 
 import lombok.Data;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Data
 public class TbActorSystemSettings {
 
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    private final Map<String, TbActorMailboxSettings> mailboxSettings = new ConcurrentHashMap<>();
+
+    public TbActorSystemSettings withMailboxSettings(String dispatcherId, TbActorMailboxSettings settings) {
+        mailboxSettings.put(dispatcherId, settings);
+        return this;
+    }
+
+    public TbActorMailboxSettings getMailboxSettings(String dispatcherId) {
+        return mailboxSettings.getOrDefault(dispatcherId, TbActorMailboxSettings.UNBOUNDED);
+    }
 
 }
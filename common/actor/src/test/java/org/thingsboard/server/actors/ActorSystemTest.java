@@ -24,7 +24,11 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbActorStopReason;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -45,6 +49,7 @@ public class ActorSystemTest {
     private static final int _100K = 100 * 1024;
     public static final int TIMEOUT_AWAIT_MAX_SEC = 100;
 
+    private volatile TbActorSystemSettings settings;
     private volatile TbActorSystem actorSystem;
     private volatile ExecutorService submitPool;
     private ExecutorService executor;
@@ -54,7 +59,7 @@ public class ActorSystemTest {
     public void initActorSystem() {
         int cores = Runtime.getRuntime().availableProcessors();
         parallelism = Math.max(2, cores / 2);
-        TbActorSystemSettings settings = new TbActorSystemSettings(5, parallelism, 42);
+        settings = new TbActorSystemSettings(5, parallelism, 42);
         actorSystem = new DefaultTbActorSystem(settings);
         submitPool = Executors.newFixedThreadPool(parallelism, ThingsBoardThreadFactory.forName(getClass().getSimpleName() + "-submit-test-scope")); //order guaranteed
     }
@@ -110,6 +115,41 @@ public class ActorSystemTest {
         testActorsAndMessages(1000, 1000, 10);
     }
 
+    @Test
+    public void test10actorsAnd100KMessagesAffinity() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(parallelism, getClass().getSimpleName());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(10, _100K, 1);
+    }
+
+    @Test
+    public void test10KActorsAnd10Messages() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(10 * 1024, 10, 5);
+    }
+
+    @Test
+    public void test10KActorsAnd10MessagesAffinity() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(parallelism, getClass().getSimpleName());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(10 * 1024, 10, 5);
+    }
+
+    @Test
+    public void test100KActorsAnd1Messages5timesAffinity() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(parallelism, getClass().getSimpleName());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(_100K, 1, 5);
+    }
+
+    @Test
+    public void test100KActorsAnd10MessagesAffinity() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(parallelism, getClass().getSimpleName());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(_100K, 10, 1);
+    }
+
     @Test
     public void testNoMessagesAfterDestroy() throws InterruptedException {
         executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
@@ -202,6 +242,126 @@ public class ActorSystemTest {
         Assert.assertTrue(testCtx1.getLatch().await(3, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void test500KChildrenBroadcastByType() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        int childrenCount = 500 * 1000;
+        TbActorRef parentRef = actorSystem.createRootActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(
+                new TbEntityActorId(new TenantId(UUID.randomUUID())), getActorTestCtx(1)));
+        List<ActorTestCtx> deviceCtxes = new ArrayList<>();
+        for (int i = 0; i < childrenCount; i++) {
+            ActorTestCtx testCtx = getActorTestCtx(1);
+            deviceCtxes.add(testCtx);
+            actorSystem.createChildActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(
+                    new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx), parentRef.getActorId());
+        }
+        ActorTestCtx ruleChainCtx = getActorTestCtx(1);
+        actorSystem.createChildActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(
+                new TbEntityActorId(new RuleChainId(UUID.randomUUID())), ruleChainCtx), parentRef.getActorId());
+
+        long start = System.nanoTime();
+        actorSystem.broadcastToChildrenByType(parentRef.getActorId(), EntityType.RULE_CHAIN, new IntTbActorMsg(42));
+        long duration = System.nanoTime() - start;
+        log.info("Broadcast to 1 of {} children by type: {}ns ({} ms)", childrenCount + 1, duration, TimeUnit.NANOSECONDS.toMillis(duration));
+        Assert.assertTrue(ruleChainCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+
+        start = System.nanoTime();
+        actorSystem.broadcastToChildrenByType(parentRef.getActorId(), EntityType.DEVICE, new IntTbActorMsg(42));
+        duration = System.nanoTime() - start;
+        log.info("Broadcast to {} children by type: {}ns ({} ms)", childrenCount, duration, TimeUnit.NANOSECONDS.toMillis(duration));
+        for (ActorTestCtx testCtx : deviceCtxes) {
+            Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testStoppedChildIsRemovedFromParent() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        TbActorRef parentRef = actorSystem.createRootActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(
+                new TbEntityActorId(new TenantId(UUID.randomUUID())), getActorTestCtx(1)));
+        TbActorRef childRef = actorSystem.createChildActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), getActorTestCtx(1)), parentRef.getActorId());
+
+        Assert.assertEquals(1, actorSystem.filterChildrenByType(parentRef.getActorId(), EntityType.DEVICE, id -> true).size());
+        actorSystem.stop(childRef.getActorId());
+        Assert.assertTrue(actorSystem.filterChildren(parentRef.getActorId(), id -> true).isEmpty());
+        Assert.assertTrue(actorSystem.filterChildrenByType(parentRef.getActorId(), EntityType.DEVICE, id -> true).isEmpty());
+    }
+
+    @Test
+    public void testBatchProcessing() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        int msgNumber = 1000;
+        ActorTestCtx testCtx = getActorTestCtx(msgNumber);
+        AtomicInteger batchCount = new AtomicInteger();
+
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new BatchTestActor.BatchTestActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx, batchCount));
+        for (int i = 0; i < msgNumber; i++) {
+            actorRef.tell(new IntTbActorMsg(1));
+        }
+
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(msgNumber, testCtx.getActual().get());
+        Assert.assertTrue(batchCount.get() > 0);
+    }
+
+    @Test
+    public void testBoundedMailboxRejectsMessages() throws InterruptedException {
+        settings.withMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(2, TbActorMailboxOverflowStrategy.REJECT, 0));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        ActorTestCtx testCtx = getActorTestCtx(2);
+        CountDownLatch rejectedLatch = new CountDownLatch(1);
+
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+
+        actorRef.tell(new IntTbActorMsg(1));
+        actorRef.tell(new IntTbActorMsg(2));
+        actorRef.tell(new IntTbActorMsg(4) {
+            @Override
+            public void onTbActorStopped(TbActorStopReason reason) {
+                if (reason == TbActorStopReason.MAILBOX_FULL) {
+                    rejectedLatch.countDown();
+                }
+            }
+        });
+
+        Assert.assertTrue(rejectedLatch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(3, testCtx.getActual().get());
+    }
+
+    @Test
+    public void testBoundedMailboxDropsOldestMessages() throws InterruptedException {
+        settings.withMailboxSettings(ROOT_DISPATCHER, new TbActorMailboxSettings(2, TbActorMailboxOverflowStrategy.DROP_OLDEST, 0));
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        ActorTestCtx testCtx = getActorTestCtx(2);
+        CountDownLatch droppedLatch = new CountDownLatch(1);
+
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+
+        actorRef.tell(new IntTbActorMsg(1) {
+            @Override
+            public void onTbActorStopped(TbActorStopReason reason) {
+                if (reason == TbActorStopReason.MAILBOX_FULL) {
+                    droppedLatch.countDown();
+                }
+            }
+        });
+        actorRef.tell(new IntTbActorMsg(2));
+        actorRef.tell(new IntTbActorMsg(4));
+
+        Assert.assertTrue(droppedLatch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(6, testCtx.getActual().get());
+    }
 
     public void testActorsAndMessages(int actorsCount, int msgNumber, int times) throws InterruptedException {
         Random random = new Random();
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Getter;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchTestActor extends TestRootActor {
+
+    @Getter
+    private final AtomicInteger batchCount;
+
+    public BatchTestActor(TbActorId actorId, ActorTestCtx testCtx, AtomicInteger batchCount) {
+        super(actorId, testCtx);
+        this.batchCount = batchCount;
+    }
+
+    @Override
+    public boolean isBatchProcessingEnabled() {
+        return true;
+    }
+
+    @Override
+    public void processBatch(List<TbActorMsg> msgs) {
+        batchCount.incrementAndGet();
+        super.processBatch(msgs);
+    }
+
+    public static class BatchTestActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+        private final ActorTestCtx testCtx;
+        private final AtomicInteger batchCount;
+
+        public BatchTestActorCreator(TbActorId actorId, ActorTestCtx testCtx, AtomicInteger batchCount) {
+            this.actorId = actorId;
+            this.testCtx = testCtx;
+            this.batchCount = batchCount;
+        }
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new BatchTestActor(actorId, testCtx, batchCount);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TbActorAffinityExecutorServiceTest {
+
+    private static final int TIMEOUT_SEC = 10;
+
+    private TbActorAffinityExecutorService executor;
+
+    @After
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdleWorkerStealsTasksOfBusyWorker() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(2, getClass().getSimpleName());
+        CountDownLatch blockerStarted = new CountDownLatch(1);
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        AtomicReference<Thread> blockedThread = new AtomicReference<>();
+        executor.execute("actor", () -> {
+            blockedThread.set(Thread.currentThread());
+            blockerStarted.countDown();
+            awaitQuietly(releaseBlocker);
+        });
+        Assert.assertTrue(blockerStarted.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+
+        int tasks = 10;
+        CountDownLatch stolenTasks = new CountDownLatch(tasks);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < tasks; i++) {
+            executor.execute("actor", () -> {
+                threads.add(Thread.currentThread());
+                stolenTasks.countDown();
+            });
+        }
+
+        Assert.assertTrue("Tasks of the busy worker should be stolen", stolenTasks.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        Assert.assertFalse(threads.contains(blockedThread.get()));
+        releaseBlocker.countDown();
+    }
+
+    @Test
+    public void testAllWorkersProcessTasksOfDifferentKeys() throws InterruptedException {
+        int poolSize = 4;
+        executor = new TbActorAffinityExecutorService(poolSize, getClass().getSimpleName());
+        int keys = 64;
+        int tasksPerKey = 100;
+        CountDownLatch done = new CountDownLatch(keys * tasksPerKey);
+        Map<Thread, AtomicInteger> tasksByThread = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> tasksByKey = new ConcurrentHashMap<>();
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int key = 0; key < keys; key++) {
+                int finalKey = key;
+                executor.execute(key, () -> {
+                    tasksByThread.computeIfAbsent(Thread.currentThread(), t -> new AtomicInteger()).incrementAndGet();
+                    tasksByKey.computeIfAbsent(finalKey, k -> new AtomicInteger()).incrementAndGet();
+                    done.countDown();
+                });
+            }
+        }
+
+        Assert.assertTrue(done.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(poolSize, tasksByThread.size());
+        Assert.assertEquals(keys, tasksByKey.size());
+        tasksByKey.values().forEach(count -> Assert.assertEquals(tasksPerKey, count.get()));
+    }
+
+    @Test
+    public void testBlockedWorkerDoesNotStarveOtherKeys() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(2, getClass().getSimpleName());
+        CountDownLatch releaseBlocker = new CountDownLatch(1);
+        executor.execute("slow-actor", () -> awaitQuietly(releaseBlocker));
+
+        int tasks = 1000;
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute("actor-" + i, done::countDown);
+        }
+
+        Assert.assertTrue(done.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        releaseBlocker.countDown();
+    }
+
+    @Test
+    public void testShutdownCompletesQueuedTasksAndRejectsNewOnes() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(2, getClass().getSimpleName());
+        CountDownLatch releaseBlockers = new CountDownLatch(1);
+        CountDownLatch blockersStarted = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                blockersStarted.countDown();
+                awaitQuietly(releaseBlockers);
+            });
+        }
+        Assert.assertTrue(blockersStarted.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        int tasks = 100;
+        AtomicInteger executed = new AtomicInteger();
+        for (int i = 0; i < tasks; i++) {
+            executor.execute("actor-" + i, executed::incrementAndGet);
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        try {
+            executor.execute("actor", executed::incrementAndGet);
+            Assert.fail("Task submitted after shutdown should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        Assert.assertFalse(executor.isTerminated());
+
+        releaseBlockers.countDown();
+        Assert.assertTrue(executor.awaitTermination(TIMEOUT_SEC, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(tasks, executed.get());
+    }
+
+    @Test
+    public void testShutdownNowReturnsQueuedTasks() throws InterruptedException {
+        executor = new TbActorAffinityExecutorService(2, getClass().getSimpleName());
+        CountDownLatch releaseBlockers = new CountDownLatch(1);
+        CountDownLatch blockersStarted = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(() -> {
+                blockersStarted.countDown();
+                awaitQuietly(releaseBlockers);
+            });
+        }
+        Assert.assertTrue(blockersStarted.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        int tasks = 100;
+        AtomicInteger executed = new AtomicInteger();
+        for (int i = 0; i < tasks; i++) {
+            executor.execute("actor-" + i, executed::incrementAndGet);
+        }
+
+        List<Runnable> pending = executor.shutdownNow();
+
+        Assert.assertTrue(executor.awaitTermination(TIMEOUT_SEC, TimeUnit.SECONDS));
+        Assert.assertEquals(tasks, pending.size() + executed.get());
+        Assert.assertEquals(0, executed.get());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -34,6 +34,24 @@ public interface TbQueueConsumer<T extends TbQueueMsg> {
 
     void commit();
 
+    /**
+     * Whether the consumer is able to commit messages of the earliest uncommitted poll
+     * while messages returned by the subsequent polls are not processed yet.
+     */
+    default boolean isCommitByPollSupported() {
+        return false;
+    }
+
+    /**
+     * Returns the commit of messages returned by the last non-empty poll. The commit is bound to that poll only,
+     * so it does not cover messages of the later polls even if the consumer was resubscribed in between.
+     * Must be requested right after the poll and executed by the polling thread.
+     * Falls back to {@link #commit()} if the consumer is not able to commit polls separately.
+     */
+    default Runnable getLastPollCommit() {
+        return this::commit;
+    }
+
     boolean isStopped();
 
 }
@@ -24,6 +24,7 @@ import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -37,6 +38,11 @@ public interface AttributesService {
 
     ListenableFuture<List<AttributeKvEntry>> findAll(TenantId tenantId, EntityId entityId, String scope);
 
+    /**
+     * Finds the attributes of many entities with a single query. Entities without the attributes are absent in the result.
+     */
+    ListenableFuture<Map<EntityId, List<AttributeKvEntry>>> findByEntityIds(TenantId tenantId, List<EntityId> entityIds, String scope, Collection<String> attributeKeys);
+
     ListenableFuture<List<Void>> save(TenantId tenantId, EntityId entityId, String scope, List<AttributeKvEntry> attributes);
 
     ListenableFuture<List<Void>> removeAll(TenantId tenantId, EntityId entityId, String scope, List<String> attributeKeys);
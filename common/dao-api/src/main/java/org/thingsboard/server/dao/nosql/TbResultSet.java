@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class TbResultSet implements AsyncResultSet {
@@ -88,6 +89,14 @@ public class TbResultSet implements AsyncResultSet {
         return delegate.wasApplied();
     }
 
+    /**
+     * Requests the next page of the result set. Must be called only if {@link #hasMorePages()} returns true.
+     */
+    public TbResultSetFuture nextPage() {
+        Statement<?> nextStatement = originalStatement.setPagingState(delegate.getExecutionInfo().getPagingState());
+        return executeAsyncFunction.apply(nextStatement);
+    }
+
     public ListenableFuture<List<Row>> allRows(Executor executor) {
         List<Row> allRows = new ArrayList<>();
         SettableFuture<List<Row>> resultFuture = SettableFuture.create();
@@ -124,6 +133,48 @@ public class TbResultSet implements AsyncResultSet {
         }
     }
 
+    public ListenableFuture<Void> forEachRow(Consumer<Row> consumer, Executor executor) {
+        SettableFuture<Void> resultFuture = SettableFuture.create();
+        this.processPages(originalStatement, delegate, consumer, resultFuture, executor);
+        return resultFuture;
+    }
+
+    private void processPages(Statement statement,
+                              AsyncResultSet resultSet,
+                              Consumer<Row> consumer,
+                              SettableFuture<Void> resultFuture,
+                              Executor executor) {
+        try {
+            for (Row row : resultSet.currentPage()) {
+                consumer.accept(row);
+            }
+        } catch (Throwable t) {
+            resultFuture.setException(t);
+            return;
+        }
+        if (resultSet.hasMorePages()) {
+            ByteBuffer nextPagingState = resultSet.getExecutionInfo().getPagingState();
+            Statement<?> nextStatement = statement.setPagingState(nextPagingState);
+            TbResultSetFuture resultSetFuture = executeAsyncFunction.apply(nextStatement);
+            Futures.addCallback(resultSetFuture,
+                    new FutureCallback<TbResultSet>() {
+                        @Override
+                        public void onSuccess(@Nullable TbResultSet result) {
+                            processPages(nextStatement, result,
+                                    consumer, resultFuture, executor);
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            resultFuture.setException(t);
+                        }
+                    }, executor != null ? executor : MoreExecutors.directExecutor()
+            );
+        } else {
+            resultFuture.set(null);
+        }
+    }
+
     List<Row> loadRows(AsyncResultSet resultSet) {
         return Lists.newArrayList(resultSet.currentPage());
     }
@@ -26,6 +26,7 @@ import org.thingsboard.server.common.data.kv.TsKvEntry;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * @author Andrew Shvayka
@@ -34,6 +35,12 @@ public interface TimeseriesService {
 
     ListenableFuture<List<TsKvEntry>> findAll(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries);
 
+    /**
+     * Reads the key values in the [startTs, endTs) interval in ascending order chunk by chunk.
+     * Blocks the calling thread until all values are passed to the consumer or the consumer returns false.
+     */
+    void streamAll(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs, Predicate<List<TsKvEntry>> consumer);
+
     ListenableFuture<List<TsKvEntry>> findLatest(TenantId tenantId, EntityId entityId, Collection<String> keys);
 
     ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId);
@@ -25,6 +25,7 @@ public interface TbActorMsg {
     /**
      * Executed when the target TbActor is stopped or destroyed.
      * For example, rule node failed to initialize or removed from rule chain.
+     * Also executed when the message is rejected or dropped by the bounded mailbox of the target actor.
      * Implementation should cleanup the resources.
      */
     default void onTbActorStopped(TbActorStopReason reason) {
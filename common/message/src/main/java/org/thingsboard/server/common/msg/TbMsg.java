@@ -20,7 +20,10 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 import org.thingsboard.server.common.data.EntityType;
@@ -50,9 +53,11 @@ public final class TbMsg implements Serializable {
     private final String type;
     private final EntityId originator;
     private final CustomerId customerId;
-    private final TbMsgMetaData metaData;
+    @Setter(AccessLevel.NONE)
+    private volatile TbMsgMetaData metaData;
     private final TbMsgDataType dataType;
-    private final String data;
+    @Setter(AccessLevel.NONE)
+    private volatile String data;
     private final RuleChainId ruleChainId;
     private final RuleNodeId ruleNodeId;
     @Getter(value = AccessLevel.NONE)
@@ -64,6 +69,19 @@ public final class TbMsg implements Serializable {
     @JsonIgnore
     transient private final TbMsgCallback callback;
 
+    // Serialized metadata and data of the message received from the queue. Decoded on first access only,
+    // and reused as is when the message is pushed to the queue again without modifications.
+    @Getter(value = AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @JsonIgnore
+    private final MsgProtos.TbMsgMetaDataProto metaDataProto;
+    @Getter(value = AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @JsonIgnore
+    private final ByteString dataBytes;
+
     public int getAndIncrementRuleNodeCounter() {
         return ctx.getAndIncrementRuleNodeCounter();
     }
@@ -125,32 +143,39 @@ public final class TbMsg implements Serializable {
 
     public static TbMsg transformMsg(TbMsg tbMsg, CustomerId customerId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.ruleChainId, tbMsg.ruleNodeId, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.metaDataProto, tbMsg.dataBytes);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId) {
         return new TbMsg(tbMsg.queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.metaDataProto, tbMsg.dataBytes);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, tbMsg.getRuleChainId(), null, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.metaDataProto, tbMsg.dataBytes);
     }
 
     public static TbMsg transformMsg(TbMsg tbMsg, RuleChainId ruleChainId, String queueName) {
         return new TbMsg(queueName, tbMsg.id, tbMsg.ts, tbMsg.type, tbMsg.originator, tbMsg.customerId, tbMsg.metaData, tbMsg.dataType,
-                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback());
+                tbMsg.data, ruleChainId, null, tbMsg.ctx.copy(), tbMsg.getCallback(), tbMsg.metaDataProto, tbMsg.dataBytes);
     }
 
     //used for enqueueForTellNext
     public static TbMsg newMsg(TbMsg tbMsg, String queueName, RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
-        return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId, tbMsg.getMetaData().copy(),
-                tbMsg.getDataType(), tbMsg.getData(), ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY);
+        TbMsgMetaData metaData = tbMsg.metaData;
+        return new TbMsg(queueName, UUID.randomUUID(), tbMsg.getTs(), tbMsg.getType(), tbMsg.getOriginator(), tbMsg.customerId, metaData != null ? metaData.copy() : null,
+                tbMsg.getDataType(), tbMsg.data, ruleChainId, ruleNodeId, tbMsg.ctx.copy(), TbMsgCallback.EMPTY, tbMsg.metaDataProto, tbMsg.dataBytes);
     }
 
     private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
                   RuleChainId ruleChainId, RuleNodeId ruleNodeId, TbMsgProcessingCtx ctx, TbMsgCallback callback) {
+        this(queueName, id, ts, type, originator, customerId, metaData, dataType, data, ruleChainId, ruleNodeId, ctx, callback, null, null);
+    }
+
+    private TbMsg(String queueName, UUID id, long ts, String type, EntityId originator, CustomerId customerId, TbMsgMetaData metaData, TbMsgDataType dataType, String data,
+                  RuleChainId ruleChainId, RuleNodeId ruleNodeId, TbMsgProcessingCtx ctx, TbMsgCallback callback,
+                  MsgProtos.TbMsgMetaDataProto metaDataProto, ByteString dataBytes) {
         this.id = id;
         this.queueName = queueName != null ? queueName : ServiceQueue.MAIN;
         if (ts > 0) {
@@ -170,8 +195,10 @@ public final class TbMsg implements Serializable {
             this.customerId = customerId;
         }
         this.metaData = metaData;
+        this.metaDataProto = metaData == null ? metaDataProto : null;
         this.dataType = dataType;
         this.data = data;
+        this.dataBytes = data == null ? dataBytes : null;
         this.ruleChainId = ruleChainId;
         this.ruleNodeId = ruleNodeId;
         this.ctx = ctx != null ? ctx : new TbMsgProcessingCtx();
@@ -210,12 +237,20 @@ public final class TbMsg implements Serializable {
             builder.setRuleNodeIdLSB(msg.getRuleNodeId().getId().getLeastSignificantBits());
         }
 
-        if (msg.getMetaData() != null) {
-            builder.setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(msg.getMetaData().getData()).build());
+        TbMsgMetaData metaData = msg.metaData;
+        if (metaData != null) {
+            builder.setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(metaData.getData()).build());
+        } else if (msg.metaDataProto != null) {
+            builder.setMetaData(msg.metaDataProto);
         }
 
         builder.setDataType(msg.getDataType().ordinal());
-        builder.setData(msg.getData());
+        String data = msg.data;
+        if (data != null) {
+            builder.setData(data);
+        } else if (msg.dataBytes != null) {
+            builder.setDataBytes(msg.dataBytes);
+        }
 
         builder.setCtx(msg.ctx.toProto());
         return builder.build().toByteArray();
@@ -224,7 +259,6 @@ public final class TbMsg implements Serializable {
     public static TbMsg fromBytes(String queueName, byte[] data, TbMsgCallback callback) {
         try {
             MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(data);
-            TbMsgMetaData metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
             EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
             CustomerId customerId = null;
             RuleChainId ruleChainId = null;
@@ -249,7 +283,7 @@ public final class TbMsg implements Serializable {
 
             TbMsgDataType dataType = TbMsgDataType.values()[proto.getDataType()];
             return new TbMsg(queueName, UUID.fromString(proto.getId()), proto.getTs(), proto.getType(), entityId, customerId,
-                    metaData, dataType, proto.getData(), ruleChainId, ruleNodeId, ctx, callback);
+                    null, dataType, null, ruleChainId, ruleNodeId, ctx, callback, proto.getMetaData(), proto.getDataBytes());
         } catch (InvalidProtocolBufferException e) {
             throw new IllegalStateException("Could not parse protobuf for TbMsg", e);
         }
@@ -261,12 +295,35 @@ public final class TbMsg implements Serializable {
 
     public TbMsg copyWithRuleChainId(RuleChainId ruleChainId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, null, this.ctx, callback);
+                this.metaData, this.dataType, this.data, ruleChainId, null, this.ctx, callback, this.metaDataProto, this.dataBytes);
     }
 
     public TbMsg copyWithRuleNodeId(RuleChainId ruleChainId, RuleNodeId ruleNodeId, UUID msgId) {
         return new TbMsg(this.queueName, msgId, this.ts, this.type, this.originator, this.customerId,
-                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx, callback);
+                this.metaData, this.dataType, this.data, ruleChainId, ruleNodeId, this.ctx, callback, this.metaDataProto, this.dataBytes);
+    }
+
+    public TbMsgMetaData getMetaData() {
+        TbMsgMetaData result = metaData;
+        if (result == null && metaDataProto != null) {
+            synchronized (this) {
+                result = metaData;
+                if (result == null) {
+                    result = new TbMsgMetaData(metaDataProto.getDataMap());
+                    metaData = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public String getData() {
+        String result = data;
+        if (result == null && dataBytes != null) {
+            result = dataBytes.toStringUtf8();
+            data = result;
+        }
+        return result;
     }
 
     public TbMsgCallback getCallback() {
@@ -299,7 +356,7 @@ public final class TbMsg implements Serializable {
     }
 
     public long getMetaDataTs() {
-        String tsStr = metaData.getValue("ts");
+        String tsStr = getMetaData().getValue("ts");
         if (!StringUtils.isEmpty(tsStr)) {
             try {
                 return Long.parseLong(tsStr);
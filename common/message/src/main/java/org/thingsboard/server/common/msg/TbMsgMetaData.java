@@ -21,7 +21,6 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by ashvayka on 13.01.18.
@@ -34,11 +33,15 @@ public final class TbMsgMetaData implements Serializable {
     private final Map<String, String> data;
 
     public TbMsgMetaData() {
-        this.data = new ConcurrentHashMap<>();
+        this.data = new TbMsgMetaDataMap();
     }
 
     public TbMsgMetaData(Map<String, String> data) {
-        this.data = new ConcurrentHashMap<>(data);
+        this.data = new TbMsgMetaDataMap(data);
+    }
+
+    private TbMsgMetaData(TbMsgMetaDataMap data) {
+        this.data = data;
     }
 
     /**
@@ -63,6 +66,10 @@ public final class TbMsgMetaData implements Serializable {
     }
 
     public TbMsgMetaData copy() {
-        return new TbMsgMetaData(data);
+        if (data instanceof TbMsgMetaDataMap) {
+            return new TbMsgMetaData(((TbMsgMetaDataMap) data).copy());
+        } else {
+            return new TbMsgMetaData(data);
+        }
     }
 }
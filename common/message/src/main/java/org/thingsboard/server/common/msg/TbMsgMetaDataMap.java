@@ -0,0 +1,284 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact map used as the storage of {@link TbMsgMetaData}.
+ * Keys and values are kept in a single open-addressing array. Copies share the same array, the first modification
+ * of a shared array copies it (copy-on-write), the following ones update the own array in place.
+ * Reads are lock-free: a value is written before its key, so a reader never sees a key without its value.
+ * Iterators are weakly consistent, like the ones of {@link java.util.concurrent.ConcurrentHashMap}.
+ * Well-known metadata keys are interned to avoid duplicate key strings for every message.
+ */
+final class TbMsgMetaDataMap extends AbstractMap<String, String> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Map<String, String> WELL_KNOWN_KEYS = new HashMap<>();
+
+    static {
+        for (String key : new String[]{"deviceName", "deviceType", "deviceLabel", "ts", "TTL", "notifyDevice",
+                "entityName", "entityType", "originatorName", "originatorType", "userName", "userId", "userEmail",
+                "userFirstName", "userLastName", "requestUUID", "expirationTime", "oneway", "persistent", "retries",
+                "scope", "dataType", "customerName", "customerTitle", "assetName", "assetType", "assetLabel"}) {
+            WELL_KNOWN_KEYS.put(key, key);
+        }
+    }
+
+    private static final Snapshot EMPTY_SNAPSHOT = new Snapshot(new String[8], 0);
+
+    private volatile Snapshot snapshot;
+    // true if the table is not shared with a copy and may be modified in place, guarded by this
+    private transient boolean owned;
+
+    TbMsgMetaDataMap() {
+        this.snapshot = EMPTY_SNAPSHOT;
+    }
+
+    TbMsgMetaDataMap(Map<String, String> data) {
+        if (data.isEmpty()) {
+            this.snapshot = EMPTY_SNAPSHOT;
+        } else {
+            String[] table = new String[tableLength(data.size())];
+            int size = 0;
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                if (insert(table, intern(entry.getKey()), checkValue(entry.getValue())) == null) {
+                    size++;
+                }
+            }
+            this.snapshot = new Snapshot(table, size);
+            this.owned = true;
+        }
+    }
+
+    private TbMsgMetaDataMap(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns a copy that shares the storage with this map until one of them is modified.
+     */
+    synchronized TbMsgMetaDataMap copy() {
+        owned = false;
+        return new TbMsgMetaDataMap(snapshot);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        String[] table = snapshot.table;
+        int mask = (table.length >> 1) - 1;
+        int idx = hash(key) & mask;
+        while (true) {
+            String k = table[idx << 1];
+            if (k == null) {
+                return null;
+            } else if (k == key || k.equals(key)) {
+                // null if the value written before the key is not visible to this thread yet
+                return table[(idx << 1) + 1];
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    @Override
+    public synchronized String put(String key, String value) {
+        key = intern(checkKey(key));
+        checkValue(value);
+        Snapshot current = snapshot;
+        String[] table;
+        if (current.table.length < tableLength(current.size + 1)) {
+            table = rehash(current.table, tableLength(current.size + 1));
+        } else if (owned) {
+            table = current.table;
+        } else {
+            table = current.table.clone();
+        }
+        owned = true;
+        String previous = insert(table, key, value);
+        // the new snapshot publishes the modified table to the readers
+        snapshot = new Snapshot(table, previous == null ? current.size + 1 : current.size);
+        return previous;
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        String previous = get(key);
+        if (previous != null) {
+            Snapshot current = snapshot;
+            String[] table = new String[current.table.length];
+            for (int i = 0; i < current.table.length; i += 2) {
+                String k = current.table[i];
+                if (k != null && !k.equals(key)) {
+                    insert(table, k, current.table[i + 1]);
+                }
+            }
+            snapshot = new Snapshot(table, current.size - 1);
+            owned = true;
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        snapshot = EMPTY_SNAPSHOT;
+        owned = false;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Snapshot current = snapshot;
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new SnapshotIterator(current.table);
+            }
+
+            @Override
+            public int size() {
+                return current.size;
+            }
+        };
+    }
+
+    private static String insert(String[] table, String key, String value) {
+        int mask = (table.length >> 1) - 1;
+        int idx = hash(key) & mask;
+        while (true) {
+            String k = table[idx << 1];
+            if (k == null) {
+                table[(idx << 1) + 1] = value;
+                table[idx << 1] = key;
+                return null;
+            } else if (k.equals(key)) {
+                String previous = table[(idx << 1) + 1];
+                table[(idx << 1) + 1] = value;
+                return previous;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    private static String[] rehash(String[] table, int length) {
+        String[] result = new String[length];
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] != null) {
+                insert(result, table[i], table[i + 1]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Array length for the given number of entries: two slots per entry and the load factor of 0.5.
+     */
+    private static int tableLength(int size) {
+        int capacity = 4;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        return capacity << 1;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static String intern(String key) {
+        String wellKnown = WELL_KNOWN_KEYS.get(key);
+        return wellKnown != null ? wellKnown : key;
+    }
+
+    private static String checkKey(String key) {
+        if (key == null) {
+            throw new NullPointerException("Metadata key is null!");
+        }
+        return key;
+    }
+
+    private static String checkValue(String value) {
+        if (value == null) {
+            throw new NullPointerException("Metadata value is null!");
+        }
+        return value;
+    }
+
+    private static final class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] table;
+        private final int size;
+
+        private Snapshot(String[] table, int size) {
+            this.table = table;
+            this.size = size;
+        }
+    }
+
+    private static final class SnapshotIterator implements Iterator<Entry<String, String>> {
+        private final String[] table;
+        private int idx;
+
+        private SnapshotIterator(String[] table) {
+            this.table = table;
+            advance();
+        }
+
+        private void advance() {
+            while (idx < table.length && (table[idx] == null || table[idx + 1] == null)) {
+                idx += 2;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return idx < table.length;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = new SimpleImmutableEntry<>(table[idx], table[idx + 1]);
+            idx += 2;
+            advance();
+            return entry;
+        }
+    }
+}
@@ -55,7 +55,10 @@ public final class QueueToRuleEngineMsg extends TbRuleEngineActorMsg {
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
         String message;
-        if (msg.getRuleChainId() != null) {
+        if (reason == TbActorStopReason.MAILBOX_FULL) {
+            message = msg.getRuleChainId() != null ?
+                    String.format("Rule chain [%s] mailbox is full", msg.getRuleChainId().getId()) : "Rule chain mailbox is full";
+        } else if (msg.getRuleChainId() != null) {
             message = reason == TbActorStopReason.STOPPED ?
                     String.format("Rule chain [%s] stopped", msg.getRuleChainId().getId()) :
                     String.format("Failed to initialize rule chain [%s]!", msg.getRuleChainId().getId());
@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TbMsgMetaDataTest {
+
+    @Test
+    public void givenManyValues_whenPut_thenAllValuesAreReadable() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        Map<String, String> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            metaData.putValue("key" + i, "value" + i);
+            expected.put("key" + i, "value" + i);
+        }
+        metaData.putValue("key7", "updated");
+        expected.put("key7", "updated");
+
+        assertThat(metaData.getData().size(), is(100));
+        assertThat(metaData.values(), is(expected));
+        assertThat(metaData.getData(), is(expected));
+        assertThat(metaData.getValue("unknown"), nullValue());
+    }
+
+    @Test
+    public void givenCopy_whenModified_thenOriginalIsNotChanged() {
+        TbMsgMetaData original = new TbMsgMetaData();
+        original.putValue("deviceName", "Device A");
+
+        TbMsgMetaData copy = original.copy();
+        copy.putValue("deviceName", "Device B");
+        copy.putValue("deviceType", "thermostat");
+
+        assertThat(original.getValue("deviceName"), is("Device A"));
+        assertThat(original.getValue("deviceType"), nullValue());
+        assertThat(copy.getValue("deviceName"), is("Device B"));
+        assertThat(copy.getValue("deviceType"), is("thermostat"));
+    }
+
+    @Test
+    public void givenCopy_whenOriginalModified_thenCopyIsNotChanged() {
+        TbMsgMetaData original = new TbMsgMetaData();
+        original.putValue("deviceName", "Device A");
+        original.putValue("deviceType", "thermostat");
+
+        TbMsgMetaData copy = original.copy();
+        original.putValue("deviceName", "Device B");
+        original.putValue("deviceLabel", "Label");
+        TbMsgMetaData secondCopy = original.copy();
+        original.putValue("deviceType", "sensor");
+
+        assertThat(copy.getData().size(), is(2));
+        assertThat(copy.getValue("deviceName"), is("Device A"));
+        assertThat(copy.getValue("deviceType"), is("thermostat"));
+        assertThat(secondCopy.getData().size(), is(3));
+        assertThat(secondCopy.getValue("deviceName"), is("Device B"));
+        assertThat(secondCopy.getValue("deviceType"), is("thermostat"));
+        assertThat(original.getValue("deviceType"), is("sensor"));
+    }
+
+    @Test
+    public void givenWellKnownKey_whenPut_thenKeyIsInterned() {
+        TbMsgMetaData first = new TbMsgMetaData();
+        first.putValue(new String("deviceName".toCharArray()), "Device A");
+        TbMsgMetaData second = new TbMsgMetaData();
+        second.putValue(new String("deviceName".toCharArray()), "Device B");
+
+        assertThat(first.getData().keySet().iterator().next(), sameInstance(second.getData().keySet().iterator().next()));
+    }
+
+    @Test
+    public void givenRemovedKey_whenRead_thenOtherKeysAreKept() {
+        Map<String, String> source = new HashMap<>();
+        source.put("a", "1");
+        source.put("b", "2");
+        source.put("c", "3");
+        TbMsgMetaData metaData = new TbMsgMetaData(source);
+
+        metaData.getData().remove("b");
+
+        assertThat(metaData.getValue("a"), is("1"));
+        assertThat(metaData.getValue("b"), nullValue());
+        assertThat(metaData.getValue("c"), is("3"));
+        assertThat(metaData.getData().size(), is(2));
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TbMsgTest {
+
+    private static final String DATA = "{\"temperature\":42}";
+
+    @Test
+    public void givenSerializedMsg_whenReEnqueuedUnchanged_thenBytesAreEqual() {
+        TbMsg original = newMsg();
+        byte[] bytes = TbMsg.toByteArray(original);
+
+        TbMsg restored = TbMsg.fromBytes("Main", bytes, TbMsgCallback.EMPTY);
+
+        assertThat(TbMsg.toByteArray(restored), is(bytes));
+    }
+
+    @Test
+    public void givenSerializedMsg_whenMetaDataAccessed_thenDecodedLazily() {
+        TbMsg original = newMsg();
+        TbMsg restored = TbMsg.fromBytes("Main", TbMsg.toByteArray(original), TbMsgCallback.EMPTY);
+
+        assertThat(restored.getData(), is(DATA));
+        assertThat(restored.getMetaData().getValue("deviceName"), is("Device A"));
+        assertThat(restored.getMetaDataTs(), is(original.getTs()));
+    }
+
+    @Test
+    public void givenSerializedMsg_whenMetaDataChanged_thenChangesAreSerialized() {
+        TbMsg restored = TbMsg.fromBytes("Main", TbMsg.toByteArray(newMsg()), TbMsgCallback.EMPTY);
+        restored.getMetaData().putValue("deviceType", "thermostat");
+
+        TbMsg copy = TbMsg.fromBytes("Main", TbMsg.toByteArray(restored), TbMsgCallback.EMPTY);
+
+        assertThat(copy.getMetaData().getValue("deviceName"), is("Device A"));
+        assertThat(copy.getMetaData().getValue("deviceType"), is("thermostat"));
+    }
+
+    @Test
+    public void givenSerializedMsg_whenTransformed_thenLazyDataIsKept() {
+        TbMsg restored = TbMsg.fromBytes("Main", TbMsg.toByteArray(newMsg()), TbMsgCallback.EMPTY);
+        RuleChainId ruleChainId = new RuleChainId(UUID.randomUUID());
+
+        TbMsg transformed = TbMsg.transformMsg(restored, ruleChainId);
+
+        assertThat(transformed.getRuleChainId(), is(ruleChainId));
+        assertThat(transformed.getData(), is(DATA));
+        assertThat(transformed.getMetaData().getValue("deviceName"), is("Device A"));
+    }
+
+    private TbMsg newMsg() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "Device A");
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), metaData, DATA);
+        msg.getMetaData().putValue("ts", Long.toString(msg.getTs()));
+        return msg;
+    }
+}
@@ -160,6 +160,19 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
         }
     }
 
+    @Override
+    public Runnable getLastPollCommit() {
+        Runnable pollCommit = doGetLastPollCommit();
+        return () -> {
+            consumerLock.lock();
+            try {
+                pollCommit.run();
+            } finally {
+                consumerLock.unlock();
+            }
+        };
+    }
+
     @Override
     public void unsubscribe() {
         log.info("unsubscribe topic and stop consumer {}", getTopic());
@@ -185,6 +198,10 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected void doCommit();
 
+    protected Runnable doGetLastPollCommit() {
+        return this::doCommit;
+    }
+
     abstract protected void doUnsubscribe();
 
 }
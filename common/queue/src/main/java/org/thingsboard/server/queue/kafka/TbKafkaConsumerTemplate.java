@@ -21,6 +21,8 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.util.StopWatch;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueMsg;
@@ -30,8 +32,13 @@ import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Created by ashvayka on 24.09.18.
@@ -45,6 +52,8 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
 
     private final TbKafkaConsumerStatsService statsService;
     private final String groupId;
+    private Set<String> subscribedTopics = Collections.emptySet();
+    private Map<TopicPartition, OffsetAndMetadata> lastPollOffsets = Collections.emptyMap();
 
     @Builder
     private TbKafkaConsumerTemplate(TbKafkaSettings settings, TbKafkaDecoder<T> decoder,
@@ -71,6 +80,8 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
 
     @Override
     protected void doSubscribe(List<String> topicNames) {
+        subscribedTopics = new HashSet<>(topicNames);
+        lastPollOffsets = Collections.emptyMap();
         if (!topicNames.isEmpty()) {
             topicNames.forEach(admin::createTopicIfNotExists);
             log.info("subscribe topics {}", topicNames);
@@ -97,7 +108,12 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
             return Collections.emptyList();
         } else {
             List<ConsumerRecord<String, byte[]>> recordList = new ArrayList<>(256);
-            records.forEach(recordList::add);
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            records.forEach(record -> {
+                recordList.add(record);
+                offsets.put(new TopicPartition(record.topic(), record.partition()), new OffsetAndMetadata(record.offset() + 1));
+            });
+            lastPollOffsets = offsets;
             return recordList;
         }
     }
@@ -112,6 +128,27 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         consumer.commitSync();
     }
 
+    @Override
+    public boolean isCommitByPollSupported() {
+        return true;
+    }
+
+    @Override
+    protected Runnable doGetLastPollCommit() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = lastPollOffsets;
+        return () -> commitPollOffsets(offsets);
+    }
+
+    private void commitPollOffsets(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        // topics unsubscribed after the poll may be consumed by another node already, so their offsets are skipped
+        Map<TopicPartition, OffsetAndMetadata> subscribedOffsets = offsets.entrySet().stream()
+                .filter(entry -> subscribedTopics.contains(entry.getKey().topic()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (!subscribedOffsets.isEmpty()) {
+            consumer.commitSync(subscribedOffsets);
+        }
+    }
+
     @Override
     protected void doUnsubscribe() {
         log.info("unsubscribe topic and close consumer for topic {}", getTopic());
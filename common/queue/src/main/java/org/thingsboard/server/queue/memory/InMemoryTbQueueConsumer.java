@@ -97,6 +97,11 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
     public void commit() {
     }
 
+    @Override
+    public boolean isCommitByPollSupported() {
+        return true;
+    }
+
     @Override
     public boolean isStopped() {
         return stopped;
@@ -16,7 +16,9 @@
 package org.thingsboard.common.util;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 
 public class ThingsBoardExecutors {
 
@@ -47,4 +49,23 @@ public class ThingsBoardExecutors {
     public static ExecutorService newWorkStealingPool(int parallelism, Class clazz) {
         return newWorkStealingPool(parallelism, clazz.getSimpleName());
     }
+
+    /**
+     * Creates an executor that starts a new named virtual thread for each task.
+     * Virtual threads are resolved via reflection since the project targets Java 11.
+     *
+     * @param namePrefix used to define thread name
+     * @return the newly created executor or null if virtual threads are not supported by the current JVM
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-virtual-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
 }
@@ -30,6 +30,7 @@ import org.thingsboard.server.dao.service.Validator;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -69,6 +70,13 @@ public class BaseAttributesService implements AttributesService {
         return attributesDao.findAll(tenantId, entityId, scope);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<AttributeKvEntry>>> findByEntityIds(TenantId tenantId, List<EntityId> entityIds, String scope, Collection<String> attributeKeys) {
+        entityIds.forEach(entityId -> validate(entityId, scope));
+        attributeKeys.forEach(attributeKey -> Validator.validateString(attributeKey, "Incorrect attribute key " + attributeKey));
+        return attributesDao.findByEntityIds(tenantId, entityIds, scope, attributeKeys);
+    }
+
     @Override
     public List<String> findAllKeysByDeviceProfileId(TenantId tenantId, DeviceProfileId deviceProfileId) {
         return attributesDao.findAllKeysByDeviceProfileId(tenantId, deviceProfileId);
@@ -235,6 +235,16 @@ public interface DeviceDao extends Dao<Device>, TenantEntityDao {
 
     PageData<UUID> findDevicesIdsByDeviceProfileTransportType(DeviceTransportType transportType, PageLink pageLink);
 
+    /**
+     * Find devices of all tenants with ids greater than the given one, ordered by id.
+     * Used to walk the whole device table without the offset pagination.
+     *
+     * @param lastId the id of the last device of the previous batch
+     * @param limit the max number of devices to return
+     * @return the list of device objects
+     */
+    List<Device> findDevicesByIdGreaterThan(UUID lastId, int limit);
+
     /**
      * Find devices by tenantId, edgeId and page link.
      *
@@ -100,6 +100,7 @@ import static org.thingsboard.server.dao.model.ModelConstants.NULL_UUID;
 import static org.thingsboard.server.dao.service.Validator.validateId;
 import static org.thingsboard.server.dao.service.Validator.validateIds;
 import static org.thingsboard.server.dao.service.Validator.validatePageLink;
+import static org.thingsboard.server.dao.service.Validator.validatePositiveNumber;
 import static org.thingsboard.server.dao.service.Validator.validateString;
 
 @Service
@@ -648,6 +649,13 @@ public class DeviceServiceImpl extends AbstractEntityService implements DeviceSe
         return deviceDao.findDevicesIdsByDeviceProfileTransportType(transportType, pageLink);
     }
 
+    @Override
+    public List<Device> findDevicesByIdGreaterThan(DeviceId lastId, int limit) {
+        validatePositiveNumber(limit, "Incorrect limit " + limit);
+        // the zero uuid is the smallest one in the database order, unlike NULL_UUID
+        return deviceDao.findDevicesByIdGreaterThan(lastId != null ? lastId.getId() : new UUID(0L, 0L), limit);
+    }
+
     @Override
     public Device assignDeviceToEdge(TenantId tenantId, DeviceId deviceId, EdgeId edgeId) {
         Device device = findDeviceById(tenantId, deviceId);
@@ -28,8 +28,12 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,18 +42,111 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
 
     private final BlockingQueue<TbSqlQueueElement<E>> queue = new LinkedBlockingQueue<>();
     private final TbSqlBlockingQueueParams params;
+    private final Function<E, Integer> hashCodeFunction;
 
     private ExecutorService executor;
+    private ExecutorService[] flushExecutors;
+    private Semaphore flushPermits;
     private final MessagesStats stats;
+    private final AtomicInteger currentBatchSize = new AtomicInteger();
+
+    private final TbSqlWriteAheadBuffer<E> writeAheadBuffer;
+    private final Object spillLock = new Object();
+    private volatile boolean spilling;
+    private ExecutorService drainExecutor;
 
     public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
+        this(params, stats, null);
+    }
+
+    public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats, Function<E, Integer> hashCodeFunction) {
+        this(params, stats, hashCodeFunction, null);
+    }
+
+    public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats, Function<E, Integer> hashCodeFunction,
+                              TbSqlWriteAheadBuffer<E> writeAheadBuffer) {
         this.params = params;
         this.stats = stats;
+        this.hashCodeFunction = hashCodeFunction;
+        this.currentBatchSize.set(params.getBatchSize());
+        this.writeAheadBuffer = writeAheadBuffer;
     }
 
     @Override
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, int index) {
-        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
+        String threadName = "sql-queue-" + index + "-" + params.getLogName().toLowerCase();
+        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(threadName));
+        if (params.isAdaptiveBatchEnabled()) {
+            initAdaptive(saveFunction, batchUpdateComparator, threadName);
+        } else {
+            initFixed(saveFunction, batchUpdateComparator);
+        }
+        if (writeAheadBuffer != null) {
+            spilling = !writeAheadBuffer.isEmpty();
+            drainExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(threadName + "-wal"));
+            drainExecutor.submit(this::drainWriteAheadBuffer);
+        }
+
+        logExecutor.scheduleAtFixedRate(() -> {
+            if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
+                log.info("Queue-{} [{}] queueSize [{}] batchSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
+                        params.getLogName(), queue.size(), currentBatchSize.get(), stats.getTotal(), stats.getSuccessful(), stats.getFailed());
+                stats.reset();
+            }
+            if (writeAheadBuffer != null && (spilling || writeAheadBuffer.getSizeBytes() > 0)) {
+                log.info("Queue-{} [{}] writeAheadBufferSize [{}] bytes, drained [{}]", index,
+                        params.getLogName(), writeAheadBuffer.getSizeBytes(), writeAheadBuffer.getAndResetDrainedCount());
+            }
+        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves buffered elements back to the in-memory queue once it has room for them.
+     * New elements keep going to the buffer until it is empty, so the original order is preserved.
+     * The elements are removed from the buffer once they are saved, the elements that failed to be saved
+     * are moved to the queue again. The buffer is also forced to the disk once per force interval.
+     */
+    private void drainWriteAheadBuffer() {
+        String logName = params.getLogName();
+        int resumeThreshold = Math.max(1, params.getWriteAheadBufferSettings().getSpillThreshold() / 2);
+        long forceIntervalMs = params.getWriteAheadBufferSettings().getForceIntervalMs();
+        long lastForceTs = System.currentTimeMillis();
+        while (!Thread.interrupted()) {
+            try {
+                if (forceIntervalMs > 0 && System.currentTimeMillis() - lastForceTs >= forceIntervalMs) {
+                    writeAheadBuffer.force();
+                    lastForceTs = System.currentTimeMillis();
+                }
+                if (!spilling || queue.size() >= resumeThreshold) {
+                    Thread.sleep(params.getMaxDelay());
+                    continue;
+                }
+                int drained = 0;
+                synchronized (spillLock) {
+                    TbSqlQueueElement<E> element;
+                    while (drained < params.getBatchSize() && (element = writeAheadBuffer.poll()) != null) {
+                        queue.add(element);
+                        drained++;
+                    }
+                    if (writeAheadBuffer.isEmpty()) {
+                        spilling = false;
+                        log.info("[{}] Write-ahead buffer is drained", logName);
+                    }
+                }
+                if (drained == 0 && spilling) {
+                    // the rest of the elements are being saved
+                    Thread.sleep(params.getMaxDelay());
+                }
+            } catch (InterruptedException e) {
+                log.info("[{}] Write-ahead buffer draining was interrupted", logName);
+                break;
+            } catch (Exception e) {
+                log.error("[{}] Failed to drain write-ahead buffer", logName, e);
+            }
+        }
+    }
+
+    private void initFixed(Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
         executor.submit(() -> {
             String logName = params.getLogName();
             int batchSize = params.getBatchSize();
@@ -67,11 +164,7 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     queue.drainTo(entities, batchSize - 1);
                     boolean fullPack = entities.size() == batchSize;
                     log.debug("[{}] Going to save {} entities", logName, entities.size());
-                    Stream<E> entitiesStream = entities.stream().map(TbSqlQueueElement::getEntity);
-                    saveFunction.accept(
-                            (params.isBatchSortEnabled() ? entitiesStream.sorted(batchUpdateComparator) : entitiesStream)
-                                    .collect(Collectors.toList())
-                    );
+                    save(entities, saveFunction, batchUpdateComparator);
                     entities.forEach(v -> v.getFuture().set(null));
                     stats.incrementSuccessful(entities.size());
                     if (!fullPack) {
@@ -94,14 +187,171 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                 }
             }
         });
+    }
 
-        logExecutor.scheduleAtFixedRate(() -> {
-            if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
-                log.info("Queue-{} [{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
-                        params.getLogName(), queue.size(), stats.getTotal(), stats.getSuccessful(), stats.getFailed());
-                stats.reset();
+    /**
+     * Adaptive mode: the batch size is adjusted once per polled batch based on the flush latency and the queue depth,
+     * the poller does not wait for the rest of the max delay while the queue keeps refilling,
+     * and the batch may be split into several lanes that are flushed concurrently.
+     * Entities with the same hash code always go to the same lane, so their order is preserved.
+     * When the batch is split, the adjustment is made after the last lane is flushed using the slowest lane latency.
+     */
+    private void initAdaptive(Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator, String threadName) {
+        TbSqlBlockingQueueAdaptiveSettings settings = params.getAdaptiveSettings();
+        int maxBatchSize = params.getBatchSize();
+        int minBatchSize = Math.max(1, Math.min(settings.getMinBatchSize(), maxBatchSize));
+        int flushThreads = hashCodeFunction != null ? Math.max(1, settings.getFlushThreads()) : 1;
+        long targetFlushLatencyMs = settings.getTargetFlushLatencyMs();
+        currentBatchSize.set(minBatchSize);
+        if (flushThreads > 1) {
+            flushExecutors = new ExecutorService[flushThreads];
+            for (int i = 0; i < flushThreads; i++) {
+                flushExecutors[i] = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(threadName + "-flush-" + i));
             }
-        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+            flushPermits = new Semaphore(flushThreads * 2);
+        }
+        executor.submit(() -> {
+            String logName = params.getLogName();
+            long maxDelay = params.getMaxDelay();
+            while (!Thread.interrupted()) {
+                try {
+                    long currentTs = System.currentTimeMillis();
+                    TbSqlQueueElement<E> attr = queue.poll(maxDelay, TimeUnit.MILLISECONDS);
+                    if (attr == null) {
+                        continue;
+                    }
+                    int batchSize = currentBatchSize.get();
+                    List<TbSqlQueueElement<E>> entities = new ArrayList<>(batchSize);
+                    entities.add(attr);
+                    queue.drainTo(entities, batchSize - 1);
+                    boolean fullPack = entities.size() == batchSize;
+                    log.debug("[{}] Going to save {} entities", logName, entities.size());
+                    if (flushExecutors == null) {
+                        long flushLatencyMs = flush(entities, saveFunction, batchUpdateComparator);
+                        adjustBatchSize(flushLatencyMs, targetFlushLatencyMs, minBatchSize, maxBatchSize);
+                    } else {
+                        List<List<TbSqlQueueElement<E>>> lanes = splitByLanes(entities);
+                        BatchFlushTracker tracker = new BatchFlushTracker(lanes.size());
+                        for (List<TbSqlQueueElement<E>> lane : lanes) {
+                            flushPermits.acquire();
+                            flushExecutors[laneIndex(lane.get(0).getEntity())].execute(() -> {
+                                try {
+                                    if (tracker.onLaneFlushed(flush(lane, saveFunction, batchUpdateComparator))) {
+                                        adjustBatchSize(tracker.getMaxLatencyMs(), targetFlushLatencyMs, minBatchSize, maxBatchSize);
+                                    }
+                                } finally {
+                                    flushPermits.release();
+                                }
+                            });
+                        }
+                    }
+                    if (!fullPack && queue.size() < minBatchSize) {
+                        long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
+                        if (remainingDelay > 0) {
+                            Thread.sleep(remainingDelay);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    log.info("[{}] Queue polling was interrupted", logName);
+                    break;
+                } catch (Exception e) {
+                    log.error("[{}] Failed to process queue", logName, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return flush latency in milliseconds
+     */
+    private long flush(List<TbSqlQueueElement<E>> entities, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
+        long startTs = System.nanoTime();
+        try {
+            save(entities, saveFunction, batchUpdateComparator);
+            entities.forEach(v -> v.getFuture().set(null));
+            stats.incrementSuccessful(entities.size());
+        } catch (Exception e) {
+            stats.incrementFailed(entities.size());
+            entities.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(e));
+            log.error("[{}] Failed to save {} entities", params.getLogName(), entities.size(), e);
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs);
+    }
+
+    private void adjustBatchSize(long flushLatencyMs, long targetFlushLatencyMs, int minBatchSize, int maxBatchSize) {
+        int queueSize = queue.size();
+        currentBatchSize.updateAndGet(batchSize ->
+                nextBatchSize(batchSize, flushLatencyMs, targetFlushLatencyMs, queueSize, minBatchSize, maxBatchSize));
+    }
+
+    int getCurrentBatchSize() {
+        return currentBatchSize.get();
+    }
+
+    /**
+     * Halves the batch size when the flush is slower than the target latency
+     * and doubles it when the flush is fast enough but the queue has a backlog.
+     */
+    static int nextBatchSize(int batchSize, long flushLatencyMs, long targetFlushLatencyMs, int queueSize, int minBatchSize, int maxBatchSize) {
+        if (flushLatencyMs > targetFlushLatencyMs) {
+            return Math.max(minBatchSize, batchSize / 2);
+        } else if (queueSize >= batchSize) {
+            return (int) Math.min(maxBatchSize, batchSize * 2L);
+        } else {
+            return batchSize;
+        }
+    }
+
+    /**
+     * Collects the flush latencies of the lanes of one polled batch.
+     */
+    static class BatchFlushTracker {
+
+        private final AtomicInteger pendingLanes;
+        private final AtomicLong maxLatencyMs = new AtomicLong();
+
+        BatchFlushTracker(int lanes) {
+            this.pendingLanes = new AtomicInteger(lanes);
+        }
+
+        /**
+         * @return true if it was the last lane of the batch
+         */
+        boolean onLaneFlushed(long latencyMs) {
+            maxLatencyMs.accumulateAndGet(latencyMs, Math::max);
+            return pendingLanes.decrementAndGet() == 0;
+        }
+
+        long getMaxLatencyMs() {
+            return maxLatencyMs.get();
+        }
+    }
+
+    private List<List<TbSqlQueueElement<E>>> splitByLanes(List<TbSqlQueueElement<E>> entities) {
+        List<List<TbSqlQueueElement<E>>> lanes = new ArrayList<>(flushExecutors.length);
+        for (int i = 0; i < flushExecutors.length; i++) {
+            lanes.add(new ArrayList<>());
+        }
+        for (TbSqlQueueElement<E> element : entities) {
+            lanes.get(laneIndex(element.getEntity())).add(element);
+        }
+        lanes.removeIf(List::isEmpty);
+        return lanes;
+    }
+
+    private int laneIndex(E entity) {
+        // The wrapper already partitions entities by hash code modulo the number of queues, so the hash is mixed
+        // to avoid putting all entities of this queue into the same lane.
+        int hash = entity != null ? hashCodeFunction.apply(entity) * 0x9E3779B9 : 0;
+        return (hash >>> 16) % flushExecutors.length;
+    }
+
+    private void save(List<TbSqlQueueElement<E>> entities, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
+        Stream<E> entitiesStream = entities.stream().map(TbSqlQueueElement::getEntity);
+        saveFunction.accept(
+                (params.isBatchSortEnabled() ? entitiesStream.sorted(batchUpdateComparator) : entitiesStream)
+                        .collect(Collectors.toList())
+        );
     }
 
     @Override
@@ -109,13 +359,41 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
         if (executor != null) {
             executor.shutdownNow();
         }
+        if (flushExecutors != null) {
+            for (ExecutorService flushExecutor : flushExecutors) {
+                flushExecutor.shutdownNow();
+            }
+        }
+        if (drainExecutor != null) {
+            drainExecutor.shutdownNow();
+        }
+        if (writeAheadBuffer != null) {
+            writeAheadBuffer.close();
+        }
     }
 
     @Override
     public ListenableFuture<Void> add(E element) {
         SettableFuture<Void> future = SettableFuture.create();
-        queue.add(new TbSqlQueueElement<>(future, element));
         stats.incrementTotal();
+        if (writeAheadBuffer != null && (spilling || queue.size() >= params.getWriteAheadBufferSettings().getSpillThreshold())) {
+            synchronized (spillLock) {
+                if (spilling || queue.size() >= params.getWriteAheadBufferSettings().getSpillThreshold()) {
+                    if (!spilling) {
+                        log.warn("[{}] Queue size reached {}, spilling new elements to the write-ahead buffer", params.getLogName(), queue.size());
+                        spilling = true;
+                    }
+                    if (writeAheadBuffer.append(element)) {
+                        future.set(null);
+                    } else {
+                        stats.incrementFailed();
+                        future.setException(new IllegalStateException("Write-ahead buffer of the " + params.getLogName() + " queue is full"));
+                    }
+                    return future;
+                }
+            }
+        }
+        queue.add(new TbSqlQueueElement<>(future, element));
         return future;
     }
 }
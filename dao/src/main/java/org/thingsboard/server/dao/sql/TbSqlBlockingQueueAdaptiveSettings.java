@@ -0,0 +1,38 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+public class TbSqlBlockingQueueAdaptiveSettings {
+
+    @Value("${sql.adaptive_batch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${sql.adaptive_batch.min_batch_size:100}")
+    private int minBatchSize;
+
+    @Value("${sql.adaptive_batch.target_flush_latency_ms:100}")
+    private long targetFlushLatencyMs;
+
+    @Value("${sql.adaptive_batch.flush_threads:1}")
+    private int flushThreads;
+
+}
@@ -32,4 +32,14 @@ public class TbSqlBlockingQueueParams {
     private final long statsPrintIntervalMs;
     private final String statsNamePrefix;
     private final boolean batchSortEnabled;
+    private final TbSqlBlockingQueueAdaptiveSettings adaptiveSettings;
+    private final TbSqlWriteAheadBufferSettings writeAheadBufferSettings;
+
+    public boolean isAdaptiveBatchEnabled() {
+        return adaptiveSettings != null && adaptiveSettings.isEnabled();
+    }
+
+    public boolean isWriteAheadBufferEnabled() {
+        return writeAheadBufferSettings != null && writeAheadBufferSettings.isEnabled();
+    }
 }
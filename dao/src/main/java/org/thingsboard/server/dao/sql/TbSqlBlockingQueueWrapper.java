@@ -21,6 +21,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.stats.MessagesStats;
 import org.thingsboard.server.common.stats.StatsFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -46,14 +49,36 @@ public class TbSqlBlockingQueueWrapper<E> {
      *                               NOTE: you must use all of primary key parts in your comparator
      */
     public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator) {
+        init(logExecutor, saveFunction, batchUpdateComparator, null);
+    }
+
+    /**
+     * Starts TbSqlBlockingQueues backed by the write-ahead buffer if it is enabled.
+     *
+     * @param  codec codec to store entities in the write-ahead buffer, buffer is not used if null
+     */
+    public void init(ScheduledLogExecutorComponent logExecutor, Consumer<List<E>> saveFunction, Comparator<E> batchUpdateComparator,
+                     TbSqlQueueElementCodec<E> codec) {
         for (int i = 0; i < maxThreads; i++) {
             MessagesStats stats = statsFactory.createMessagesStats(params.getStatsNamePrefix() + ".queue." + i);
-            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats);
+            TbSqlWriteAheadBuffer<E> writeAheadBuffer = codec != null && params.isWriteAheadBufferEnabled() ? createWriteAheadBuffer(codec, i) : null;
+            TbSqlBlockingQueue<E> queue = new TbSqlBlockingQueue<>(params, stats, hashCodeFunction, writeAheadBuffer);
             queues.add(queue);
             queue.init(logExecutor, saveFunction, batchUpdateComparator, i);
         }
     }
 
+    private TbSqlWriteAheadBuffer<E> createWriteAheadBuffer(TbSqlQueueElementCodec<E> codec, int index) {
+        String name = params.getStatsNamePrefix() + ".queue." + index;
+        Path dir = Paths.get(params.getWriteAheadBufferSettings().getDir(), name);
+        try {
+            return new TbSqlWriteAheadBuffer<>(name, dir, params.getWriteAheadBufferSettings(), codec, statsFactory);
+        } catch (IOException e) {
+            log.error("[{}] Failed to open write-ahead buffer in {}, the queue will work without it", params.getLogName(), dir, e);
+            return null;
+        }
+    }
+
     public ListenableFuture<Void> add(E element) {
         int queueIndex = element != null ? (hashCodeFunction.apply(element) & 0x7FFFFFFF) % maxThreads : 0;
         return queues.get(queueIndex).add(element);
@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk buffer of the queue elements that do not fit into the in-memory queue while the database is slow.
+ */
+@Slf4j
+public class TbSqlWriteAheadBuffer<E> {
+
+    private static final String STATS_NAME = "sqlWriteAheadBuffer";
+
+    private final String name;
+    private final TbSqlWriteAheadLog wal;
+    private final TbSqlQueueElementCodec<E> codec;
+    private final AtomicLong sizeBytes;
+    private final AtomicLong sizeRecords;
+    private final DefaultCounter appendedCounter;
+    private final DefaultCounter drainedCounter;
+    private final DefaultCounter retriedCounter;
+    private final DefaultCounter rejectedCounter;
+
+    public TbSqlWriteAheadBuffer(String name, Path dir, TbSqlWriteAheadBufferSettings settings,
+                                 TbSqlQueueElementCodec<E> codec, StatsFactory statsFactory) throws IOException {
+        this.name = name;
+        this.codec = codec;
+        this.wal = new TbSqlWriteAheadLog(dir, (int) Math.min(Integer.MAX_VALUE, settings.getSegmentSizeMb() * 1024L * 1024L), settings.getMaxSegments());
+        this.sizeBytes = statsFactory.createGauge(STATS_NAME + ".size", new AtomicLong(), "queue", name, "unit", "bytes");
+        this.sizeRecords = statsFactory.createGauge(STATS_NAME + ".size", new AtomicLong(), "queue", name, "unit", "records");
+        this.appendedCounter = statsFactory.createDefaultCounter(STATS_NAME, "queue", name, "result", "appended");
+        this.drainedCounter = statsFactory.createDefaultCounter(STATS_NAME, "queue", name, "result", "drained");
+        this.retriedCounter = statsFactory.createDefaultCounter(STATS_NAME, "queue", name, "result", "retried");
+        this.rejectedCounter = statsFactory.createDefaultCounter(STATS_NAME, "queue", name, "result", "rejected");
+        updateSize();
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean append(E element) {
+        boolean appended;
+        try {
+            appended = wal.append(codec.encode(element));
+        } catch (IOException e) {
+            log.error("[{}] Failed to append element to the write-ahead buffer", name, e);
+            appended = false;
+        }
+        if (appended) {
+            appendedCounter.increment();
+        } else {
+            rejectedCounter.increment();
+        }
+        updateSize();
+        return appended;
+    }
+
+    /**
+     * @return the oldest buffered element or null if the buffer is empty. The element is removed from the buffer
+     * only when its future succeeds, otherwise it is returned again by one of the next polls.
+     */
+    public TbSqlQueueElement<E> poll() {
+        TbSqlWriteAheadLog.Record record;
+        while ((record = wal.poll()) != null) {
+            E element;
+            try {
+                element = codec.decode(record.getData());
+            } catch (Exception e) {
+                log.error("[{}] Failed to decode buffered element, skipping it", name, e);
+                wal.commit(record);
+                continue;
+            }
+            drainedCounter.increment();
+            updateSize();
+            SettableFuture<Void> future = SettableFuture.create();
+            Futures.addCallback(future, new RecordCallback(record), MoreExecutors.directExecutor());
+            return new TbSqlQueueElement<>(future, element);
+        }
+        updateSize();
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return wal.isEmpty();
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes.get();
+    }
+
+    public int getAndResetDrainedCount() {
+        int drained = drainedCounter.get();
+        drainedCounter.clear();
+        return drained;
+    }
+
+    public void force() {
+        wal.force();
+    }
+
+    public void close() {
+        wal.close();
+    }
+
+    private void updateSize() {
+        sizeBytes.set(wal.getPendingBytes());
+        sizeRecords.set(wal.getPendingRecords());
+    }
+
+    private class RecordCallback implements FutureCallback<Void> {
+
+        private final TbSqlWriteAheadLog.Record record;
+
+        private RecordCallback(TbSqlWriteAheadLog.Record record) {
+            this.record = record;
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            wal.commit(record);
+            updateSize();
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            retriedCounter.increment();
+            wal.rollback(record);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+public class TbSqlWriteAheadBufferSettings {
+
+    @Value("${sql.write_ahead_buffer.enabled:false}")
+    private boolean enabled;
+
+    @Value("${sql.write_ahead_buffer.dir:${java.io.tmpdir}/thingsboard/sql-wal}")
+    private String dir;
+
+    @Value("${sql.write_ahead_buffer.segment_size_mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${sql.write_ahead_buffer.max_segments:16}")
+    private int maxSegments;
+
+    @Value("${sql.write_ahead_buffer.spill_threshold:100000}")
+    private int spillThreshold;
+
+    @Value("${sql.write_ahead_buffer.force_interval_ms:1000}")
+    private long forceIntervalMs;
+
+}
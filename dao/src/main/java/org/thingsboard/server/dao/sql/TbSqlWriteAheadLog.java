@@ -0,0 +1,360 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records stored in memory-mapped segment files of the fixed size.
+ * <p>
+ * Each record is written as [length][crc32][payload]. The length is written last,
+ * so a record interrupted by a crash is seen as the end of the segment on recovery.
+ * Polled records stay in the log until they are committed, records that failed to be processed
+ * are rolled back and polled again. A segment is deleted once all its records are committed.
+ * Segments left by the previous run are read first, new records always go to a new segment.
+ * <p>
+ * The segments are written to the page cache only, so the records survive a crash of the process,
+ * but the records appended or committed after the last {@link #force()} may be lost on a crash of the host.
+ */
+@Slf4j
+public class TbSqlWriteAheadLog {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Deque<Record> rolledBack = new ArrayDeque<>();
+    private long nextSegmentId;
+    private long pendingRecords;
+    private long pendingBytes;
+
+    public TbSqlWriteAheadLog(Path dir, int segmentSize, int maxSegments) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(1, maxSegments);
+        Files.createDirectories(dir);
+        for (Path file : listSegmentFiles()) {
+            Segment segment = openSegment(file, segmentId(file), false);
+            segment.writable = false;
+            recover(segment);
+            segments.add(segment);
+            nextSegmentId = segment.id + 1;
+        }
+        if (pendingRecords > 0) {
+            log.info("[{}] Recovered {} records ({} bytes) from {} segments", dir, pendingRecords, pendingBytes, segments.size());
+        }
+    }
+
+    /**
+     * @return false if the log has reached the max number of segments or the record is larger than a segment
+     */
+    public synchronized boolean append(byte[] record) throws IOException {
+        if (record.length == 0) {
+            throw new IllegalArgumentException("Empty records are not supported");
+        }
+        int recordSize = HEADER_SIZE + record.length;
+        if (recordSize + Integer.BYTES > segmentSize) {
+            return false;
+        }
+        Segment segment = segments.peekLast();
+        if (segment == null || !segment.writable || segment.writePosition + recordSize + Integer.BYTES > segmentSize) {
+            if (segment != null && segment.writable) {
+                segment.buffer.putInt(segment.writePosition, END_OF_SEGMENT);
+                segment.writable = false;
+                segment.dirty = true;
+                removeIfDone(segment);
+            }
+            if (segments.size() >= maxSegments) {
+                return false;
+            }
+            segment = openSegment(dir.resolve(SEGMENT_PREFIX + nextSegmentId + SEGMENT_SUFFIX), nextSegmentId, true);
+            nextSegmentId++;
+            segments.add(segment);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        int position = segment.writePosition;
+        segment.buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        ByteBuffer payload = segment.buffer.duplicate();
+        payload.position(position + HEADER_SIZE);
+        payload.put(record);
+        segment.buffer.putInt(position, record.length);
+        segment.writePosition = position + recordSize;
+        segment.pendingRecords++;
+        segment.pendingBytes += recordSize;
+        segment.dirty = true;
+        pendingRecords++;
+        pendingBytes += recordSize;
+        return true;
+    }
+
+    /**
+     * @return the oldest rolled back record, otherwise the oldest record that was not polled yet, or null if there are none.
+     * The record stays in the log until it is committed.
+     */
+    public synchronized Record poll() {
+        Record rolledBackRecord = rolledBack.pollFirst();
+        if (rolledBackRecord != null) {
+            return rolledBackRecord;
+        }
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.fullyRead) {
+                continue;
+            }
+            while (true) {
+                int position = segment.readPosition;
+                int length = position + Integer.BYTES <= segmentSize ? segment.buffer.getInt(position) : END_OF_SEGMENT;
+                if (length < END_OF_SEGMENT) {
+                    segment.readPosition = position + HEADER_SIZE + consumed(length);
+                    continue;
+                }
+                if (length == 0 && segment.writable) {
+                    return null;
+                }
+                if (length > 0 && position + HEADER_SIZE + length <= segmentSize) {
+                    int checksum = segment.buffer.getInt(position + Integer.BYTES);
+                    byte[] data = new byte[length];
+                    ByteBuffer payload = segment.buffer.duplicate();
+                    payload.position(position + HEADER_SIZE);
+                    payload.get(data);
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    if ((int) crc.getValue() == checksum) {
+                        segment.readPosition = position + HEADER_SIZE + length;
+                        segment.inFlightRecords++;
+                        segment.inFlightBytes += HEADER_SIZE + length;
+                        return new Record(segment, position, data);
+                    }
+                    log.warn("[{}] Checksum mismatch in segment {} at position {}, skipping the rest of the segment", dir, segment.id, position);
+                }
+                break;
+            }
+            // records that were not read are lost, the polled ones are removed once committed
+            long unreadRecords = segment.pendingRecords - segment.inFlightRecords;
+            long unreadBytes = segment.pendingBytes - segment.inFlightBytes;
+            segment.pendingRecords -= unreadRecords;
+            segment.pendingBytes -= unreadBytes;
+            pendingRecords -= unreadRecords;
+            pendingBytes -= unreadBytes;
+            segment.fullyRead = true;
+            segment.writable = false;
+            if (deleteIfDone(segment)) {
+                iterator.remove();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the polled record as processed, so it is not replayed after restart.
+     */
+    public synchronized void commit(Record record) {
+        Segment segment = record.segment;
+        int recordSize = HEADER_SIZE + record.data.length;
+        segment.buffer.putInt(record.position, consumed(record.data.length));
+        segment.dirty = true;
+        segment.inFlightRecords--;
+        segment.inFlightBytes -= recordSize;
+        segment.pendingRecords--;
+        segment.pendingBytes -= recordSize;
+        pendingRecords--;
+        pendingBytes -= recordSize;
+        removeIfDone(segment);
+    }
+
+    /**
+     * Returns the polled record to the log, so it is polled again before the records that were not polled yet.
+     */
+    public synchronized void rollback(Record record) {
+        rolledBack.addLast(record);
+    }
+
+    /**
+     * Flushes the changes of the segments to the storage device.
+     */
+    public void force() {
+        List<Segment> dirtySegments = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment.dirty) {
+                    segment.dirty = false;
+                    dirtySegments.add(segment);
+                }
+            }
+        }
+        for (Segment segment : dirtySegments) {
+            segment.buffer.force();
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    public synchronized long getPendingRecords() {
+        return pendingRecords;
+    }
+
+    public synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    private void recover(Segment segment) {
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = segment.buffer.getInt(position);
+            if (length < END_OF_SEGMENT) {
+                position += HEADER_SIZE + consumed(length);
+                continue;
+            }
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer payload = segment.buffer.duplicate();
+            payload.position(position + HEADER_SIZE);
+            payload.get(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            if ((int) crc.getValue() != segment.buffer.getInt(position + Integer.BYTES)) {
+                log.warn("[{}] Checksum mismatch in segment {} at position {}, the rest of the segment is ignored", dir, segment.id, position);
+                break;
+            }
+            segment.pendingRecords++;
+            segment.pendingBytes += HEADER_SIZE + length;
+            position += HEADER_SIZE + length;
+        }
+        pendingRecords += segment.pendingRecords;
+        pendingBytes += segment.pendingBytes;
+    }
+
+    private void removeIfDone(Segment segment) {
+        if (deleteIfDone(segment)) {
+            segments.remove(segment);
+        }
+    }
+
+    private boolean deleteIfDone(Segment segment) {
+        if (segment.writable || segment.pendingRecords > 0) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to delete segment {}", dir, segment.file, e);
+        }
+        return true;
+    }
+
+    private Segment openSegment(Path file, long id, boolean create) throws IOException {
+        StandardOpenOption[] options = create ?
+                new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE} :
+                new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return new Segment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> result = files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).collect(Collectors.toCollection(ArrayList::new));
+            result.sort((a, b) -> Long.compare(segmentId(a), segmentId(b)));
+            return result;
+        }
+    }
+
+    /**
+     * Committed records are marked by flipping the length to a negative value below {@link #END_OF_SEGMENT},
+     * so they are not replayed after restart. The same call restores the original length.
+     */
+    private static int consumed(int length) {
+        return -length - 1;
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    public static final class Record {
+        private final Segment segment;
+        private final int position;
+        private final byte[] data;
+
+        private Record(Segment segment, int position, byte[] data) {
+            this.segment = segment;
+            this.position = position;
+            this.data = data;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private boolean writable = true;
+        private boolean fullyRead;
+        private boolean dirty;
+        private int writePosition;
+        private int readPosition;
+        private long pendingRecords;
+        private long pendingBytes;
+        private long inFlightRecords;
+        private long inFlightBytes;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.attributes;
+
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Encodes attribute rows into the PostgreSQL binary COPY format.
+ * Columns are written in the order of {@link #COLUMNS}.
+ */
+public final class AttributeKvBinaryCopyWriter {
+
+    public static final String COLUMNS = "entity_type, entity_id, attribute_type, attribute_key, bool_v, str_v, long_v, dbl_v, json_v, last_update_ts";
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 10;
+    private static final int NULL_LENGTH = -1;
+
+    private AttributeKvBinaryCopyWriter() {
+    }
+
+    public static byte[] write(List<AttributeKvEntity> entities, UnaryOperator<String> stringConverter) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entities.size() * 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+            for (AttributeKvEntity entity : entities) {
+                out.writeShort(FIELD_COUNT);
+                writeString(out, entity.getId().getEntityType().name());
+                out.writeInt(16);
+                out.writeLong(entity.getId().getEntityId().getMostSignificantBits());
+                out.writeLong(entity.getId().getEntityId().getLeastSignificantBits());
+                writeString(out, entity.getId().getAttributeType());
+                writeString(out, entity.getId().getAttributeKey());
+                if (entity.getBooleanValue() != null) {
+                    out.writeInt(1);
+                    out.writeByte(entity.getBooleanValue() ? 1 : 0);
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+                writeString(out, stringConverter.apply(entity.getStrValue()));
+                if (entity.getLongValue() != null) {
+                    out.writeInt(8);
+                    out.writeLong(entity.getLongValue());
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+                if (entity.getDoubleValue() != null) {
+                    out.writeInt(8);
+                    out.writeDouble(entity.getDoubleValue());
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+                // binary representation of json is the same as the text one
+                writeString(out, stringConverter.apply(entity.getJsonValue()));
+                if (entity.getLastUpdateTs() != null) {
+                    out.writeInt(8);
+                    out.writeLong(entity.getLastUpdateTs());
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode attributes for COPY", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value != null) {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        } else {
+            out.writeInt(NULL_LENGTH);
+        }
+    }
+}
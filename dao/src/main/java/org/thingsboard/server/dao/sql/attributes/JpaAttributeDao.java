@@ -16,6 +16,7 @@
 package org.thingsboard.server.dao.sql.attributes;
 
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AtomicDouble;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
@@ -27,6 +28,7 @@ import org.thingsboard.server.common.data.id.DeviceProfileId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.stats.DefaultCounter;
 import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.attributes.AttributesDao;
@@ -34,15 +36,22 @@ import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
 import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueAdaptiveSettings;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -50,6 +59,8 @@ import java.util.stream.Collectors;
 @Slf4j
 public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService implements AttributesDao {
 
+    private static final String BATCH_STATS_NAME = "attributesBatch";
+
     @Autowired
     ScheduledLogExecutorComponent logExecutor;
 
@@ -62,6 +73,9 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Autowired
     private StatsFactory statsFactory;
 
+    @Autowired
+    private TbSqlBlockingQueueAdaptiveSettings adaptiveSettings;
+
     @Value("${sql.attributes.batch_size:1000}")
     private int batchSize;
 
@@ -79,6 +93,11 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
 
     private TbSqlBlockingQueueWrapper<AttributeKvEntity> queue;
 
+    private DefaultCounter receivedAttributesCounter;
+    private DefaultCounter savedAttributesCounter;
+    private AtomicLong lastBatchSize;
+    private AtomicDouble lastBatchDedupRatio;
+
     @PostConstruct
     private void init() {
         TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
@@ -88,11 +107,17 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                 .statsPrintIntervalMs(statsPrintIntervalMs)
                 .statsNamePrefix("attributes")
                 .batchSortEnabled(batchSortEnabled)
+                .adaptiveSettings(adaptiveSettings)
                 .build();
 
+        receivedAttributesCounter = statsFactory.createDefaultCounter(BATCH_STATS_NAME, "result", "received");
+        savedAttributesCounter = statsFactory.createDefaultCounter(BATCH_STATS_NAME, "result", "saved");
+        lastBatchSize = statsFactory.createGauge(BATCH_STATS_NAME + ".size", new AtomicLong());
+        lastBatchDedupRatio = statsFactory.createGauge(BATCH_STATS_NAME + ".dedupRatio", new AtomicDouble());
+
         Function<AttributeKvEntity, Integer> hashcodeFunction = entity -> entity.getId().getEntityId().hashCode();
         queue = new TbSqlBlockingQueueWrapper<>(params, hashcodeFunction, batchThreads, statsFactory);
-        queue.init(logExecutor, v -> attributeKvInsertRepository.saveOrUpdate(v),
+        queue.init(logExecutor, v -> attributeKvInsertRepository.saveOrUpdate(removeDuplicates(v)),
                 Comparator.comparing((AttributeKvEntity attributeKvEntity) -> attributeKvEntity.getId().getEntityId())
                         .thenComparing(attributeKvEntity -> attributeKvEntity.getId().getEntityType().name())
                         .thenComparing(attributeKvEntity -> attributeKvEntity.getId().getAttributeType())
@@ -100,6 +125,22 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
         );
     }
 
+    /**
+     * Keeps only the last value of each attribute in the batch, like the sequential updates would leave it.
+     * Entities of the same entity always go to the same queue in the order they were added.
+     */
+    private List<AttributeKvEntity> removeDuplicates(List<AttributeKvEntity> entities) {
+        Map<AttributeKvCompositeKey, AttributeKvEntity> unique = new LinkedHashMap<>(entities.size() * 2);
+        for (AttributeKvEntity entity : entities) {
+            unique.put(entity.getId(), entity);
+        }
+        receivedAttributesCounter.add(entities.size());
+        savedAttributesCounter.add(unique.size());
+        lastBatchSize.set(entities.size());
+        lastBatchDedupRatio.set(1.0 - (double) unique.size() / entities.size());
+        return unique.size() == entities.size() ? entities : new ArrayList<>(unique.values());
+    }
+
     @PreDestroy
     private void destroy() {
         if (queue != null) {
@@ -137,6 +178,24 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                                 attributeType))));
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<AttributeKvEntry>>> findByEntityIds(TenantId tenantId, List<EntityId> entityIds, String attributeType, Collection<String> attributeKeys) {
+        Map<EntityId, List<AttributeKvEntry>> result = new HashMap<>();
+        if (entityIds.isEmpty() || attributeKeys.isEmpty()) {
+            return Futures.immediateFuture(result);
+        }
+        Map<EntityType, Map<UUID, EntityId>> entityIdsByType = new HashMap<>();
+        entityIds.forEach(entityId -> entityIdsByType.computeIfAbsent(entityId.getEntityType(), type -> new HashMap<>()).put(entityId.getId(), entityId));
+        entityIdsByType.forEach((entityType, ids) -> {
+            List<AttributeKvEntity> entities = attributeKvRepository.findAllByEntityTypeAndEntityIdsAndAttributeTypeAndAttributeKeys(
+                    entityType, ids.keySet(), attributeType, attributeKeys);
+            for (AttributeKvEntity entity : entities) {
+                result.computeIfAbsent(ids.get(entity.getId().getEntityId()), id -> new ArrayList<>()).add(entity.toData());
+            }
+        });
+        return Futures.immediateFuture(result);
+    }
+
     @Override
     public List<String> findAllKeysByDeviceProfileId(TenantId tenantId, DeviceProfileId deviceProfileId) {
         if (deviceProfileId != null) {
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.attributes;
+
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+import org.thingsboard.server.dao.sqlts.insert.AbstractCopyInsertRepository;
+import org.thingsboard.server.dao.util.PsqlDao;
+
+import java.util.List;
+
+@PsqlDao
+@Repository
+public class PsqlAttributesCopyRepository extends AbstractCopyInsertRepository {
+
+    private static final String STAGING_TABLE = "attribute_kv_copy";
+    private static final String COLUMNS = AttributeKvBinaryCopyWriter.COLUMNS;
+
+    private static final String MERGE_QUERY = "INSERT INTO attribute_kv (" + COLUMNS + ") " +
+            "SELECT " + COLUMNS + " FROM " + STAGING_TABLE + " ORDER BY entity_type, entity_id, attribute_type, attribute_key " +
+            "ON CONFLICT (entity_type, entity_id, attribute_type, attribute_key) DO UPDATE SET bool_v = EXCLUDED.bool_v, " +
+            "str_v = EXCLUDED.str_v, long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v, " +
+            "last_update_ts = EXCLUDED.last_update_ts";
+
+    /**
+     * The batch must not contain the same attribute twice.
+     */
+    public void saveOrUpdate(List<AttributeKvEntity> entities) {
+        copyAndMerge(STAGING_TABLE, "attribute_kv", COLUMNS, entities, AttributeKvBinaryCopyWriter::write, MERGE_QUERY);
+    }
+}
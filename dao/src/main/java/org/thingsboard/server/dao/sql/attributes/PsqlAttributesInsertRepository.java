@@ -15,13 +15,36 @@
  */
 package org.thingsboard.server.dao.sql.attributes;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
 import org.thingsboard.server.dao.util.PsqlDao;
 
+import java.util.List;
+
 @PsqlDao
 @Repository
 @Transactional
 public class PsqlAttributesInsertRepository extends AttributeKvInsertRepository {
 
-}
\ No newline at end of file
+    @Autowired
+    private PsqlAttributesCopyRepository copyRepository;
+
+    @Value("${sql.attributes.copy_threshold:0}")
+    private int copyThreshold;
+
+    /**
+     * Big batches are written with COPY FROM STDIN into a temporary staging table and merged into attribute_kv
+     * with a single INSERT ... SELECT ... ON CONFLICT statement. The batch must not contain the same attribute twice.
+     */
+    @Override
+    protected void saveOrUpdate(List<AttributeKvEntity> entities) {
+        if (copyThreshold <= 0 || entities.size() < copyThreshold) {
+            super.saveOrUpdate(entities);
+        } else {
+            copyRepository.saveOrUpdate(entities);
+        }
+    }
+}
@@ -244,4 +244,7 @@ public interface DeviceRepository extends JpaRepository<DeviceEntity, UUID> {
             "INNER JOIN DeviceProfileEntity p ON d.deviceProfileId = p.id " +
             "WHERE p.transportType = :transportType")
     Page<UUID> findIdsByDeviceProfileTransportType(@Param("transportType") DeviceTransportType transportType, Pageable pageable);
+
+    @Query("SELECT d FROM DeviceEntity d WHERE d.id > :lastId ORDER BY d.id")
+    List<DeviceEntity> findByIdGreaterThan(@Param("lastId") UUID lastId, Pageable pageable);
 }
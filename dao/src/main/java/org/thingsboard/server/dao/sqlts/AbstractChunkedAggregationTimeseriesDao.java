@@ -34,8 +34,10 @@ import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueAdaptiveSettings;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.thingsboard.server.dao.sql.TbSqlWriteAheadBufferSettings;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
 import org.thingsboard.server.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
@@ -60,6 +62,12 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     private StatsFactory statsFactory;
 
+    @Autowired
+    private TbSqlBlockingQueueAdaptiveSettings adaptiveSettings;
+
+    @Autowired
+    private TbSqlWriteAheadBufferSettings writeAheadBufferSettings;
+
     @PostConstruct
     protected void init() {
         TbSqlBlockingQueueParams tsParams = TbSqlBlockingQueueParams.builder()
@@ -69,17 +77,24 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts")
                 .batchSortEnabled(batchSortEnabled)
+                .adaptiveSettings(adaptiveSettings)
+                .writeAheadBufferSettings(writeAheadBufferSettings)
                 .build();
 
         Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
         tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, hashcodeFunction, tsBatchThreads, statsFactory);
-        tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v),
+        tsQueue.init(logExecutor, this::saveBatch,
                 Comparator.comparing((Function<TsKvEntity, UUID>) AbstractTsKvEntity::getEntityId)
                         .thenComparing(AbstractTsKvEntity::getKey)
-                        .thenComparing(AbstractTsKvEntity::getTs)
+                        .thenComparing(AbstractTsKvEntity::getTs),
+                new TsKvEntityCodec<>(TsKvEntity::new)
                 );
     }
 
+    protected void saveBatch(List<TsKvEntity> entities) {
+        insertRepository.saveOrUpdate(entities);
+    }
+
     @PreDestroy
     protected void destroy() {
         if (tsQueue != null) {
@@ -119,17 +134,21 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         if (query.getAggregation() == Aggregation.NONE) {
             return findAllAsyncWithLimit(entityId, query);
         } else {
-            long stepTs = query.getStartTs();
-            List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
-            while (stepTs < query.getEndTs()) {
-                long startTs = stepTs;
-                long endTs = stepTs + query.getInterval();
-                long ts = startTs + (endTs - startTs) / 2;
-                futures.add(findAndAggregateAsync(entityId, query.getKey(), startTs, endTs, ts, query.getAggregation()));
-                stepTs = endTs;
-            }
-            return getTskvEntriesFuture(Futures.allAsList(futures));
+            return findAllAndAggregateAsync(entityId, query);
+        }
+    }
+
+    protected ListenableFuture<List<TsKvEntry>> findAllAndAggregateAsync(EntityId entityId, ReadTsKvQuery query) {
+        long stepTs = query.getStartTs();
+        List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
+        while (stepTs < query.getEndTs()) {
+            long startTs = stepTs;
+            long endTs = stepTs + query.getInterval();
+            long ts = startTs + (endTs - startTs) / 2;
+            futures.add(findAndAggregateAsync(entityId, query.getKey(), startTs, endTs, ts, query.getAggregation()));
+            stepTs = endTs;
         }
+        return getTskvEntriesFuture(Futures.allAsList(futures));
     }
 
     private ListenableFuture<List<TsKvEntry>> findAllAsyncWithLimit(EntityId entityId, ReadTsKvQuery query) {
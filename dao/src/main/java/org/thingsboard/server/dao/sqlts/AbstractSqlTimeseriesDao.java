@@ -26,6 +26,7 @@ import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
 
 import javax.annotation.Nullable;
@@ -33,9 +34,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -43,6 +46,9 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
 
     protected static final long SECONDS_IN_DAY = TimeUnit.DAYS.toSeconds(1);
 
+    private static final String STREAM_QUERY = "SELECT ts, bool_v, str_v, long_v, dbl_v, json_v FROM ts_kv " +
+            "WHERE entity_id = ? AND key = ? AND ts >= ? AND ts < ? ORDER BY ts ASC LIMIT ?";
+
     @Autowired
     protected ScheduledLogExecutorComponent logExecutor;
 
@@ -67,6 +73,53 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
     @Value("${sql.ttl.ts.ts_key_value_ttl:0}")
     private long systemTtl;
 
+    @Value("${sql.ts.stream_fetch_size:1000}")
+    protected int tsStreamFetchSize;
+
+    /**
+     * Reads the values in chunks of stream fetch size rows. Each chunk is a separate keyset query that starts after
+     * the last ts of the previous chunk, so no connection or transaction is held while the consumer handles the chunk.
+     */
+    public void streamAll(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs, Predicate<List<TsKvEntry>> consumer) {
+        Integer keyId = getOrSaveKeyId(key);
+        long lowerBound = startTs;
+        while (lowerBound < endTs) {
+            List<TsKvEntry> chunk = new ArrayList<>(tsStreamFetchSize);
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(STREAM_QUERY)) {
+                stmt.setObject(1, entityId.getId());
+                stmt.setInt(2, keyId);
+                stmt.setLong(3, lowerBound);
+                stmt.setLong(4, endTs);
+                stmt.setInt(5, tsStreamFetchSize);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        chunk.add(toTsKvEntry(resultSet, key));
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("[{}][{}] Failed to stream timeseries for key {}", entityId.getEntityType(), entityId.getId(), key, e);
+                throw new RuntimeException("Failed to stream timeseries for key " + key, e);
+            }
+            if (chunk.isEmpty() || !consumer.test(chunk) || chunk.size() < tsStreamFetchSize) {
+                return;
+            }
+            lowerBound = chunk.get(chunk.size() - 1).getTs() + 1;
+        }
+    }
+
+    private static TsKvEntry toTsKvEntry(ResultSet resultSet, String key) throws SQLException {
+        TsKvEntity entity = new TsKvEntity();
+        entity.setStrKey(key);
+        entity.setTs(resultSet.getLong("ts"));
+        entity.setBooleanValue(resultSet.getObject("bool_v", Boolean.class));
+        entity.setStrValue(resultSet.getString("str_v"));
+        entity.setLongValue(resultSet.getObject("long_v", Long.class));
+        entity.setDoubleValue(resultSet.getObject("dbl_v", Double.class));
+        entity.setJsonValue(resultSet.getString("json_v"));
+        return entity.toData();
+    }
+
     public void cleanup(long systemTtl) {
         log.info("Going to cleanup old timeseries data using ttl: {}s", systemTtl);
         try (Connection connection = dataSource.getConnection();
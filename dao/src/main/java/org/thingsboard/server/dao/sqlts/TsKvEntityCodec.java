@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.sql.TbSqlQueueElementCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+public class TsKvEntityCodec<T extends AbstractTsKvEntity> implements TbSqlQueueElementCodec<T> {
+
+    private static final int BOOLEAN_FLAG = 1;
+    private static final int STRING_FLAG = 1 << 1;
+    private static final int LONG_FLAG = 1 << 2;
+    private static final int DOUBLE_FLAG = 1 << 3;
+    private static final int JSON_FLAG = 1 << 4;
+    private static final int STR_KEY_FLAG = 1 << 5;
+
+    private final Supplier<T> entityFactory;
+
+    public TsKvEntityCodec(Supplier<T> entityFactory) {
+        this.entityFactory = entityFactory;
+    }
+
+    @Override
+    public byte[] encode(T entity) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(entity.getEntityId().getMostSignificantBits());
+            out.writeLong(entity.getEntityId().getLeastSignificantBits());
+            out.writeInt(entity.getKey());
+            out.writeLong(entity.getTs());
+            int flags = (entity.getBooleanValue() != null ? BOOLEAN_FLAG : 0)
+                    | (entity.getStrValue() != null ? STRING_FLAG : 0)
+                    | (entity.getLongValue() != null ? LONG_FLAG : 0)
+                    | (entity.getDoubleValue() != null ? DOUBLE_FLAG : 0)
+                    | (entity.getJsonValue() != null ? JSON_FLAG : 0)
+                    | (entity.getStrKey() != null ? STR_KEY_FLAG : 0);
+            out.writeByte(flags);
+            if (entity.getBooleanValue() != null) {
+                out.writeBoolean(entity.getBooleanValue());
+            }
+            if (entity.getStrValue() != null) {
+                writeString(out, entity.getStrValue());
+            }
+            if (entity.getLongValue() != null) {
+                out.writeLong(entity.getLongValue());
+            }
+            if (entity.getDoubleValue() != null) {
+                out.writeDouble(entity.getDoubleValue());
+            }
+            if (entity.getJsonValue() != null) {
+                writeString(out, entity.getJsonValue());
+            }
+            if (entity.getStrKey() != null) {
+                writeString(out, entity.getStrKey());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T decode(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            T entity = entityFactory.get();
+            entity.setEntityId(new UUID(in.readLong(), in.readLong()));
+            entity.setKey(in.readInt());
+            entity.setTs(in.readLong());
+            int flags = in.readUnsignedByte();
+            if ((flags & BOOLEAN_FLAG) != 0) {
+                entity.setBooleanValue(in.readBoolean());
+            }
+            if ((flags & STRING_FLAG) != 0) {
+                entity.setStrValue(readString(in));
+            }
+            if ((flags & LONG_FLAG) != 0) {
+                entity.setLongValue(in.readLong());
+            }
+            if ((flags & DOUBLE_FLAG) != 0) {
+                entity.setDoubleValue(in.readDouble());
+            }
+            if ((flags & JSON_FLAG) != 0) {
+                entity.setJsonValue(readString(in));
+            }
+            if ((flags & STR_KEY_FLAG) != 0) {
+                entity.setStrKey(readString(in));
+            }
+            return entity;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.compressed;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.DaoUtil;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueAdaptiveSettings;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.thingsboard.server.dao.sql.TbSqlWriteAheadBufferSettings;
+import org.thingsboard.server.dao.sqlts.AbstractSqlTimeseriesDao;
+import org.thingsboard.server.dao.sqlts.TsKvEntityCodec;
+import org.thingsboard.server.dao.timeseries.TimeseriesDao;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Time series DAO that keeps all points of an entity key for one hour in a single compressed ts_chunk row
+ * instead of a ts_kv row per point. Points are decoded on read, aggregation is done over the decoded points.
+ */
+@Component
+@Slf4j
+@PsqlDao
+@SqlTsDao
+@ConditionalOnProperty(prefix = "sql.ts", value = "storage", havingValue = "compressed")
+public class PsqlCompressedTimeseriesDao extends AbstractSqlTimeseriesDao implements TimeseriesDao {
+
+    @Autowired
+    private TsKvChunkRepository chunkRepository;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Autowired
+    private TbSqlBlockingQueueAdaptiveSettings adaptiveSettings;
+
+    @Autowired
+    private TbSqlWriteAheadBufferSettings writeAheadBufferSettings;
+
+    private TbSqlBlockingQueueWrapper<TsKvEntity> tsQueue;
+
+    @PostConstruct
+    protected void init() {
+        TbSqlBlockingQueueParams tsParams = TbSqlBlockingQueueParams.builder()
+                .logName("TS")
+                .batchSize(tsBatchSize)
+                .maxDelay(tsMaxDelay)
+                .statsPrintIntervalMs(tsStatsPrintIntervalMs)
+                .statsNamePrefix("ts")
+                .batchSortEnabled(batchSortEnabled)
+                .adaptiveSettings(adaptiveSettings)
+                .writeAheadBufferSettings(writeAheadBufferSettings)
+                .build();
+
+        Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
+        tsQueue = new TbSqlBlockingQueueWrapper<>(tsParams, hashcodeFunction, tsBatchThreads, statsFactory);
+        tsQueue.init(logExecutor, v -> chunkRepository.saveOrUpdate(v),
+                Comparator.comparing((Function<TsKvEntity, UUID>) AbstractTsKvEntity::getEntityId)
+                        .thenComparing(AbstractTsKvEntity::getKey)
+                        .thenComparing(AbstractTsKvEntity::getTs),
+                new TsKvEntityCodec<>(TsKvEntity::new)
+        );
+    }
+
+    @PreDestroy
+    protected void destroy() {
+        if (tsQueue != null) {
+            tsQueue.destroy();
+        }
+    }
+
+    @Override
+    public ListenableFuture<Integer> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
+        int dataPointDays = getDataPointDays(tsKvEntry, computeTtl(ttl));
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(entityId.getId());
+        entity.setTs(tsKvEntry.getTs());
+        entity.setKey(getOrSaveKeyId(tsKvEntry.getKey()));
+        entity.setStrValue(tsKvEntry.getStrValue().orElse(null));
+        entity.setDoubleValue(tsKvEntry.getDoubleValue().orElse(null));
+        entity.setLongValue(tsKvEntry.getLongValue().orElse(null));
+        entity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
+        entity.setJsonValue(tsKvEntry.getJsonValue().orElse(null));
+        log.trace("Saving entity: {}", entity);
+        return Futures.transform(tsQueue.add(entity), v -> dataPointDays, MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public ListenableFuture<Integer> savePartition(TenantId tenantId, EntityId entityId, long tsKvEntryTs, String key) {
+        return Futures.immediateFuture(null);
+    }
+
+    @Override
+    public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
+        return service.submit(() -> {
+            chunkRepository.delete(entityId.getId(), getOrSaveKeyId(query.getKey()), query.getStartTs(), query.getEndTs());
+            return null;
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> removePartition(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
+        return Futures.immediateFuture(null);
+    }
+
+    @Override
+    public ListenableFuture<List<TsKvEntry>> findAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        return processFindAllAsync(tenantId, entityId, queries);
+    }
+
+    @Override
+    public ListenableFuture<List<TsKvEntry>> findAllAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query) {
+        if (query.getAggregation() == Aggregation.NONE) {
+            return findAllAsyncWithLimit(entityId, query);
+        } else {
+            return findAllAndAggregateAsync(entityId, query);
+        }
+    }
+
+    @Override
+    public void streamAll(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs, Predicate<List<TsKvEntry>> consumer) {
+        Integer keyId = getOrSaveKeyId(key);
+        chunkRepository.findChunks(entityId.getId(), keyId, startTs, endTs, true, chunk -> {
+            List<TsKvEntry> entries = new ArrayList<>(chunk.size());
+            for (TsKvEntity point : chunk) {
+                if (point.getTs() >= startTs && point.getTs() < endTs) {
+                    point.setStrKey(key);
+                    entries.add(point.toData());
+                }
+            }
+            return entries.isEmpty() || consumer.test(entries);
+        });
+    }
+
+    @Override
+    public void cleanup(long systemTtl) {
+        if (systemTtl <= 0) {
+            return;
+        }
+        log.info("Going to cleanup old compressed timeseries data using ttl: {}s", systemTtl);
+        try {
+            int removed = chunkRepository.deleteExpired(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(systemTtl));
+            log.info("Total timeseries chunks removed by TTL: [{}]", removed);
+        } catch (Exception e) {
+            log.error("Exception occurred during compressed timeseries TTL task execution ", e);
+        }
+    }
+
+    private ListenableFuture<List<TsKvEntry>> findAllAsyncWithLimit(EntityId entityId, ReadTsKvQuery query) {
+        return service.submit(() -> {
+            Integer keyId = getOrSaveKeyId(query.getKey());
+            boolean ascending = Sort.Direction.fromString(query.getOrder()).isAscending();
+            List<TsKvEntity> result = new ArrayList<>();
+            chunkRepository.findChunks(entityId.getId(), keyId, query.getStartTs(), query.getEndTs(), ascending, chunk -> {
+                for (TsKvEntity point : chunk) {
+                    if (point.getTs() >= query.getStartTs() && point.getTs() < query.getEndTs()) {
+                        point.setEntityId(entityId.getId());
+                        point.setStrKey(query.getKey());
+                        result.add(point);
+                        if (result.size() >= query.getLimit()) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            });
+            return DaoUtil.convertDataList(result);
+        });
+    }
+
+    private ListenableFuture<List<TsKvEntry>> findAllAndAggregateAsync(EntityId entityId, ReadTsKvQuery query) {
+        return service.submit(() -> {
+            Integer keyId = getOrSaveKeyId(query.getKey());
+            long startTs = query.getStartTs();
+            long interval = query.getInterval();
+            // the last bucket is not truncated by the end of the interval, same as in the SQL aggregation
+            long bucketsEndTs = startTs + ((query.getEndTs() - startTs + interval - 1) / interval) * interval;
+            Map<Long, TsKvBucketAggregator> buckets = new TreeMap<>();
+            chunkRepository.findChunks(entityId.getId(), keyId, startTs, bucketsEndTs, true, chunk -> {
+                for (TsKvEntity point : chunk) {
+                    if (point.getTs() >= startTs && point.getTs() < bucketsEndTs) {
+                        long bucketTs = startTs + ((point.getTs() - startTs) / interval) * interval;
+                        buckets.computeIfAbsent(bucketTs, ts -> new TsKvBucketAggregator(query.getAggregation())).add(point);
+                    }
+                }
+                return true;
+            });
+            List<TsKvEntity> result = new ArrayList<>(buckets.size());
+            buckets.forEach((bucketTs, aggregator) -> {
+                TsKvEntity entity = aggregator.getResult();
+                if (entity.isNotEmpty()) {
+                    entity.setEntityId(entityId.getId());
+                    entity.setStrKey(query.getKey());
+                    entity.setTs(bucketTs + interval / 2);
+                    result.add(entity);
+                }
+            });
+            return DaoUtil.convertDataList(result);
+        });
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.compressed;
+
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+/**
+ * Aggregates decoded points of one time bucket. The result is built with the same {@link TsKvEntity} constructors
+ * and the same defaults for missing values as the SQL aggregation queries, so the results do not depend on the storage.
+ */
+class TsKvBucketAggregator {
+
+    private final Aggregation aggregation;
+
+    private long longSum;
+    private double doubleSum;
+    private long longMin = Long.MAX_VALUE;
+    private long longMax = -Long.MAX_VALUE;
+    private double doubleMin = 1.79769E+308;
+    private double doubleMax = -1.79769E+308;
+    private String strMin;
+    private String strMax;
+
+    private long booleanCount;
+    private long strCount;
+    private long longCount;
+    private long doubleCount;
+    private long jsonCount;
+
+    TsKvBucketAggregator(Aggregation aggregation) {
+        this.aggregation = aggregation;
+    }
+
+    void add(TsKvEntity point) {
+        if (point.getBooleanValue() != null) {
+            booleanCount++;
+        } else if (point.getLongValue() != null) {
+            long value = point.getLongValue();
+            longSum += value;
+            longMin = Math.min(longMin, value);
+            longMax = Math.max(longMax, value);
+            longCount++;
+        } else if (point.getDoubleValue() != null) {
+            double value = point.getDoubleValue();
+            doubleSum += value;
+            doubleMin = Math.min(doubleMin, value);
+            doubleMax = Math.max(doubleMax, value);
+            doubleCount++;
+        } else if (point.getStrValue() != null) {
+            String value = point.getStrValue();
+            strMin = strMin == null || value.compareTo(strMin) < 0 ? value : strMin;
+            strMax = strMax == null || value.compareTo(strMax) > 0 ? value : strMax;
+            strCount++;
+        } else if (point.getJsonValue() != null) {
+            jsonCount++;
+        }
+    }
+
+    TsKvEntity getResult() {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return new TsKvEntity(longSum, doubleSum, longCount, doubleCount, aggregation.name());
+            case MIN:
+                return strMin != null ? new TsKvEntity(strMin) : new TsKvEntity(longMin, doubleMin, longCount, doubleCount, aggregation.name());
+            case MAX:
+                return strMax != null ? new TsKvEntity(strMax) : new TsKvEntity(longMax, doubleMax, longCount, doubleCount, aggregation.name());
+            case COUNT:
+                return new TsKvEntity(booleanCount, strCount, longCount, doubleCount, jsonCount);
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+}
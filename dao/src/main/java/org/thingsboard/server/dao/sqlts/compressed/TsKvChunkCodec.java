@@ -0,0 +1,379 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.compressed;
+
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the points of one chunk (single entity, key and hour) into a compact binary block.
+ * <p>
+ * Points must be sorted by ts and have unique timestamps. Timestamps are written as zigzag varints of the
+ * delta-of-delta, so points with a regular interval take a single byte each. Doubles use the XOR encoding
+ * from the Gorilla paper, longs are written as zigzag varint deltas, booleans as bits and strings as UTF-8.
+ * Value types are run-length encoded since the type of a key rarely changes.
+ */
+public final class TsKvChunkCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final int BOOLEAN = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int STRING = 3;
+    private static final int JSON = 4;
+
+    private TsKvChunkCodec() {
+    }
+
+    public static byte[] encode(List<TsKvEntity> points) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(points.size() * 4 + 16);
+        out.write(VERSION);
+        writeVarLong(out, points.size());
+
+        long prevTs = 0;
+        long prevDelta = 0;
+        for (int i = 0; i < points.size(); i++) {
+            long ts = points.get(i).getTs();
+            if (i == 0) {
+                writeVarLong(out, zigzag(ts));
+            } else {
+                long delta = ts - prevTs;
+                writeVarLong(out, zigzag(delta - prevDelta));
+                prevDelta = delta;
+            }
+            prevTs = ts;
+        }
+
+        int[] types = new int[points.size()];
+        int runType = -1;
+        int runLength = 0;
+        for (int i = 0; i < points.size(); i++) {
+            types[i] = typeOf(points.get(i));
+            if (types[i] != runType) {
+                writeRun(out, runType, runLength);
+                runType = types[i];
+                runLength = 0;
+            }
+            runLength++;
+        }
+        writeRun(out, runType, runLength);
+
+        long prevLong = 0;
+        BitWriter doubles = new BitWriter();
+        XorState xorState = new XorState();
+        BitWriter booleans = new BitWriter();
+        for (int i = 0; i < points.size(); i++) {
+            TsKvEntity point = points.get(i);
+            switch (types[i]) {
+                case LONG:
+                    writeVarLong(out, zigzag(point.getLongValue() - prevLong));
+                    prevLong = point.getLongValue();
+                    break;
+                case DOUBLE:
+                    writeDouble(doubles, point.getDoubleValue(), xorState);
+                    break;
+                case BOOLEAN:
+                    booleans.writeBits(point.getBooleanValue() ? 1 : 0, 1);
+                    break;
+                default:
+                    break;
+            }
+        }
+        writeBlock(out, doubles.toByteArray());
+        writeBlock(out, booleans.toByteArray());
+
+        for (int i = 0; i < points.size(); i++) {
+            if (types[i] == STRING || types[i] == JSON) {
+                TsKvEntity point = points.get(i);
+                writeBlock(out, (types[i] == STRING ? point.getStrValue() : point.getJsonValue()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return points with ts and value only, sorted by ts
+     */
+    public static List<TsKvEntity> decode(byte[] data) {
+        ByteReader in = new ByteReader(data);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported chunk version: " + version);
+        }
+        int count = (int) in.readVarLong();
+        List<TsKvEntity> points = new ArrayList<>(count);
+
+        long ts = 0;
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                ts = unzigzag(in.readVarLong());
+            } else {
+                delta += unzigzag(in.readVarLong());
+                ts += delta;
+            }
+            TsKvEntity point = new TsKvEntity();
+            point.setTs(ts);
+            points.add(point);
+        }
+
+        int[] types = new int[count];
+        int filled = 0;
+        while (filled < count) {
+            int type = in.readByte();
+            int length = (int) in.readVarLong();
+            Arrays.fill(types, filled, filled + length, type);
+            filled += length;
+        }
+
+        long prevLong = 0;
+        for (int i = 0; i < count; i++) {
+            if (types[i] == LONG) {
+                prevLong += unzigzag(in.readVarLong());
+                points.get(i).setLongValue(prevLong);
+            }
+        }
+        BitReader doubles = in.readBlockBits();
+        BitReader booleans = in.readBlockBits();
+        XorState xorState = new XorState();
+        for (int i = 0; i < count; i++) {
+            TsKvEntity point = points.get(i);
+            switch (types[i]) {
+                case DOUBLE:
+                    point.setDoubleValue(readDouble(doubles, xorState));
+                    break;
+                case BOOLEAN:
+                    point.setBooleanValue(booleans.readBits(1) == 1);
+                    break;
+                case STRING:
+                    point.setStrValue(in.readString());
+                    break;
+                case JSON:
+                    point.setJsonValue(in.readString());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return points;
+    }
+
+    private static int typeOf(TsKvEntity point) {
+        if (point.getBooleanValue() != null) {
+            return BOOLEAN;
+        } else if (point.getLongValue() != null) {
+            return LONG;
+        } else if (point.getDoubleValue() != null) {
+            return DOUBLE;
+        } else if (point.getStrValue() != null) {
+            return STRING;
+        } else if (point.getJsonValue() != null) {
+            return JSON;
+        }
+        throw new IllegalArgumentException("Point at " + point.getTs() + " has no value");
+    }
+
+    private static void writeDouble(BitWriter out, double value, XorState state) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (state.first) {
+            out.writeBits(bits, 64);
+            state.first = false;
+        } else {
+            long xor = bits ^ state.prev;
+            if (xor == 0) {
+                out.writeBits(0, 1);
+            } else {
+                out.writeBits(1, 1);
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (state.leading >= 0 && leading >= state.leading && trailing >= state.trailing) {
+                    // meaningful bits fit into the window of the previous value
+                    out.writeBits(0, 1);
+                    out.writeBits(xor >>> state.trailing, 64 - state.leading - state.trailing);
+                } else {
+                    int significant = 64 - leading - trailing;
+                    out.writeBits(1, 1);
+                    out.writeBits(leading, 5);
+                    out.writeBits(significant - 1, 6);
+                    out.writeBits(xor >>> trailing, significant);
+                    state.leading = leading;
+                    state.trailing = trailing;
+                }
+            }
+        }
+        state.prev = bits;
+    }
+
+    private static double readDouble(BitReader in, XorState state) {
+        long bits;
+        if (state.first) {
+            bits = in.readBits(64);
+            state.first = false;
+        } else if (in.readBits(1) == 0) {
+            bits = state.prev;
+        } else {
+            if (in.readBits(1) == 1) {
+                state.leading = (int) in.readBits(5);
+                int significant = (int) in.readBits(6) + 1;
+                state.trailing = 64 - state.leading - significant;
+            }
+            long xor = in.readBits(64 - state.leading - state.trailing) << state.trailing;
+            bits = state.prev ^ xor;
+        }
+        state.prev = bits;
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static void writeRun(ByteArrayOutputStream out, int type, int length) {
+        if (length > 0) {
+            out.write(type);
+            writeVarLong(out, length);
+        }
+    }
+
+    private static void writeBlock(ByteArrayOutputStream out, byte[] block) {
+        writeVarLong(out, block.length);
+        out.write(block, 0, block.length);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class XorState {
+        private boolean first = true;
+        private long prev;
+        private int leading = -1;
+        private int trailing;
+    }
+
+    private static class BitWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int current;
+        private int bitCount;
+
+        private void writeBits(long value, int count) {
+            while (count > 0) {
+                int free = 8 - bitCount;
+                int n = Math.min(free, count);
+                int bits = (int) ((value >>> (count - n)) & ((1 << n) - 1));
+                current |= bits << (free - n);
+                bitCount += n;
+                count -= n;
+                if (bitCount == 8) {
+                    out.write(current);
+                    current = 0;
+                    bitCount = 0;
+                }
+            }
+        }
+
+        private byte[] toByteArray() {
+            if (bitCount > 0) {
+                out.write(current);
+                current = 0;
+                bitCount = 0;
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static class BitReader {
+        private final byte[] data;
+        private int position;
+        private int current;
+        private int bitCount;
+
+        private BitReader(byte[] data, int offset) {
+            this.data = data;
+            this.position = offset;
+        }
+
+        private long readBits(int count) {
+            long result = 0;
+            while (count > 0) {
+                if (bitCount == 0) {
+                    current = data[position++] & 0xFF;
+                    bitCount = 8;
+                }
+                int n = Math.min(bitCount, count);
+                int bits = (current >>> (bitCount - n)) & ((1 << n) - 1);
+                result = (result << n) | bits;
+                bitCount -= n;
+                count -= n;
+            }
+            return result;
+        }
+    }
+
+    private static class ByteReader {
+        private final byte[] data;
+        private int position;
+
+        private ByteReader(byte[] data) {
+            this.data = data;
+        }
+
+        private int readByte() {
+            return data[position++] & 0xFF;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        private BitReader readBlockBits() {
+            int length = (int) readVarLong();
+            BitReader reader = new BitReader(data, position);
+            position += length;
+            return reader;
+        }
+
+        private String readString() {
+            int length = (int) readVarLong();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
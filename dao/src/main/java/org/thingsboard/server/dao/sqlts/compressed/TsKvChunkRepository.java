@@ -0,0 +1,227 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.compressed;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Stores time series in the ts_chunk table, one row per entity, key and hour with all points of the hour
+ * encoded by {@link TsKvChunkCodec}.
+ * <p>
+ * Chunks are updated with read-modify-write under the row lock. Chunk rows are created empty first,
+ * so concurrent writers of a new chunk wait for each other instead of overwriting the data.
+ */
+@Repository
+@PsqlDao
+@SqlTsDao
+@ConditionalOnProperty(prefix = "sql.ts", value = "storage", havingValue = "compressed")
+public class TsKvChunkRepository {
+
+    public static final long CHUNK_DURATION_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final int CHUNKS_PAGE_SIZE = 24;
+    private static final byte[] EMPTY_CHUNK = new byte[0];
+
+    private static final String INSERT_EMPTY_CHUNK = "INSERT INTO ts_chunk (entity_id, key, chunk_ts, data) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (entity_id, key, chunk_ts) DO NOTHING";
+    private static final String SELECT_CHUNK_FOR_UPDATE = "SELECT data FROM ts_chunk WHERE entity_id = ? AND key = ? AND chunk_ts = ? FOR UPDATE";
+    private static final String UPDATE_CHUNK = "UPDATE ts_chunk SET data = ? WHERE entity_id = ? AND key = ? AND chunk_ts = ?";
+    private static final String DELETE_CHUNK = "DELETE FROM ts_chunk WHERE entity_id = ? AND key = ? AND chunk_ts = ?";
+    private static final String DELETE_CHUNKS = "DELETE FROM ts_chunk WHERE entity_id = ? AND key = ? AND chunk_ts >= ? AND chunk_ts < ?";
+    private static final String DELETE_EXPIRED_CHUNKS = "DELETE FROM ts_chunk WHERE chunk_ts < ?";
+    private static final String FIND_CHUNKS = "SELECT chunk_ts, data FROM ts_chunk WHERE entity_id = ? AND key = ? AND chunk_ts >= ? AND chunk_ts < ? " +
+            "ORDER BY chunk_ts %s LIMIT " + CHUNKS_PAGE_SIZE;
+    private static final String FIND_CHUNKS_ASC = String.format(FIND_CHUNKS, "ASC");
+    private static final String FIND_CHUNKS_DESC = String.format(FIND_CHUNKS, "DESC");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public void saveOrUpdate(List<TsKvEntity> entities) {
+        // sorted to lock the chunks in the same order in all concurrent transactions
+        Map<ChunkKey, List<TsKvEntity>> updates = new TreeMap<>();
+        for (TsKvEntity entity : entities) {
+            ChunkKey chunkKey = new ChunkKey(entity.getEntityId(), entity.getKey(), toChunkTs(entity.getTs()));
+            updates.computeIfAbsent(chunkKey, k -> new ArrayList<>()).add(entity);
+        }
+        List<Object[]> emptyChunks = new ArrayList<>(updates.size());
+        updates.keySet().forEach(chunkKey -> emptyChunks.add(new Object[]{chunkKey.getEntityId(), chunkKey.getKey(), chunkKey.getChunkTs(), EMPTY_CHUNK}));
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                jdbcTemplate.batchUpdate(INSERT_EMPTY_CHUNK, emptyChunks);
+                List<Object[]> updatedChunks = new ArrayList<>(updates.size());
+                updates.forEach((chunkKey, points) -> {
+                    List<TsKvEntity> merged = merge(lockChunk(chunkKey), points);
+                    updatedChunks.add(new Object[]{TsKvChunkCodec.encode(merged), chunkKey.getEntityId(), chunkKey.getKey(), chunkKey.getChunkTs()});
+                });
+                jdbcTemplate.batchUpdate(UPDATE_CHUNK, updatedChunks);
+            }
+        });
+    }
+
+    /**
+     * Passes points of the chunks that intersect [startTs, endTs) to the consumer chunk by chunk, in the requested order of ts.
+     * Points outside the interval are not filtered out. Chunks are loaded page by page until the consumer returns false.
+     */
+    public void findChunks(UUID entityId, int key, long startTs, long endTs, boolean ascending, Predicate<List<TsKvEntity>> consumer) {
+        long lowerBound = toChunkTs(startTs);
+        long upperBound = endTs;
+        while (lowerBound < upperBound) {
+            List<Long> chunkTss = new ArrayList<>(CHUNKS_PAGE_SIZE);
+            List<List<TsKvEntity>> chunks = new ArrayList<>(CHUNKS_PAGE_SIZE);
+            jdbcTemplate.query(ascending ? FIND_CHUNKS_ASC : FIND_CHUNKS_DESC, (RowCallbackHandler) rs -> {
+                chunkTss.add(rs.getLong("chunk_ts"));
+                chunks.add(decode(rs.getBytes("data")));
+            }, entityId, key, lowerBound, upperBound);
+            for (List<TsKvEntity> chunk : chunks) {
+                if (!ascending) {
+                    Collections.reverse(chunk);
+                }
+                if (!consumer.test(chunk)) {
+                    return;
+                }
+            }
+            if (chunks.size() < CHUNKS_PAGE_SIZE) {
+                return;
+            }
+            long lastChunkTs = chunkTss.get(chunkTss.size() - 1);
+            if (ascending) {
+                lowerBound = lastChunkTs + 1;
+            } else {
+                upperBound = lastChunkTs;
+            }
+        }
+    }
+
+    public void delete(UUID entityId, int key, long startTs, long endTs) {
+        if (startTs >= endTs) {
+            return;
+        }
+        long firstChunkTs = toChunkTs(startTs);
+        long lastChunkTs = toChunkTs(endTs);
+        long fullChunksStartTs = firstChunkTs == startTs ? firstChunkTs : firstChunkTs + CHUNK_DURATION_MS;
+        Set<Long> partialChunks = new TreeSet<>();
+        if (firstChunkTs != startTs) {
+            partialChunks.add(firstChunkTs);
+        }
+        if (lastChunkTs != endTs) {
+            partialChunks.add(lastChunkTs);
+        }
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                if (fullChunksStartTs < lastChunkTs) {
+                    jdbcTemplate.update(DELETE_CHUNKS, entityId, key, fullChunksStartTs, lastChunkTs);
+                }
+                for (Long chunkTs : partialChunks) {
+                    deletePoints(new ChunkKey(entityId, key, chunkTs), startTs, endTs);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes chunks that only have points before the expiration time.
+     *
+     * @return number of removed chunks
+     */
+    public int deleteExpired(long expirationTs) {
+        return jdbcTemplate.update(DELETE_EXPIRED_CHUNKS, toChunkTs(expirationTs));
+    }
+
+    public static long toChunkTs(long ts) {
+        return Math.floorDiv(ts, CHUNK_DURATION_MS) * CHUNK_DURATION_MS;
+    }
+
+    /**
+     * @return points sorted by ts, the update wins over the existing point with the same ts and so does the later update
+     */
+    static List<TsKvEntity> merge(List<TsKvEntity> existing, List<TsKvEntity> updates) {
+        TreeMap<Long, TsKvEntity> points = new TreeMap<>();
+        existing.forEach(point -> points.put(point.getTs(), point));
+        updates.forEach(point -> points.put(point.getTs(), point));
+        return new ArrayList<>(points.values());
+    }
+
+    private void deletePoints(ChunkKey chunkKey, long startTs, long endTs) {
+        List<TsKvEntity> points = lockChunk(chunkKey);
+        List<TsKvEntity> remaining = new ArrayList<>(points.size());
+        for (TsKvEntity point : points) {
+            if (point.getTs() < startTs || point.getTs() >= endTs) {
+                remaining.add(point);
+            }
+        }
+        if (remaining.isEmpty()) {
+            jdbcTemplate.update(DELETE_CHUNK, chunkKey.getEntityId(), chunkKey.getKey(), chunkKey.getChunkTs());
+        } else if (remaining.size() < points.size()) {
+            jdbcTemplate.update(UPDATE_CHUNK, TsKvChunkCodec.encode(remaining), chunkKey.getEntityId(), chunkKey.getKey(), chunkKey.getChunkTs());
+        }
+    }
+
+    private List<TsKvEntity> lockChunk(ChunkKey chunkKey) {
+        byte[] data = jdbcTemplate.query(SELECT_CHUNK_FOR_UPDATE, (ResultSetExtractor<byte[]>) rs -> rs.next() ? rs.getBytes("data") : null,
+                chunkKey.getEntityId(), chunkKey.getKey(), chunkKey.getChunkTs());
+        return decode(data);
+    }
+
+    private static List<TsKvEntity> decode(byte[] data) {
+        return data == null || data.length == 0 ? new ArrayList<>() : TsKvChunkCodec.decode(data);
+    }
+
+    @Data
+    private static class ChunkKey implements Comparable<ChunkKey> {
+        private static final Comparator<ChunkKey> COMPARATOR = Comparator.comparing(ChunkKey::getEntityId)
+                .thenComparingInt(ChunkKey::getKey)
+                .thenComparingLong(ChunkKey::getChunkTs);
+
+        private final UUID entityId;
+        private final int key;
+        private final long chunkTs;
+
+        @Override
+        public int compareTo(ChunkKey other) {
+            return COMPARATOR.compare(this, other);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionaryCompositeKey;
+import org.thingsboard.server.dao.util.SqlTsOrTsLatestAnyDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Maps time series keys to the ids of the ts_kv_dictionary table.
+ * <p>
+ * The whole dictionary is loaded when the first key is resolved, so the known keys are resolved without locks afterwards.
+ * The dictionary is not loaded on startup, since the install application creates this bean before the schema exists.
+ * Unknown keys are queued and resolved by a single thread in batches: one lookup for the whole batch
+ * and an insert for each key that is still missing. All threads that need the same key wait for the same result.
+ */
+@Component
+@Slf4j
+@SqlTsOrTsLatestAnyDao
+public class TsKvDictionaryCache {
+
+    private final ConcurrentMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Integer>> pendingKeys = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> keysToResolve = new LinkedBlockingQueue<>();
+
+    @Autowired
+    private TsKvDictionaryRepository dictionaryRepository;
+
+    @Value("${sql.ts_key_dictionary.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.ts_key_dictionary.resolve_timeout_ms:10000}")
+    private long resolveTimeoutMs;
+
+    private ExecutorService resolveExecutor;
+    private volatile TsKvDictionaryListener listener;
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void init() {
+        resolveExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("ts-key-dictionary"));
+        resolveExecutor.submit(this::resolveKeys);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (resolveExecutor != null) {
+            resolveExecutor.shutdownNow();
+        }
+    }
+
+    public Integer getOrSaveKeyId(String key) {
+        Integer keyId = keyIds.get(key);
+        if (keyId != null) {
+            return keyId;
+        }
+        CompletableFuture<Integer> future = pendingKeys.computeIfAbsent(key, k -> {
+            Integer resolvedKeyId = keyIds.get(k);
+            if (resolvedKeyId != null) {
+                return CompletableFuture.completedFuture(resolvedKeyId);
+            }
+            keysToResolve.add(k);
+            return new CompletableFuture<>();
+        });
+        try {
+            return future.get(resolveTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while resolving time series key [" + key + "]", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Failed to get TsKvDictionary entity for key [" + key + "] from DB!", e);
+        }
+    }
+
+    public void setListener(TsKvDictionaryListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Applies keys added to the dictionary by other nodes. Replaces cached ids of the same keys, if any.
+     */
+    public void putAll(Map<String, Integer> keyIds) {
+        this.keyIds.putAll(keyIds);
+    }
+
+    public void evictAll() {
+        loaded = false;
+        keyIds.clear();
+    }
+
+    private void resolveKeys() {
+        while (!Thread.interrupted()) {
+            List<String> batch = new ArrayList<>();
+            try {
+                batch.add(keysToResolve.take());
+            } catch (InterruptedException e) {
+                log.debug("Time series keys resolution was interrupted");
+                break;
+            }
+            keysToResolve.drainTo(batch, batchSize - 1);
+            if (!loaded) {
+                load();
+            }
+            try {
+                resolve(batch);
+            } catch (Exception e) {
+                log.error("Failed to resolve {} time series keys", batch.size(), e);
+                batch.forEach(key -> {
+                    CompletableFuture<Integer> future = pendingKeys.remove(key);
+                    if (future != null) {
+                        future.completeExceptionally(e);
+                    }
+                });
+            }
+        }
+    }
+
+    void load() {
+        try {
+            Map<String, Integer> dictionary = new HashMap<>();
+            dictionaryRepository.findAll().forEach(entry -> dictionary.put(entry.getKey(), entry.getKeyId()));
+            dictionary.forEach(keyIds::putIfAbsent);
+            loaded = true;
+            log.info("Loaded {} time series keys", dictionary.size());
+        } catch (Exception e) {
+            log.warn("Failed to load time series keys, the keys are resolved one batch at a time", e);
+        }
+    }
+
+    void resolve(List<String> keys) {
+        Map<String, Integer> resolved = new HashMap<>();
+        List<TsKvDictionaryCompositeKey> ids = new ArrayList<>();
+        for (String key : keys) {
+            Integer keyId = keyIds.get(key);
+            if (keyId != null) {
+                resolved.put(key, keyId);
+            } else {
+                ids.add(new TsKvDictionaryCompositeKey(key));
+            }
+        }
+        if (!ids.isEmpty()) {
+            dictionaryRepository.findAllById(ids).forEach(dictionary -> resolved.put(dictionary.getKey(), dictionary.getKeyId()));
+        }
+        Map<String, Integer> created = new HashMap<>();
+        for (String key : keys) {
+            if (!resolved.containsKey(key)) {
+                TsKvDictionary dictionary = save(key);
+                resolved.put(key, dictionary.getKeyId());
+                created.put(key, dictionary.getKeyId());
+            }
+        }
+        keyIds.putAll(resolved);
+        resolved.forEach((key, keyId) -> {
+            CompletableFuture<Integer> future = pendingKeys.remove(key);
+            if (future != null) {
+                future.complete(keyId);
+            }
+        });
+        if (!created.isEmpty()) {
+            log.debug("Added {} time series keys to the dictionary", created.size());
+            TsKvDictionaryListener listener = this.listener;
+            if (listener != null) {
+                try {
+                    listener.onKeysCreated(created);
+                } catch (Exception e) {
+                    log.warn("Failed to notify about {} new time series keys", created.size(), e);
+                }
+            }
+        }
+    }
+
+    private TsKvDictionary save(String key) {
+        TsKvDictionary tsKvDictionary = new TsKvDictionary();
+        tsKvDictionary.setKey(key);
+        try {
+            return dictionaryRepository.save(tsKvDictionary);
+        } catch (DataIntegrityViolationException | ConstraintViolationException e) {
+            // the key was added by another node
+            return dictionaryRepository.findById(new TsKvDictionaryCompositeKey(key))
+                    .orElseThrow(() -> new RuntimeException("Failed to get TsKvDictionary entity from DB!"));
+        }
+    }
+}
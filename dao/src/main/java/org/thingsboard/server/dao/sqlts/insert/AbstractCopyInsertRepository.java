@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvCompositeKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Writes batches with COPY FROM STDIN in binary format into a temporary staging table
+ * and merges the staging table into the target table with a single INSERT ... SELECT ... ON CONFLICT statement.
+ * The staging table is created once per connection and is cleared on commit.
+ */
+public abstract class AbstractCopyInsertRepository extends AbstractInsertRepository {
+
+    protected static final String TS_KV_COLUMNS = TsKvBinaryCopyWriter.COLUMNS;
+
+    protected static final String TS_KV_MERGE_QUERY_TEMPLATE = "INSERT INTO %s (" + TS_KV_COLUMNS + ") " +
+            "SELECT " + TS_KV_COLUMNS + " FROM %s ORDER BY entity_id, key, ts " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, " +
+            "long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v";
+
+    /**
+     * Single INSERT ... ON CONFLICT statement can't update the same row twice,
+     * so only the last value for each entity id, key and ts is kept, like the sequential batch update does.
+     */
+    protected static <T extends AbstractTsKvEntity> List<T> removeDuplicates(List<T> entities) {
+        Map<TsKvCompositeKey, T> unique = new LinkedHashMap<>(entities.size() * 2);
+        for (T entity : entities) {
+            unique.put(new TsKvCompositeKey(entity.getEntityId(), entity.getKey(), entity.getTs()), entity);
+        }
+        return unique.size() == entities.size() ? entities : new ArrayList<>(unique.values());
+    }
+
+    protected void copyAndMerge(String stagingTable, String targetTable, List<? extends AbstractTsKvEntity> entities, String mergeQuery) {
+        copyAndMerge(stagingTable, targetTable, TS_KV_COLUMNS, entities, TsKvBinaryCopyWriter::write, mergeQuery);
+    }
+
+    /**
+     * @param columns columns of the staging table in the order they are encoded by the writer
+     * @param writer  encodes the entities into the binary COPY format, string values are passed through the given converter
+     */
+    protected <T> void copyAndMerge(String stagingTable, String targetTable, String columns, List<T> entities,
+                                    BiFunction<List<T>, UnaryOperator<String>, byte[]> writer, String mergeQuery) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        byte[] data = writer.apply(entities, this::replaceNullChars);
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("CREATE TEMP TABLE IF NOT EXISTS " + stagingTable +
+                                " (LIKE " + targetTable + " INCLUDING DEFAULTS) ON COMMIT DELETE ROWS");
+                    }
+                    try {
+                        connection.unwrap(PGConnection.class).getCopyAPI()
+                                .copyIn("COPY " + stagingTable + " (" + columns + ") FROM STDIN (FORMAT BINARY)", new ByteArrayInputStream(data));
+                    } catch (IOException e) {
+                        throw new SQLException("Failed to copy rows into " + stagingTable, e);
+                    }
+                    try (Statement statement = connection.createStatement()) {
+                        statement.executeUpdate(mergeQuery);
+                    }
+                    return null;
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert;
+
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Encodes time series rows into the PostgreSQL binary COPY format.
+ * Columns are written in the order of {@link #COLUMNS}.
+ */
+public final class TsKvBinaryCopyWriter {
+
+    public static final String COLUMNS = "entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v";
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 8;
+    private static final int NULL_LENGTH = -1;
+
+    private TsKvBinaryCopyWriter() {
+    }
+
+    public static byte[] write(List<? extends AbstractTsKvEntity> entities, UnaryOperator<String> stringConverter) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entities.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+            for (AbstractTsKvEntity entity : entities) {
+                out.writeShort(FIELD_COUNT);
+                out.writeInt(16);
+                out.writeLong(entity.getEntityId().getMostSignificantBits());
+                out.writeLong(entity.getEntityId().getLeastSignificantBits());
+                out.writeInt(4);
+                out.writeInt(entity.getKey());
+                out.writeInt(8);
+                out.writeLong(entity.getTs());
+                if (entity.getBooleanValue() != null) {
+                    out.writeInt(1);
+                    out.writeByte(entity.getBooleanValue() ? 1 : 0);
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+                writeString(out, stringConverter.apply(entity.getStrValue()));
+                if (entity.getLongValue() != null) {
+                    out.writeInt(8);
+                    out.writeLong(entity.getLongValue());
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+                if (entity.getDoubleValue() != null) {
+                    out.writeInt(8);
+                    out.writeDouble(entity.getDoubleValue());
+                } else {
+                    out.writeInt(NULL_LENGTH);
+                }
+                // binary representation of json is the same as the text one
+                writeString(out, stringConverter.apply(entity.getJsonValue()));
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode time series for COPY", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value != null) {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        } else {
+            out.writeInt(NULL_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.latest.psql;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.sqlts.TsKey;
+import org.thingsboard.server.dao.sqlts.insert.AbstractCopyInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
+import org.thingsboard.server.dao.util.PsqlTsLatestAnyDao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@PsqlTsLatestAnyDao
+@Repository
+@ConditionalOnProperty(prefix = "sql.ts_latest", value = "insert_mode", havingValue = "copy")
+public class PsqlLatestCopyInsertTsRepository extends AbstractCopyInsertRepository implements InsertLatestTsRepository {
+
+    private static final String STAGING_TABLE = "ts_kv_latest_copy";
+
+    private static final String MERGE_QUERY = "INSERT INTO ts_kv_latest (" + TS_KV_COLUMNS + ") " +
+            "SELECT " + TS_KV_COLUMNS + " FROM " + STAGING_TABLE + " ORDER BY entity_id, key " +
+            "ON CONFLICT (entity_id, key) DO UPDATE SET ts = EXCLUDED.ts, bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, " +
+            "long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v";
+
+    private static final String MERGE_BY_LATEST_TS_QUERY = MERGE_QUERY + " WHERE ts_kv_latest.ts <= EXCLUDED.ts";
+
+    @Value("${sql.ts_latest.update_by_latest_ts:true}")
+    private Boolean updateByLatestTs;
+
+    @Override
+    public void saveOrUpdate(List<TsKvLatestEntity> entities) {
+        Map<TsKey, TsKvLatestEntity> latest = new LinkedHashMap<>(entities.size() * 2);
+        for (TsKvLatestEntity entity : entities) {
+            latest.merge(new TsKey(entity.getEntityId(), entity.getKey()), entity,
+                    (oldTs, newTs) -> !updateByLatestTs || oldTs.getTs() <= newTs.getTs() ? newTs : oldTs);
+        }
+        copyAndMerge(STAGING_TABLE, "ts_kv_latest", new ArrayList<>(latest.values()),
+                updateByLatestTs ? MERGE_BY_LATEST_TS_QUERY : MERGE_QUERY);
+    }
+}
@@ -16,6 +16,7 @@
 package org.thingsboard.server.dao.sqlts.insert.latest.psql;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.TransactionStatus;
@@ -36,6 +37,7 @@ import java.util.List;
 @PsqlTsLatestAnyDao
 @Repository
 @Transactional
+@ConditionalOnProperty(prefix = "sql.ts_latest", value = "insert_mode", havingValue = "batch", matchIfMissing = true)
 public class PsqlLatestInsertTsRepository extends AbstractInsertRepository implements InsertLatestTsRepository {
 
     @Value("${sql.ts_latest.update_by_latest_ts:true}")
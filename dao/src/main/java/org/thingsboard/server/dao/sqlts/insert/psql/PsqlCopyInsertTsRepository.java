@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.psql;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.insert.AbstractCopyInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.util.List;
+
+@SqlTsDao
+@PsqlDao
+@Repository
+@ConditionalOnProperty(prefix = "sql.ts", value = "insert_mode", havingValue = "copy")
+public class PsqlCopyInsertTsRepository extends AbstractCopyInsertRepository implements InsertTsRepository<TsKvEntity> {
+
+    private static final String STAGING_TABLE = "ts_kv_copy";
+    private static final String MERGE_QUERY = String.format(TS_KV_MERGE_QUERY_TEMPLATE, "ts_kv", STAGING_TABLE);
+
+    @Override
+    public void saveOrUpdate(List<TsKvEntity> entities) {
+        copyAndMerge(STAGING_TABLE, "ts_kv", removeDuplicates(entities), MERGE_QUERY);
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.sqlts.insert.timescale;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -33,6 +34,7 @@ import java.util.List;
 @PsqlDao
 @Repository
 @Transactional
+@ConditionalOnProperty(prefix = "sql.ts", value = "insert_mode", havingValue = "batch", matchIfMissing = true)
 public class TimescaleInsertTsRepository extends AbstractInsertRepository implements InsertTsRepository<TimescaleTsKvEntity> {
 
     private static final String INSERT_OR_UPDATE =
@@ -22,11 +22,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sqlts.AbstractChunkedAggregationTimeseriesDao;
 import org.thingsboard.server.dao.sqlts.insert.psql.PsqlPartitioningRepository;
@@ -44,6 +48,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -54,8 +59,12 @@ import java.util.concurrent.locks.ReentrantLock;
 @Slf4j
 @PsqlDao
 @SqlTsDao
+@ConditionalOnProperty(prefix = "sql.ts", value = "storage", havingValue = "rows", matchIfMissing = true)
 public class JpaPsqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDao {
 
+    private static final String FIND_MAX_TTL = "SELECT max(attribute_kv.long_v) FROM attribute_kv WHERE attribute_kv.attribute_key = 'TTL' " +
+            "AND attribute_kv.entity_id IN (SELECT id FROM tenant UNION ALL SELECT id FROM customer)";
+
     private final Map<Long, PsqlPartition> partitions = new ConcurrentHashMap<>();
     private static final ReentrantLock partitionCreationLock = new ReentrantLock();
 
@@ -64,9 +73,21 @@ public class JpaPsqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDa
 
     private SqlTsPartitionDate tsFormat;
 
+    @Autowired
+    private PsqlAggregationRepository aggregationRepository;
+
+    @Autowired(required = false)
+    private PsqlTsRollupRepository rollupRepository;
+
+    @Autowired(required = false)
+    private PsqlTsTtlCleanupEngine ttlCleanupEngine;
+
     @Value("${sql.postgres.ts_key_value_partitioning:MONTHS}")
     private String partitioning;
 
+    @Value("${sql.postgres.single_query_aggregation:true}")
+    private boolean singleQueryAggregation;
+
 
     @Override
     protected void init() {
@@ -99,10 +120,114 @@ public class JpaPsqlTimeseriesDao extends AbstractChunkedAggregationTimeseriesDa
         return Futures.transform(tsQueue.add(entity), v -> dataPointDays, MoreExecutors.directExecutor());
     }
 
+    @Override
+    protected void saveBatch(List<TsKvEntity> entities) {
+        if (rollupRepository != null) {
+            rollupRepository.save(entities);
+        } else {
+            super.saveBatch(entities);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Void> remove(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
+        ListenableFuture<Void> removeFuture = super.remove(tenantId, entityId, query);
+        if (rollupRepository == null) {
+            return removeFuture;
+        }
+        return Futures.transform(removeFuture, v -> {
+            rollupRepository.rebuild(entityId.getId(), getOrSaveKeyId(query.getKey()), query.getStartTs(), query.getEndTs());
+            return null;
+        }, service);
+    }
+
+    @Override
+    protected ListenableFuture<List<TsKvEntry>> findAllAndAggregateAsync(EntityId entityId, ReadTsKvQuery query) {
+        if (rollupRepository == null) {
+            return findAllAndAggregateFromTsKv(entityId, query);
+        }
+        Integer keyId = getOrSaveKeyId(query.getKey());
+        ListenableFuture<List<TsKvEntity>> rollupFuture = service.submit(() -> rollupRepository.findAggregated(entityId.getId(), keyId,
+                query.getStartTs(), query.getEndTs(), query.getInterval(), query.getAggregation()));
+        return Futures.transformAsync(rollupFuture, entities -> entities != null ?
+                Futures.immediateFuture(toAggregatedData(entityId, query, entities)) :
+                findAllAndAggregateFromTsKv(entityId, query), MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<List<TsKvEntry>> findAllAndAggregateFromTsKv(EntityId entityId, ReadTsKvQuery query) {
+        if (!singleQueryAggregation) {
+            return super.findAllAndAggregateAsync(entityId, query);
+        }
+        Integer keyId = getOrSaveKeyId(query.getKey());
+        return service.submit(() -> toAggregatedData(entityId, query, aggregationRepository.findAggregated(entityId.getId(), keyId,
+                query.getStartTs(), query.getEndTs(), query.getInterval(), query.getAggregation())));
+    }
+
+    private static List<TsKvEntry> toAggregatedData(EntityId entityId, ReadTsKvQuery query, List<TsKvEntity> entities) {
+        entities.forEach(entity -> {
+            entity.setEntityId(entityId.getId());
+            entity.setStrKey(query.getKey());
+        });
+        return DaoUtil.convertDataList(entities);
+    }
+
     @Override
     public void cleanup(long systemTtl) {
-        cleanupPartitions(systemTtl);
-        super.cleanup(systemTtl);
+        if (ttlCleanupEngine != null) {
+            cleanupBatched(systemTtl);
+        } else {
+            long startTs = System.currentTimeMillis();
+            cleanupPartitions(systemTtl);
+            super.cleanup(systemTtl);
+            if (rollupRepository != null) {
+                cleanupRollups(systemTtl, startTs, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private void cleanupBatched(long systemTtl) {
+        log.info("Going to cleanup old timeseries data in batches using partition type: {} and ttl: {}s", partitioning, systemTtl);
+        try {
+            ttlCleanupEngine.cleanup(systemTtl, partitions::remove);
+        } catch (Exception e) {
+            log.error("Exception occurred during timeseries TTL task execution ", e);
+        }
+    }
+
+    private void cleanupRollups(long systemTtl, long startTs, long endTs) {
+        log.info("Going to cleanup old timeseries rollups using ttl: {}s", systemTtl);
+        try {
+            long partitionsEndTs = getDroppedPartitionsEndTs(systemTtl, startTs);
+            if (partitionsEndTs > 0) {
+                log.info("Total timeseries rollups removed with the partitions: [{}]", rollupRepository.deleteBefore(partitionsEndTs));
+            }
+            log.info("Total entities with timeseries rollups cleaned up by TTL: [{}]", rollupRepository.deleteExpired(systemTtl, startTs, endTs));
+        } catch (Exception e) {
+            log.error("Exception occurred during timeseries rollups TTL task execution ", e);
+        }
+    }
+
+    /**
+     * Returns the end of the partitions dropped by the drop_partitions_by_max_ttl procedure, or 0 if none were dropped.
+     * The start of the cleanup is used, so the partition that expired during the cleanup keeps its rollups.
+     */
+    private long getDroppedPartitionsEndTs(long systemTtl, long startTs) throws SQLException {
+        if (tsFormat.equals(SqlTsPartitionDate.INDEFINITE)) {
+            return 0;
+        }
+        long maxTtl = systemTtl;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(FIND_MAX_TTL);
+             ResultSet resultSet = stmt.executeQuery()) {
+            if (resultSet.next()) {
+                maxTtl = Math.max(maxTtl, resultSet.getLong(1));
+            }
+        }
+        if (maxTtl <= 0) {
+            return 0;
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(startTs - TimeUnit.SECONDS.toMillis(maxTtl)), ZoneOffset.UTC);
+        return toMills(tsFormat.trancateTo(time));
     }
 
     private void cleanupPartitions(long systemTtl) {
@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Aggregates all time buckets of the interval with a single statement that groups rows by a computed bucket,
+ * instead of running a separate query for each bucket.
+ * Buckets without data are not returned, same as the per-bucket queries that return empty results for them.
+ */
+@Repository
+@PsqlDao
+@SqlTsDao
+public class PsqlAggregationRepository {
+
+    private static final String SELECT_BUCKET = "SELECT ? + ((tskv.ts - ?) / ?) * ? AS ts_bucket, ";
+
+    private static final String FROM_WHERE_CLAUSE = " FROM ts_kv tskv WHERE tskv.entity_id = ? AND tskv.key = ? AND tskv.ts >= ? AND tskv.ts < ? " +
+            "GROUP BY ts_bucket ORDER BY ts_bucket";
+
+    private static final String NUMERIC_COUNTS = "SUM(CASE WHEN tskv.long_v IS NULL THEN 0 ELSE 1 END) AS long_count, " +
+            "SUM(CASE WHEN tskv.dbl_v IS NULL THEN 0 ELSE 1 END) AS dbl_count";
+
+    private static final String SUM_COLUMNS = "SUM(COALESCE(tskv.long_v, 0)) AS long_value, SUM(COALESCE(tskv.dbl_v, 0.0)) AS dbl_value, " +
+            "null AS str_value, " + NUMERIC_COUNTS;
+
+    private static final String MIN_COLUMNS = "MIN(COALESCE(tskv.long_v, 9223372036854775807)) AS long_value, " +
+            "MIN(COALESCE(tskv.dbl_v, 1.79769E+308)) AS dbl_value, MIN(tskv.str_v) AS str_value, " + NUMERIC_COUNTS;
+
+    private static final String MAX_COLUMNS = "MAX(COALESCE(tskv.long_v, -9223372036854775807)) AS long_value, " +
+            "MAX(COALESCE(tskv.dbl_v, -1.79769E+308)) AS dbl_value, MAX(tskv.str_v) AS str_value, " + NUMERIC_COUNTS;
+
+    private static final String COUNT_COLUMNS = "SUM(CASE WHEN tskv.bool_v IS NULL THEN 0 ELSE 1 END) AS bool_count, " +
+            "SUM(CASE WHEN tskv.str_v IS NULL THEN 0 ELSE 1 END) AS str_count, " +
+            "SUM(CASE WHEN tskv.json_v IS NULL THEN 0 ELSE 1 END) AS json_count, " + NUMERIC_COUNTS;
+
+    private static final String FIND_SUM_QUERY = SELECT_BUCKET + SUM_COLUMNS + FROM_WHERE_CLAUSE;
+    private static final String FIND_MIN_QUERY = SELECT_BUCKET + MIN_COLUMNS + FROM_WHERE_CLAUSE;
+    private static final String FIND_MAX_QUERY = SELECT_BUCKET + MAX_COLUMNS + FROM_WHERE_CLAUSE;
+    private static final String FIND_COUNT_QUERY = SELECT_BUCKET + COUNT_COLUMNS + FROM_WHERE_CLAUSE;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns aggregated values of the buckets [startTs + N * interval, startTs + (N + 1) * interval) that have data,
+     * ordered by the bucket start. The ts of each entity is the middle of its bucket.
+     */
+    public List<TsKvEntity> findAggregated(UUID entityId, int key, long startTs, long endTs, long interval, Aggregation aggregation) {
+        long bucketsEndTs = startTs + ((endTs - startTs + interval - 1) / interval) * interval;
+        List<TsKvEntity> result = new ArrayList<>();
+        jdbcTemplate.query(getQuery(aggregation), (RowCallbackHandler) rs -> {
+            TsKvEntity entity = toEntity(rs, aggregation);
+            if (entity.isNotEmpty()) {
+                entity.setTs(rs.getLong("ts_bucket") + interval / 2);
+                result.add(entity);
+            }
+        }, startTs, startTs, interval, interval, entityId, key, startTs, bucketsEndTs);
+        return result;
+    }
+
+    private static String getQuery(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return FIND_SUM_QUERY;
+            case MIN:
+                return FIND_MIN_QUERY;
+            case MAX:
+                return FIND_MAX_QUERY;
+            case COUNT:
+                return FIND_COUNT_QUERY;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static TsKvEntity toEntity(ResultSet rs, Aggregation aggregation) throws SQLException {
+        if (aggregation == Aggregation.COUNT) {
+            return new TsKvEntity(rs.getLong("bool_count"), rs.getLong("str_count"), rs.getLong("long_count"),
+                    rs.getLong("dbl_count"), rs.getLong("json_count"));
+        }
+        String strValue = rs.getString("str_value");
+        if (strValue != null) {
+            // string min and max take precedence over numeric ones, like in the per-bucket queries
+            return new TsKvEntity(strValue);
+        }
+        return new TsKvEntity(rs.getLong("long_value"), rs.getDouble("dbl_value"),
+                rs.getLong("long_count"), rs.getLong("dbl_count"), aggregation.name());
+    }
+}
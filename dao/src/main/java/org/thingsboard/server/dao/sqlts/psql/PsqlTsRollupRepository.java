@@ -0,0 +1,476 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvCompositeKey;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps partial aggregates of the time series for the configured rollup intervals in the ts_rollup table.
+ * The aggregates are merged on every saved batch, so aggregation queries read one row per rollup bucket
+ * instead of all raw ts_kv rows.
+ * <p>
+ * The batch is written to ts_kv and merged into the rollups in one transaction. Only the points that were actually
+ * inserted are added to the rollups. The buckets of the points that were overwritten with a different value are
+ * rebuilt from ts_kv, and the points saved again with the same value are ignored.
+ * The buckets of the removed data and of the data expired by the TTL are rebuilt or removed after the raw cleanup.
+ * <p>
+ * The rollups of an interval are complete only for the buckets after the moment they were enabled,
+ * this moment is kept in the ts_rollup_interval table. Older data is aggregated from the ts_kv table, as well as
+ * the parts of the query buckets that are not aligned to the rollup buckets.
+ * Strings are compared by their binary representation, not by the database collation.
+ */
+@Slf4j
+@Repository
+@PsqlDao
+@SqlTsDao
+@ConditionalOnProperty(prefix = "sql.ts.rollup", value = "enabled", havingValue = "true")
+public class PsqlTsRollupRepository extends AbstractInsertRepository {
+
+    private static final String ROLLUP_COLUMNS = "long_sum, long_min, long_max, long_count, dbl_sum, dbl_min, dbl_max, dbl_count, " +
+            "bool_count, str_count, json_count, str_min, str_max";
+
+    private static final String RAW_ROLLUP_COLUMNS = "SUM(COALESCE(tskv.long_v, 0)) AS long_sum, MIN(tskv.long_v) AS long_min, " +
+            "MAX(tskv.long_v) AS long_max, COUNT(tskv.long_v) AS long_count, " +
+            "SUM(COALESCE(tskv.dbl_v, 0.0)) AS dbl_sum, MIN(tskv.dbl_v) AS dbl_min, MAX(tskv.dbl_v) AS dbl_max, COUNT(tskv.dbl_v) AS dbl_count, " +
+            "COUNT(tskv.bool_v) AS bool_count, COUNT(tskv.str_v) AS str_count, COUNT(tskv.json_v) AS json_count, " +
+            "MIN(tskv.str_v COLLATE \"C\") AS str_min, MAX(tskv.str_v COLLATE \"C\") AS str_max";
+
+    // values that are saved again without changes are not updated, so they are not returned
+    private static final String INSERT_TS_KV = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "SELECT v.entity_id, v.key, v.ts, v.bool_v, v.str_v, v.long_v, v.dbl_v, v.json_v::json " +
+            "FROM unnest(?::uuid[], ?::int[], ?::bigint[], ?::boolean[], ?::varchar[], ?::bigint[], ?::double precision[], ?::varchar[]) " +
+            "AS v(entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) ORDER BY v.entity_id, v.key, v.ts " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, " +
+            "long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v " +
+            "WHERE (ts_kv.bool_v, ts_kv.str_v, ts_kv.long_v, ts_kv.dbl_v, ts_kv.json_v::text) IS DISTINCT FROM " +
+            "(EXCLUDED.bool_v, EXCLUDED.str_v, EXCLUDED.long_v, EXCLUDED.dbl_v, EXCLUDED.json_v::text) " +
+            "RETURNING entity_id, key, ts, xmax = 0 AS inserted";
+
+    private static final String UPSERT_ROLLUP = "INSERT INTO ts_rollup (entity_id, key, interval_ms, bucket_ts, " + ROLLUP_COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (entity_id, key, interval_ms, bucket_ts) DO UPDATE SET " +
+            "long_sum = ts_rollup.long_sum + excluded.long_sum, long_min = LEAST(ts_rollup.long_min, excluded.long_min), " +
+            "long_max = GREATEST(ts_rollup.long_max, excluded.long_max), long_count = ts_rollup.long_count + excluded.long_count, " +
+            "dbl_sum = ts_rollup.dbl_sum + excluded.dbl_sum, dbl_min = LEAST(ts_rollup.dbl_min, excluded.dbl_min), " +
+            "dbl_max = GREATEST(ts_rollup.dbl_max, excluded.dbl_max), dbl_count = ts_rollup.dbl_count + excluded.dbl_count, " +
+            "bool_count = ts_rollup.bool_count + excluded.bool_count, str_count = ts_rollup.str_count + excluded.str_count, " +
+            "json_count = ts_rollup.json_count + excluded.json_count, str_min = LEAST(ts_rollup.str_min, excluded.str_min), " +
+            "str_max = GREATEST(ts_rollup.str_max, excluded.str_max)";
+
+    private static final String FIND_ROLLUPS = "SELECT bucket_ts, " + ROLLUP_COLUMNS + " FROM ts_rollup " +
+            "WHERE entity_id = ? AND key = ? AND interval_ms = ? AND bucket_ts >= ? AND bucket_ts < ?";
+
+    private static final String FIND_RAW_ROLLUPS = "SELECT ? + ((tskv.ts - ?) / ?) * ? AS bucket_ts, " + RAW_ROLLUP_COLUMNS + " " +
+            "FROM unnest(?, ?) AS w(start_ts, end_ts) JOIN ts_kv tskv ON tskv.ts >= w.start_ts AND tskv.ts < w.end_ts " +
+            "WHERE tskv.entity_id = ? AND tskv.key = ? GROUP BY bucket_ts";
+
+    private static final String DELETE_ROLLUPS = "DELETE FROM ts_rollup WHERE entity_id = ? AND key = ? AND interval_ms = ? AND bucket_ts >= ? AND bucket_ts < ?";
+
+    private static final String REBUILD_ROLLUPS = "INSERT INTO ts_rollup (entity_id, key, interval_ms, bucket_ts, " + ROLLUP_COLUMNS + ") " +
+            "SELECT ?::uuid, ?::int, ?::bigint, (tskv.ts / ?) * ? AS bucket_ts, " + RAW_ROLLUP_COLUMNS + " " +
+            "FROM ts_kv tskv WHERE tskv.entity_id = ? AND tskv.key = ? AND tskv.ts >= ? AND tskv.ts < ? GROUP BY bucket_ts";
+
+    private static final String DELETE_EXPIRED_ROLLUPS = "DELETE FROM ts_rollup WHERE bucket_ts + interval_ms <= ?";
+
+    private static final String DELETE_EXPIRED_ENTITY_ROLLUPS = "DELETE FROM ts_rollup WHERE entity_id = ? AND interval_ms = ? AND bucket_ts < ?";
+
+    private static final String REBUILD_ENTITY_ROLLUPS = "INSERT INTO ts_rollup (entity_id, key, interval_ms, bucket_ts, " + ROLLUP_COLUMNS + ") " +
+            "SELECT ?::uuid, tskv.key, ?::bigint, (tskv.ts / ?) * ? AS bucket_ts, " + RAW_ROLLUP_COLUMNS + " " +
+            "FROM ts_kv tskv WHERE tskv.entity_id = ? AND tskv.ts >= ? AND tskv.ts < ? GROUP BY tskv.key, bucket_ts";
+
+    // the same TTL of the devices, assets and customers as used by the cleanup_timeseries_by_ttl procedure
+    private static final String FIND_ENTITY_TTLS = "WITH tenant_ttl AS (SELECT t.id AS tenant_id, COALESCE((SELECT max(a.long_v) FROM attribute_kv a " +
+            "WHERE a.entity_type = 'TENANT' AND a.entity_id = t.id AND a.attribute_key = 'TTL'), ?) AS ttl FROM tenant t), " +
+            "customer_ttl AS (SELECT c.id AS customer_id, COALESCE((SELECT max(a.long_v) FROM attribute_kv a " +
+            "WHERE a.entity_type = 'CUSTOMER' AND a.entity_id = c.id AND a.attribute_key = 'TTL'), tt.ttl) AS ttl " +
+            "FROM customer c JOIN tenant_ttl tt ON tt.tenant_id = c.tenant_id) " +
+            "SELECT e.entity_id, e.ttl FROM (" +
+            "SELECT customer_id AS entity_id, ttl FROM customer_ttl " +
+            "UNION ALL SELECT d.id, COALESCE(ct.ttl, tt.ttl) FROM device d JOIN tenant_ttl tt ON tt.tenant_id = d.tenant_id " +
+            "LEFT JOIN customer_ttl ct ON ct.customer_id = d.customer_id " +
+            "UNION ALL SELECT s.id, COALESCE(ct.ttl, tt.ttl) FROM asset s JOIN tenant_ttl tt ON tt.tenant_id = s.tenant_id " +
+            "LEFT JOIN customer_ttl ct ON ct.customer_id = s.customer_id) AS e(entity_id, ttl) WHERE e.ttl > 0";
+
+    private static final String INSERT_INTERVAL = "INSERT INTO ts_rollup_interval (interval_ms, valid_from) VALUES (?, ?) " +
+            "ON CONFLICT (interval_ms) DO NOTHING";
+    private static final String FIND_INTERVALS = "SELECT interval_ms, valid_from FROM ts_rollup_interval";
+
+    @Value("${sql.ts.rollup.intervals:60000,3600000,86400000}")
+    private String intervalsStr;
+
+    private List<Long> intervals;
+
+    private volatile Map<Long, Long> validFrom;
+
+    @PostConstruct
+    public void init() {
+        intervals = Arrays.stream(intervalsStr.split(","))
+                .map(String::trim)
+                .map(Long::parseLong)
+                .sorted(Comparator.reverseOrder())
+                .collect(Collectors.toList());
+        if (intervals.stream().anyMatch(interval -> interval <= 0)) {
+            throw new IllegalArgumentException("Incorrect rollup intervals: " + intervalsStr);
+        }
+    }
+
+    /**
+     * Saves the points to ts_kv and updates the rollups of all intervals in the same transaction.
+     * Points before 1970 are not rolled up.
+     */
+    public void save(List<TsKvEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        // the intervals are registered before the first rolled up point
+        getValidFrom();
+        Map<TsKvCompositeKey, TsKvEntity> unique = new LinkedHashMap<>(entities.size() * 2);
+        // a single INSERT ... ON CONFLICT statement can't update the same row twice, so the last value wins
+        entities.forEach(entity -> unique.put(new TsKvCompositeKey(entity.getEntityId(), entity.getKey(), entity.getTs()), entity));
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                List<TsKvEntity> inserted = new ArrayList<>(unique.size());
+                List<TsKvEntity> updated = new ArrayList<>();
+                jdbcTemplate.query(connection -> prepareInsert(connection, unique.values()), (RowCallbackHandler) rs -> {
+                    TsKvEntity entity = unique.get(new TsKvCompositeKey(rs.getObject("entity_id", UUID.class), rs.getInt("key"), rs.getLong("ts")));
+                    (rs.getBoolean("inserted") ? inserted : updated).add(entity);
+                });
+                merge(inserted);
+                rebuild(updated);
+            }
+        });
+    }
+
+    private PreparedStatement prepareInsert(Connection connection, Iterable<TsKvEntity> entities) throws SQLException {
+        List<UUID> entityIds = new ArrayList<>();
+        List<Integer> keys = new ArrayList<>();
+        List<Long> tss = new ArrayList<>();
+        List<Boolean> boolValues = new ArrayList<>();
+        List<String> strValues = new ArrayList<>();
+        List<Long> longValues = new ArrayList<>();
+        List<Double> doubleValues = new ArrayList<>();
+        List<String> jsonValues = new ArrayList<>();
+        for (TsKvEntity entity : entities) {
+            entityIds.add(entity.getEntityId());
+            keys.add(entity.getKey());
+            tss.add(entity.getTs());
+            boolValues.add(entity.getBooleanValue());
+            strValues.add(replaceNullChars(entity.getStrValue()));
+            longValues.add(entity.getLongValue());
+            doubleValues.add(entity.getDoubleValue());
+            jsonValues.add(replaceNullChars(entity.getJsonValue()));
+        }
+        PreparedStatement ps = connection.prepareStatement(INSERT_TS_KV);
+        ps.setArray(1, connection.createArrayOf("uuid", entityIds.toArray()));
+        ps.setArray(2, connection.createArrayOf("int4", keys.toArray()));
+        ps.setArray(3, connection.createArrayOf("int8", tss.toArray()));
+        ps.setArray(4, connection.createArrayOf("bool", boolValues.toArray()));
+        ps.setArray(5, connection.createArrayOf("varchar", strValues.toArray()));
+        ps.setArray(6, connection.createArrayOf("int8", longValues.toArray()));
+        ps.setArray(7, connection.createArrayOf("float8", doubleValues.toArray()));
+        ps.setArray(8, connection.createArrayOf("varchar", jsonValues.toArray()));
+        return ps;
+    }
+
+    private void merge(List<TsKvEntity> entities) {
+        // sorted to lock the rollup rows in the same order in all concurrent transactions
+        Map<RollupKey, TsKvRollup> rollups = new TreeMap<>();
+        for (TsKvEntity entity : entities) {
+            if (entity.getTs() < 0) {
+                continue;
+            }
+            for (Long interval : intervals) {
+                RollupKey rollupKey = new RollupKey(entity.getEntityId(), entity.getKey(), interval, toBucketTs(entity.getTs(), interval));
+                rollups.computeIfAbsent(rollupKey, k -> new TsKvRollup()).add(entity);
+            }
+        }
+        if (rollups.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(rollups.size());
+        rollups.forEach((rollupKey, rollup) -> args.add(new Object[]{rollupKey.getEntityId(), rollupKey.getKey(), rollupKey.getInterval(),
+                rollupKey.getBucketTs(), rollup.getLongSum(), rollup.getLongMin(), rollup.getLongMax(), rollup.getLongCount(),
+                rollup.getDoubleSum(), rollup.getDoubleMin(), rollup.getDoubleMax(), rollup.getDoubleCount(),
+                rollup.getBooleanCount(), rollup.getStrCount(), rollup.getJsonCount(), rollup.getStrMin(), rollup.getStrMax()}));
+        jdbcTemplate.batchUpdate(UPSERT_ROLLUP, args);
+    }
+
+    /**
+     * The previous values of the overwritten points are unknown, so their buckets are aggregated from ts_kv again.
+     */
+    private void rebuild(List<TsKvEntity> entities) {
+        Set<RollupKey> buckets = new TreeSet<>();
+        for (TsKvEntity entity : entities) {
+            if (entity.getTs() < 0) {
+                continue;
+            }
+            for (Long interval : intervals) {
+                buckets.add(new RollupKey(entity.getEntityId(), entity.getKey(), interval, toBucketTs(entity.getTs(), interval)));
+            }
+        }
+        for (RollupKey bucket : buckets) {
+            rebuildBuckets(bucket.getEntityId(), bucket.getKey(), bucket.getInterval(), bucket.getBucketTs(), bucket.getBucketTs() + bucket.getInterval());
+        }
+    }
+
+    /**
+     * Returns the same buckets as {@link PsqlAggregationRepository#findAggregated} does, or null if none of the rollup
+     * intervals fits the query: the query interval must be a multiple of the rollup interval and the rollups must be
+     * complete since the start of the query.
+     */
+    public List<TsKvEntity> findAggregated(UUID entityId, int key, long startTs, long endTs, long interval, Aggregation aggregation) {
+        Long rollupInterval = selectRollupInterval(startTs, interval);
+        if (rollupInterval == null) {
+            return null;
+        }
+        long bucketsEndTs = startTs + ((endTs - startTs + interval - 1) / interval) * interval;
+        long alignedStartTs = toBucketTs(startTs + rollupInterval - 1, rollupInterval);
+        long alignedEndTs = Math.max(alignedStartTs, toBucketTs(bucketsEndTs, rollupInterval));
+
+        Map<Long, TsKvRollup> buckets = new TreeMap<>();
+        List<Long> rawStarts = new ArrayList<>();
+        List<Long> rawEnds = new ArrayList<>();
+        if (startTs < alignedStartTs) {
+            rawStarts.add(startTs);
+            rawEnds.add(Math.min(alignedStartTs, bucketsEndTs));
+        }
+        if (alignedStartTs < alignedEndTs) {
+            jdbcTemplate.query(FIND_ROLLUPS, (RowCallbackHandler) rs -> {
+                long rollupTs = rs.getLong("bucket_ts");
+                long offset = (rollupTs - startTs) % interval;
+                if (offset + rollupInterval <= interval) {
+                    buckets.computeIfAbsent(rollupTs - offset, ts -> new TsKvRollup()).merge(toRollup(rs));
+                } else {
+                    // the rollup bucket spans two query buckets, so its points are aggregated from ts_kv
+                    rawStarts.add(rollupTs);
+                    rawEnds.add(rollupTs + rollupInterval);
+                }
+            }, entityId, key, rollupInterval, alignedStartTs, alignedEndTs);
+        }
+        if (alignedEndTs < bucketsEndTs && alignedStartTs < bucketsEndTs) {
+            rawStarts.add(alignedEndTs);
+            rawEnds.add(bucketsEndTs);
+        }
+        if (!rawStarts.isEmpty()) {
+            jdbcTemplate.query(FIND_RAW_ROLLUPS, ps -> {
+                ps.setLong(1, startTs);
+                ps.setLong(2, startTs);
+                ps.setLong(3, interval);
+                ps.setLong(4, interval);
+                ps.setArray(5, ps.getConnection().createArrayOf("bigint", rawStarts.toArray()));
+                ps.setArray(6, ps.getConnection().createArrayOf("bigint", rawEnds.toArray()));
+                ps.setObject(7, entityId);
+                ps.setInt(8, key);
+            }, (RowCallbackHandler) rs -> buckets.computeIfAbsent(rs.getLong("bucket_ts"), ts -> new TsKvRollup()).merge(toRollup(rs)));
+        }
+
+        List<TsKvEntity> result = new ArrayList<>(buckets.size());
+        buckets.forEach((bucketTs, rollup) -> {
+            TsKvEntity entity = rollup.toEntity(aggregation);
+            if (entity.isNotEmpty()) {
+                entity.setTs(bucketTs + interval / 2);
+                result.add(entity);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Recalculates the rollups of all intervals that intersect [startTs, endTs) from the ts_kv table.
+     * Used after the raw data is removed.
+     */
+    public void rebuild(UUID entityId, int key, long startTs, long endTs) {
+        if (startTs >= endTs || endTs <= 0) {
+            return;
+        }
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (Long interval : intervals) {
+                    long fromTs = toBucketTs(Math.max(0, startTs), interval);
+                    long toTs = toBucketTs(endTs - 1, interval) + interval;
+                    rebuildBuckets(entityId, key, interval, fromTs, toTs);
+                }
+            }
+        });
+    }
+
+    private void rebuildBuckets(UUID entityId, int key, long interval, long fromTs, long toTs) {
+        jdbcTemplate.update(DELETE_ROLLUPS, entityId, key, interval, fromTs, toTs);
+        jdbcTemplate.update(REBUILD_ROLLUPS, entityId, key, interval, interval, interval, entityId, key, fromTs, toTs);
+    }
+
+    /**
+     * Removes the rollup buckets of all entities that end before the given time.
+     * Used when the ts_kv partitions that end at this time are dropped.
+     *
+     * @return number of removed rollup buckets
+     */
+    public int deleteBefore(long ts) {
+        return jdbcTemplate.update(DELETE_EXPIRED_ROLLUPS, ts);
+    }
+
+    /**
+     * Removes the rollups of the entity that are expired by its TTL after the raw data of the entity is removed.
+     * The buckets that intersect [fromExpirationTs, toExpirationTs] are rebuilt from the ts_kv rows that are left,
+     * so the range covers all expiration times the raw cleanup could have used.
+     */
+    public void deleteExpired(UUID entityId, long fromExpirationTs, long toExpirationTs) {
+        if (toExpirationTs <= 0) {
+            return;
+        }
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (Long interval : intervals) {
+                    long fromTs = toBucketTs(Math.max(0, fromExpirationTs), interval);
+                    long toTs = toBucketTs(toExpirationTs, interval) + interval;
+                    jdbcTemplate.update(DELETE_EXPIRED_ENTITY_ROLLUPS, entityId, interval, toTs);
+                    jdbcTemplate.update(REBUILD_ENTITY_ROLLUPS, entityId, interval, interval, interval, entityId, fromTs, toTs);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the rollups expired by the TTL of the tenants and customers after the cleanup_timeseries_by_ttl procedure
+     * that was executed between startTs and endTs.
+     *
+     * @return number of entities with the TTL
+     */
+    public int deleteExpired(long systemTtl, long startTs, long endTs) {
+        Map<UUID, Long> ttls = new HashMap<>();
+        jdbcTemplate.query(FIND_ENTITY_TTLS, (RowCallbackHandler) rs -> ttls.put(rs.getObject("entity_id", UUID.class), rs.getLong("ttl")), systemTtl);
+        ttls.forEach((entityId, ttl) -> {
+            long ttlMs = TimeUnit.SECONDS.toMillis(ttl);
+            deleteExpired(entityId, startTs - ttlMs, endTs - ttlMs);
+        });
+        return ttls.size();
+    }
+
+    private Long selectRollupInterval(long startTs, long interval) {
+        if (startTs < 0) {
+            return null;
+        }
+        Map<Long, Long> validFrom = getValidFrom();
+        for (Long rollupInterval : intervals) {
+            boolean aligned = startTs % rollupInterval == 0;
+            // with unaligned start every query bucket has one rollup bucket that is aggregated from ts_kv
+            if (interval % rollupInterval == 0 && (aligned || interval >= 2 * rollupInterval)
+                    && validFrom.getOrDefault(rollupInterval, Long.MAX_VALUE) <= toBucketTs(startTs + rollupInterval - 1, rollupInterval)) {
+                return rollupInterval;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers the rollup intervals on the first use. The rollups are complete since the first bucket that starts
+     * after the registration, so the earlier data is always aggregated from ts_kv.
+     */
+    private Map<Long, Long> getValidFrom() {
+        Map<Long, Long> result = validFrom;
+        if (result == null) {
+            synchronized (this) {
+                result = validFrom;
+                if (result == null) {
+                    long now = System.currentTimeMillis();
+                    List<Object[]> args = intervals.stream()
+                            .map(interval -> new Object[]{interval, toBucketTs(now, interval) + interval})
+                            .collect(Collectors.toList());
+                    jdbcTemplate.batchUpdate(INSERT_INTERVAL, args);
+                    Map<Long, Long> loaded = new HashMap<>();
+                    jdbcTemplate.query(FIND_INTERVALS, (RowCallbackHandler) rs -> loaded.put(rs.getLong("interval_ms"), rs.getLong("valid_from")));
+                    log.info("Time series rollups are complete since: {}", loaded);
+                    validFrom = result = loaded;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long toBucketTs(long ts, long interval) {
+        return Math.floorDiv(ts, interval) * interval;
+    }
+
+    private static TsKvRollup toRollup(ResultSet rs) throws SQLException {
+        TsKvRollup rollup = new TsKvRollup();
+        rollup.setLongSum(rs.getLong("long_sum"));
+        rollup.setLongMin(rs.getObject("long_min", Long.class));
+        rollup.setLongMax(rs.getObject("long_max", Long.class));
+        rollup.setLongCount(rs.getLong("long_count"));
+        rollup.setDoubleSum(rs.getDouble("dbl_sum"));
+        rollup.setDoubleMin(rs.getObject("dbl_min", Double.class));
+        rollup.setDoubleMax(rs.getObject("dbl_max", Double.class));
+        rollup.setDoubleCount(rs.getLong("dbl_count"));
+        rollup.setBooleanCount(rs.getLong("bool_count"));
+        rollup.setStrCount(rs.getLong("str_count"));
+        rollup.setJsonCount(rs.getLong("json_count"));
+        rollup.setStrMin(rs.getString("str_min"));
+        rollup.setStrMax(rs.getString("str_max"));
+        return rollup;
+    }
+
+    @Data
+    private static class RollupKey implements Comparable<RollupKey> {
+        private static final Comparator<RollupKey> COMPARATOR = Comparator.comparing(RollupKey::getEntityId)
+                .thenComparingInt(RollupKey::getKey)
+                .thenComparingLong(RollupKey::getInterval)
+                .thenComparingLong(RollupKey::getBucketTs);
+
+        private final UUID entityId;
+        private final int key;
+        private final long interval;
+        private final long bucketTs;
+
+        @Override
+        public int compareTo(RollupKey other) {
+            return COMPARATOR.compare(this, other);
+        }
+    }
+}
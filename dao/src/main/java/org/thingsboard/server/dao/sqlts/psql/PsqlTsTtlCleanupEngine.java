@@ -0,0 +1,321 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.util.PsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Removes expired time series without the cleanup_timeseries_by_ttl and drop_partitions_by_max_ttl procedures.
+ * <p>
+ * Partitions of ts_kv that end before the max TTL of all tenants and customers are dropped. The rows that are expired
+ * by the tenant and customer TTL are deleted entity by entity in small batches, in parallel and with the rate limit,
+ * so the cleanup does not hold long transactions and does not produce I/O spikes.
+ * The rollups of the entity are cleaned up after its raw data, if the rollups are enabled.
+ * <p>
+ * Tenants are processed in the order of their ids. The last processed tenant is stored in the ts_ttl_cleanup table,
+ * so the run interrupted by a restart continues from the next tenant with the same expiration time.
+ */
+@Slf4j
+@Component
+@PsqlDao
+@SqlTsDao
+@ConditionalOnProperty(prefix = "sql.ttl.ts", value = "cleanup_mode", havingValue = "batched")
+public class PsqlTsTtlCleanupEngine {
+
+    private static final String STATS_NAME = "tsTtlCleanup";
+    private static final int PAGE_SIZE = 1000;
+    private static final int RUN_ID = 0;
+    // NULL_UUID is not the smallest uuid in PostgreSQL order, so the keyset pagination starts from the zero uuid
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+    private static final Pattern PARTITION_BOUND = Pattern.compile("FROM \\('?(-?\\d+)'?\\) TO \\('?(-?\\d+)'?\\)");
+
+    private static final String START_RUN = "INSERT INTO ts_ttl_cleanup (id, started_ts, last_tenant_id, deleted) VALUES (?, ?, ?, 0) " +
+            "ON CONFLICT (id) DO NOTHING";
+    private static final String FIND_RUN = "SELECT started_ts, last_tenant_id, deleted FROM ts_ttl_cleanup WHERE id = ?";
+    private static final String UPDATE_RUN = "UPDATE ts_ttl_cleanup SET last_tenant_id = ?, deleted = deleted + ? WHERE id = ?";
+    private static final String FINISH_RUN = "DELETE FROM ts_ttl_cleanup WHERE id = ?";
+
+    private static final String FIND_TTL_ATTRIBUTES = "SELECT entity_id, long_v FROM attribute_kv " +
+            "WHERE entity_type = ? AND attribute_key = 'TTL' AND long_v IS NOT NULL";
+    private static final String FIND_TENANTS = "SELECT id FROM tenant WHERE id > ? ORDER BY id LIMIT " + PAGE_SIZE;
+    private static final String FIND_CUSTOMERS = "SELECT id FROM customer WHERE tenant_id = ? AND id > ? ORDER BY id LIMIT " + PAGE_SIZE;
+    private static final String FIND_DEVICES = "SELECT id FROM device WHERE tenant_id = ? AND customer_id = ? AND id > ? ORDER BY id LIMIT " + PAGE_SIZE;
+    private static final String FIND_ASSETS = "SELECT id FROM asset WHERE tenant_id = ? AND customer_id = ? AND id > ? ORDER BY id LIMIT " + PAGE_SIZE;
+
+    private static final String FIND_PARTITIONS = "SELECT c.relname AS name, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+            "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'ts_kv'::regclass";
+    private static final String DELETE_EXPIRED_BATCH = "DELETE FROM ts_kv WHERE (entity_id, key, ts) IN " +
+            "(SELECT entity_id, key, ts FROM ts_kv WHERE entity_id = ? AND ts < ? LIMIT ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Autowired(required = false)
+    private PsqlTsRollupRepository rollupRepository;
+
+    @Value("${sql.ttl.ts.batched.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${sql.ttl.ts.batched.threads:4}")
+    private int threads;
+
+    @Value("${sql.ttl.ts.batched.max_batches_per_second:50}")
+    private double maxBatchesPerSecond;
+
+    private ExecutorService executor;
+    private RateLimiter rateLimiter;
+
+    private DefaultCounter deletedRowsCounter;
+    private DefaultCounter droppedPartitionsCounter;
+    private AtomicLong processedTenants;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(threads, ThingsBoardThreadFactory.forName("ts-ttl-cleanup"));
+        rateLimiter = RateLimiter.create(maxBatchesPerSecond);
+        deletedRowsCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "deletedRows");
+        droppedPartitionsCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "droppedPartitions");
+        processedTenants = statsFactory.createGauge(STATS_NAME + ".processedTenants", new AtomicLong());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the cleanup or continues the interrupted one.
+     *
+     * @param systemTtl         ttl in seconds of the tenants without the TTL attribute
+     * @param partitionConsumer receives the start of every dropped partition
+     * @return number of deleted rows in this run
+     */
+    public long cleanup(long systemTtl, Consumer<Long> partitionConsumer) {
+        jdbcTemplate.update(START_RUN, RUN_ID, System.currentTimeMillis(), MIN_UUID);
+        CleanupRun run = jdbcTemplate.queryForObject(FIND_RUN, (rs, rowNum) ->
+                new CleanupRun(rs.getLong("started_ts"), rs.getObject("last_tenant_id", UUID.class), rs.getLong("deleted")), RUN_ID);
+        if (!MIN_UUID.equals(run.lastTenantId)) {
+            log.info("Resuming timeseries cleanup started at {} after tenant [{}]", run.startedTs, run.lastTenantId);
+        }
+        Map<UUID, Long> tenantTtls = findTtlAttributes("TENANT");
+        Map<UUID, Long> customerTtls = findTtlAttributes("CUSTOMER");
+        processedTenants.set(0);
+
+        // the partitions are dropped only if the data of all tenants and customers expires
+        long maxTtl = systemTtl;
+        boolean infiniteTtl = systemTtl <= 0;
+        for (UUID tenantId : findAllTenantIds()) {
+            long tenantTtl = tenantTtls.getOrDefault(tenantId, systemTtl);
+            infiniteTtl |= tenantTtl <= 0;
+            maxTtl = Math.max(maxTtl, tenantTtl);
+        }
+        for (Long customerTtl : customerTtls.values()) {
+            infiniteTtl |= customerTtl <= 0;
+            maxTtl = Math.max(maxTtl, customerTtl);
+        }
+        if (!infiniteTtl) {
+            dropExpiredPartitions(run.startedTs - TimeUnit.SECONDS.toMillis(maxTtl), partitionConsumer);
+        }
+
+        long deleted = run.deleted;
+        UUID lastTenantId = run.lastTenantId;
+        List<UUID> tenantIds;
+        do {
+            tenantIds = jdbcTemplate.queryForList(FIND_TENANTS, UUID.class, lastTenantId);
+            for (UUID tenantId : tenantIds) {
+                long tenantTtl = tenantTtls.getOrDefault(tenantId, systemTtl);
+                long tenantDeleted = cleanupTenant(tenantId, run.startedTs, tenantTtl, customerTtls);
+                jdbcTemplate.update(UPDATE_RUN, tenantId, tenantDeleted, RUN_ID);
+                deleted += tenantDeleted;
+                lastTenantId = tenantId;
+                processedTenants.incrementAndGet();
+                log.debug("[{}] Removed {} expired telemetry records", tenantId, tenantDeleted);
+            }
+        } while (tenantIds.size() == PAGE_SIZE);
+        jdbcTemplate.update(FINISH_RUN, RUN_ID);
+        log.info("Total telemetry removed stats by TTL for entities: [{}]", deleted);
+        return deleted;
+    }
+
+    private long cleanupTenant(UUID tenantId, long startedTs, long tenantTtl, Map<UUID, Long> customerTtls) {
+        long tenantExpirationTs = toExpirationTs(startedTs, tenantTtl);
+        long deleted = 0;
+        if (tenantExpirationTs > 0) {
+            deleted += deleteExpired(findEntities(FIND_DEVICES, tenantId, ModelConstants.NULL_UUID), tenantExpirationTs);
+            deleted += deleteExpired(findEntities(FIND_ASSETS, tenantId, ModelConstants.NULL_UUID), tenantExpirationTs);
+        }
+        UUID lastCustomerId = MIN_UUID;
+        List<UUID> customerIds;
+        do {
+            customerIds = jdbcTemplate.queryForList(FIND_CUSTOMERS, UUID.class, tenantId, lastCustomerId);
+            for (UUID customerId : customerIds) {
+                Long customerTtl = customerTtls.get(customerId);
+                long customerExpirationTs = customerTtl != null ? toExpirationTs(startedTs, customerTtl) : tenantExpirationTs;
+                if (customerExpirationTs > 0) {
+                    List<UUID> entityIds = new ArrayList<>();
+                    entityIds.add(customerId);
+                    entityIds.addAll(findEntities(FIND_DEVICES, tenantId, customerId));
+                    entityIds.addAll(findEntities(FIND_ASSETS, tenantId, customerId));
+                    deleted += deleteExpired(entityIds, customerExpirationTs);
+                }
+                lastCustomerId = customerId;
+            }
+        } while (customerIds.size() == PAGE_SIZE);
+        return deleted;
+    }
+
+    private List<UUID> findEntities(String query, UUID tenantId, UUID customerId) {
+        List<UUID> result = new ArrayList<>();
+        List<UUID> page;
+        UUID lastId = MIN_UUID;
+        do {
+            page = jdbcTemplate.queryForList(query, UUID.class, tenantId, customerId, lastId);
+            result.addAll(page);
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1);
+            }
+        } while (page.size() == PAGE_SIZE);
+        return result;
+    }
+
+    private long deleteExpired(List<UUID> entityIds, long expirationTs) {
+        List<Future<Long>> futures = new ArrayList<>(entityIds.size());
+        for (UUID entityId : entityIds) {
+            futures.add(executor.submit(() -> deleteExpired(entityId, expirationTs)));
+        }
+        long deleted = 0;
+        try {
+            for (Future<Long> future : futures) {
+                deleted += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Timeseries cleanup was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to remove expired timeseries", e.getCause());
+        }
+        return deleted;
+    }
+
+    private long deleteExpired(UUID entityId, long expirationTs) {
+        long deleted = 0;
+        int batchDeleted;
+        do {
+            rateLimiter.acquire();
+            batchDeleted = jdbcTemplate.update(DELETE_EXPIRED_BATCH, entityId, expirationTs, batchSize);
+            deletedRowsCounter.add(batchDeleted);
+            deleted += batchDeleted;
+        } while (batchDeleted == batchSize);
+        if (rollupRepository != null) {
+            rollupRepository.deleteExpired(entityId, expirationTs, expirationTs);
+        }
+        return deleted;
+    }
+
+    private void dropExpiredPartitions(long expirationTs, Consumer<Long> partitionConsumer) {
+        Map<String, Long> expiredPartitions = new HashMap<>();
+        AtomicLong expiredPartitionsEndTs = new AtomicLong();
+        jdbcTemplate.query(FIND_PARTITIONS, (RowCallbackHandler) rs -> {
+            Matcher matcher = PARTITION_BOUND.matcher(rs.getString("bound"));
+            // the default partition has no bounds and is never dropped
+            if (matcher.find() && Long.parseLong(matcher.group(2)) <= expirationTs) {
+                expiredPartitions.put(rs.getString("name"), Long.parseLong(matcher.group(1)));
+                expiredPartitionsEndTs.accumulateAndGet(Long.parseLong(matcher.group(2)), Math::max);
+            }
+        });
+        expiredPartitions.forEach((name, partitionStartTs) -> {
+            log.info("Dropping expired timeseries partition: {}", name);
+            jdbcTemplate.execute("DROP TABLE IF EXISTS \"" + name.replace("\"", "\"\"") + "\"");
+            droppedPartitionsCounter.increment();
+            partitionConsumer.accept(partitionStartTs);
+        });
+        if (rollupRepository != null && !expiredPartitions.isEmpty()) {
+            rollupRepository.deleteBefore(expiredPartitionsEndTs.get());
+        }
+        log.info("Total partitions removed by TTL: [{}]", expiredPartitions.size());
+    }
+
+    private Map<UUID, Long> findTtlAttributes(String entityType) {
+        Map<UUID, Long> ttls = new HashMap<>();
+        jdbcTemplate.query(FIND_TTL_ATTRIBUTES, (RowCallbackHandler) rs -> ttls.put(rs.getObject("entity_id", UUID.class), rs.getLong("long_v")), entityType);
+        return ttls;
+    }
+
+    private List<UUID> findAllTenantIds() {
+        List<UUID> result = new ArrayList<>();
+        List<UUID> page;
+        UUID lastId = MIN_UUID;
+        do {
+            page = jdbcTemplate.queryForList(FIND_TENANTS, UUID.class, lastId);
+            result.addAll(page);
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1);
+            }
+        } while (page.size() == PAGE_SIZE);
+        return result;
+    }
+
+    private static long toExpirationTs(long startedTs, long ttl) {
+        return ttl > 0 ? startedTs - TimeUnit.SECONDS.toMillis(ttl) : 0;
+    }
+
+    private static class CleanupRun {
+        private final long startedTs;
+        private final UUID lastTenantId;
+        private final long deleted;
+
+        private CleanupRun(long startedTs, UUID lastTenantId, long deleted) {
+            this.startedTs = startedTs;
+            this.lastTenantId = lastTenantId;
+            this.deleted = deleted;
+        }
+    }
+}
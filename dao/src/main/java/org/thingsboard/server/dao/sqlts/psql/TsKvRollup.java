@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+/**
+ * Partial aggregate of the points of a time bucket. Partial aggregates of adjacent buckets are merged
+ * into the aggregate of the wider bucket. Min and max are null while there are no values of the type.
+ * The final value is built with the same {@link TsKvEntity} constructors and defaults as {@link PsqlAggregationRepository} uses.
+ */
+@Data
+public class TsKvRollup {
+
+    private long longSum;
+    private Long longMin;
+    private Long longMax;
+    private long longCount;
+
+    private double doubleSum;
+    private Double doubleMin;
+    private Double doubleMax;
+    private long doubleCount;
+
+    private long booleanCount;
+    private long strCount;
+    private long jsonCount;
+    private String strMin;
+    private String strMax;
+
+    public void add(TsKvEntity point) {
+        if (point.getBooleanValue() != null) {
+            booleanCount++;
+        } else if (point.getLongValue() != null) {
+            long value = point.getLongValue();
+            longSum += value;
+            longMin = longMin == null ? value : Math.min(longMin, value);
+            longMax = longMax == null ? value : Math.max(longMax, value);
+            longCount++;
+        } else if (point.getDoubleValue() != null) {
+            double value = point.getDoubleValue();
+            doubleSum += value;
+            doubleMin = doubleMin == null ? value : Math.min(doubleMin, value);
+            doubleMax = doubleMax == null ? value : Math.max(doubleMax, value);
+            doubleCount++;
+        } else if (point.getStrValue() != null) {
+            String value = point.getStrValue();
+            strMin = min(strMin, value);
+            strMax = max(strMax, value);
+            strCount++;
+        } else if (point.getJsonValue() != null) {
+            jsonCount++;
+        }
+    }
+
+    public void merge(TsKvRollup other) {
+        longSum += other.longSum;
+        longMin = min(longMin, other.longMin);
+        longMax = max(longMax, other.longMax);
+        longCount += other.longCount;
+        doubleSum += other.doubleSum;
+        doubleMin = min(doubleMin, other.doubleMin);
+        doubleMax = max(doubleMax, other.doubleMax);
+        doubleCount += other.doubleCount;
+        booleanCount += other.booleanCount;
+        strCount += other.strCount;
+        jsonCount += other.jsonCount;
+        strMin = min(strMin, other.strMin);
+        strMax = max(strMax, other.strMax);
+    }
+
+    public TsKvEntity toEntity(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return new TsKvEntity(longSum, doubleSum, longCount, doubleCount, aggregation.name());
+            case MIN:
+                return strMin != null ? new TsKvEntity(strMin) : new TsKvEntity(longMin != null ? longMin : Long.MAX_VALUE,
+                        doubleMin != null ? doubleMin : 1.79769E+308, longCount, doubleCount, aggregation.name());
+            case MAX:
+                return strMax != null ? new TsKvEntity(strMax) : new TsKvEntity(longMax != null ? longMax : -Long.MAX_VALUE,
+                        doubleMax != null ? doubleMax : -1.79769E+308, longCount, doubleCount, aggregation.name());
+            case COUNT:
+                return new TsKvEntity(booleanCount, strCount, longCount, doubleCount, jsonCount);
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static <T extends Comparable<T>> T min(T a, T b) {
+        return a == null ? b : b == null || a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static <T extends Comparable<T>> T max(T a, T b) {
+        return a == null ? b : b == null || a.compareTo(b) >= 0 ? a : b;
+    }
+}
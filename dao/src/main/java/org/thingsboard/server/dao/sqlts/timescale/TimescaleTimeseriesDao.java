@@ -37,9 +37,12 @@ import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
 import org.thingsboard.server.dao.model.sqlts.timescale.ts.TimescaleTsKvEntity;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueAdaptiveSettings;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.thingsboard.server.dao.sql.TbSqlWriteAheadBufferSettings;
 import org.thingsboard.server.dao.sqlts.AbstractSqlTimeseriesDao;
+import org.thingsboard.server.dao.sqlts.TsKvEntityCodec;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
 import org.thingsboard.server.dao.util.TimescaleDBTsDao;
@@ -67,6 +70,12 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
     @Autowired
     private StatsFactory statsFactory;
 
+    @Autowired
+    private TbSqlBlockingQueueAdaptiveSettings adaptiveSettings;
+
+    @Autowired
+    private TbSqlWriteAheadBufferSettings writeAheadBufferSettings;
+
     @Autowired
     protected InsertTsRepository<TimescaleTsKvEntity> insertRepository;
 
@@ -81,6 +90,8 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts.timescale")
                 .batchSortEnabled(batchSortEnabled)
+                .adaptiveSettings(adaptiveSettings)
+                .writeAheadBufferSettings(writeAheadBufferSettings)
                 .build();
 
         Function<TimescaleTsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
@@ -89,7 +100,8 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         tsQueue.init(logExecutor, v -> insertRepository.saveOrUpdate(v),
                 Comparator.comparing((Function<TimescaleTsKvEntity, UUID>) AbstractTsKvEntity::getEntityId)
                         .thenComparing(AbstractTsKvEntity::getKey)
-                        .thenComparing(AbstractTsKvEntity::getTs)
+                        .thenComparing(AbstractTsKvEntity::getTs),
+                new TsKvEntityCodec<>(TimescaleTsKvEntity::new)
         );
     }
 
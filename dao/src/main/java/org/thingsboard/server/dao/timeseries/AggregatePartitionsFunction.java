@@ -67,28 +67,47 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
 
     @Override
     public ListenableFuture<Optional<TsKvEntry>> apply(@Nullable List<TbResultSet> rsList) {
-    log.trace("[{}][{}][{}] Going to aggregate data", key, ts, aggregation);
-    if (rsList == null || rsList.isEmpty()) {
-        return Futures.immediateFuture(Optional.empty());
+        log.trace("[{}][{}][{}] Going to aggregate data", key, ts, aggregation);
+        if (rsList == null || rsList.isEmpty()) {
+            return Futures.immediateFuture(Optional.empty());
+        }
+        AggregationResult aggResult = new AggregationResult();
+        List<ListenableFuture<Void>> futures = rsList.stream().map(rs -> aggregate(rs, aggResult)).collect(Collectors.toList());
+        return Futures.transform(Futures.allAsList(futures), input -> getResult(aggResult), this.executor);
     }
-    return Futures.transform(
-        Futures.allAsList(
-            rsList.stream().map(rs -> rs.allRows(this.executor))
-                .collect(Collectors.toList())),
-        rowsList -> {
-            try {
-                AggregationResult aggResult = new AggregationResult();
-                for (List<Row> rs : rowsList) {
-                    for (Row row : rs) {
-                        processResultSetRow(row, aggResult);
-                    }
+
+    /**
+     * Streams the rows of the result set page by page into the given aggregation result.
+     * Several result sets may be aggregated into the same result concurrently.
+     */
+    ListenableFuture<Void> aggregate(TbResultSet rs, AggregationResult aggResult) {
+        return rs.forEachRow(row -> {
+            synchronized (aggResult) {
+                if (aggResult.failed) {
+                    return;
+                }
+                try {
+                    processResultSetRow(row, aggResult);
+                } catch (Exception e) {
+                    log.error("[{}][{}][{}] Failed to aggregate data", key, ts, aggregation, e);
+                    aggResult.failed = true;
                 }
+            }
+        }, this.executor);
+    }
+
+    Optional<TsKvEntry> getResult(AggregationResult aggResult) {
+        synchronized (aggResult) {
+            if (aggResult.failed) {
+                return Optional.empty();
+            }
+            try {
                 return processAggregationResult(aggResult);
             } catch (Exception e) {
                 log.error("[{}][{}][{}] Failed to aggregate data", key, ts, aggregation, e);
                 return Optional.empty();
             }
-        }, this.executor);
+        }
     }
 
     private void processResultSetRow(Row row, AggregationResult aggResult) {
@@ -282,7 +301,7 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
         }
     }
 
-    private class AggregationResult {
+    static class AggregationResult {
         DataType dataType = null;
         Boolean bValue = null;
         String sValue = null;
@@ -291,5 +310,6 @@ public class AggregatePartitionsFunction implements com.google.common.util.concu
         Long lValue = null;
         long count = 0;
         boolean hasDouble = false;
+        boolean failed = false;
     }
 }
@@ -17,6 +17,7 @@ package org.thingsboard.server.dao.timeseries;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -45,6 +46,7 @@ import org.thingsboard.server.dao.service.Validator;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -86,6 +88,12 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Autowired
     private EntityViewService entityViewService;
 
+    @Autowired
+    private TsLatestCache tsLatestCache;
+
+    @Autowired(required = false)
+    private TsLatestCachePartitionFilter tsLatestCachePartitionFilter;
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAll(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
         validate(entityId);
@@ -103,19 +111,64 @@ public class BaseTimeseriesService implements TimeseriesService {
         return timeseriesDao.findAllAsync(tenantId, entityId, queries);
     }
 
+    @Override
+    public void streamAll(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs, Predicate<List<TsKvEntry>> consumer) {
+        validate(entityId);
+        Validator.validateString(key, "Incorrect key " + key);
+        if (entityId.getEntityType().equals(EntityType.ENTITY_VIEW)) {
+            EntityView entityView = entityViewService.findEntityViewById(tenantId, (EntityViewId) entityId);
+            List<String> keys = entityView.getKeys() != null && entityView.getKeys().getTimeseries() != null ?
+                    entityView.getKeys().getTimeseries() : Collections.emptyList();
+            if (!keys.isEmpty() && !keys.contains(key)) {
+                return;
+            }
+            ReadTsKvQuery query = updateQueriesForEntityView(entityView,
+                    Collections.singletonList(new BaseReadTsKvQuery(key, startTs, endTs))).get(0);
+            timeseriesDao.streamAll(tenantId, entityView.getEntityId(), key, query.getStartTs(), query.getEndTs(), consumer);
+            return;
+        }
+        timeseriesDao.streamAll(tenantId, entityId, key, startTs, endTs, consumer);
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findLatest(TenantId tenantId, EntityId entityId, Collection<String> keys) {
         validate(entityId);
         List<ListenableFuture<TsKvEntry>> futures = Lists.newArrayListWithExpectedSize(keys.size());
         keys.forEach(key -> Validator.validateString(key, "Incorrect key " + key));
-        keys.forEach(key -> futures.add(timeseriesLatestDao.findLatest(tenantId, entityId, key)));
+        if (!isLatestCacheable(tenantId, entityId)) {
+            keys.forEach(key -> futures.add(timeseriesLatestDao.findLatest(tenantId, entityId, key)));
+            return Futures.allAsList(futures);
+        }
+        for (String key : keys) {
+            TsKvEntry cached = tsLatestCache.get(entityId, key);
+            if (cached != null) {
+                futures.add(Futures.immediateFuture(cached));
+            } else {
+                long version = tsLatestCache.getVersion(entityId);
+                futures.add(Futures.transform(timeseriesLatestDao.findLatest(tenantId, entityId, key), entry -> {
+                    tsLatestCache.putLoaded(entityId, entry, version);
+                    return entry;
+                }, MoreExecutors.directExecutor()));
+            }
+        }
         return Futures.allAsList(futures);
     }
 
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         validate(entityId);
-        return timeseriesLatestDao.findAllLatest(tenantId, entityId);
+        if (!isLatestCacheable(tenantId, entityId)) {
+            return timeseriesLatestDao.findAllLatest(tenantId, entityId);
+        }
+        List<TsKvEntry> cached = tsLatestCache.getAll(entityId);
+        if (cached != null) {
+            return Futures.immediateFuture(cached);
+        }
+        long version = tsLatestCache.getVersion(entityId);
+        return Futures.transform(timeseriesLatestDao.findAllLatest(tenantId, entityId), entries -> {
+            tsLatestCache.putAllLoaded(entityId, entries, version);
+            return entries;
+        }, MoreExecutors.directExecutor());
     }
 
     @Override
@@ -177,14 +230,61 @@ public class BaseTimeseriesService implements TimeseriesService {
             if (tsKvEntry == null) {
                 throw new IncorrectParameterException("Key value entry can't be null");
             }
-            futures.add(timeseriesLatestDao.saveLatest(tenantId, entityId, tsKvEntry));
+            futures.add(doSaveLatest(tenantId, entityId, tsKvEntry));
         }
         return Futures.allAsList(futures);
     }
 
     private void saveAndRegisterFutures(TenantId tenantId, List<ListenableFuture<Integer>> futures, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         doSaveAndRegisterFuturesFor(tenantId, futures, entityId, tsKvEntry, ttl);
-        futures.add(Futures.transform(timeseriesLatestDao.saveLatest(tenantId, entityId, tsKvEntry), v -> 0, MoreExecutors.directExecutor()));
+        futures.add(Futures.transform(doSaveLatest(tenantId, entityId, tsKvEntry), v -> 0, MoreExecutors.directExecutor()));
+    }
+
+    private ListenableFuture<Void> doSaveLatest(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry) {
+        ListenableFuture<Void> future = timeseriesLatestDao.saveLatest(tenantId, entityId, tsKvEntry);
+        if (isLatestCacheable(tenantId, entityId)) {
+            Futures.addCallback(future, new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(@Nullable Void result) {
+                    tsLatestCache.put(entityId, tsKvEntry);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    tsLatestCache.evict(entityId);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return future;
+    }
+
+    private ListenableFuture<TsKvLatestRemovingResult> doRemoveLatest(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
+        ListenableFuture<TsKvLatestRemovingResult> future = timeseriesLatestDao.removeLatest(tenantId, entityId, query);
+        if (isLatestCacheable(tenantId, entityId)) {
+            Futures.addCallback(future, new FutureCallback<TsKvLatestRemovingResult>() {
+                @Override
+                public void onSuccess(@Nullable TsKvLatestRemovingResult result) {
+                    if (result == null || !result.isRemoved()) {
+                        return;
+                    }
+                    if (result.getData() != null) {
+                        tsLatestCache.put(entityId, result.getData());
+                    } else {
+                        tsLatestCache.remove(entityId, query.getKey());
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    tsLatestCache.evict(entityId);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return future;
+    }
+
+    private boolean isLatestCacheable(TenantId tenantId, EntityId entityId) {
+        return tsLatestCache.isEnabled() && (tsLatestCachePartitionFilter == null || tsLatestCachePartitionFilter.isCacheable(tenantId, entityId));
     }
 
     private void saveWithoutLatestAndRegisterFutures(TenantId tenantId, List<ListenableFuture<Integer>> futures, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
@@ -235,7 +335,7 @@ public class BaseTimeseriesService implements TimeseriesService {
         List<ListenableFuture<TsKvLatestRemovingResult>> futures = Lists.newArrayListWithExpectedSize(keys.size());
         for (String key : keys) {
             DeleteTsKvQuery query = new BaseDeleteTsKvQuery(key, 0, System.currentTimeMillis(), false);
-            futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
+            futures.add(doRemoveLatest(tenantId, entityId, query));
         }
         return Futures.allAsList(futures);
     }
@@ -255,7 +355,7 @@ public class BaseTimeseriesService implements TimeseriesService {
 
     private void deleteAndRegisterFutures(TenantId tenantId, List<ListenableFuture<TsKvLatestRemovingResult>> futures, EntityId entityId, DeleteTsKvQuery query) {
         futures.add(Futures.transform(timeseriesDao.remove(tenantId, entityId, query), v -> null, MoreExecutors.directExecutor()));
-        futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
+        futures.add(doRemoveLatest(tenantId, entityId, query));
         futures.add(Futures.transform(timeseriesDao.removePartition(tenantId, entityId, query), v -> null, MoreExecutors.directExecutor()));
     }
 
@@ -23,6 +23,7 @@ import com.datastax.oss.driver.api.core.cql.Row;
 import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
 import com.datastax.oss.driver.api.querybuilder.select.Select;
 import com.google.common.base.Function;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.AsyncFunction;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
@@ -56,14 +57,19 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.literal;
@@ -99,6 +105,9 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
     @Value("${cassandra.query.set_null_values_enabled}")
     private boolean setNullValuesEnabled;
 
+    @Value("${cassandra.query.max_parallel_partition_reads:16}")
+    private int maxParallelPartitionReads;
+
     private NoSqlTsPartitionDate tsFormat;
 
     private PreparedStatement partitionInsertStmt;
@@ -271,23 +280,42 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             return findAllAsyncWithLimit(tenantId, entityId, query);
         } else {
             long step = Math.max(query.getInterval(), MIN_AGGREGATION_STEP_MS);
-            long stepTs = query.getStartTs();
-            List<ListenableFuture<Optional<TsKvEntry>>> futures = new ArrayList<>();
-            while (stepTs < query.getEndTs()) {
-                long startTs = stepTs;
-                long endTs = stepTs + step;
-                ReadTsKvQuery subQuery = new BaseReadTsKvQuery(query.getKey(), startTs, endTs, step, 1, query.getAggregation(), query.getOrder());
-                futures.add(findAndAggregateAsync(tenantId, entityId, subQuery, toPartitionTs(startTs), toPartitionTs(endTs)));
-                stepTs = endTs;
+            if (query.getStartTs() >= query.getEndTs()) {
+                return Futures.immediateFuture(Collections.emptyList());
             }
-            ListenableFuture<List<Optional<TsKvEntry>>> future = Futures.allAsList(futures);
-            return Futures.transform(future, new Function<List<Optional<TsKvEntry>>, List<TsKvEntry>>() {
-                @Nullable
-                @Override
-                public List<TsKvEntry> apply(@Nullable List<Optional<TsKvEntry>> input) {
-                    return input == null ? Collections.emptyList() : input.stream().filter(v -> v.isPresent()).map(v -> v.get()).collect(Collectors.toList());
+            long stepsEndTs = query.getStartTs() + ((query.getEndTs() - query.getStartTs() + step - 1) / step) * step;
+            ListenableFuture<List<Long>> partitionsListFuture = getPartitionsFuture(tenantId, query, entityId, toPartitionTs(query.getStartTs()), toPartitionTs(stepsEndTs));
+            return Futures.transformAsync(partitionsListFuture,
+                    partitions -> findAndAggregateAsync(tenantId, entityId, query, step, partitions), readResultsProcessingExecutor);
+        }
+    }
+
+    /**
+     * Reads the partitions one by one in ascending order, each partition is read page by page
+     * using the fetch size of the driver, so at most one page is kept in memory.
+     */
+    @Override
+    public void streamAll(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs, Predicate<List<TsKvEntry>> consumer) {
+        try {
+            ReadTsKvQuery query = new BaseReadTsKvQuery(key, startTs, endTs, Integer.MAX_VALUE, ASC_ORDER);
+            List<Long> partitions = getPartitionsFuture(tenantId, query, entityId, toPartitionTs(startTs), toPartitionTs(endTs)).get();
+            TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
+            while (cursor.hasNextPartition()) {
+                TbResultSet rs = executeAsyncRead(tenantId, getFetchWithLimitStmt(cursor, cursor.getNextPartition())).get();
+                while (rs != null) {
+                    List<TsKvEntry> entries = convertResultToTsKvEntryList(Lists.newArrayList(rs.currentPage()));
+                    if (!entries.isEmpty() && !consumer.test(entries)) {
+                        return;
+                    }
+                    rs = rs.hasMorePages() ? rs.nextPage().get() : null;
                 }
-            }, readResultsProcessingExecutor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while streaming timeseries for key " + key, e);
+        } catch (ExecutionException e) {
+            log.error("[{}][{}] Failed to stream timeseries for key {}", entityId.getEntityType(), entityId.getId(), key, e);
+            throw new RuntimeException("Failed to stream timeseries for key " + key, e.getCause());
         }
     }
 
@@ -306,7 +334,11 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
             @Override
             public void onSuccess(@Nullable List<Long> partitions) {
                 TsKvQueryCursor cursor = new TsKvQueryCursor(entityId.getEntityType().name(), entityId.getId(), query, partitions);
-                findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
+                if (maxParallelPartitionReads > 1) {
+                    findAllAsyncInParallelWithLimit(tenantId, cursor, new ArrayDeque<>(), 1, resultFuture);
+                } else {
+                    findAllAsyncSequentiallyWithLimit(tenantId, cursor, resultFuture);
+                }
             }
 
             @Override
@@ -327,18 +359,7 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         if (cursor.isFull() || !cursor.hasNextPartition()) {
             resultFuture.set(cursor.getData());
         } else {
-            PreparedStatement proto = getFetchStmt(Aggregation.NONE, cursor.getOrderBy());
-            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
-
-            stmtBuilder.setString(0, cursor.getEntityType());
-            stmtBuilder.setUuid(1, cursor.getEntityId());
-            stmtBuilder.setString(2, cursor.getKey());
-            stmtBuilder.setLong(3, cursor.getNextPartition());
-            stmtBuilder.setLong(4, cursor.getStartTs());
-            stmtBuilder.setLong(5, cursor.getEndTs());
-            stmtBuilder.setInt(6, cursor.getCurrentLimit());
-
-            BoundStatement stmt = stmtBuilder.build();
+            BoundStatement stmt = getFetchWithLimitStmt(cursor, cursor.getNextPartition());
 
             Futures.addCallback(executeAsyncRead(tenantId, stmt), new FutureCallback<TbResultSet>() {
                 @Override
@@ -373,41 +394,87 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
         }
     }
 
-    private ListenableFuture<Optional<TsKvEntry>> findAndAggregateAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, long minPartition, long maxPartition) {
-        final Aggregation aggregation = query.getAggregation();
-        final String key = query.getKey();
-        final long startTs = query.getStartTs();
-        final long endTs = query.getEndTs();
-        final long ts = startTs + (endTs - startTs) / 2;
-        ListenableFuture<List<Long>> partitionsListFuture = getPartitionsFuture(tenantId, query, entityId, minPartition, maxPartition);
-        ListenableFuture<List<TbResultSet>> aggregationChunks = Futures.transformAsync(partitionsListFuture,
-                getFetchChunksAsyncFunction(tenantId, entityId, key, aggregation, startTs, endTs), readResultsProcessingExecutor);
+    /**
+     * Reads partitions in order keeping up to {@link #maxParallelPartitionReads} reads in flight.
+     * The window starts with a single partition and grows only while the fetched partitions do not satisfy the limit,
+     * so queries that are served by the first partition cost the same as the sequential read.
+     */
+    private void findAllAsyncInParallelWithLimit(TenantId tenantId, final TsKvQueryCursor cursor, final Deque<ListenableFuture<List<Row>>> inFlight,
+                                                 int window, final SimpleListenableFuture<List<TsKvEntry>> resultFuture) {
+        if (cursor.isFull()) {
+            resultFuture.set(cursor.getData());
+            return;
+        }
+        while (inFlight.size() < window && cursor.hasNextPartition()) {
+            inFlight.add(fetchPartitionRows(tenantId, cursor, cursor.getNextPartition()));
+        }
+        if (inFlight.isEmpty()) {
+            resultFuture.set(cursor.getData());
+            return;
+        }
+        Futures.addCallback(inFlight.peek(), new FutureCallback<List<Row>>() {
+            @Override
+            public void onSuccess(@Nullable List<Row> rows) {
+                inFlight.poll();
+                List<TsKvEntry> data = convertResultToTsKvEntryList(rows == null ? Collections.emptyList() : rows);
+                if (data.size() > cursor.getCurrentLimit()) {
+                    data = data.subList(0, cursor.getCurrentLimit());
+                }
+                cursor.addData(data);
+                findAllAsyncInParallelWithLimit(tenantId, cursor, inFlight, Math.min(window * 2, maxParallelPartitionReads), resultFuture);
+            }
 
-        return Futures.transformAsync(aggregationChunks, new AggregatePartitionsFunction(aggregation, key, ts, readResultsProcessingExecutor), readResultsProcessingExecutor);
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("[{}][{}] Failed to fetch data for key {}", cursor.getEntityType(), cursor.getEntityId(), cursor.getKey(), t);
+                resultFuture.setException(t);
+            }
+        }, readResultsProcessingExecutor);
     }
 
-    private AsyncFunction<TbResultSet, List<Long>> getPartitionsArrayFunction() {
-        return rs ->
-                Futures.transform(rs.allRows(readResultsProcessingExecutor), rows ->
-                                rows.stream()
-                                        .map(row -> row.getLong(ModelConstants.PARTITION_COLUMN)).collect(Collectors.toList()),
-                        readResultsProcessingExecutor);
+    private ListenableFuture<List<Row>> fetchPartitionRows(TenantId tenantId, TsKvQueryCursor cursor, long partition) {
+        BoundStatement stmt = getFetchWithLimitStmt(cursor, partition);
+        return Futures.transformAsync(executeAsyncRead(tenantId, stmt),
+                rs -> rs == null ? Futures.<List<Row>>immediateFuture(Collections.emptyList()) : rs.allRows(readResultsProcessingExecutor),
+                readResultsProcessingExecutor);
     }
 
-    private ListenableFuture<List<Long>> getPartitionsFuture(TenantId tenantId, ReadTsKvQuery query, EntityId entityId, long minPartition, long maxPartition) {
-        if (isFixedPartitioning()) { //no need to fetch partitions from DB
-            return Futures.immediateFuture(FIXED_PARTITION);
-        }
-        TbResultSetFuture partitionsFuture = fetchPartitions(tenantId, entityId, query.getKey(), minPartition, maxPartition);
-        return Futures.transformAsync(partitionsFuture, getPartitionsArrayFunction(), readResultsProcessingExecutor);
+    private BoundStatement getFetchWithLimitStmt(TsKvQueryCursor cursor, long partition) {
+        PreparedStatement proto = getFetchStmt(Aggregation.NONE, cursor.getOrderBy());
+        BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
+
+        stmtBuilder.setString(0, cursor.getEntityType());
+        stmtBuilder.setUuid(1, cursor.getEntityId());
+        stmtBuilder.setString(2, cursor.getKey());
+        stmtBuilder.setLong(3, partition);
+        stmtBuilder.setLong(4, cursor.getStartTs());
+        stmtBuilder.setLong(5, cursor.getEndTs());
+        stmtBuilder.setInt(6, cursor.getCurrentLimit());
+
+        return stmtBuilder.build();
     }
 
-    private AsyncFunction<List<Long>, List<TbResultSet>> getFetchChunksAsyncFunction(TenantId tenantId, EntityId entityId, String key, Aggregation aggregation, long startTs, long endTs) {
-        return partitions -> {
-            try {
-                PreparedStatement proto = getFetchStmt(aggregation, DESC_ORDER);
-                List<TbResultSetFuture> futures = new ArrayList<>(partitions.size());
-                for (Long partition : partitions) {
+    /**
+     * Aggregates all steps of the query using the partitions fetched once for the whole interval.
+     * Each step is aggregated by Cassandra per partition, the per-partition rows are streamed into
+     * the step accumulator as soon as they arrive, with at most {@link #maxParallelPartitionReads} reads in flight.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAndAggregateAsync(TenantId tenantId, EntityId entityId, ReadTsKvQuery query, long step, List<Long> partitions) {
+        final Aggregation aggregation = query.getAggregation();
+        final String key = query.getKey();
+        PreparedStatement proto = getFetchStmt(aggregation, DESC_ORDER);
+        List<Supplier<ListenableFuture<Void>>> reads = new ArrayList<>();
+        List<Supplier<Optional<TsKvEntry>>> stepResults = new ArrayList<>();
+        long stepTs = query.getStartTs();
+        while (stepTs < query.getEndTs()) {
+            long startTs = stepTs;
+            long endTs = stepTs + step;
+            long minPartition = toPartitionTs(startTs);
+            long maxPartition = toPartitionTs(endTs);
+            AggregatePartitionsFunction function = new AggregatePartitionsFunction(aggregation, key, startTs + (endTs - startTs) / 2, readResultsProcessingExecutor);
+            AggregatePartitionsFunction.AggregationResult aggResult = new AggregatePartitionsFunction.AggregationResult();
+            for (Long partition : partitions) {
+                if (isFixedPartitioning() || (partition >= minPartition && partition <= maxPartition)) {
                     log.trace("Fetching data for partition [{}] for entityType {} and entityId {}", partition, entityId.getEntityType(), entityId.getId());
                     BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(proto.bind());
                     stmtBuilder.setString(0, entityId.getEntityType().name());
@@ -418,14 +485,32 @@ public class CassandraBaseTimeseriesDao extends AbstractCassandraBaseTimeseriesD
                     stmtBuilder.setLong(5, endTs);
                     BoundStatement stmt = stmtBuilder.build();
                     log.debug(GENERATED_QUERY_FOR_ENTITY_TYPE_AND_ENTITY_ID, stmt, entityId.getEntityType(), entityId.getId());
-                    futures.add(executeAsyncRead(tenantId, stmt));
+                    reads.add(() -> Futures.transformAsync(executeAsyncRead(tenantId, stmt),
+                            rs -> rs == null ? Futures.<Void>immediateFuture(null) : function.aggregate(rs, aggResult), readResultsProcessingExecutor));
                 }
-                return Futures.allAsList(futures);
-            } catch (Throwable e) {
-                log.error("Failed to fetch data", e);
-                throw e;
             }
-        };
+            stepResults.add(() -> function.getResult(aggResult));
+            stepTs = endTs;
+        }
+        return Futures.transform(PartitionReadsFanOut.readAll(reads, maxParallelPartitionReads, readResultsProcessingExecutor),
+                input -> stepResults.stream().map(Supplier::get).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList()),
+                readResultsProcessingExecutor);
+    }
+
+    private AsyncFunction<TbResultSet, List<Long>> getPartitionsArrayFunction() {
+        return rs ->
+                Futures.transform(rs.allRows(readResultsProcessingExecutor), rows ->
+                                rows.stream()
+                                        .map(row -> row.getLong(ModelConstants.PARTITION_COLUMN)).collect(Collectors.toList()),
+                        readResultsProcessingExecutor);
+    }
+
+    private ListenableFuture<List<Long>> getPartitionsFuture(TenantId tenantId, ReadTsKvQuery query, EntityId entityId, long minPartition, long maxPartition) {
+        if (isFixedPartitioning()) { //no need to fetch partitions from DB
+            return Futures.immediateFuture(FIXED_PARTITION);
+        }
+        TbResultSetFuture partitionsFuture = fetchPartitions(tenantId, entityId, query.getKey(), minPartition, maxPartition);
+        return Futures.transformAsync(partitionsFuture, getPartitionsArrayFunction(), readResultsProcessingExecutor);
     }
 
     private boolean isFixedPartitioning() {
@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executes asynchronous partition reads keeping at most {@code parallelism} of them in flight.
+ * Results are returned in the order of the submitted reads.
+ */
+final class PartitionReadsFanOut<T> {
+
+    private final List<Supplier<ListenableFuture<T>>> reads;
+    private final Executor executor;
+    private final Object[] results;
+    private final AtomicInteger nextRead = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final SettableFuture<List<T>> resultFuture = SettableFuture.create();
+
+    private PartitionReadsFanOut(List<Supplier<ListenableFuture<T>>> reads, Executor executor) {
+        this.reads = reads;
+        this.executor = executor;
+        this.results = new Object[reads.size()];
+        this.remaining = new AtomicInteger(reads.size());
+    }
+
+    static <T> ListenableFuture<List<T>> readAll(List<Supplier<ListenableFuture<T>>> reads, int parallelism, Executor executor) {
+        if (reads.isEmpty()) {
+            return Futures.immediateFuture(Collections.emptyList());
+        }
+        PartitionReadsFanOut<T> fanOut = new PartitionReadsFanOut<>(reads, executor);
+        int initialReads = Math.min(Math.max(1, parallelism), reads.size());
+        for (int i = 0; i < initialReads; i++) {
+            fanOut.startNextRead();
+        }
+        return fanOut.resultFuture;
+    }
+
+    private void startNextRead() {
+        int index = nextRead.getAndIncrement();
+        if (index >= reads.size() || resultFuture.isDone()) {
+            return;
+        }
+        ListenableFuture<T> readFuture;
+        try {
+            readFuture = reads.get(index).get();
+        } catch (Throwable t) {
+            resultFuture.setException(t);
+            return;
+        }
+        Futures.addCallback(readFuture, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(@Nullable T result) {
+                results[index] = result;
+                if (remaining.decrementAndGet() == 0) {
+                    complete();
+                } else {
+                    startNextRead();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                resultFuture.setException(t);
+            }
+        }, executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete() {
+        resultFuture.set((List<T>) Arrays.asList(results));
+    }
+
+}
@@ -23,6 +23,7 @@ import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * @author Andrew Shvayka
@@ -39,5 +40,12 @@ public interface TimeseriesDao {
 
     ListenableFuture<Void> removePartition(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query);
 
+    /**
+     * Reads all points of the key in the [startTs, endTs) interval in ascending order and passes them to the consumer
+     * chunk by chunk without loading the whole interval into memory. Blocks until all points are read
+     * or the consumer returns false.
+     */
+    void streamAll(TenantId tenantId, EntityId entityId, String key, long startTs, long endTs, Predicate<List<TsKvEntry>> consumer);
+
     void cleanup(long systemTtl);
 }
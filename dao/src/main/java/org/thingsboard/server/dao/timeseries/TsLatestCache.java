@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Local write-through cache of the latest timeseries values, grouped by entity.
+ * An entity entry becomes complete once all latest values of the entity were loaded,
+ * after that it is able to serve "find all latest" requests as well.
+ * <p>
+ * The values loaded from the database are cached only if the entity was not evicted and its values were not removed
+ * during the load, so the eviction of the values updated by another node is not overwritten by a stale read.
+ * The load versions are kept in a fixed number of stripes, a collision only makes the load not cached.
+ */
+@Component
+@Slf4j
+public class TsLatestCache {
+
+    private static final String STATS_NAME = "tsLatest.cache";
+    private static final int VERSION_STRIPES = 1024;
+
+    @Value("${cache.ts_latest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.ts_latest.max_size:100000}")
+    private long maxSize;
+
+    @Value("${cache.ts_latest.time_to_live_sec:3600}")
+    private long timeToLiveSec;
+
+    private final DefaultCounter hitCounter;
+    private final DefaultCounter missCounter;
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private Cache<EntityId, EntityLatest> cache;
+
+    public TsLatestCache(StatsFactory statsFactory) {
+        this.hitCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "hit");
+        this.missCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "miss");
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maxSize);
+            if (timeToLiveSec > 0) {
+                builder.expireAfterWrite(timeToLiveSec, TimeUnit.SECONDS);
+            }
+            cache = builder.build();
+            log.info("Latest timeseries cache is enabled with max size {} and time to live {} sec", maxSize, timeToLiveSec);
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return cached latest value or null if the value is not cached
+     */
+    public TsKvEntry get(EntityId entityId, String key) {
+        EntityLatest entityLatest = cache.getIfPresent(entityId);
+        TsKvEntry entry = entityLatest != null ? entityLatest.values.get(key) : null;
+        if (entry != null) {
+            hitCounter.increment();
+        } else {
+            missCounter.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * @return all latest values of the entity or null if they were not loaded completely
+     */
+    public List<TsKvEntry> getAll(EntityId entityId) {
+        EntityLatest entityLatest = cache.getIfPresent(entityId);
+        if (entityLatest != null && entityLatest.complete) {
+            hitCounter.increment();
+            return new ArrayList<>(entityLatest.values.values());
+        } else {
+            missCounter.increment();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the value that was just written to the database.
+     */
+    public void put(EntityId entityId, TsKvEntry entry) {
+        cache.get(entityId, id -> new EntityLatest()).values.put(entry.getKey(), entry);
+    }
+
+    /**
+     * @return version of the entity values that has to be taken before the values are loaded from the database
+     */
+    public long getVersion(EntityId entityId) {
+        return versions.get(toStripe(entityId));
+    }
+
+    /**
+     * Stores the value loaded from the database unless a newer value was written concurrently
+     * or the entity was evicted after the given version was taken.
+     */
+    public void putLoaded(EntityId entityId, TsKvEntry entry, long version) {
+        if (entry != null && entry.getValue() != null) {
+            EntityLatest entityLatest = cache.get(entityId, id -> new EntityLatest());
+            entityLatest.values.putIfAbsent(entry.getKey(), entry);
+            // the version is checked after the put, the eviction that happens later removes the value by itself
+            if (getVersion(entityId) != version) {
+                entityLatest.values.remove(entry.getKey(), entry);
+            }
+        }
+    }
+
+    public void putAllLoaded(EntityId entityId, List<TsKvEntry> entries, long version) {
+        EntityLatest entityLatest = cache.get(entityId, id -> new EntityLatest());
+        if (entries != null) {
+            for (TsKvEntry entry : entries) {
+                if (entry.getValue() != null) {
+                    entityLatest.values.putIfAbsent(entry.getKey(), entry);
+                }
+            }
+        }
+        entityLatest.complete = true;
+        if (getVersion(entityId) != version) {
+            cache.asMap().remove(entityId, entityLatest);
+        }
+    }
+
+    public void remove(EntityId entityId, String key) {
+        versions.incrementAndGet(toStripe(entityId));
+        EntityLatest entityLatest = cache.getIfPresent(entityId);
+        if (entityLatest != null) {
+            entityLatest.values.remove(key);
+        }
+    }
+
+    public void evict(EntityId entityId) {
+        if (cache != null) {
+            versions.incrementAndGet(toStripe(entityId));
+            cache.invalidate(entityId);
+        }
+    }
+
+    public void evictAll() {
+        if (cache != null) {
+            for (int i = 0; i < VERSION_STRIPES; i++) {
+                versions.incrementAndGet(i);
+            }
+            cache.invalidateAll();
+        }
+    }
+
+    private static int toStripe(EntityId entityId) {
+        return entityId.getId().hashCode() & (VERSION_STRIPES - 1);
+    }
+
+    private static class EntityLatest {
+        private final Map<String, TsKvEntry> values = new ConcurrentHashMap<>();
+        private volatile boolean complete;
+    }
+
+}
@@ -34,6 +34,53 @@ CREATE TABLE IF NOT EXISTS ts_kv_dictionary
     CONSTRAINT ts_key_id_pkey PRIMARY KEY (key)
 );
 
+CREATE TABLE IF NOT EXISTS ts_chunk
+(
+    entity_id uuid   NOT NULL,
+    key       int    NOT NULL,
+    chunk_ts  bigint NOT NULL,
+    data      bytea  NOT NULL,
+    CONSTRAINT ts_chunk_pkey PRIMARY KEY (entity_id, key, chunk_ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup
+(
+    entity_id   uuid             NOT NULL,
+    key         int              NOT NULL,
+    interval_ms bigint           NOT NULL,
+    bucket_ts   bigint           NOT NULL,
+    long_sum    bigint           NOT NULL,
+    long_min    bigint,
+    long_max    bigint,
+    long_count  bigint           NOT NULL,
+    dbl_sum     double precision NOT NULL,
+    dbl_min     double precision,
+    dbl_max     double precision,
+    dbl_count   bigint           NOT NULL,
+    bool_count  bigint           NOT NULL,
+    str_count   bigint           NOT NULL,
+    json_count  bigint           NOT NULL,
+    str_min     varchar(10000000) COLLATE "C",
+    str_max     varchar(10000000) COLLATE "C",
+    CONSTRAINT ts_rollup_pkey PRIMARY KEY (entity_id, key, interval_ms, bucket_ts)
+);
+
+CREATE TABLE IF NOT EXISTS ts_rollup_interval
+(
+    interval_ms bigint NOT NULL,
+    valid_from  bigint NOT NULL,
+    CONSTRAINT ts_rollup_interval_pkey PRIMARY KEY (interval_ms)
+);
+
+CREATE TABLE IF NOT EXISTS ts_ttl_cleanup
+(
+    id             int    NOT NULL,
+    started_ts     bigint NOT NULL,
+    last_tenant_id uuid   NOT NULL,
+    deleted        bigint NOT NULL,
+    CONSTRAINT ts_ttl_cleanup_pkey PRIMARY KEY (id)
+);
+
 CREATE OR REPLACE PROCEDURE drop_partitions_by_max_ttl(IN partition_type varchar, IN system_ttl bigint, INOUT deleted bigint)
     LANGUAGE plpgsql AS
 $$
@@ -21,7 +21,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.AssetId;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
@@ -29,8 +31,11 @@ import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -100,4 +105,40 @@ public abstract class BaseAttributesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(attrBNew, saved.get(1));
     }
 
+    @Test
+    public void findByEntityIds() throws Exception {
+        DeviceId firstDeviceId = new DeviceId(Uuids.timeBased());
+        DeviceId secondDeviceId = new DeviceId(Uuids.timeBased());
+        DeviceId deviceWithoutAttributesId = new DeviceId(Uuids.timeBased());
+        // the same uuid with another entity type must not be mixed up with the device
+        AssetId assetId = new AssetId(firstDeviceId.getId());
+
+        AttributeKvEntry firstA = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        AttributeKvEntry firstB = new BaseAttributeKvEntry(new StringDataEntry("B", "value2"), 42L);
+        AttributeKvEntry firstC = new BaseAttributeKvEntry(new StringDataEntry("C", "value3"), 42L);
+        AttributeKvEntry secondA = new BaseAttributeKvEntry(new StringDataEntry("A", "value4"), 73L);
+        AttributeKvEntry assetA = new BaseAttributeKvEntry(new StringDataEntry("A", "value5"), 73L);
+        AttributeKvEntry clientScopeA = new BaseAttributeKvEntry(new StringDataEntry("A", "value6"), 73L);
+
+        attributesService.save(SYSTEM_TENANT_ID, firstDeviceId, DataConstants.SERVER_SCOPE, Arrays.asList(firstA, firstB, firstC)).get();
+        attributesService.save(SYSTEM_TENANT_ID, secondDeviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(secondA)).get();
+        attributesService.save(SYSTEM_TENANT_ID, secondDeviceId, DataConstants.CLIENT_SCOPE, Collections.singletonList(clientScopeA)).get();
+        attributesService.save(SYSTEM_TENANT_ID, assetId, DataConstants.SERVER_SCOPE, Collections.singletonList(assetA)).get();
+
+        Map<EntityId, List<AttributeKvEntry>> found = attributesService.findByEntityIds(SYSTEM_TENANT_ID,
+                Arrays.asList(firstDeviceId, secondDeviceId, deviceWithoutAttributesId), DataConstants.SERVER_SCOPE, Arrays.asList("A", "B")).get();
+
+        Assert.assertEquals(2, found.size());
+        Assert.assertFalse(found.containsKey(deviceWithoutAttributesId));
+        List<AttributeKvEntry> firstAttributes = found.get(firstDeviceId);
+        firstAttributes.sort(Comparator.comparing(AttributeKvEntry::getKey));
+        Assert.assertEquals(Arrays.asList(firstA, firstB), firstAttributes);
+        Assert.assertEquals(Collections.singletonList(secondA), found.get(secondDeviceId));
+
+        Assert.assertTrue(attributesService.findByEntityIds(SYSTEM_TENANT_ID, Collections.singletonList(deviceWithoutAttributesId),
+                DataConstants.SERVER_SCOPE, Collections.singletonList("A")).get().isEmpty());
+        Assert.assertTrue(attributesService.findByEntityIds(SYSTEM_TENANT_ID, Collections.emptyList(),
+                DataConstants.SERVER_SCOPE, Collections.singletonList("A")).get().isEmpty());
+    }
+
 }
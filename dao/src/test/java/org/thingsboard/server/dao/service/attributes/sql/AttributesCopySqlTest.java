@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.service.attributes.sql;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BooleanDataEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.sql.attributes.AttributeKvRepository;
+import org.thingsboard.server.dao.sql.attributes.PsqlAttributesCopyRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@DaoSqlTest
+public class AttributesCopySqlTest extends AbstractServiceTest {
+
+    private static final int BATCH_SIZE = 1500;
+
+    @Autowired
+    private AttributesService attributesService;
+
+    @Autowired
+    private PsqlAttributesCopyRepository copyRepository;
+
+    @Autowired
+    private AttributeKvRepository attributeKvRepository;
+
+    private DeviceId deviceId;
+
+    @Test
+    public void testBatchIsCopiedAndMerged() throws Exception {
+        deviceId = new DeviceId(Uuids.timeBased());
+        attributesService.save(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Arrays.asList(
+                new BaseAttributeKvEntry(new BooleanDataEntry("bool", false), 1L),
+                new BaseAttributeKvEntry(new LongDataEntry("long", 1L), 1L),
+                new BaseAttributeKvEntry(new DoubleDataEntry("double", 1.5), 1L),
+                new BaseAttributeKvEntry(new StringDataEntry("str", "old"), 1L),
+                new BaseAttributeKvEntry(new JsonDataEntry("json", "{\"a\":1}"), 1L),
+                new BaseAttributeKvEntry(new LongDataEntry("changedType", 7L), 1L))).get();
+
+        List<AttributeKvEntity> batch = new ArrayList<>();
+        // the existing attributes are updated
+        batch.add(attribute("bool", 2L, entity -> entity.setBooleanValue(true)));
+        batch.add(attribute("long", 2L, entity -> entity.setLongValue(Long.MAX_VALUE)));
+        batch.add(attribute("double", 2L, entity -> entity.setDoubleValue(-0.25)));
+        batch.add(attribute("str", 2L, entity -> entity.setStrValue("new ✓")));
+        batch.add(attribute("json", 2L, entity -> entity.setJsonValue("{\"b\":[1,2]}")));
+        // the values of the other types are cleared
+        batch.add(attribute("changedType", 2L, entity -> entity.setStrValue("seven")));
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            String value = "value" + i;
+            batch.add(attribute("key" + i, i, entity -> entity.setStrValue(value)));
+        }
+        copyRepository.saveOrUpdate(batch);
+
+        Map<String, AttributeKvEntity> saved = attributeKvRepository.findAllByEntityTypeAndEntityIdAndAttributeType(
+                        EntityType.DEVICE, deviceId.getId(), DataConstants.SERVER_SCOPE).stream()
+                .collect(Collectors.toMap(entity -> entity.getId().getAttributeKey(), Function.identity()));
+        Assert.assertEquals(batch.size(), saved.size());
+        for (AttributeKvEntity expected : batch) {
+            Assert.assertEquals(expected, saved.get(expected.getId().getAttributeKey()));
+        }
+    }
+
+    private AttributeKvEntity attribute(String key, long lastUpdateTs, Consumer<AttributeKvEntity> valueSetter) {
+        AttributeKvEntity entity = new AttributeKvEntity();
+        entity.setId(new AttributeKvCompositeKey(EntityType.DEVICE, deviceId.getId(), DataConstants.SERVER_SCOPE, key));
+        entity.setLastUpdateTs(lastUpdateTs);
+        valueSetter.accept(entity);
+        return entity;
+    }
+}
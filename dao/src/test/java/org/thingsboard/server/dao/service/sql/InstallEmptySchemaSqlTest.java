@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.service.sql;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.thingsboard.server.dao.PostgreSqlInitializer;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryCache;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Starts the DAO context of the install application against a database without the schema,
+ * the way a fresh installation does before the schema is created.
+ */
+@DaoSqlTest
+@ActiveProfiles("install")
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:tc:postgresql:12.8:///thingsboard_install?TC_DAEMON=true&TC_TMPFS=/testtmpfs:rw"
+})
+public class InstallEmptySchemaSqlTest extends AbstractServiceTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TsKvDictionaryCache dictionaryCache;
+
+    @Test
+    public void testContextStartsWithoutSchemaAndResolvesKeysAfterInstall() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            PostgreSqlInitializer.initDb(connection);
+        }
+
+        Integer keyId = dictionaryCache.getOrSaveKeyId("temperature");
+        assertNotNull(keyId);
+        assertEquals(keyId, dictionaryCache.getOrSaveKeyId("temperature"));
+    }
+}
@@ -210,6 +210,34 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(toTsEntry(TS - 3, stringKvEntry), entries.get(2));
     }
 
+    @Test
+    public void testStreamAll() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+
+        saveEntries(deviceId, TS - 3);
+        saveEntries(deviceId, TS - 2);
+        saveEntries(deviceId, TS - 1);
+        saveEntries(deviceId, TS);
+
+        List<TsKvEntry> entries = new ArrayList<>();
+        tsService.streamAll(tenantId, deviceId, STRING_KEY, TS - 3, TS, entries::addAll);
+        Assert.assertEquals(3, entries.size());
+        Assert.assertEquals(toTsEntry(TS - 3, stringKvEntry), entries.get(0));
+        Assert.assertEquals(toTsEntry(TS - 2, stringKvEntry), entries.get(1));
+        Assert.assertEquals(toTsEntry(TS - 1, stringKvEntry), entries.get(2));
+
+        EntityView entityView = saveAndCreateEntityView(deviceId, Arrays.asList(STRING_KEY));
+
+        entries.clear();
+        tsService.streamAll(tenantId, entityView.getId(), STRING_KEY, TS - 3, TS, entries::addAll);
+        Assert.assertEquals(3, entries.size());
+        Assert.assertEquals(toTsEntry(TS - 3, stringKvEntry), entries.get(0));
+
+        entries.clear();
+        tsService.streamAll(tenantId, entityView.getId(), LONG_KEY, TS - 3, TS, entries::addAll);
+        Assert.assertTrue(entries.isEmpty());
+    }
+
     @Test
     public void testDeleteDeviceTsDataWithOverwritingLatest() throws Exception {
         DeviceId deviceId = new DeviceId(Uuids.timeBased());
@@ -0,0 +1,112 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.service.timeseries.sql;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.service.timeseries.BaseTimeseriesServiceTest;
+import org.thingsboard.server.dao.sqlts.insert.latest.psql.PsqlLatestCopyInsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.psql.PsqlCopyInsertTsRepository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the timeseries service tests with the COPY based inserts of ts_kv and ts_kv_latest.
+ * The latest values cache is disabled, so the latest values are read from the database.
+ */
+@TestPropertySource(locations = {"classpath:application-test.properties", "classpath:sql-test.properties"},
+        properties = {"sql.ts.insert_mode=copy", "sql.ts_latest.insert_mode=copy", "cache.ts_latest.enabled=false"})
+public class TimeseriesServiceCopySqlTest extends BaseTimeseriesServiceTest {
+
+    private static final int KEY = 1;
+    private static final int OTHER_KEY = 2;
+
+    @Autowired
+    private PsqlCopyInsertTsRepository insertRepository;
+
+    @Autowired
+    private PsqlLatestCopyInsertTsRepository latestInsertRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testCopiedValuesAreMergedIntoTsKv() {
+        UUID entityId = UUID.randomUUID();
+        insertRepository.saveOrUpdate(Arrays.asList(
+                entity(TsKvEntity::new, entityId, KEY, 1L, 1L),
+                entity(TsKvEntity::new, entityId, KEY, 2L, 2L)));
+        // the existing point is updated, and the last duplicate in the batch wins
+        insertRepository.saveOrUpdate(Arrays.asList(
+                entity(TsKvEntity::new, entityId, KEY, 2L, "updated"),
+                entity(TsKvEntity::new, entityId, KEY, 3L, 3L),
+                entity(TsKvEntity::new, entityId, KEY, 3L, 4L)));
+
+        assertEquals(Arrays.asList("1:1", "2:updated", "3:4"), jdbcTemplate.queryForList(
+                "SELECT ts || ':' || COALESCE(long_v::varchar, str_v) FROM ts_kv WHERE entity_id = ? AND key = ? ORDER BY ts",
+                String.class, entityId, KEY));
+    }
+
+    @Test
+    public void testCopiedValuesAreMergedIntoTsKvLatest() {
+        UUID entityId = UUID.randomUUID();
+        latestInsertRepository.saveOrUpdate(Arrays.asList(
+                entity(TsKvLatestEntity::new, entityId, KEY, 10L, 1L),
+                entity(TsKvLatestEntity::new, entityId, OTHER_KEY, 10L, "value")));
+        // the older value is ignored, the newest value of the batch wins and the value of the other type replaces the old one
+        latestInsertRepository.saveOrUpdate(Arrays.asList(
+                entity(TsKvLatestEntity::new, entityId, KEY, 5L, 2L),
+                entity(TsKvLatestEntity::new, entityId, KEY, 20L, 3L),
+                entity(TsKvLatestEntity::new, entityId, KEY, 15L, 4L),
+                entity(TsKvLatestEntity::new, entityId, OTHER_KEY, 30L, 5L)));
+
+        assertEquals(Arrays.asList("1:20:3:", "2:30:5:"), findLatest(entityId));
+
+        latestInsertRepository.saveOrUpdate(Arrays.asList(
+                entity(TsKvLatestEntity::new, entityId, KEY, 19L, 6L),
+                entity(TsKvLatestEntity::new, entityId, OTHER_KEY, 30L, "same ts")));
+
+        assertEquals(Arrays.asList("1:20:3:", "2:30::same ts"), findLatest(entityId));
+    }
+
+    private List<String> findLatest(UUID entityId) {
+        return jdbcTemplate.queryForList("SELECT key || ':' || ts || ':' || COALESCE(long_v::varchar, '') || ':' || COALESCE(str_v, '') " +
+                "FROM ts_kv_latest WHERE entity_id = ? ORDER BY key", String.class, entityId);
+    }
+
+    private static <T extends AbstractTsKvEntity> T entity(Supplier<T> constructor, UUID entityId, int key, long ts, Object value) {
+        T entity = constructor.get();
+        entity.setEntityId(entityId);
+        entity.setKey(key);
+        entity.setTs(ts);
+        if (value instanceof Long) {
+            entity.setLongValue((Long) value);
+        } else {
+            entity.setStrValue((String) value);
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TbSqlBlockingQueueTest {
+
+    private ScheduledLogExecutorComponent logExecutor;
+    private TbSqlBlockingQueue<long[]> queue;
+
+    @Before
+    public void setUp() {
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+        logExecutor.stop();
+    }
+
+    @Test
+    public void testNextBatchSize() {
+        assertEquals(50, TbSqlBlockingQueue.nextBatchSize(100, 200, 100, 1000, 10, 1000));
+        assertEquals(10, TbSqlBlockingQueue.nextBatchSize(15, 200, 100, 1000, 10, 1000));
+        assertEquals(200, TbSqlBlockingQueue.nextBatchSize(100, 10, 100, 1000, 10, 1000));
+        assertEquals(1000, TbSqlBlockingQueue.nextBatchSize(800, 10, 100, 1000, 10, 1000));
+        assertEquals(100, TbSqlBlockingQueue.nextBatchSize(100, 10, 100, 5, 10, 1000));
+    }
+
+    @Test
+    public void testBatchFlushTrackerCompletesOnceWithSlowestLaneLatency() throws Exception {
+        int lanes = 4;
+        TbSqlBlockingQueue.BatchFlushTracker tracker = new TbSqlBlockingQueue.BatchFlushTracker(lanes);
+        ExecutorService executor = Executors.newFixedThreadPool(lanes);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < lanes; i++) {
+                long latencyMs = (i + 1) * 10L;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return tracker.onLaneFlushed(latencyMs);
+                }));
+            }
+            start.countDown();
+            int completed = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(5, TimeUnit.SECONDS)) {
+                    completed++;
+                }
+            }
+            assertEquals(1, completed);
+            assertEquals(40, tracker.getMaxLatencyMs());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAdaptiveParallelFlushKeepsOrderPerEntity() throws Exception {
+        TbSqlBlockingQueueAdaptiveSettings settings = new TbSqlBlockingQueueAdaptiveSettings();
+        settings.setEnabled(true);
+        settings.setMinBatchSize(10);
+        settings.setTargetFlushLatencyMs(100);
+        settings.setFlushThreads(4);
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(1000)
+                .maxDelay(100)
+                .statsPrintIntervalMs(60000)
+                .statsNamePrefix("test")
+                .adaptiveSettings(settings)
+                .build();
+
+        Map<Long, List<Long>> saved = new ConcurrentHashMap<>();
+        queue = new TbSqlBlockingQueue<>(params, mock(MessagesStats.class), entity -> (int) entity[0]);
+        queue.init(logExecutor, entities -> entities.forEach(entity ->
+                saved.computeIfAbsent(entity[0], id -> Collections.synchronizedList(new ArrayList<>())).add(entity[1])), null, 0);
+
+        int entityCount = 50;
+        int msgsPerEntity = 200;
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (long seq = 0; seq < msgsPerEntity; seq++) {
+            for (long id = 0; id < entityCount; id++) {
+                futures.add(queue.add(new long[]{id, seq}));
+            }
+        }
+        Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+
+        assertEquals(entityCount, saved.size());
+        for (List<Long> sequence : saved.values()) {
+            assertEquals(msgsPerEntity, sequence.size());
+            for (int i = 0; i < msgsPerEntity; i++) {
+                assertEquals(i, sequence.get(i).longValue());
+            }
+        }
+        int batchSize = queue.getCurrentBatchSize();
+        assertTrue(batchSize >= 10 && batchSize <= 1000);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TbSqlWriteAheadLogTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("tb-sql-wal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRecordsArePolledInOrderAcrossSegments() throws IOException {
+        TbSqlWriteAheadLog wal = new TbSqlWriteAheadLog(dir, 64, 10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(wal.append(record(i)));
+        }
+        assertEquals(10, wal.getPendingRecords());
+        for (int i = 0; i < 10; i++) {
+            TbSqlWriteAheadLog.Record record = wal.poll();
+            assertEquals("record-" + i, data(record));
+            wal.commit(record);
+        }
+        assertNull(wal.poll());
+        assertTrue(wal.isEmpty());
+        assertEquals(0, wal.getPendingBytes());
+    }
+
+    @Test
+    public void testAppendIsRejectedWhenFull() throws IOException {
+        TbSqlWriteAheadLog wal = new TbSqlWriteAheadLog(dir, 64, 2);
+        int appended = 0;
+        while (wal.append(record(appended))) {
+            appended++;
+        }
+        assertTrue(appended > 0);
+        assertEquals(appended, wal.getPendingRecords());
+        assertFalse(wal.append(new byte[128]));
+
+        List<TbSqlWriteAheadLog.Record> records = new ArrayList<>();
+        for (int i = 0; i < appended; i++) {
+            TbSqlWriteAheadLog.Record record = wal.poll();
+            assertEquals("record-" + i, data(record));
+            records.add(record);
+        }
+        assertFalse("Segments are kept until the records are committed", wal.append(record(appended)));
+        records.forEach(wal::commit);
+        assertTrue(wal.append(record(appended)));
+    }
+
+    @Test
+    public void testRolledBackRecordsArePolledAgain() throws IOException {
+        TbSqlWriteAheadLog wal = new TbSqlWriteAheadLog(dir, 64, 10);
+        for (int i = 0; i < 3; i++) {
+            wal.append(record(i));
+        }
+        TbSqlWriteAheadLog.Record first = wal.poll();
+        TbSqlWriteAheadLog.Record second = wal.poll();
+        wal.rollback(first);
+        wal.commit(second);
+
+        TbSqlWriteAheadLog.Record retried = wal.poll();
+        assertEquals("record-0", data(retried));
+        wal.commit(retried);
+        TbSqlWriteAheadLog.Record last = wal.poll();
+        assertEquals("record-2", data(last));
+        assertFalse(wal.isEmpty());
+        wal.commit(last);
+        assertTrue(wal.isEmpty());
+        assertNull(wal.poll());
+    }
+
+    @Test
+    public void testUncommittedRecordsAreRecoveredAfterRestart() throws IOException {
+        TbSqlWriteAheadLog wal = new TbSqlWriteAheadLog(dir, 64, 10);
+        for (int i = 0; i < 5; i++) {
+            wal.append(record(i));
+        }
+        wal.poll();
+        wal.commit(wal.poll());
+        wal.poll();
+        wal.close();
+
+        TbSqlWriteAheadLog recovered = new TbSqlWriteAheadLog(dir, 64, 10);
+        assertEquals(4, recovered.getPendingRecords());
+        assertTrue(recovered.append(record(5)));
+        for (int i : new int[]{0, 2, 3, 4, 5}) {
+            TbSqlWriteAheadLog.Record record = recovered.poll();
+            assertEquals("record-" + i, data(record));
+            recovered.commit(record);
+        }
+        assertNull(recovered.poll());
+        assertTrue(recovered.isEmpty());
+    }
+
+    private static String data(TbSqlWriteAheadLog.Record record) {
+        return new String(record.getData(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] record(int i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.attributes;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AttributeKvBinaryCopyWriterTest {
+
+    @Test
+    public void testBinaryCopyFormat() throws IOException {
+        UUID entityId = UUID.randomUUID();
+        AttributeKvEntity entity = new AttributeKvEntity();
+        entity.setId(new AttributeKvCompositeKey(EntityType.DEVICE, entityId, "SHARED_SCOPE", "firmware"));
+        entity.setBooleanValue(true);
+        entity.setLastUpdateTs(42L);
+
+        byte[] bytes = AttributeKvBinaryCopyWriter.write(Collections.singletonList(entity), UnaryOperator.identity());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(10, in.readShort());
+        assertEquals("DEVICE", readString(in));
+        assertEquals(16, in.readInt());
+        assertEquals(entityId, new UUID(in.readLong(), in.readLong()));
+        assertEquals("SHARED_SCOPE", readString(in));
+        assertEquals("firmware", readString(in));
+        assertEquals(1, in.readInt());
+        assertEquals(1, in.readByte());
+        assertEquals(-1, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals(-1, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(42L, in.readLong());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
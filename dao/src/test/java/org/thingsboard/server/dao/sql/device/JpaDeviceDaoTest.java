@@ -33,13 +33,16 @@ import org.thingsboard.server.dao.AbstractJpaDaoTest;
 import org.thingsboard.server.dao.device.DeviceDao;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by Valerii Sosliuk on 5/6/2017.
@@ -140,6 +143,44 @@ public class JpaDeviceDaoTest extends AbstractJpaDaoTest {
         assertEquals(20, devices.size());
     }
 
+    @Test
+    public void testFindDevicesByIdGreaterThan() {
+        UUID tenantId = Uuids.timeBased();
+        UUID customerId = Uuids.timeBased();
+        Set<UUID> deviceIds = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            Device device = getDevice(tenantId, customerId);
+            deviceDao.save(TenantId.fromUUID(tenantId), device);
+            deviceIds.add(device.getUuidId());
+        }
+
+        // the whole table in a single page is the reference order
+        List<UUID> expected = toIds(deviceDao.findDevicesByIdGreaterThan(new UUID(0L, 0L), Integer.MAX_VALUE));
+        assertTrue(expected.containsAll(deviceIds));
+
+        int pageSize = 7;
+        List<UUID> scanned = new ArrayList<>();
+        UUID lastId = new UUID(0L, 0L);
+        List<Device> page;
+        do {
+            page = deviceDao.findDevicesByIdGreaterThan(lastId, pageSize);
+            assertTrue(page.size() <= pageSize);
+            scanned.addAll(toIds(page));
+            if (!page.isEmpty()) {
+                lastId = page.get(page.size() - 1).getUuidId();
+            }
+        } while (page.size() == pageSize);
+
+        assertEquals(expected, scanned);
+        assertTrue(deviceDao.findDevicesByIdGreaterThan(lastId, pageSize).isEmpty());
+    }
+
+    private static List<UUID> toIds(List<Device> devices) {
+        List<UUID> ids = new ArrayList<>(devices.size());
+        devices.forEach(device -> ids.add(device.getUuidId()));
+        return ids;
+    }
+
     private void createDevices(UUID tenantId1, UUID tenantId2, UUID customerId1, UUID customerId2, int count) {
         for (int i = 0; i < count / 2; i++) {
             deviceDao.save(TenantId.fromUUID(tenantId1), getDevice(tenantId1, customerId1));
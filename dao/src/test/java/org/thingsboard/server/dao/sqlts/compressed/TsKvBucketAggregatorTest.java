@@ -0,0 +1,95 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.compressed;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class TsKvBucketAggregatorTest {
+
+    @Test
+    public void testNumericAggregation() {
+        assertEquals(2.5, aggregate(Aggregation.AVG).getDoubleValue(), 0.0);
+        assertEquals(10.0, aggregate(Aggregation.SUM).getDoubleValue(), 0.0);
+        assertEquals(1.0, aggregate(Aggregation.MIN).getDoubleValue(), 0.0);
+        assertEquals(4.0, aggregate(Aggregation.MAX).getDoubleValue(), 0.0);
+        assertEquals(Long.valueOf(4), aggregate(Aggregation.COUNT).getLongValue());
+    }
+
+    @Test
+    public void testLongsOnlyKeepLongType() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(Aggregation.SUM);
+        aggregator.add(longPoint(5L));
+        aggregator.add(longPoint(7L));
+
+        TsKvEntity result = aggregator.getResult();
+
+        assertEquals(Long.valueOf(12L), result.getLongValue());
+        assertNull(result.getDoubleValue());
+    }
+
+    @Test
+    public void testStringMinMaxTakePrecedence() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(Aggregation.MAX);
+        aggregator.add(longPoint(100L));
+        aggregator.add(strPoint("b"));
+        aggregator.add(strPoint("a"));
+
+        assertEquals("b", aggregator.getResult().getStrValue());
+    }
+
+    @Test
+    public void testBooleansHaveNoMinMax() {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(Aggregation.MIN);
+        TsKvEntity point = new TsKvEntity();
+        point.setBooleanValue(true);
+        aggregator.add(point);
+
+        assertFalse(aggregator.getResult().isNotEmpty());
+    }
+
+    private static TsKvEntity aggregate(Aggregation aggregation) {
+        TsKvBucketAggregator aggregator = new TsKvBucketAggregator(aggregation);
+        aggregator.add(longPoint(1L));
+        aggregator.add(doublePoint(2.0));
+        aggregator.add(longPoint(3L));
+        aggregator.add(doublePoint(4.0));
+        return aggregator.getResult();
+    }
+
+    private static TsKvEntity longPoint(long value) {
+        TsKvEntity point = new TsKvEntity();
+        point.setLongValue(value);
+        return point;
+    }
+
+    private static TsKvEntity doublePoint(double value) {
+        TsKvEntity point = new TsKvEntity();
+        point.setDoubleValue(value);
+        return point;
+    }
+
+    private static TsKvEntity strPoint(String value) {
+        TsKvEntity point = new TsKvEntity();
+        point.setStrValue(value);
+        return point;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.compressed;
+
+import org.junit.Test;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TsKvChunkCodecTest {
+
+    @Test
+    public void testRegularDoublesAreCompressed() {
+        List<TsKvEntity> points = new ArrayList<>();
+        for (int i = 0; i < 360; i++) {
+            points.add(doublePoint(1_600_000_000_000L + i * 10_000L, 20.0 + (i % 4) * 0.5));
+        }
+        byte[] data = TsKvChunkCodec.encode(points);
+
+        assertTrue("Encoded size " + data.length, data.length < 360 * 4);
+        assertPoints(points, TsKvChunkCodec.decode(data));
+    }
+
+    @Test
+    public void testMixedTypesAndIrregularTimestamps() {
+        List<TsKvEntity> points = Arrays.asList(
+                doublePoint(-5_000L, Double.NaN),
+                doublePoint(-1L, -0.0),
+                longPoint(0L, Long.MIN_VALUE),
+                longPoint(7L, Long.MAX_VALUE),
+                booleanPoint(8L, true),
+                booleanPoint(1_000_000L, false),
+                strPoint(1_000_001L, "привіт"),
+                jsonPoint(3_600_000L, "{\"a\":1}"),
+                doublePoint(3_600_001L, Double.MAX_VALUE),
+                doublePoint(3_600_002L, Double.MIN_VALUE),
+                longPoint(3_600_003L, 42L));
+
+        assertPoints(points, TsKvChunkCodec.decode(TsKvChunkCodec.encode(points)));
+    }
+
+    @Test
+    public void testEmptyChunk() {
+        assertEquals(0, TsKvChunkCodec.decode(TsKvChunkCodec.encode(Collections.emptyList())).size());
+    }
+
+    @Test
+    public void testMergeReplacesPointsWithSameTs() {
+        List<TsKvEntity> existing = Arrays.asList(longPoint(1L, 1L), longPoint(3L, 3L));
+        List<TsKvEntity> updates = Arrays.asList(longPoint(3L, 30L), longPoint(2L, 2L), longPoint(3L, 300L));
+
+        List<TsKvEntity> merged = TsKvChunkRepository.merge(existing, updates);
+
+        assertPoints(Arrays.asList(longPoint(1L, 1L), longPoint(2L, 2L), longPoint(3L, 300L)), merged);
+    }
+
+    private static void assertPoints(List<TsKvEntity> expected, List<TsKvEntity> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            TsKvEntity e = expected.get(i);
+            TsKvEntity a = actual.get(i);
+            assertEquals(e.getTs(), a.getTs());
+            assertEquals(e.getBooleanValue(), a.getBooleanValue());
+            assertEquals(e.getLongValue(), a.getLongValue());
+            assertEquals(e.getDoubleValue(), a.getDoubleValue());
+            assertEquals(e.getStrValue(), a.getStrValue());
+            assertEquals(e.getJsonValue(), a.getJsonValue());
+        }
+    }
+
+    private static TsKvEntity doublePoint(long ts, double value) {
+        TsKvEntity point = point(ts);
+        point.setDoubleValue(value);
+        return point;
+    }
+
+    private static TsKvEntity longPoint(long ts, long value) {
+        TsKvEntity point = point(ts);
+        point.setLongValue(value);
+        return point;
+    }
+
+    private static TsKvEntity booleanPoint(long ts, boolean value) {
+        TsKvEntity point = point(ts);
+        point.setBooleanValue(value);
+        return point;
+    }
+
+    private static TsKvEntity strPoint(long ts, String value) {
+        TsKvEntity point = point(ts);
+        point.setStrValue(value);
+        return point;
+    }
+
+    private static TsKvEntity jsonPoint(long ts, String value) {
+        TsKvEntity point = point(ts);
+        point.setJsonValue(value);
+        return point;
+    }
+
+    private static TsKvEntity point(long ts) {
+        TsKvEntity point = new TsKvEntity();
+        point.setTs(ts);
+        return point;
+    }
+}
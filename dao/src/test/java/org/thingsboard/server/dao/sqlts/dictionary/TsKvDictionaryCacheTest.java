@@ -0,0 +1,143 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TsKvDictionaryCacheTest {
+
+    private TsKvDictionaryRepository repository;
+    private TsKvDictionaryCache cache;
+    private final Map<String, Integer> createdKeys = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        repository = mock(TsKvDictionaryRepository.class);
+        when(repository.findAll()).thenReturn(Collections.singletonList(dictionary("temperature", 1)));
+        when(repository.findAllById(any())).thenReturn(Collections.emptyList());
+        AtomicInteger nextKeyId = new AtomicInteger(100);
+        when(repository.save(any(TsKvDictionary.class))).thenAnswer(invocation -> {
+            TsKvDictionary saved = invocation.getArgument(0);
+            return dictionary(saved.getKey(), nextKeyId.incrementAndGet());
+        });
+
+        cache = new TsKvDictionaryCache();
+        ReflectionTestUtils.setField(cache, "dictionaryRepository", repository);
+        ReflectionTestUtils.setField(cache, "batchSize", 100);
+        ReflectionTestUtils.setField(cache, "resolveTimeoutMs", 10000L);
+        cache.setListener(createdKeys::putAll);
+        cache.init();
+    }
+
+    @After
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    public void testDictionaryIsLoadedOnFirstResolve() {
+        verify(repository, never()).findAll();
+
+        assertEquals(Integer.valueOf(1), cache.getOrSaveKeyId("temperature"));
+        verify(repository, times(1)).findAll();
+        verify(repository, never()).findAllById(any());
+        verify(repository, never()).save(any());
+
+        cache.getOrSaveKeyId("humidity");
+        assertEquals(Integer.valueOf(1), cache.getOrSaveKeyId("temperature"));
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    public void testKeysAreResolvedWhenDictionaryFailsToLoad() {
+        when(repository.findAll()).thenThrow(new RuntimeException("relation \"ts_kv_dictionary\" does not exist"));
+
+        Integer keyId = cache.getOrSaveKeyId("humidity");
+        assertEquals(Collections.singletonMap("humidity", keyId), createdKeys);
+    }
+
+    @Test
+    public void testSameNewKeyIsSavedOnceForConcurrentRequests() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getOrSaveKeyId("humidity");
+                }));
+            }
+            start.countDown();
+            Integer keyId = futures.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Integer> future : futures) {
+                assertEquals(keyId, future.get(10, TimeUnit.SECONDS));
+            }
+            verify(repository, times(1)).save(any());
+            assertEquals(Collections.singletonMap("humidity", keyId), createdKeys);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testKeyAddedByOtherNodeIsNotSaved() {
+        when(repository.findAllById(any())).thenReturn(Collections.singletonList(dictionary("pressure", 7)));
+
+        assertEquals(Integer.valueOf(7), cache.getOrSaveKeyId("pressure"));
+        verify(repository, never()).save(any());
+        assertEquals(0, createdKeys.size());
+    }
+
+    @Test
+    public void testKeysFromOtherNodesReplaceCachedIds() {
+        cache.putAll(Collections.singletonMap("temperature", 5));
+
+        assertEquals(Integer.valueOf(5), cache.getOrSaveKeyId("temperature"));
+    }
+
+    private static TsKvDictionary dictionary(String key, int keyId) {
+        TsKvDictionary dictionary = new TsKvDictionary();
+        dictionary.setKey(key);
+        dictionary.setKeyId(keyId);
+        return dictionary;
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert;
+
+import org.junit.Test;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TsKvBinaryCopyWriterTest {
+
+    @Test
+    public void testBinaryCopyFormat() throws IOException {
+        UUID entityId = UUID.randomUUID();
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(entityId);
+        entity.setKey(7);
+        entity.setTs(42L);
+        entity.setStrValue("temperature");
+        entity.setDoubleValue(36.6);
+
+        byte[] bytes = TsKvBinaryCopyWriter.write(Collections.singletonList(entity), UnaryOperator.identity());
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        byte[] signature = new byte[11];
+        in.readFully(signature);
+        assertArrayEquals(new byte[]{'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0}, signature);
+        assertEquals(0, in.readInt());
+        assertEquals(0, in.readInt());
+
+        assertEquals(8, in.readShort());
+        assertEquals(16, in.readInt());
+        assertEquals(entityId, new UUID(in.readLong(), in.readLong()));
+        assertEquals(4, in.readInt());
+        assertEquals(7, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(42L, in.readLong());
+        assertEquals(-1, in.readInt());
+        byte[] str = new byte[in.readInt()];
+        in.readFully(str);
+        assertEquals("temperature", new String(str, StandardCharsets.UTF_8));
+        assertEquals(-1, in.readInt());
+        assertEquals(8, in.readInt());
+        assertEquals(36.6, in.readDouble(), 0.0);
+        assertEquals(-1, in.readInt());
+
+        assertEquals(-1, in.readShort());
+        assertEquals(0, in.available());
+    }
+}
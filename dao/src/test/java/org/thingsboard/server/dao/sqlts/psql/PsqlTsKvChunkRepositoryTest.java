@@ -0,0 +1,150 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.sqlts.compressed.TsKvChunkRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.thingsboard.server.dao.sqlts.compressed.TsKvChunkRepository.CHUNK_DURATION_MS;
+
+@TestPropertySource(locations = {"classpath:application-test.properties", "classpath:sql-test.properties"},
+        properties = "sql.ts.storage=compressed")
+public class PsqlTsKvChunkRepositoryTest extends AbstractServiceTest {
+
+    private static final String KEY = "chunkKey";
+    private static final int KEY_ID = 1;
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long CHUNK_TS = 100 * CHUNK_DURATION_MS;
+
+    @Autowired
+    private TsKvChunkRepository chunkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TenantId tenantId;
+    private DeviceId deviceId;
+
+    @Before
+    public void before() {
+        Tenant tenant = new Tenant();
+        tenant.setTitle("My tenant");
+        tenantId = tenantService.saveTenant(tenant).getId();
+        deviceId = new DeviceId(Uuids.timeBased());
+    }
+
+    @After
+    public void after() {
+        tenantService.deleteTenant(tenantId);
+    }
+
+    @Test
+    public void testWriteAcrossChunkBoundaryAndAppend() {
+        UUID entityId = UUID.randomUUID();
+        chunkRepository.saveOrUpdate(Arrays.asList(
+                point(entityId, CHUNK_TS - 2 * MINUTE, 1),
+                point(entityId, CHUNK_TS - MINUTE, 2),
+                point(entityId, CHUNK_TS, 3),
+                point(entityId, CHUNK_TS + MINUTE, 4)));
+
+        assertEquals(Arrays.asList(CHUNK_TS - CHUNK_DURATION_MS, CHUNK_TS), findChunkTss(entityId));
+
+        // appends to the existing chunks, overwrites the point with the same ts and keeps the chunk points sorted
+        chunkRepository.saveOrUpdate(Arrays.asList(
+                point(entityId, CHUNK_TS + 3 * MINUTE, 5),
+                point(entityId, CHUNK_TS, 6),
+                point(entityId, CHUNK_TS + 2 * MINUTE, 7),
+                point(entityId, CHUNK_TS - 3 * MINUTE, 8)));
+
+        assertEquals(Arrays.asList(CHUNK_TS - CHUNK_DURATION_MS, CHUNK_TS), findChunkTss(entityId));
+        assertEquals(Arrays.asList(
+                CHUNK_TS - 3 * MINUTE + ":8", CHUNK_TS - 2 * MINUTE + ":1", CHUNK_TS - MINUTE + ":2",
+                CHUNK_TS + ":6", CHUNK_TS + MINUTE + ":4", CHUNK_TS + 2 * MINUTE + ":7", CHUNK_TS + 3 * MINUTE + ":5"),
+                findPoints(entityId, CHUNK_TS - CHUNK_DURATION_MS, CHUNK_TS + CHUNK_DURATION_MS, true));
+        assertEquals(Arrays.asList(CHUNK_TS + 3 * MINUTE + ":5", CHUNK_TS + 2 * MINUTE + ":7", CHUNK_TS + MINUTE + ":4", CHUNK_TS + ":6"),
+                findPoints(entityId, CHUNK_TS, CHUNK_TS + 1, false));
+    }
+
+    @Test
+    public void testFindRangeAcrossChunks() throws Exception {
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = -5; i < 5; i++) {
+            entries.add(new BasicTsKvEntry(CHUNK_TS + i * 20 * MINUTE, new LongDataEntry(KEY, (long) i)));
+        }
+        // the odd points are appended to the chunks created by the even ones
+        for (int parity = 0; parity < 2; parity++) {
+            List<TsKvEntry> batch = new ArrayList<>();
+            for (int i = parity; i < entries.size(); i += 2) {
+                batch.add(entries.get(i));
+            }
+            tsService.save(tenantId, deviceId, batch, 0).get();
+        }
+
+        List<TsKvEntry> found = tsService.findAll(tenantId, deviceId, Collections.singletonList(
+                new BaseReadTsKvQuery(KEY, CHUNK_TS - 40 * MINUTE, CHUNK_TS + 40 * MINUTE, 0, 100, Aggregation.NONE, "ASC"))).get();
+
+        assertEquals(entries.subList(3, 7).stream().map(TsKvEntry::getTs).collect(Collectors.toList()),
+                found.stream().map(TsKvEntry::getTs).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(-2L, -1L, 0L, 1L), found.stream().map(entry -> entry.getLongValue().get()).collect(Collectors.toList()));
+    }
+
+    private List<Long> findChunkTss(UUID entityId) {
+        return jdbcTemplate.queryForList("SELECT chunk_ts FROM ts_chunk WHERE entity_id = ? ORDER BY chunk_ts", Long.class, entityId);
+    }
+
+    private List<String> findPoints(UUID entityId, long startTs, long endTs, boolean ascending) {
+        List<String> points = new ArrayList<>();
+        chunkRepository.findChunks(entityId, KEY_ID, startTs, endTs, ascending, chunk -> {
+            chunk.forEach(point -> points.add(point.getTs() + ":" + point.getLongValue()));
+            return true;
+        });
+        return points;
+    }
+
+    private static TsKvEntity point(UUID entityId, long ts, long value) {
+        TsKvEntity entity = new TsKvEntity();
+        entity.setEntityId(entityId);
+        entity.setKey(KEY_ID);
+        entity.setTs(ts);
+        entity.setLongValue(value);
+        return entity;
+    }
+}
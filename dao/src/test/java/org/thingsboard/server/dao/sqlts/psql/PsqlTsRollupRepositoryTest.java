@@ -0,0 +1,197 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseDeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@TestPropertySource(locations = {"classpath:application-test.properties", "classpath:sql-test.properties"},
+        properties = "sql.ts.rollup.enabled=true")
+public class PsqlTsRollupRepositoryTest extends AbstractServiceTest {
+
+    private static final String KEY = "rollupKey";
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final int POINTS = 40;
+    private static final long STEP = 7 * MINUTE;
+
+    @Autowired
+    private PsqlAggregationRepository aggregationRepository;
+
+    @Autowired
+    private PsqlTsRollupRepository rollupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private TenantId tenantId;
+    private DeviceId deviceId;
+    // the rollups are complete since the next bucket after the first use, so the test data is in the future
+    private long baseTs;
+
+    @Before
+    public void before() {
+        jdbcTemplate.execute("DELETE FROM ts_ttl_cleanup");
+        Tenant tenant = new Tenant();
+        tenant.setTitle("My tenant");
+        tenantId = tenantService.saveTenant(tenant).getId();
+        deviceId = new DeviceId(Uuids.timeBased());
+        baseTs = (System.currentTimeMillis() / DAY + 2) * DAY;
+    }
+
+    @After
+    public void after() {
+        tenantService.deleteTenant(tenantId);
+    }
+
+    @Test
+    public void testRollupsMatchRawAggregation() throws Exception {
+        save(points(0, POINTS, 0));
+
+        assertAggregatesMatchRaw();
+    }
+
+    @Test
+    public void testOverwrittenPointsAreNotCountedTwice() throws Exception {
+        save(points(0, POINTS, 0));
+        // redelivered points with the same values
+        save(points(0, POINTS / 2, 0));
+        // overwritten points, including the ones in the partial buckets at the edges of the queries
+        save(points(POINTS / 4, POINTS, 1000));
+        // the same point twice in one batch
+        List<TsKvEntry> duplicates = new ArrayList<>(points(3, 4, 2000));
+        duplicates.addAll(points(3, 4, 3000));
+        save(duplicates);
+
+        assertAggregatesMatchRaw();
+        assertEquals(Long.valueOf(POINTS), findAggregated(baseTs, baseTs + DAY, DAY, Aggregation.COUNT).get(0).getLongValue().orElse(null));
+    }
+
+    @Test
+    public void testRollupsMatchRawAggregationAfterTtlCleanup() throws Exception {
+        Device device = new Device();
+        device.setTenantId(tenantId);
+        device.setName("My device");
+        device.setType("default");
+        deviceId = deviceService.saveDevice(device).getId();
+        // the rollups are complete for the data in the past only if they were enabled before it
+        jdbcTemplate.update("UPDATE ts_rollup_interval SET valid_from = 0");
+        ReflectionTestUtils.setField(rollupRepository, "validFrom", null);
+        try {
+            baseTs = (System.currentTimeMillis() / DAY - 3) * DAY;
+            save(points(0, POINTS, 0));
+            // the expiration time is in the middle of the minute, hour and day buckets
+            long expirationTs = baseTs + 100 * MINUTE + 30 * 1000;
+            jdbcTemplate.update("INSERT INTO attribute_kv (entity_type, entity_id, attribute_type, attribute_key, long_v, last_update_ts) " +
+                            "VALUES (?, ?, 'SERVER_SCOPE', 'TTL', ?, ?)", EntityType.TENANT.name(), tenantId.getId(),
+                    TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - expirationTs), System.currentTimeMillis());
+
+            tsService.cleanup(0);
+
+            int left = jdbcTemplate.queryForObject("SELECT count(*) FROM ts_kv WHERE entity_id = ?", Integer.class, deviceId.getId());
+            assertTrue(left > 0 && left < POINTS);
+            assertAggregatesMatchRaw();
+        } finally {
+            jdbcTemplate.update("DELETE FROM attribute_kv WHERE entity_id = ? AND attribute_key = 'TTL'", tenantId.getId());
+            jdbcTemplate.update("DELETE FROM ts_rollup_interval");
+            ReflectionTestUtils.setField(rollupRepository, "validFrom", null);
+        }
+    }
+
+    @Test
+    public void testRollupsMatchRawAggregationAfterRemove() throws Exception {
+        save(points(0, POINTS, 0));
+        tsService.remove(tenantId, deviceId, Collections.singletonList(
+                new BaseDeleteTsKvQuery(KEY, baseTs + 50 * MINUTE, baseTs + 2 * HOUR + 10 * MINUTE))).get();
+
+        assertAggregatesMatchRaw();
+    }
+
+    private void assertAggregatesMatchRaw() throws Exception {
+        int keyId = jdbcTemplate.queryForObject("SELECT key_id FROM ts_kv_dictionary WHERE key = ?", Integer.class, KEY);
+        long endTs = baseTs + POINTS * STEP;
+        long[][] ranges = {
+                {baseTs, endTs, HOUR},
+                {baseTs + 90 * 1000, baseTs + 3 * HOUR + 30 * 1000, HOUR},
+                {baseTs + 25 * MINUTE, endTs - 5 * MINUTE, 2 * HOUR},
+                {baseTs + 13 * MINUTE, endTs, 10 * MINUTE},
+                {baseTs, baseTs + DAY, DAY}
+        };
+        for (long[] range : ranges) {
+            for (Aggregation aggregation : new Aggregation[]{Aggregation.SUM, Aggregation.AVG, Aggregation.MIN, Aggregation.MAX, Aggregation.COUNT}) {
+                List<String> expected = aggregationRepository.findAggregated(deviceId.getId(), keyId, range[0], range[1], range[2], aggregation)
+                        .stream().map(this::toString).collect(Collectors.toList());
+                List<String> actual = findAggregated(range[0], range[1], range[2], aggregation)
+                        .stream().map(entry -> entry.getTs() + "=" + entry.getValueAsString()).collect(Collectors.toList());
+                assertFalse(expected.isEmpty());
+                assertEquals(aggregation + " " + range[0] + ".." + range[1] + "/" + range[2], expected, actual);
+            }
+        }
+    }
+
+    private String toString(TsKvEntity entity) {
+        entity.setStrKey(KEY);
+        TsKvEntry entry = entity.toData();
+        return entry.getTs() + "=" + entry.getValueAsString();
+    }
+
+    private List<TsKvEntry> findAggregated(long startTs, long endTs, long interval, Aggregation aggregation) throws Exception {
+        return tsService.findAll(tenantId, deviceId, Collections.singletonList(
+                new BaseReadTsKvQuery(KEY, startTs, endTs, interval, 1000, aggregation))).get();
+    }
+
+    private List<TsKvEntry> points(int from, int to, long valueOffset) {
+        List<TsKvEntry> points = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            points.add(new BasicTsKvEntry(baseTs + i * STEP, new LongDataEntry(KEY, valueOffset + i * 3 % 17)));
+        }
+        return points;
+    }
+
+    private void save(List<TsKvEntry> points) throws Exception {
+        tsService.save(tenantId, deviceId, points, 0).get();
+    }
+}
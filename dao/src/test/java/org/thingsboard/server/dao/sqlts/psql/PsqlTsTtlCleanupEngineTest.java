@@ -0,0 +1,227 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.thingsboard.server.common.data.Customer;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@TestPropertySource(locations = {"classpath:application-test.properties", "classpath:sql-test.properties"},
+        properties = {"sql.ttl.ts.cleanup_mode=batched", "sql.ttl.ts.batched.batch_size=3"})
+public class PsqlTsTtlCleanupEngineTest extends AbstractServiceTest {
+
+    private static final int KEY = 1;
+    private static final long MARGIN = TimeUnit.HOURS.toMillis(1);
+    private static final String EXPIRED_PARTITION = "ts_kv_ttl_test_expired";
+    private static final String ACTIVE_PARTITION = "ts_kv_ttl_test_active";
+    // the partitions and the data are far in the past, so they don't overlap with the partitions of the other tests
+    private static final long EXPIRED_PARTITION_START = toTs(1972, 1, 1);
+    private static final long ACTIVE_PARTITION_START = toTs(1972, 6, 1);
+    private static final long ACTIVE_PARTITION_END = toTs(1972, 8, 1);
+    private static final long SYSTEM_EXPIRATION_TS = toTs(1972, 7, 1);
+    private static final long TENANT_EXPIRATION_TS = toTs(1972, 6, 10);
+    private static final long CUSTOMER_EXPIRATION_TS = toTs(1972, 7, 20);
+
+    @Autowired
+    private PsqlTsTtlCleanupEngine cleanupEngine;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<TenantId> tenantIds = new ArrayList<>();
+    private final List<UUID> ttlEntityIds = new ArrayList<>();
+    private final List<Long> droppedPartitions = new ArrayList<>();
+
+    @Before
+    public void before() {
+        jdbcTemplate.execute("DELETE FROM ts_ttl_cleanup");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + EXPIRED_PARTITION + " PARTITION OF ts_kv " +
+                "FOR VALUES FROM (" + EXPIRED_PARTITION_START + ") TO (" + ACTIVE_PARTITION_START + ")");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + ACTIVE_PARTITION + " PARTITION OF ts_kv " +
+                "FOR VALUES FROM (" + ACTIVE_PARTITION_START + ") TO (" + ACTIVE_PARTITION_END + ")");
+    }
+
+    @After
+    public void after() {
+        tenantIds.forEach(tenantService::deleteTenant);
+        ttlEntityIds.forEach(entityId -> jdbcTemplate.update("DELETE FROM attribute_kv WHERE entity_id = ? AND attribute_key = 'TTL'", entityId));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + EXPIRED_PARTITION);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ACTIVE_PARTITION);
+        jdbcTemplate.execute("DELETE FROM ts_ttl_cleanup");
+    }
+
+    @Test
+    public void testPartitionsExpiredForAllTenantsAreDropped() {
+        Device device = saveDevice(saveTenant(), null);
+        insert(device.getUuidId(), EXPIRED_PARTITION_START + MARGIN);
+
+        cleanupEngine.cleanup(toSystemTtl(), droppedPartitions::add);
+
+        assertTrue(droppedPartitions.contains(EXPIRED_PARTITION_START));
+        assertFalse(droppedPartitions.contains(ACTIVE_PARTITION_START));
+        assertFalse(partitionExists(EXPIRED_PARTITION));
+        assertTrue(partitionExists(ACTIVE_PARTITION));
+    }
+
+    @Test
+    public void testPartitionsAreNotDroppedWithInfiniteTtl() {
+        TenantId tenantId = saveTenant();
+        saveTtl(tenantId, 0);
+
+        cleanupEngine.cleanup(toSystemTtl(), droppedPartitions::add);
+
+        assertTrue(droppedPartitions.isEmpty());
+        assertTrue(partitionExists(EXPIRED_PARTITION));
+    }
+
+    @Test
+    public void testExpiredRowsAreDeletedInBatches() {
+        Device device = saveDevice(saveTenant(), null);
+        // a multiple of the batch size, so the last batch is empty
+        for (int i = 0; i < 9; i++) {
+            insert(device.getUuidId(), ACTIVE_PARTITION_START + i);
+        }
+        for (int i = 0; i < 4; i++) {
+            insert(device.getUuidId(), SYSTEM_EXPIRATION_TS + MARGIN + i);
+        }
+
+        long deleted = cleanupEngine.cleanup(toSystemTtl(), droppedPartitions::add);
+
+        assertTrue(deleted >= 9);
+        assertEquals(0, count(device.getUuidId(), ACTIVE_PARTITION_START, SYSTEM_EXPIRATION_TS));
+        assertEquals(4, count(device.getUuidId(), SYSTEM_EXPIRATION_TS, ACTIVE_PARTITION_END));
+    }
+
+    @Test
+    public void testTenantAndCustomerTtlOverrideSystemTtl() {
+        TenantId tenantId = saveTenant();
+        saveTtl(tenantId, toTtl(TENANT_EXPIRATION_TS));
+        Customer customer = saveCustomer(tenantId);
+        saveTtl(customer.getId(), toTtl(CUSTOMER_EXPIRATION_TS));
+        Device tenantDevice = saveDevice(tenantId, null);
+        Device customerDevice = saveDevice(tenantId, customer.getId());
+        for (UUID entityId : new UUID[]{tenantDevice.getUuidId(), customerDevice.getUuidId(), customer.getUuidId()}) {
+            insert(entityId, TENANT_EXPIRATION_TS - MARGIN);
+            insert(entityId, SYSTEM_EXPIRATION_TS - MARGIN);
+            insert(entityId, CUSTOMER_EXPIRATION_TS - MARGIN);
+            insert(entityId, CUSTOMER_EXPIRATION_TS + MARGIN);
+        }
+
+        cleanupEngine.cleanup(toSystemTtl(), droppedPartitions::add);
+
+        assertEquals(3, count(tenantDevice.getUuidId(), ACTIVE_PARTITION_START, ACTIVE_PARTITION_END));
+        assertEquals(1, count(customerDevice.getUuidId(), ACTIVE_PARTITION_START, ACTIVE_PARTITION_END));
+        assertEquals(1, count(customer.getUuidId(), ACTIVE_PARTITION_START, ACTIVE_PARTITION_END));
+    }
+
+    @Test
+    public void testInterruptedRunResumesAfterLastTenant() {
+        TenantId firstTenantId = saveTenant();
+        TenantId secondTenantId = saveTenant();
+        List<UUID> sorted = jdbcTemplate.queryForList("SELECT id FROM tenant WHERE id IN (?, ?) ORDER BY id", UUID.class,
+                firstTenantId.getId(), secondTenantId.getId());
+        Device skippedDevice = saveDevice(new TenantId(sorted.get(0)), null);
+        Device processedDevice = saveDevice(new TenantId(sorted.get(1)), null);
+        insert(skippedDevice.getUuidId(), ACTIVE_PARTITION_START + MARGIN);
+        insert(processedDevice.getUuidId(), ACTIVE_PARTITION_START + MARGIN);
+        jdbcTemplate.update("INSERT INTO ts_ttl_cleanup (id, started_ts, last_tenant_id, deleted) VALUES (0, ?, ?, 5)",
+                System.currentTimeMillis(), sorted.get(0));
+
+        long deleted = cleanupEngine.cleanup(toSystemTtl(), droppedPartitions::add);
+
+        assertTrue(deleted >= 6);
+        assertEquals(1, count(skippedDevice.getUuidId(), ACTIVE_PARTITION_START, ACTIVE_PARTITION_END));
+        assertEquals(0, count(processedDevice.getUuidId(), ACTIVE_PARTITION_START, ACTIVE_PARTITION_END));
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT count(*) FROM ts_ttl_cleanup", Integer.class));
+    }
+
+    private TenantId saveTenant() {
+        Tenant tenant = new Tenant();
+        tenant.setTitle("My tenant");
+        TenantId tenantId = tenantService.saveTenant(tenant).getId();
+        tenantIds.add(tenantId);
+        return tenantId;
+    }
+
+    private Customer saveCustomer(TenantId tenantId) {
+        Customer customer = new Customer();
+        customer.setTenantId(tenantId);
+        customer.setTitle("My customer");
+        return customerService.saveCustomer(customer);
+    }
+
+    private Device saveDevice(TenantId tenantId, CustomerId customerId) {
+        Device device = new Device();
+        device.setTenantId(tenantId);
+        device.setCustomerId(customerId);
+        device.setName("My device " + UUID.randomUUID());
+        device.setType("default");
+        return deviceService.saveDevice(device);
+    }
+
+    private void saveTtl(EntityId entityId, long ttl) {
+        jdbcTemplate.update("INSERT INTO attribute_kv (entity_type, entity_id, attribute_type, attribute_key, long_v, last_update_ts) " +
+                "VALUES (?, ?, 'SERVER_SCOPE', 'TTL', ?, ?)", entityId.getEntityType().name(), entityId.getId(), ttl, System.currentTimeMillis());
+        ttlEntityIds.add(entityId.getId());
+    }
+
+    private void insert(UUID entityId, long ts) {
+        jdbcTemplate.update("INSERT INTO ts_kv (entity_id, key, ts, long_v) VALUES (?, ?, ?, ?)", entityId, KEY, ts, ts);
+    }
+
+    private int count(UUID entityId, long startTs, long endTs) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM ts_kv WHERE entity_id = ? AND ts >= ? AND ts < ?",
+                Integer.class, entityId, startTs, endTs);
+    }
+
+    private boolean partitionExists(String name) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM pg_class WHERE relname = ?", Integer.class, name) > 0;
+    }
+
+    private static long toSystemTtl() {
+        return toTtl(SYSTEM_EXPIRATION_TS);
+    }
+
+    // the cleanup starts after the ttl is calculated, so the expiration time is a few seconds later than the given one
+    private static long toTtl(long expirationTs) {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - expirationTs);
+    }
+
+    private static long toTs(int year, int month, int day) {
+        return LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
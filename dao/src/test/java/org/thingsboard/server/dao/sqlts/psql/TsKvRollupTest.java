@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.psql;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class TsKvRollupTest {
+
+    @Test
+    public void testMergedRollupsEqualSingleRollup() {
+        TsKvRollup first = new TsKvRollup();
+        first.add(longPoint(1L));
+        first.add(doublePoint(2.0));
+        TsKvRollup second = new TsKvRollup();
+        second.add(longPoint(3L));
+        second.add(doublePoint(4.0));
+
+        first.merge(second);
+
+        assertEquals(2.5, first.toEntity(Aggregation.AVG).getDoubleValue(), 0.0);
+        assertEquals(10.0, first.toEntity(Aggregation.SUM).getDoubleValue(), 0.0);
+        assertEquals(1.0, first.toEntity(Aggregation.MIN).getDoubleValue(), 0.0);
+        assertEquals(4.0, first.toEntity(Aggregation.MAX).getDoubleValue(), 0.0);
+        assertEquals(Long.valueOf(4), first.toEntity(Aggregation.COUNT).getLongValue());
+    }
+
+    @Test
+    public void testMergeWithEmptyRollupKeepsMinMax() {
+        TsKvRollup rollup = new TsKvRollup();
+        rollup.add(longPoint(5L));
+        rollup.add(longPoint(-7L));
+
+        rollup.merge(new TsKvRollup());
+
+        assertEquals(Long.valueOf(-7L), rollup.toEntity(Aggregation.MIN).getLongValue());
+        assertEquals(Long.valueOf(5L), rollup.toEntity(Aggregation.MAX).getLongValue());
+        assertEquals(Long.valueOf(-2L), rollup.toEntity(Aggregation.SUM).getLongValue());
+        assertNull(rollup.toEntity(Aggregation.SUM).getDoubleValue());
+    }
+
+    @Test
+    public void testStringMinMaxTakePrecedence() {
+        TsKvRollup first = new TsKvRollup();
+        first.add(longPoint(100L));
+        first.add(strPoint("b"));
+        TsKvRollup second = new TsKvRollup();
+        second.add(strPoint("a"));
+        second.add(strPoint("c"));
+
+        first.merge(second);
+
+        assertEquals("a", first.toEntity(Aggregation.MIN).getStrValue());
+        assertEquals("c", first.toEntity(Aggregation.MAX).getStrValue());
+        assertEquals(Long.valueOf(3), first.toEntity(Aggregation.COUNT).getLongValue());
+    }
+
+    @Test
+    public void testBooleansHaveNoMinMax() {
+        TsKvRollup rollup = new TsKvRollup();
+        TsKvEntity point = new TsKvEntity();
+        point.setBooleanValue(true);
+        rollup.add(point);
+
+        assertFalse(rollup.toEntity(Aggregation.MIN).isNotEmpty());
+        assertEquals(Long.valueOf(1), rollup.toEntity(Aggregation.COUNT).getLongValue());
+    }
+
+    private static TsKvEntity longPoint(long value) {
+        TsKvEntity point = new TsKvEntity();
+        point.setLongValue(value);
+        return point;
+    }
+
+    private static TsKvEntity doublePoint(double value) {
+        TsKvEntity point = new TsKvEntity();
+        point.setDoubleValue(value);
+        return point;
+    }
+
+    private static TsKvEntity strPoint(String value) {
+        TsKvEntity point = new TsKvEntity();
+        point.setStrValue(value);
+        return point;
+    }
+}
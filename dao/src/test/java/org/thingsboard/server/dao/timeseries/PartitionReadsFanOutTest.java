@@ -0,0 +1,94 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionReadsFanOutTest {
+
+    @Test
+    public void testReadsAreBoundedAndResultsKeepOrder() throws Exception {
+        List<SettableFuture<Integer>> pending = new ArrayList<>();
+        List<Supplier<ListenableFuture<Integer>>> reads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            reads.add(() -> {
+                SettableFuture<Integer> future = SettableFuture.create();
+                pending.add(future);
+                return future;
+            });
+        }
+
+        ListenableFuture<List<Integer>> result = PartitionReadsFanOut.readAll(reads, 2, MoreExecutors.directExecutor());
+        assertEquals(2, pending.size());
+
+        pending.get(1).set(1);
+        assertEquals(3, pending.size());
+        pending.get(0).set(0);
+        assertEquals(4, pending.size());
+        pending.get(3).set(3);
+        pending.get(2).set(2);
+        assertEquals(5, pending.size());
+        assertFalse(result.isDone());
+
+        pending.get(4).set(4);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), result.get());
+    }
+
+    @Test
+    public void testFailedReadFailsResultAndStopsFurtherReads() {
+        List<SettableFuture<Integer>> pending = new ArrayList<>();
+        List<Supplier<ListenableFuture<Integer>>> reads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            reads.add(() -> {
+                SettableFuture<Integer> future = SettableFuture.create();
+                pending.add(future);
+                return future;
+            });
+        }
+
+        ListenableFuture<List<Integer>> result = PartitionReadsFanOut.readAll(reads, 1, MoreExecutors.directExecutor());
+        pending.get(0).setException(new RuntimeException("read failed"));
+
+        assertTrue(result.isDone());
+        assertEquals(1, pending.size());
+        try {
+            result.get();
+        } catch (InterruptedException | ExecutionException e) {
+            assertEquals("read failed", e.getCause().getMessage());
+            return;
+        }
+        throw new AssertionError("Exception expected");
+    }
+
+    @Test
+    public void testNoReads() throws Exception {
+        assertTrue(PartitionReadsFanOut.<Integer>readAll(new ArrayList<>(), 4, MoreExecutors.directExecutor()).get().isEmpty());
+    }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import io.micrometer.core.instrument.Counter;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TsLatestCacheTest {
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private DefaultCounter hitCounter;
+    private DefaultCounter missCounter;
+    private TsLatestCache cache;
+
+    @Before
+    public void setUp() {
+        StatsFactory statsFactory = mock(StatsFactory.class);
+        hitCounter = new DefaultCounter(new AtomicInteger(), mock(Counter.class));
+        missCounter = new DefaultCounter(new AtomicInteger(), mock(Counter.class));
+        when(statsFactory.createDefaultCounter(anyString(), anyString(), eq("hit"))).thenReturn(hitCounter);
+        when(statsFactory.createDefaultCounter(anyString(), anyString(), eq("miss"))).thenReturn(missCounter);
+        cache = new TsLatestCache(statsFactory);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "timeToLiveSec", 0L);
+        cache.init();
+    }
+
+    @Test
+    public void testWrittenValueIsServedFromCache() {
+        assertNull(cache.get(deviceId, "temperature"));
+        TsKvEntry entry = longEntry("temperature", 1L, 42L);
+        cache.put(deviceId, entry);
+
+        assertEquals(entry, cache.get(deviceId, "temperature"));
+        assertEquals(1, hitCounter.get());
+        assertEquals(1, missCounter.get());
+    }
+
+    @Test
+    public void testLoadedValueDoesNotOverrideWrittenValue() {
+        TsKvEntry written = longEntry("temperature", 2L, 43L);
+        cache.put(deviceId, written);
+        cache.putLoaded(deviceId, longEntry("temperature", 1L, 42L), cache.getVersion(deviceId));
+
+        assertEquals(written, cache.get(deviceId, "temperature"));
+    }
+
+    @Test
+    public void testMissingValueIsNotCached() {
+        cache.putLoaded(deviceId, new BasicTsKvEntry(1L, new StringDataEntry("temperature", null)), cache.getVersion(deviceId));
+
+        assertNull(cache.get(deviceId, "temperature"));
+    }
+
+    @Test
+    public void testAllLatestAreServedOnlyWhenLoadedCompletely() {
+        cache.put(deviceId, longEntry("temperature", 1L, 42L));
+        assertNull(cache.getAll(deviceId));
+
+        cache.putAllLoaded(deviceId, Arrays.asList(longEntry("temperature", 1L, 42L), longEntry("humidity", 1L, 70L)), cache.getVersion(deviceId));
+        List<TsKvEntry> all = cache.getAll(deviceId);
+        assertEquals(2, all.size());
+
+        cache.remove(deviceId, "humidity");
+        assertEquals(1, cache.getAll(deviceId).size());
+
+        cache.evict(deviceId);
+        assertNull(cache.getAll(deviceId));
+    }
+
+    @Test
+    public void testValueLoadedBeforeEvictionIsNotCached() {
+        long version = cache.getVersion(deviceId);
+        // the value is updated by another node while it is loaded from the database
+        cache.evict(deviceId);
+        cache.putLoaded(deviceId, longEntry("temperature", 1L, 42L), version);
+
+        assertNull(cache.get(deviceId, "temperature"));
+
+        cache.putLoaded(deviceId, longEntry("temperature", 2L, 43L), cache.getVersion(deviceId));
+        assertEquals(longEntry("temperature", 2L, 43L), cache.get(deviceId, "temperature"));
+    }
+
+    @Test
+    public void testValueLoadedBeforeRemoveIsNotCached() {
+        long version = cache.getVersion(deviceId);
+        cache.remove(deviceId, "temperature");
+        cache.putLoaded(deviceId, longEntry("temperature", 1L, 42L), version);
+
+        assertNull(cache.get(deviceId, "temperature"));
+    }
+
+    @Test
+    public void testAllLatestLoadedBeforeEvictAllAreNotCached() {
+        long version = cache.getVersion(deviceId);
+        cache.evictAll();
+        cache.putAllLoaded(deviceId, Arrays.asList(longEntry("temperature", 1L, 42L), longEntry("humidity", 1L, 70L)), version);
+
+        assertNull(cache.getAll(deviceId));
+        assertNull(cache.get(deviceId, "temperature"));
+    }
+
+    private static TsKvEntry longEntry(String key, long ts, long value) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(key, value));
+    }
+
+}
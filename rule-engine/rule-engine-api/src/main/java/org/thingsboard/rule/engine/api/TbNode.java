@@ -18,6 +18,7 @@ package org.thingsboard.rule.engine.api;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -31,6 +32,29 @@ public interface TbNode {
 
     void destroy();
 
+    /**
+     * Returns true if the node is able to process several messages at once via {@link #onMsgs(TbContext, List)}.
+     */
+    default boolean isBatchProcessingSupported() {
+        return false;
+    }
+
+    /**
+     * Processes several messages at once. A message that fails to be processed must be reported via {@link TbContext#tellFailure}
+     * without affecting the rest of the batch, exceptions thrown from this method fail all messages of the batch.
+     */
+    default void onMsgs(TbContext ctx, List<TbMsg> msgs) throws ExecutionException, InterruptedException, TbNodeException {
+        for (TbMsg msg : msgs) {
+            try {
+                onMsg(ctx, msg);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                ctx.tellFailure(msg, e);
+            }
+        }
+    }
+
     default void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {}
 
 }
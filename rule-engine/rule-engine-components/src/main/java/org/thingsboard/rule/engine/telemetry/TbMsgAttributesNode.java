@@ -15,7 +15,9 @@
  */
 package org.thingsboard.rule.engine.telemetry;
 
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.gson.JsonParser;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.thingsboard.rule.engine.api.RuleNode;
@@ -24,6 +26,7 @@ import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
@@ -31,6 +34,10 @@ import org.thingsboard.server.common.msg.session.SessionMsgType;
 import org.thingsboard.server.common.transport.adaptor.JsonConverter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Slf4j
@@ -58,25 +65,86 @@ public class TbMsgAttributesNode implements TbNode {
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
+        Set<AttributeKvEntry> attributes = toAttributes(ctx, msg);
+        if (attributes != null) {
+            ctx.getTelemetryService().saveAndNotify(
+                    ctx.getTenantId(),
+                    msg.getOriginator(),
+                    config.getScope(),
+                    new ArrayList<>(attributes),
+                    isNotifyDevice(msg),
+                    new TelemetryNodeCallback(ctx, msg)
+            );
+        }
+    }
+
+    @Override
+    public boolean isBatchProcessingSupported() {
+        return true;
+    }
+
+    @Override
+    public void onMsgs(TbContext ctx, List<TbMsg> msgs) {
+        Map<BatchKey, List<TbMsg>> msgsByKey = new LinkedHashMap<>();
+        Map<BatchKey, Map<String, AttributeKvEntry>> attributesByKey = new HashMap<>();
+        for (TbMsg msg : msgs) {
+            Set<AttributeKvEntry> attributes;
+            BatchKey key;
+            try {
+                attributes = toAttributes(ctx, msg);
+                if (attributes == null) {
+                    continue;
+                }
+                key = new BatchKey(msg.getOriginator(), isNotifyDevice(msg));
+            } catch (Exception e) {
+                // the malformed message is failed alone, the rest of the batch is saved
+                ctx.tellFailure(msg, e);
+                continue;
+            }
+            msgsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(msg);
+            Map<String, AttributeKvEntry> keyAttributes = attributesByKey.computeIfAbsent(key, k -> new LinkedHashMap<>());
+            // the latest message in the batch wins for the same attribute key
+            attributes.forEach(attribute -> keyAttributes.put(attribute.getKey(), attribute));
+        }
+        msgsByKey.forEach((key, keyMsgs) -> {
+            FutureCallback<Void> callback = keyMsgs.size() == 1 ?
+                    new TelemetryNodeCallback(ctx, keyMsgs.get(0)) : new TelemetryNodeBatchCallback(ctx, keyMsgs);
+            try {
+                ctx.getTelemetryService().saveAndNotify(
+                        ctx.getTenantId(),
+                        key.getOriginator(),
+                        config.getScope(),
+                        new ArrayList<>(attributesByKey.get(key).values()),
+                        key.isNotifyDevice(),
+                        callback
+                );
+            } catch (Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    private Set<AttributeKvEntry> toAttributes(TbContext ctx, TbMsg msg) {
         if (!msg.getType().equals(SessionMsgType.POST_ATTRIBUTES_REQUEST.name())) {
             ctx.tellFailure(msg, new IllegalArgumentException("Unsupported msg type: " + msg.getType()));
-            return;
+            return null;
         }
-        String src = msg.getData();
-        Set<AttributeKvEntry> attributes = JsonConverter.convertToAttributes(new JsonParser().parse(src));
+        return JsonConverter.convertToAttributes(new JsonParser().parse(msg.getData()));
+    }
+
+    private boolean isNotifyDevice(TbMsg msg) {
         String notifyDeviceStr = msg.getMetaData().getValue("notifyDevice");
-        ctx.getTelemetryService().saveAndNotify(
-                ctx.getTenantId(),
-                msg.getOriginator(),
-                config.getScope(),
-                new ArrayList<>(attributes),
-                config.getNotifyDevice() || StringUtils.isEmpty(notifyDeviceStr) || Boolean.parseBoolean(notifyDeviceStr),
-                new TelemetryNodeCallback(ctx, msg)
-        );
+        return config.getNotifyDevice() || StringUtils.isEmpty(notifyDeviceStr) || Boolean.parseBoolean(notifyDeviceStr);
     }
 
     @Override
     public void destroy() {
     }
 
+    @Data
+    private static class BatchKey {
+        private final EntityId originator;
+        private final boolean notifyDevice;
+    }
+
 }
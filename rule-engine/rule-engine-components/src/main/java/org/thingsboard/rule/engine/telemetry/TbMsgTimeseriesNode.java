@@ -15,7 +15,9 @@
  */
 package org.thingsboard.rule.engine.telemetry;
 
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.gson.JsonParser;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
 import org.thingsboard.rule.engine.api.RuleNode;
@@ -25,6 +27,8 @@ import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
 import org.thingsboard.server.common.data.TenantProfile;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
@@ -35,6 +39,8 @@ import org.thingsboard.server.common.transport.adaptor.JsonConverter;
 import org.thingsboard.server.common.data.tenant.profile.DefaultTenantProfileConfiguration;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -81,16 +87,60 @@ public class TbMsgTimeseriesNode implements TbNode {
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
+        List<TsKvEntry> tsKvEntryList = toTsKvEntries(ctx, msg);
+        if (tsKvEntryList != null) {
+            save(ctx, msg.getCustomerId(), msg.getOriginator(), tsKvEntryList, getTtl(msg), new TelemetryNodeCallback(ctx, msg));
+        }
+    }
+
+    @Override
+    public boolean isBatchProcessingSupported() {
+        return true;
+    }
+
+    @Override
+    public void onMsgs(TbContext ctx, List<TbMsg> msgs) {
+        Map<BatchKey, List<TbMsg>> msgsByKey = new LinkedHashMap<>();
+        Map<BatchKey, List<TsKvEntry>> entriesByKey = new HashMap<>();
+        for (TbMsg msg : msgs) {
+            List<TsKvEntry> tsKvEntryList;
+            BatchKey key;
+            try {
+                tsKvEntryList = toTsKvEntries(ctx, msg);
+                if (tsKvEntryList == null) {
+                    continue;
+                }
+                key = new BatchKey(msg.getOriginator(), msg.getCustomerId(), getTtl(msg));
+            } catch (Exception e) {
+                // the malformed message or the invalid TTL fails only this message, the rest of the batch is saved
+                ctx.tellFailure(msg, e);
+                continue;
+            }
+            msgsByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(msg);
+            entriesByKey.computeIfAbsent(key, k -> new ArrayList<>()).addAll(tsKvEntryList);
+        }
+        msgsByKey.forEach((key, keyMsgs) -> {
+            FutureCallback<Void> callback = keyMsgs.size() == 1 ?
+                    new TelemetryNodeCallback(ctx, keyMsgs.get(0)) : new TelemetryNodeBatchCallback(ctx, keyMsgs);
+            try {
+                save(ctx, key.getCustomerId(), key.getOriginator(), entriesByKey.get(key), key.getTtl(), callback);
+            } catch (Exception e) {
+                callback.onFailure(e);
+            }
+        });
+    }
+
+    private List<TsKvEntry> toTsKvEntries(TbContext ctx, TbMsg msg) {
         if (!msg.getType().equals(SessionMsgType.POST_TELEMETRY_REQUEST.name())) {
             ctx.tellFailure(msg, new IllegalArgumentException("Unsupported msg type: " + msg.getType()));
-            return;
+            return null;
         }
         long ts = computeTs(msg, config.isUseServerTs());
         String src = msg.getData();
         Map<Long, List<KvEntry>> tsKvMap = JsonConverter.convertToTelemetry(new JsonParser().parse(src), ts);
         if (tsKvMap.isEmpty()) {
             ctx.tellFailure(msg, new IllegalArgumentException("Msg body is empty: " + src));
-            return;
+            return null;
         }
         List<TsKvEntry> tsKvEntryList = new ArrayList<>();
         for (Map.Entry<Long, List<KvEntry>> tsKvEntry : tsKvMap.entrySet()) {
@@ -98,15 +148,23 @@ public class TbMsgTimeseriesNode implements TbNode {
                 tsKvEntryList.add(new BasicTsKvEntry(tsKvEntry.getKey(), kvEntry));
             }
         }
+        return tsKvEntryList;
+    }
+
+    private long getTtl(TbMsg msg) {
         String ttlValue = msg.getMetaData().getValue("TTL");
         long ttl = !StringUtils.isEmpty(ttlValue) ? Long.parseLong(ttlValue) : config.getDefaultTTL();
         if (ttl == 0L) {
             ttl = tenantProfileDefaultStorageTtl;
         }
+        return ttl;
+    }
+
+    private void save(TbContext ctx, CustomerId customerId, EntityId originator, List<TsKvEntry> tsKvEntryList, long ttl, FutureCallback<Void> callback) {
         if (config.isSkipLatestPersistence()) {
-            ctx.getTelemetryService().saveWithoutLatestAndNotify(ctx.getTenantId(), msg.getCustomerId(), msg.getOriginator(), tsKvEntryList, ttl, new TelemetryNodeCallback(ctx, msg));
+            ctx.getTelemetryService().saveWithoutLatestAndNotify(ctx.getTenantId(), customerId, originator, tsKvEntryList, ttl, callback);
         } else {
-            ctx.getTelemetryService().saveAndNotify(ctx.getTenantId(), msg.getCustomerId(), msg.getOriginator(), tsKvEntryList, ttl, new TelemetryNodeCallback(ctx, msg));
+            ctx.getTelemetryService().saveAndNotify(ctx.getTenantId(), customerId, originator, tsKvEntryList, ttl, callback);
         }
     }
 
@@ -119,4 +177,11 @@ public class TbMsgTimeseriesNode implements TbNode {
         ctx.removeListeners();
     }
 
+    @Data
+    private static class BatchKey {
+        private final EntityId originator;
+        private final CustomerId customerId;
+        private final long ttl;
+    }
+
 }
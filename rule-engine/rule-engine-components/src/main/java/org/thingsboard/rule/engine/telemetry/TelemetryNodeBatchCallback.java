@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.telemetry;
+
+import com.google.common.util.concurrent.FutureCallback;
+import lombok.Data;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.server.common.msg.TbMsg;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Reports result of the single save operation performed for several messages of the batch.
+ */
+@Data
+class TelemetryNodeBatchCallback implements FutureCallback<Void> {
+    private final TbContext ctx;
+    private final List<TbMsg> msgs;
+
+    @Override
+    public void onSuccess(@Nullable Void result) {
+        msgs.forEach(ctx::tellSuccess);
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+        msgs.forEach(msg -> ctx.tellFailure(msg, t));
+    }
+}
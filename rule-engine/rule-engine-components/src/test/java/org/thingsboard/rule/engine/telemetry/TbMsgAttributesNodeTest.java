@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.FutureCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.rule.engine.api.RuleEngineTelemetryService;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.session.SessionMsgType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbMsgAttributesNodeTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Mock
+    private TbContext ctx;
+    @Mock
+    private RuleEngineTelemetryService telemetryService;
+
+    private TbMsgAttributesNode node;
+
+    @Before
+    public void setUp() throws TbNodeException {
+        node = new TbMsgAttributesNode();
+        TbMsgAttributesNodeConfiguration config = new TbMsgAttributesNodeConfiguration().defaultConfiguration();
+        node.init(ctx, new TbNodeConfiguration(new ObjectMapper().valueToTree(config)));
+    }
+
+    @Test
+    public void testInvalidMessagesFailAloneAndTheRestOfTheBatchIsSaved() throws Exception {
+        when(ctx.getTenantId()).thenReturn(tenantId);
+        when(ctx.getTelemetryService()).thenReturn(telemetryService);
+        TbMsg first = attributesMsg("{\"mode\":\"eco\",\"active\":true}");
+        TbMsg malformed = attributesMsg("{\"mode\":");
+        TbMsg unsupported = TbMsg.newMsg(SessionMsgType.POST_TELEMETRY_REQUEST.name(), deviceId, new TbMsgMetaData(), "{\"temperature\":22}");
+        TbMsg second = attributesMsg("{\"mode\":\"comfort\"}");
+
+        node.onMsgs(ctx, Arrays.asList(first, malformed, unsupported, second));
+
+        verify(ctx).tellFailure(eq(malformed), any());
+        verify(ctx, times(1)).tellFailure(eq(unsupported), any(IllegalArgumentException.class));
+
+        ArgumentCaptor<List<AttributeKvEntry>> attributesCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<FutureCallback<Void>> callbackCaptor = ArgumentCaptor.forClass(FutureCallback.class);
+        verify(telemetryService).saveAndNotify(eq(tenantId), eq(deviceId), eq(DataConstants.SERVER_SCOPE),
+                attributesCaptor.capture(), anyBoolean(), callbackCaptor.capture());
+        assertEquals(2, attributesCaptor.getValue().size());
+        AttributeKvEntry mode = attributesCaptor.getValue().stream().filter(attribute -> "mode".equals(attribute.getKey())).findFirst().get();
+        assertEquals("comfort", mode.getValueAsString());
+
+        callbackCaptor.getValue().onSuccess(null);
+        verify(ctx).tellSuccess(first);
+        verify(ctx).tellSuccess(second);
+        verify(ctx, never()).tellFailure(eq(first), any());
+        verify(ctx, never()).tellFailure(eq(second), any());
+    }
+
+    private TbMsg attributesMsg(String data) {
+        return TbMsg.newMsg(SessionMsgType.POST_ATTRIBUTES_REQUEST.name(), deviceId, new TbMsgMetaData(), data);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2022 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.FutureCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.rule.engine.api.RuleEngineTelemetryService;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.data.TenantProfile;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.session.SessionMsgType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbMsgTimeseriesNodeTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private final DeviceId otherDeviceId = new DeviceId(UUID.randomUUID());
+
+    @Mock
+    private TbContext ctx;
+    @Mock
+    private RuleEngineTelemetryService telemetryService;
+
+    private TbMsgTimeseriesNode node;
+
+    @Before
+    public void setUp() throws TbNodeException {
+        TenantProfile tenantProfile = new TenantProfile();
+        tenantProfile.setProfileData(tenantProfile.createDefaultTenantProfileData());
+        when(ctx.getTenantProfile()).thenReturn(tenantProfile);
+        node = new TbMsgTimeseriesNode();
+        TbMsgTimeseriesNodeConfiguration config = new TbMsgTimeseriesNodeConfiguration().defaultConfiguration();
+        node.init(ctx, new TbNodeConfiguration(new ObjectMapper().valueToTree(config)));
+    }
+
+    @Test
+    public void testInvalidMessagesFailAloneAndTheRestOfTheBatchIsSaved() throws Exception {
+        when(ctx.getTenantId()).thenReturn(tenantId);
+        when(ctx.getTelemetryService()).thenReturn(telemetryService);
+        TbMsg valid = telemetryMsg(deviceId, "{\"temperature\":22}", new TbMsgMetaData());
+        TbMsg malformed = telemetryMsg(deviceId, "{\"temperature\":", new TbMsgMetaData());
+        TbMsgMetaData invalidTtlMetaData = new TbMsgMetaData();
+        invalidTtlMetaData.putValue("TTL", "one day");
+        TbMsg invalidTtl = telemetryMsg(deviceId, "{\"humidity\":50}", invalidTtlMetaData);
+        TbMsg unsupported = TbMsg.newMsg(SessionMsgType.POST_ATTRIBUTES_REQUEST.name(), deviceId, new TbMsgMetaData(), "{\"active\":true}");
+        TbMsg otherValid = telemetryMsg(otherDeviceId, "{\"temperature\":23}", new TbMsgMetaData());
+
+        node.onMsgs(ctx, Arrays.asList(valid, malformed, invalidTtl, unsupported, otherValid));
+
+        verify(ctx).tellFailure(eq(malformed), any());
+        verify(ctx).tellFailure(eq(invalidTtl), any(NumberFormatException.class));
+        verify(ctx).tellFailure(eq(unsupported), any(IllegalArgumentException.class));
+
+        ArgumentCaptor<List<TsKvEntry>> entriesCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<FutureCallback<Void>> callbackCaptor = ArgumentCaptor.forClass(FutureCallback.class);
+        verify(telemetryService).saveAndNotify(eq(tenantId), isNull(), eq(deviceId), entriesCaptor.capture(), anyLong(), callbackCaptor.capture());
+        verify(telemetryService).saveAndNotify(eq(tenantId), isNull(), eq(otherDeviceId), any(), anyLong(), any());
+        assertEquals(1, entriesCaptor.getValue().size());
+        assertEquals("temperature", entriesCaptor.getValue().get(0).getKey());
+
+        callbackCaptor.getValue().onSuccess(null);
+        verify(ctx).tellSuccess(valid);
+        verify(ctx, never()).tellFailure(eq(valid), any());
+        verify(ctx, never()).tellFailure(eq(otherValid), any());
+    }
+
+    private static TbMsg telemetryMsg(DeviceId originator, String data, TbMsgMetaData metaData) {
+        return TbMsg.newMsg(SessionMsgType.POST_TELEMETRY_REQUEST.name(), originator, metaData, data);
+    }
+}